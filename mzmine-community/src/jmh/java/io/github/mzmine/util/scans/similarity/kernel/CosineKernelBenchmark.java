@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Weighted cosine of spectrum pairs on {@link DataPoint} arrays (align, weight matrix, cosine)
+ * against the primitive {@link CosineSimilarityKernel} implementations. Run with
+ * gradlew jmh -PjmhIncludes=CosineKernelBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CosineKernelBenchmark {
+
+  private static final int PAIRS = 200;
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private static final Weights weights = Weights.MASSBANK;
+  private static final HandleUnmatchedSignalOptions handleUnmatched = //
+      HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO;
+
+  @Param({"20", "150", "500"})
+  private int signals;
+
+  private DataPoint[][] library;
+  private DataPoint[][] query;
+  private final CosineSimilarityKernel scalar = new ScalarCosineSimilarityKernel();
+  private final CosineSimilarityKernel instance = CosineSimilarityKernel.getInstance();
+  private final CosineKernelResult result = new CosineKernelResult();
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(42);
+    library = new DataPoint[PAIRS][];
+    query = new DataPoint[PAIRS][];
+    for (int i = 0; i < PAIRS; i++) {
+      library[i] = randomSpectrum(random);
+      query[i] = randomSpectrum(random);
+    }
+  }
+
+  private DataPoint[] randomSpectrum(Random random) {
+    final DataPoint[] dps = new DataPoint[signals];
+    for (int i = 0; i < dps.length; i++) {
+      // narrow m/z range to create many matches
+      dps[i] = new SimpleDataPoint(50 + random.nextInt(20000) * 0.01, random.nextDouble() * 1E5);
+    }
+    return dps;
+  }
+
+  @Benchmark
+  public double dataPointAlignment() {
+    double sum = 0;
+    for (int i = 0; i < PAIRS; i++) {
+      // align sorts the library in place
+      List<DataPoint[]> aligned = ScanAlignment.align(mzTol, library[i].clone(), query[i]);
+      aligned = handleUnmatched.handleUnmatched(aligned);
+      sum += Similarity.COSINE.calc(
+          ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(),
+              weights.getMz()));
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double scalarKernel() {
+    return kernelCosine(scalar);
+  }
+
+  /**
+   * Vector API implementation if jdk.incubator.vector is available
+   */
+  @Benchmark
+  public double instanceKernel() {
+    return kernelCosine(instance);
+  }
+
+  private double kernelCosine(CosineSimilarityKernel kernel) {
+    double sum = 0;
+    for (int i = 0; i < PAIRS; i++) {
+      kernel.weightedCosine(library[i], query[i], mzTol, weights, handleUnmatched, result);
+      sum += result.getScore();
+    }
+    return sum;
+  }
+}
@@ -29,9 +29,11 @@ import static java.util.Objects.requireNonNullElse;
 
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.SharedMzAxisStorage;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.collections.BinarySearch;
 import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
+import io.github.mzmine.util.scans.FragmentScanIndex;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -294,6 +296,14 @@ public interface RawDataFile {
 
   @Nullable MemoryMapStorage getMemoryMapStorage();
 
+  /**
+   * @return storage to share identical m/z axes between scans of this file or null to store the m/z
+   * values of each scan separately
+   */
+  default @Nullable SharedMzAxisStorage getSharedMzAxisStorage() {
+    return null;
+  }
+
   void addScan(Scan newScan) throws IOException;
 
   @NotNull ObservableList<Scan> getScans();
@@ -302,6 +312,16 @@ public interface RawDataFile {
     return getScans().stream();
   }
 
+  /**
+   * Index of all fragment scans to find them by retention time and precursor m/z. Implementations
+   * may cache the index.
+   *
+   * @return the fragment scan index of this data file
+   */
+  default @NotNull FragmentScanIndex getFragmentScanIndex() {
+    return FragmentScanIndex.create(this);
+  }
+
   /**
    * Mass list has changed. reset all precomputed values
    *
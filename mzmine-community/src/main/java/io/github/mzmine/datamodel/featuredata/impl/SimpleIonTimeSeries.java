@@ -159,6 +159,23 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
     return new SimpleIonTimeSeries(storage, mzs, intensities, subset);
   }
 
+  /**
+   * Creates a sub series of consecutive data points without searching the scans.
+   *
+   * @param storage    may be null if values shall be stored in ram
+   * @param startIndex inclusive start index
+   * @param endIndex   exclusive end index
+   */
+  public SimpleIonTimeSeries subSeries(@Nullable MemoryMapStorage storage, int startIndex,
+      int endIndex) {
+    final double[] mzs = new double[endIndex - startIndex];
+    final double[] intensities = new double[endIndex - startIndex];
+    mzValues.get(startIndex, mzs);
+    intensityValues.get(startIndex, intensities);
+    return new SimpleIonTimeSeries(storage, mzs, intensities,
+        List.copyOf(scans.subList(startIndex, endIndex)));
+  }
+
   @Override
   public DoubleBuffer getIntensityValueBuffer() {
     return intensityValues;
@@ -286,6 +286,19 @@ public interface FeatureList {
    */
   @Nullable List<? extends Scan> getSeletedScans(@NotNull RawDataFile file);
 
+  /**
+   * The cached index of all rows by m/z, RT, and mobility. The index is recreated after rows were
+   * added or removed and after m/z, RT, or mobility values of rows or features changed.
+   *
+   * @return the current row index
+   */
+  @NotNull FeatureListRowIndex getRowIndex();
+
+  /**
+   * The row index is recreated on the next call to {@link #getRowIndex()}
+   */
+  void invalidateRowIndex();
+
   /**
    * Returns all rows with average retention time within given range
    *
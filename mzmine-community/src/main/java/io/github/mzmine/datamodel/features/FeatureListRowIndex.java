@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import com.google.common.collect.Range;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index of rows by average m/z, retention time, and mobility in packed primitive arrays
+ * sorted by m/z. Range queries use a binary search on m/z and filter RT and mobility on the
+ * primitive values. Safe for concurrent readers. The index reflects the row values at creation, use
+ * {@link FeatureList#getRowIndex()} to get the cached index of a feature list, which is recreated
+ * after the rows changed.
+ */
+public final class FeatureListRowIndex {
+
+  private static final FeatureListRowIndex EMPTY = new FeatureListRowIndex(List.of());
+
+  // all sorted by mz
+  private final FeatureListRow[] rows;
+  private final double[] mzs;
+  // NaN if not set
+  private final float[] rts;
+  private final float[] mobilities;
+
+  private FeatureListRowIndex(@NotNull Collection<? extends FeatureListRow> rows) {
+    final FeatureListRow[] all = rows.stream().filter(row -> row.getAverageMZ() != null)
+        .toArray(FeatureListRow[]::new);
+    final double[] allMzs = new double[all.length];
+    for (int i = 0; i < all.length; i++) {
+      allMzs[i] = all[i].getAverageMZ();
+    }
+    final int[] order = new int[all.length];
+    Arrays.setAll(order, i -> i);
+    IntArrays.stableSort(order, (a, b) -> Double.compare(allMzs[a], allMzs[b]));
+
+    this.rows = new FeatureListRow[all.length];
+    mzs = new double[all.length];
+    rts = new float[all.length];
+    mobilities = new float[all.length];
+    for (int i = 0; i < all.length; i++) {
+      final FeatureListRow row = all[order[i]];
+      this.rows[i] = row;
+      mzs[i] = allMzs[order[i]];
+      final Float rt = row.getAverageRT();
+      rts[i] = rt == null ? Float.NaN : rt;
+      final Float mobility = row.getAverageMobility();
+      mobilities[i] = mobility == null ? Float.NaN : mobility;
+    }
+  }
+
+  /**
+   * Creates a new index. Rows without m/z are not indexed.
+   */
+  public static @NotNull FeatureListRowIndex of(@NotNull Collection<? extends FeatureListRow> rows) {
+    return rows.isEmpty() ? EMPTY : new FeatureListRowIndex(rows);
+  }
+
+  public int size() {
+    return rows.length;
+  }
+
+  public boolean isEmpty() {
+    return rows.length == 0;
+  }
+
+  /**
+   * @return unmodifiable view of all rows sorted by m/z
+   */
+  public @NotNull List<FeatureListRow> getRowsSortedByMz() {
+    return Collections.unmodifiableList(Arrays.asList(rows));
+  }
+
+  /**
+   * All rows within all ranges. Same as
+   * {@link io.github.mzmine.util.FeatureListUtils#getCandidatesWithinRanges(Range, Range, Range,
+   * List, boolean)}, rows without RT or mobility are not filtered by these ranges. Use Range.all()
+   * to deactivate a filter.
+   *
+   * @return candidates sorted by m/z
+   */
+  public @NotNull List<FeatureListRow> getCandidates(@NotNull Range<Double> mzRange,
+      @NotNull Range<Float> rtRange, @NotNull Range<Float> mobilityRange) {
+    final int start = mzRange.hasLowerBound() ? lowerBound(mzRange.lowerEndpoint()) : 0;
+    List<FeatureListRow> candidates = null;
+    for (int i = start; i < mzs.length; i++) {
+      if (mzRange.hasUpperBound() && mzs[i] > mzRange.upperEndpoint()) {
+        break;
+      }
+      if (mzRange.contains(mzs[i]) //
+          && (Float.isNaN(rts[i]) || rtRange.contains(rts[i])) //
+          && (Float.isNaN(mobilities[i]) || mobilityRange.contains(mobilities[i]))) {
+        if (candidates == null) {
+          candidates = new ArrayList<>();
+        }
+        candidates.add(rows[i]);
+      }
+    }
+    return candidates == null ? List.of() : candidates;
+  }
+
+  /**
+   * @return all rows within both ranges sorted by m/z
+   */
+  public @NotNull List<FeatureListRow> getCandidates(@NotNull Range<Double> mzRange,
+      @NotNull Range<Float> rtRange) {
+    return getCandidates(mzRange, rtRange, Range.all());
+  }
+
+  /**
+   * @return the row with the closest m/z or null if empty
+   */
+  public @Nullable FeatureListRow getClosestMz(double mz) {
+    if (rows.length == 0) {
+      return null;
+    }
+    final int higher = lowerBound(mz);
+    if (higher == 0) {
+      return rows[0];
+    }
+    if (higher == rows.length) {
+      return rows[rows.length - 1];
+    }
+    return mz - mzs[higher - 1] <= mzs[higher] - mz ? rows[higher - 1] : rows[higher];
+  }
+
+  /**
+   * Nearest neighbour search in m/z and RT. The distance is the euclidean distance of the
+   * differences normalized by the maximum differences. Rows without RT only use the m/z
+   * difference.
+   *
+   * @param maxMzDiff maximum absolute m/z difference
+   * @param maxRtDiff maximum absolute RT difference
+   * @return the closest row within both maximum differences or null
+   */
+  public @Nullable FeatureListRow getNearest(double mz, float rt, double maxMzDiff,
+      float maxRtDiff) {
+    final int start = lowerBound(mz);
+    FeatureListRow best = null;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    // search both directions from the m/z until the m/z difference alone is worse
+    for (int i = start; i < mzs.length; i++) {
+      final double dmz = (mzs[i] - mz) / maxMzDiff;
+      if (dmz > 1 || dmz * dmz >= bestDistance) {
+        break;
+      }
+      final double distance = distance(i, dmz, rt, maxRtDiff);
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        best = rows[i];
+      }
+    }
+    for (int i = start - 1; i >= 0; i--) {
+      final double dmz = (mz - mzs[i]) / maxMzDiff;
+      if (dmz > 1 || dmz * dmz >= bestDistance) {
+        break;
+      }
+      final double distance = distance(i, dmz, rt, maxRtDiff);
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        best = rows[i];
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return squared normalized distance or infinity if outside the maximum RT difference
+   */
+  private double distance(int i, double normalizedMzDiff, float rt, float maxRtDiff) {
+    if (Float.isNaN(rts[i])) {
+      return normalizedMzDiff * normalizedMzDiff;
+    }
+    final double drt = Math.abs(rts[i] - rt) / maxRtDiff;
+    if (drt > 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return normalizedMzDiff * normalizedMzDiff + drt * drt;
+  }
+
+  /**
+   * @return first index with m/z >= the given m/z
+   */
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -38,6 +38,9 @@ import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotationType;
 import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.datamodel.features.types.tasks.NodeGenerationThread;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
@@ -63,12 +66,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.collections.ObservableSet;
@@ -111,6 +116,10 @@ public class ModularFeatureList implements FeatureList {
   private final ObservableSet<DataType> featureTypes = FXCollections.observableSet(
       new LinkedHashSet<>());
   private final ObservableList<FeatureListRow> featureListRows;
+  // cached index of rows, outdated on changes of the rows list or of m/z, RT, mobility values
+  private final Object rowIndexLock = new Object();
+  private final AtomicLong rowIndexVersion = new AtomicLong();
+  private volatile CachedRowIndex rowIndex;
   private final ObservableList<FeatureListAppliedMethod> descriptionOfAppliedTasks;
 
   private final R2RNetworkingMaps r2rNetworkingMaps = new R2RNetworkingMaps();
@@ -154,6 +163,17 @@ public class ModularFeatureList implements FeatureList {
   }
 
   private void addDefaultListeners() {
+    featureListRows.addListener((ListChangeListener<? super FeatureListRow>) change -> {
+      invalidateRowIndex();
+    });
+    // values of the row index, e.g., changed by gap filling in place
+    final DataTypeValueChangeListener<?> indexListener = (model, type, oldValue, newValue) ->
+        invalidateRowIndex();
+    for (DataType<?> type : List.of(new MZType(), new RTType(), new MobilityType())) {
+      addRowTypeListener(type, indexListener);
+      addFeatureTypeListener(type, indexListener);
+    }
+
     addFeatureTypeListener(new FeatureDataType(), (dataModel, type, oldValue, newValue) -> {
       // check feature data for graphical columns
       DataTypeUtils.applyFeatureSpecificGraphicalTypes((ModularFeature) dataModel);
@@ -503,6 +523,30 @@ public class ModularFeatureList implements FeatureList {
     applyRowBindings();
   }
 
+  @Override
+  public @NotNull FeatureListRowIndex getRowIndex() {
+    final CachedRowIndex cached = rowIndex;
+    if (cached != null && cached.version() == rowIndexVersion.get()) {
+      return cached.index();
+    }
+    synchronized (rowIndexLock) {
+      // read before the rows, changes during the creation outdate the new index
+      final long version = rowIndexVersion.get();
+      if (rowIndex != null && rowIndex.version() == version) {
+        return rowIndex.index();
+      }
+      final FeatureListRowIndex index = FeatureListRowIndex.of(List.copyOf(featureListRows));
+      rowIndex = new CachedRowIndex(index, version);
+      return index;
+    }
+  }
+
+  @Override
+  public void invalidateRowIndex() {
+    // called on every value change of the indexed types, so no lock
+    rowIndexVersion.incrementAndGet();
+  }
+
   @Override
   public List<FeatureListRow> getRowsInsideMZRange(Range<Double> mzRange) {
     Range<Float> all = Range.all();
@@ -917,4 +961,11 @@ public class ModularFeatureList implements FeatureList {
 
     bufferedCharts.clear();
   }
+
+  /**
+   * @param version the row index version at the start of the creation
+   */
+  private record CachedRowIndex(@NotNull FeatureListRowIndex index, long version) {
+
+  }
 }
@@ -93,8 +93,7 @@ public interface CompoundDBAnnotation extends Cloneable, FeatureAnnotation,
       CompoundDBAnnotation neutralAnnotation, IonNetworkLibrary library) {
     final List<CompoundDBAnnotation> annotations = new ArrayList<>();
     for (IonType adduct : library.getAllAdducts()) {
-      if (adduct.isUndefinedAdduct() || adduct.isUndefinedAdductParent() || adduct.getName()
-          .contains("?")) {
+      if (!isDefinedAdduct(adduct)) {
         continue;
       }
       try {
@@ -108,6 +107,15 @@ public interface CompoundDBAnnotation extends Cloneable, FeatureAnnotation,
     return annotations;
   }
 
+  /**
+   * @return true if the adduct is fully defined and can be used to ionize a neutral annotation in
+   * {@link #buildCompoundsWithAdducts(CompoundDBAnnotation, IonNetworkLibrary)}
+   */
+  static boolean isDefinedAdduct(IonType adduct) {
+    return !(adduct.isUndefinedAdduct() || adduct.isUndefinedAdductParent() || adduct.getName()
+        .contains("?"));
+  }
+
   /**
    * @param baseAnnotation The annotation to check.
    * @param useIonLibrary  true if an ion library shall be used later on to ionise the
@@ -26,6 +26,7 @@
 package io.github.mzmine.datamodel.features.types;
 
 import com.google.common.reflect.ClassPath;
+import com.google.common.reflect.ClassPath.ClassInfo;
 import io.github.mzmine.datamodel.MobilityType;
 import io.github.mzmine.datamodel.features.types.alignment.AlignmentMainType;
 import io.github.mzmine.datamodel.features.types.annotations.CommentType;
@@ -70,14 +71,32 @@ import io.github.mzmine.datamodel.features.types.numbers.PrecursorMZType;
 import io.github.mzmine.datamodel.features.types.numbers.RTRangeType;
 import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.datamodel.features.types.numbers.TailingFactorType;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -101,34 +120,174 @@ public class DataTypes {
    */
   private static final HashMap<String, DataType<?>> map = new HashMap<>();
 
+  /**
+   * Generated during the build. Lists all top level classes of the data types package.
+   */
+  private static final String REGISTRY_FILE = "datatypes.list";
+  private static final String TYPES_PACKAGE = "io.github.mzmine.datamodel.features.types";
+  /**
+   * Ignores the registry and scans the class path, used to compare the startup time, e.g.,
+   * -Dmzmine.datatypes.scan=true
+   */
+  public static final String SCAN_PROPERTY = "mzmine.datatypes.scan";
+
   static {
+    final long start = System.nanoTime();
+    final List<String> registry =
+        Boolean.getBoolean(SCAN_PROPERTY) ? null : readRegistryClassNames();
+    final Collection<String> classNames;
+    if (registry == null) {
+      // no generated registry, e.g., when started from an IDE, or scan requested
+      logger.fine("No data type registry found, scanning the class path for data types.");
+      classNames = scanClassPathClassNames();
+    } else {
+      // registry only covers the main classes, types of plugins are found by scanning other roots
+      final Set<String> names = new LinkedHashSet<>(registry);
+      names.addAll(scanAdditionalClassNames());
+      classNames = names;
+    }
+
+    final ClassLoader classLoader = DataType.class.getClassLoader();
+    for (final String className : classNames) {
+      try {
+        Object o = Class.forName(className, false, classLoader).getDeclaredConstructor()
+            .newInstance();
+        if (o instanceof DataType dt) {
+          var value = map.put(dt.getUniqueID(), dt);
+          if (value != null) {
+            throw new IllegalStateException(
+                "FATAL: Multiple data types with unique ID " + dt.getUniqueID() + "\n"
+                + value.getClass().getName() + "\n" + dt.getClass().getName());
+          }
+          TYPES.put(dt.getClass().getName(), dt);
+        }
+      } catch (ClassNotFoundException | InstantiationException | IllegalAccessException |
+               InvocationTargetException | NoSuchMethodException e) {
+        //               can go silent
+        //              logger.log(Level.INFO, e.getMessage(), e);
+      }
+    }
+    logger.finest(() -> "Loaded %d data types in %d ms".formatted(TYPES.size(),
+        (System.nanoTime() - start) / 1_000_000));
+  }
+
+  private DataTypes() {
+  }
+
+  /**
+   * Reads the data type registry that is generated by the gradle task generateDataTypeRegistry.
+   *
+   * @return the class names of all top level classes in the data types package or null if the
+   * registry is not available.
+   */
+  @Nullable
+  static List<String> readRegistryClassNames() {
+    try (InputStream in = DataTypes.class.getResourceAsStream(REGISTRY_FILE)) {
+      if (in == null) {
+        return null;
+      }
+      final BufferedReader reader = new BufferedReader(
+          new InputStreamReader(in, StandardCharsets.UTF_8));
+      return reader.lines().map(String::strip).filter(line -> !line.isEmpty()).toList();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot read data type registry. " + e.getMessage(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Slow fallback if no registry was generated. Scans the class path for all top level classes
+   * in the data types package.
+   */
+  @NotNull
+  static List<String> scanClassPathClassNames() {
     try {
       ClassPath classPath = ClassPath.from(DataType.class.getClassLoader());
-      classPath.getTopLevelClassesRecursive("io.github.mzmine.datamodel.features.types")
-          .forEach(classInfo -> {
-            try {
-              Object o = classInfo.load().getDeclaredConstructor().newInstance();
-              if (o instanceof DataType dt) {
-                var value = map.put(dt.getUniqueID(), dt);
-                if (value != null) {
-                  throw new IllegalStateException(
-                      "FATAL: Multiple data types with unique ID " + dt.getUniqueID() + "\n"
-                      + value.getClass().getName() + "\n" + dt.getClass().getName());
-                }
-                TYPES.put(dt.getClass().getName(), dt);
-              }
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                     NoSuchMethodException e) {
-              //               can go silent
-              //              logger.log(Level.INFO, e.getMessage(), e);
-            }
-          });
+      return classPath.getTopLevelClassesRecursive(TYPES_PACKAGE).stream()
+          .map(ClassInfo::getName).toList();
     } catch (IOException e) {
       logger.severe("Cannot instantiate classPath for DataType.class. Cannot load projects.");
+      return List.of();
     }
   }
 
-  private DataTypes() {
+  /**
+   * Scans all class path roots except the one of the main classes for top level classes in the data
+   * types package. The main classes are already listed in the registry. This keeps data types of
+   * plugins and other jars available without scanning the whole class path.
+   */
+  @NotNull
+  static List<String> scanAdditionalClassNames() {
+    final String packagePath = TYPES_PACKAGE.replace('.', '/');
+    final URL mainRoot = getMainClassesRoot();
+    final List<String> classNames = new ArrayList<>();
+    try {
+      final Enumeration<URL> resources = DataType.class.getClassLoader().getResources(packagePath);
+      while (resources.hasMoreElements()) {
+        final URL url = resources.nextElement();
+        try {
+          if (url.openConnection() instanceof JarURLConnection jarConnection) {
+            if (isSameLocation(jarConnection.getJarFileURL(), mainRoot)) {
+              continue;
+            }
+            try (JarFile jar = new JarFile(Path.of(jarConnection.getJarFileURL().toURI()).toFile())) {
+              jar.stream().map(JarEntry::getName)
+                  .filter(name -> name.startsWith(packagePath + "/") && isTopLevelClass(name))
+                  .map(DataTypes::toClassName).forEach(classNames::add);
+            }
+          } else if ("file".equals(url.getProtocol())) {
+            final Path packageDir = Path.of(url.toURI());
+            // go up to the class path root
+            Path root = packageDir;
+            for (int i = 0; i < TYPES_PACKAGE.split("\\.").length; i++) {
+              root = root.getParent();
+            }
+            if (isSameLocation(root.toUri().toURL(), mainRoot)) {
+              continue;
+            }
+            final Path classRoot = root;
+            try (Stream<Path> files = Files.walk(packageDir)) {
+              files.filter(Files::isRegularFile)
+                  .map(file -> classRoot.relativize(file).toString().replace('\\', '/'))
+                  .filter(DataTypes::isTopLevelClass).map(DataTypes::toClassName)
+                  .forEach(classNames::add);
+            }
+          }
+        } catch (IOException | URISyntaxException e) {
+          logger.log(Level.WARNING, "Cannot scan %s for data types. %s".formatted(url, e.getMessage()),
+              e);
+        }
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot scan the class path for data types. " + e.getMessage(), e);
+    }
+    return classNames;
+  }
+
+  @Nullable
+  private static URL getMainClassesRoot() {
+    final CodeSource codeSource = DataType.class.getProtectionDomain().getCodeSource();
+    return codeSource == null ? null : codeSource.getLocation();
+  }
+
+  private static boolean isSameLocation(@NotNull URL url, @Nullable URL mainRoot) {
+    if (mainRoot == null) {
+      return false;
+    }
+    try {
+      return Path.of(url.toURI()).equals(Path.of(mainRoot.toURI()));
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return url.toExternalForm().equals(mainRoot.toExternalForm());
+    }
+  }
+
+  private static boolean isTopLevelClass(@NotNull String path) {
+    return path.endsWith(".class") && !path.contains("$") && !path.contains("-");
+  }
+
+  @NotNull
+  private static String toClassName(@NotNull String path) {
+    return path.substring(0, path.length() - ".class".length()).replace('/', '.');
   }
 
   @Nullable
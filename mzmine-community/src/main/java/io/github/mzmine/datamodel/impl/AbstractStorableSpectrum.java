@@ -64,6 +64,19 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     setDataPoints(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Stores the m/z values through the {@link SharedMzAxisStorage}, so spectra with identical m/z
+   * axes share the same stored values.
+   *
+   * @param mzAxes if null, the m/z values are stored for this spectrum only
+   * @see #AbstractStorableSpectrum(MemoryMapStorage, double[], double[])
+   */
+  public AbstractStorableSpectrum(@Nullable MemoryMapStorage storage,
+      @Nullable SharedMzAxisStorage mzAxes, @Nullable double[] mzValues,
+      @Nullable double[] intensityValues) {
+    setDataPoints(storage, mzAxes, mzValues, intensityValues);
+  }
+
   public AbstractStorableSpectrum(@Nullable DoubleBuffer mzValues,
       @Nullable DoubleBuffer intensityValues) {
     if (mzValues == null ^ intensityValues == null) {
@@ -79,8 +92,14 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     }
   }
 
+  protected void setDataPoints(@Nullable MemoryMapStorage storage, @Nullable double[] mzValues,
+      @Nullable double[] intensityValues) {
+    setDataPoints(storage, null, mzValues, intensityValues);
+  }
+
   protected synchronized void setDataPoints(@Nullable MemoryMapStorage storage,
-      @Nullable double[] mzValues, @Nullable double[] intensityValues) {
+      @Nullable SharedMzAxisStorage mzAxes, @Nullable double[] mzValues,
+      @Nullable double[] intensityValues) {
 
     if (mzValues == null && intensityValues == null) {
       return;
@@ -99,7 +118,8 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     SimpleSpectralArrays sorted = DataPointUtils.ensureSortingMzAscendingDefault(
         new SimpleSpectralArrays(mzValues, intensityValues));
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.mzs());
+    this.mzValues = mzAxes != null ? mzAxes.storeMzValues(storage, sorted.mzs())
+        : StorageUtils.storeValuesToDoubleBuffer(storage, sorted.mzs());
     this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.intensities());
     onDataChangedEvent();
   }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Deduplicates m/z axes of spectra. Continuous mode imzML files and many profile mode files share
+ * an identical m/z axis across all spectra. Identical axes are detected by their hash and a
+ * subsequent equality check and are stored only once. Each spectrum receives a duplicate of the
+ * shared buffer, so the values are shared but not the buffer position. Once
+ * {@link #MAX_DISTINCT_AXES} different axes were stored (e.g., for centroid data), further axes are
+ * stored regularly without registering them. If none of them was shared, deduplication is disabled
+ * to skip hashing.
+ */
+public class SharedMzAxisStorage {
+
+  static final int MAX_DISTINCT_AXES = 256;
+
+  /**
+   * only one axis per hash, colliding axes are stored regularly
+   */
+  private final Int2ObjectOpenHashMap<DoubleBuffer> axes = new Int2ObjectOpenHashMap<>();
+  private int sharedCount = 0;
+  private volatile boolean disabled = false;
+
+  /**
+   * @param storage  the storage for new axes or null to keep them in memory
+   * @param mzValues the m/z values, sorted ascending
+   * @return a buffer with the shared values of an identical axis or a newly stored buffer
+   */
+  public @NotNull DoubleBuffer storeMzValues(@Nullable MemoryMapStorage storage,
+      @NotNull double[] mzValues) {
+    if (mzValues.length == 0) {
+      return AbstractStorableSpectrum.EMPTY_BUFFER;
+    }
+    if (disabled) {
+      return StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
+    }
+
+    final int hash = Arrays.hashCode(mzValues);
+    final DoubleBuffer shared = getSharedAxis(hash, mzValues);
+    if (shared != null) {
+      return shared;
+    }
+
+    // storing may write to the memory mapped file, so only lock to register the axis
+    final DoubleBuffer stored = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
+    synchronized (this) {
+      if (disabled) {
+        return stored;
+      }
+      if (!axes.containsKey(hash) && axes.size() < MAX_DISTINCT_AXES) {
+        axes.put(hash, stored);
+        return stored.duplicate();
+      }
+    }
+    // another thread may have registered the identical axis in the meantime
+    final DoubleBuffer registered = getSharedAxis(hash, mzValues);
+    if (registered != null) {
+      return registered;
+    }
+    synchronized (this) {
+      if (sharedCount == 0 && axes.size() >= MAX_DISTINCT_AXES) {
+        // no shared axis so far, this is most likely centroid data
+        disabled = true;
+        axes.clear();
+      }
+    }
+    return stored;
+  }
+
+  /**
+   * Registered axes are never changed, so the values are compared without holding the lock.
+   *
+   * @return a duplicate of the registered identical axis or null
+   */
+  private @Nullable DoubleBuffer getSharedAxis(int hash, @NotNull double[] mzValues) {
+    final DoubleBuffer shared;
+    synchronized (this) {
+      shared = axes.get(hash);
+    }
+    if (shared == null || !isEqual(shared, mzValues)) {
+      return null;
+    }
+    synchronized (this) {
+      sharedCount++;
+    }
+    return shared.duplicate();
+  }
+
+  private static boolean isEqual(@NotNull DoubleBuffer buffer, @NotNull double[] values) {
+    return buffer.limit() == values.length && buffer.mismatch(DoubleBuffer.wrap(values)) == -1;
+  }
+
+  /**
+   * @return number of axes that were not stored again but shared
+   */
+  public synchronized int getSharedCount() {
+    return sharedCount;
+  }
+
+  /**
+   * @return number of distinct axes that can be shared
+   */
+  public synchronized int getNumDistinctAxes() {
+    return axes.size();
+  }
+}
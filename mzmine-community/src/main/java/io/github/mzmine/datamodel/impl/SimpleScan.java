@@ -95,7 +95,8 @@ public class SimpleScan extends AbstractStorableSpectrum implements Scan {
       MassSpectrumType spectrumType, PolarityType polarity, String scanDefinition,
       Range<Double> scanMZRange, @Nullable Float injectionTime) {
 
-    super(dataFile.getMemoryMapStorage(), mzValues, intensityValues);
+    super(dataFile.getMemoryMapStorage(), dataFile.getSharedMzAxisStorage(), mzValues,
+        intensityValues);
 
     this.dataFile = dataFile;
     this.scanNumber = scanNumber;
@@ -37,7 +37,9 @@ import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.FontSpecs;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.StringParameter;
 import io.github.mzmine.parameters.parametertypes.WindowSettingsParameter;
 import io.github.mzmine.parameters.parametertypes.colorpalette.ColorPaletteParameter;
@@ -151,10 +153,18 @@ public class MZminePreferences extends SimpleParameterSet {
           + " memory mapping is a fast and memory efficient way to handle data, therefore, the "
           + "default is to memory map all spectral data and feature data with the option %s. On "
           + "systems where memory (RAM) is no concern, viable options are %s and %s, to keep all in memory "
-          + "or to keep mass lists and feauture data in memory, respectively.", KeepInMemory.NONE,
-      KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
+          + "or to keep mass lists and feauture data in memory, respectively. The option %s "
+          + "decides based on the current heap usage for new data.", KeepInMemory.NONE,
+      KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES, KeepInMemory.AUTO), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final OptionalParameter<IntegerParameter> spectralLibraryCache = new OptionalParameter<>(
+      new IntegerParameter("Compile spectral libraries (max GB)",
+          "Imported spectral libraries are compiled into a binary cache in the MZmine user "
+              + "directory to speed up later imports of the same file. The value limits the size "
+              + "of this cache, the least recently used libraries are deleted first.", 10, 1,
+          null), true);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -189,7 +199,7 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings,
+        numOfThreads, memoryOption, tempDirectory, spectralLibraryCache, proxySettings,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -217,7 +227,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings,
+        new Parameter[]{numOfThreads, memoryOption, tempDirectory, spectralLibraryCache,
+            proxySettings,
             /*, applyTimsPressureCompensation*/});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.main;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Used by {@link KeepInMemory#AUTO}. Watches the heap usage and decides which data categories are
+ * stored in RAM and which are memory mapped by {@link MemoryMapStorage}. Categories are kept in RAM
+ * by priority of their access frequency: features, then mass lists, then raw scans. The decision
+ * only applies to data that is created after a change, data that was already stored stays in its
+ * tier. Therefore, the policy starts with all categories memory mapped and only adds categories to
+ * RAM after the heap usage was measured after a garbage collection. Raw data imports decide on the
+ * projected size of the files instead, see {@link #forRawDataFiles(File...)}, as the storage is
+ * created before any data is read.
+ * <p>
+ * The heap usage is taken from the old generation after the last garbage collection. The current
+ * heap usage includes garbage that is not collected yet and would change the decision on every
+ * check. Until the old generation was collected (G1 only collects it in concurrent cycles), the
+ * current heap usage is used as an upper bound.
+ * <p>
+ * The memory budget is a percentage of the maximum heap and can be set by the system property
+ * {@value #BUDGET_PROPERTY}, e.g., -Dmzmine.memory.budget=80
+ */
+public final class AdaptiveMemoryPolicy {
+
+  public static final String BUDGET_PROPERTY = "mzmine.memory.budget";
+  private static final Logger logger = Logger.getLogger(AdaptiveMemoryPolicy.class.getName());
+  private static final int DEFAULT_BUDGET_PERCENT = 70;
+  private static final long CHECK_INTERVAL_MS = 2000;
+
+  /**
+   * Number of categories in RAM. 0: none, 1: features, 2: features and mass lists, 3: all
+   */
+  private static final int MAX_LEVEL = 3;
+
+  @Nullable
+  private static ScheduledExecutorService executor;
+  /**
+   * Old generation memory pool or null if not available
+   */
+  @Nullable
+  private static MemoryPoolMXBean oldGenPool;
+  private static int currentLevel = 0;
+  private static double budget = DEFAULT_BUDGET_PERCENT / 100d;
+
+  private AdaptiveMemoryPolicy() {
+  }
+
+  /**
+   * Starts watching the heap usage, if not already started.
+   */
+  public static synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    budget = getBudget();
+    logger.info(() -> "Adaptive memory policy with a budget of %.0f%% of %d MB heap".formatted(
+        budget * 100, Runtime.getRuntime().maxMemory() / 1_000_000));
+
+    oldGenPool = findOldGenPool();
+    applyLevel(0);
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Adaptive memory policy");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(AdaptiveMemoryPolicy::update, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops watching the heap. Does not change the current storage options.
+   */
+  public static synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Storage for raw data files that are imported together. The storage is created before any data
+   * is read, so the heap usage does not reflect these files yet. While the policy is active, the
+   * scans are kept in RAM if the projected size, the size of the files on disk, fits into the
+   * remaining budget and are memory mapped otherwise. If the policy is not active, the current
+   * option of {@link MemoryMapStorage#forRawDataFile()} is used.
+   *
+   * @param files the files or folders that are imported into this storage
+   * @return the storage or null to keep the data in RAM
+   */
+  @Nullable
+  public static synchronized MemoryMapStorage forRawDataFiles(@NotNull File... files) {
+    if (executor == null) {
+      return MemoryMapStorage.forRawDataFile();
+    }
+    long projected = 0;
+    for (final File file : files) {
+      if (file != null && file.exists()) {
+        projected += FileUtils.sizeOf(file);
+      }
+    }
+    final long maxMemory = Runtime.getRuntime().maxMemory();
+    final long remaining = (long) ((budget - getUsedFraction()) * maxMemory);
+    final boolean inRam = fitsIntoBudget(projected, remaining);
+    final long projectedMB = projected / 1_000_000;
+    logger.fine(() -> "Raw data import of %d MB with %d MB remaining budget, scans %s".formatted(
+        projectedMB, Math.max(remaining, 0) / 1_000_000, inRam ? "in RAM" : "memory mapped"));
+    return inRam ? null : MemoryMapStorage.create();
+  }
+
+  /**
+   * Keeps half of the remaining budget free for the data that is derived from the raw data, like
+   * mass lists and features.
+   *
+   * @param projectedBytes the projected size of the data
+   * @param remainingBytes the remaining budget, may be negative if the budget is exceeded
+   * @return true if the data should be kept in RAM
+   */
+  static boolean fitsIntoBudget(long projectedBytes, long remainingBytes) {
+    return projectedBytes <= remainingBytes / 2;
+  }
+
+  private static synchronized void update() {
+    final double usedFraction = getUsedFraction();
+    final int level = nextLevel(currentLevel, usedFraction, isMeasured(), budget);
+    if (level == currentLevel) {
+      return;
+    }
+
+    final int previous = currentLevel;
+    applyLevel(level);
+    logger.fine(() -> "Heap usage %.0f%%, keeping %s in RAM (was %s)".formatted(
+        usedFraction * 100, describe(level), describe(previous)));
+  }
+
+  private static void applyLevel(int level) {
+    MemoryMapStorage.setStoreFeaturesInRam(level >= 1);
+    MemoryMapStorage.setStoreMassListsInRam(level >= 2);
+    MemoryMapStorage.setStoreRawFilesInRam(level >= 3);
+    currentLevel = level;
+  }
+
+  /**
+   * @return the used fraction of the maximum heap after the last collection of the old generation.
+   * Falls back to the current heap usage if the pool is not available or was not collected yet.
+   */
+  private static double getUsedFraction() {
+    final Runtime runtime = Runtime.getRuntime();
+    final MemoryUsage usage = oldGenPool != null ? oldGenPool.getCollectionUsage() : null;
+    if (usage == null || usage.getCommitted() == 0) {
+      return (runtime.totalMemory() - runtime.freeMemory()) / (double) runtime.maxMemory();
+    }
+    return usage.getUsed() / (double) runtime.maxMemory();
+  }
+
+  /**
+   * The heap usage is only meaningful after the first garbage collection. Before, the heap only
+   * contains the startup data and the data that is about to be loaded is not visible.
+   */
+  private static boolean isMeasured() {
+    for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector.getCollectionCount() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The old generation is the heap pool that supports usage and collection usage thresholds. Eden
+   * and survivor spaces do not support usage thresholds. Single generation collectors like ZGC
+   * only have one such pool.
+   */
+  @Nullable
+  private static MemoryPoolMXBean findOldGenPool() {
+    for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+          && pool.isCollectionUsageThresholdSupported()) {
+        return pool;
+      }
+    }
+    logger.fine("No old generation memory pool found, using the current heap usage.");
+    return null;
+  }
+
+  /**
+   * Reduces the categories kept in RAM directly if the heap usage is above the threshold of the
+   * current level. Adds one more category at a time, only if the heap usage was measured and is
+   * clearly below the threshold of the next level, to avoid toggling.
+   *
+   * @param currentLevel the current level
+   * @param usedFraction the used fraction of the maximum heap
+   * @param measured     true if the heap usage was measured after a garbage collection
+   * @param budget       the budget as a fraction of the maximum heap
+   * @return the new level
+   */
+  static int nextLevel(int currentLevel, double usedFraction, boolean measured, double budget) {
+    int target = MAX_LEVEL;
+    while (target > 0 && usedFraction >= threshold(target, budget)) {
+      target--;
+    }
+    if (target < currentLevel) {
+      return target;
+    }
+    if (measured && target > currentLevel
+        && usedFraction < threshold(currentLevel + 1, budget) * 0.8) {
+      return currentLevel + 1;
+    }
+    return currentLevel;
+  }
+
+  /**
+   * @return the maximum heap usage to keep this level
+   */
+  private static double threshold(int level, double budget) {
+    return switch (level) {
+      case 3 -> budget * 0.5;
+      case 2 -> budget * 0.75;
+      default -> budget;
+    };
+  }
+
+  private static double getBudget() {
+    final Integer percent = Integer.getInteger(BUDGET_PROPERTY, DEFAULT_BUDGET_PERCENT);
+    if (percent <= 0 || percent > 100) {
+      logger.warning(
+          () -> "Memory budget %s=%d is not within 1-100%%, using default %d%%".formatted(
+              BUDGET_PROPERTY, percent, DEFAULT_BUDGET_PERCENT));
+      return DEFAULT_BUDGET_PERCENT / 100d;
+    }
+    return percent / 100d;
+  }
+
+  private static String describe(int level) {
+    return switch (level) {
+      case 0 -> "nothing";
+      case 1 -> "features";
+      case 2 -> "features and mass lists";
+      case 3 -> "all data";
+      default -> "undefined";
+    };
+  }
+}
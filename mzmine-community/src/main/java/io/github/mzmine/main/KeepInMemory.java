@@ -32,7 +32,11 @@ import io.github.mzmine.util.MemoryMapStorage;
  */
 public enum KeepInMemory {
 
-  NONE, ALL, FEATURES, MASS_LISTS, RAW_SCANS, MASSES_AND_FEATURES;
+  NONE, ALL, FEATURES, MASS_LISTS, RAW_SCANS, MASSES_AND_FEATURES,
+  /**
+   * Decides based on the heap usage, see {@link AdaptiveMemoryPolicy}
+   */
+  AUTO;
 
   public static KeepInMemory parse(String s) {
     s = s.toLowerCase();
@@ -43,6 +47,7 @@ public enum KeepInMemory {
       case "centroids" -> MASS_LISTS;
       case "raw" -> RAW_SCANS;
       case "masses_features" -> MASSES_AND_FEATURES;
+      case "auto" -> AUTO;
       default -> throw new IllegalStateException("Unexpected value: " + s);
     };
   }
@@ -52,6 +57,7 @@ public enum KeepInMemory {
    */
   public void enforceToMemoryMapping() {
     // reset
+    AdaptiveMemoryPolicy.stop();
     MemoryMapStorage.setStoreAllInRam(false);
     // keep all in memory? (features, scans, ... in RAM instead of MemoryMapStorage
     switch (this) {
@@ -66,6 +72,7 @@ public enum KeepInMemory {
         MemoryMapStorage.setStoreMassListsInRam(true);
         MemoryMapStorage.setStoreFeaturesInRam(true);
       }
+      case AUTO -> AdaptiveMemoryPolicy.start();
     }
   }
 }
@@ -105,7 +105,7 @@ public class MZmineArgumentParser {
     options.addOption(keepRunning);
 
     Option keepInMemory = new Option("m", "memory", true,
-        "keep objects (scan data, features, etc) in memory. Options: none, all, features, centroids, raw, masses_features (masses_features for features and centroids)");
+        "keep objects (scan data, features, etc) in memory. Options: none, all, features, centroids, raw, masses_features (masses_features for features and centroids), auto (decide by heap usage, budget in percent of the heap by -Dmzmine.memory.budget=70)");
     keepInMemory.setRequired(false);
     options.addOption(keepInMemory);
 
@@ -57,6 +57,7 @@ import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.files.ExtensionFilters;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
@@ -161,7 +162,9 @@ public class BatchTask extends AbstractTask {
 
     Instant batchStart = Instant.now();
     setStatus(TaskStatus.PROCESSING);
-    logger.info("Starting a batch of " + totalSteps + " steps");
+    // JVM uptime is read by the gradle task measureHeadlessStartup
+    logger.info("Starting a batch of %d steps, %d ms after JVM start".formatted(totalSteps,
+        ManagementFactory.getRuntimeMXBean().getUptime()));
 
     int errorDataset = 0;
     currentDataset = -1;
@@ -39,6 +39,7 @@ import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.objects.Object2BooleanOpenHashMap;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -111,14 +112,15 @@ public class BaseFeatureListAligner {
   public static Object2BooleanOpenHashMap<FeatureListRow> addFeaturesBasedOnScores(
       Collection<RowVsRowScore> scoresList, final ModularFeatureList alignedFeatureList,
       final FeatureCloner featureCloner, final AtomicLong alignedRows) {
-    // natural order is reversed so best highest score is first element
-    final RowVsRowScore[] scores = scoresList.stream().sorted().toArray(RowVsRowScore[]::new);
+    final RowVsRowScore[] scores = scoresList.toArray(RowVsRowScore[]::new);
+    final int[] order = sortByScoreDescending(scores);
 
     // track if row was aligned
     final Object2BooleanOpenHashMap<FeatureListRow> alignedRowsMap = new Object2BooleanOpenHashMap<>(
         scores.length);
 
-    for (RowVsRowScore score : scores) {
+    for (int index : order) {
+      final RowVsRowScore score = scores[index];
       final FeatureListRow alignedRow = score.getAlignedBaseRow();
       final FeatureListRow row = score.getRowToAdd();
       if (!alignedRowsMap.getOrDefault(row, false)) {
@@ -139,6 +141,27 @@ public class BaseFeatureListAligner {
     return alignedRowsMap;
   }
 
+  /**
+   * Sorts the indices of the scores instead of the score objects. Same order as the natural order
+   * of {@link RowVsRowScore} with the best highest score first. Ties keep the input order like a
+   * stable sort.
+   *
+   * @return indices into scores, best score first
+   */
+  static int[] sortByScoreDescending(final RowVsRowScore[] scores) {
+    final double[] values = new double[scores.length];
+    final int[] order = new int[scores.length];
+    for (int i = 0; i < scores.length; i++) {
+      values[i] = scores[i].getScore();
+      order[i] = i;
+    }
+    IntArrays.parallelQuickSort(order, (a, b) -> {
+      final int compare = Double.compare(values[b], values[a]);
+      return compare != 0 ? compare : Integer.compare(a, b);
+    });
+    return order;
+  }
+
   /**
    * Remove all rows that were algined in this step. Modifies the argument list
    *
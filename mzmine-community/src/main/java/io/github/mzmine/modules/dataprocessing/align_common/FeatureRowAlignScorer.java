@@ -32,9 +32,10 @@ import io.github.mzmine.modules.dataprocessing.align_gc.GCAlignerTask;
 import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerTask;
 import io.github.mzmine.modules.dataprocessing.align_join.RowVsRowScore;
 import io.github.mzmine.taskcontrol.Task;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BiConsumer;
 
 public interface FeatureRowAlignScorer {
 
@@ -44,23 +45,38 @@ public interface FeatureRowAlignScorer {
    * @param unalignedRows  score and align these rows against base
    * @param baseRowsSorted the base rows that alignments will be added. Sorted by RT for
    *                       {@link GCAlignerTask} and by mz for {@link JoinAlignerTask}
-   * @return all RowVsRowScores
+   * @return all RowVsRowScores in the order of the unaligned rows
    */
   default Collection<RowVsRowScore> alignRowsOnBaseRows(final Task parentTask,
       List<List<FeatureListRow>> unalignedRows, List<FeatureListRow> baseRowsSorted) {
+    return scoreAllRows(parentTask, unalignedRows,
+        (rowToAdd, scores) -> scoreRowAgainstBaseRows(baseRowsSorted, rowToAdd, scores));
+  }
 
-    // key = a row to be aligned, value = all possible matches in the aligned fl and it's scores
-    final ConcurrentLinkedDeque<RowVsRowScore> scoresList = new ConcurrentLinkedDeque<>();
+  /**
+   * Scores all rows of all feature lists concurrently. The rows are flattened first so that the
+   * work is split across rows and not only across feature lists. The result keeps the order of the
+   * unaligned rows independent of the thread scheduling, so that score ties are always resolved
+   * the same way.
+   *
+   * @param unalignedRows rows of all feature lists to score
+   * @param rowScorer     adds all scores of one row to the provided list
+   * @return all scores in the order of the unaligned rows
+   */
+  static List<RowVsRowScore> scoreAllRows(final Task parentTask,
+      final List<List<FeatureListRow>> unalignedRows,
+      final BiConsumer<FeatureListRow, List<RowVsRowScore>> rowScorer) {
+    final List<FeatureListRow> rows = unalignedRows.stream().flatMap(Collection::stream)
+        .toList();
 
-    // stream all rows in all feature lists
-    unalignedRows.stream().flatMap(Collection::stream).parallel().forEach(rowToAdd -> {
+    return rows.parallelStream().<RowVsRowScore>mapMulti((rowToAdd, consumer) -> {
       if (parentTask.isCanceled()) {
         return;
       }
-
-      scoreRowAgainstBaseRows(baseRowsSorted, rowToAdd, scoresList);
-    });
-    return scoresList;
+      final List<RowVsRowScore> rowScores = new ArrayList<>();
+      rowScorer.accept(rowToAdd, rowScores);
+      rowScores.forEach(consumer);
+    }).toList();
   }
 
   /**
@@ -70,7 +86,7 @@ public interface FeatureRowAlignScorer {
    * @param scoresList     scores are added here
    */
   void scoreRowAgainstBaseRows(List<FeatureListRow> baseRowsSorted, FeatureListRow rowToAdd,
-      ConcurrentLinkedDeque<RowVsRowScore> scoresList);
+      Collection<RowVsRowScore> scoresList);
 
   void calculateAlignmentScores(ModularFeatureList alignedFeatureList,
       List<FeatureList> originalFeatureLists);
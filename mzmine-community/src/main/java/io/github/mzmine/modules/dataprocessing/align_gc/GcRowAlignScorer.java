@@ -41,8 +41,8 @@ import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -64,7 +64,7 @@ public class GcRowAlignScorer implements FeatureRowAlignScorer {
 
   @Override
   public void scoreRowAgainstBaseRows(final List<FeatureListRow> baseRowsByRt,
-      final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
+      final FeatureListRow rowToAdd, final Collection<RowVsRowScore> scoresList) {
 
 
     final Range<Float> rtRange = rtTolerance.getToleranceRange(rowToAdd.getAverageRT());
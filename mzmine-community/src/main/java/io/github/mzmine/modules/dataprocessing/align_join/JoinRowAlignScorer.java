@@ -31,22 +31,25 @@ import io.github.mzmine.datamodel.IsotopePattern;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.FeatureListRowIndex;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.dataprocessing.align_common.FeatureRowAlignScorer;
+import io.github.mzmine.modules.dataprocessing.align_join.SpectralFingerprintCache.SpectralFingerprint;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * the row aligner used by {@link JoinAlignerTask}. Based on weighted mz, rt, mobility difference
@@ -69,7 +72,10 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
   private final Double isotopeNoiseLevel;
   private final MZTolerance isotopeMZTolerance;
   // fields for spectra similarity
+  private final SpectralFingerprintCache fingerprintCache = new SpectralFingerprintCache(
+      this::extractSpectrum);
   private MZmineProcessingStep<SpectralSimilarityFunction> simFunction;
+  private double minSimilarityScore = Double.NaN;
   private int msLevel;
 
   public JoinRowAlignScorer(final ParameterSet parameters) {
@@ -110,12 +116,46 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
           .getValue(JoinAlignerSpectraSimilarityScoreParameters.similarityFunction);
       msLevel = parameters.getParameter(JoinAlignerParameters.compareSpectraSimilarity)
           .getEmbeddedParameters().getValue(JoinAlignerSpectraSimilarityScoreParameters.msLevel);
+      minSimilarityScore = SpectralFingerprintCache.getMinimumScore(
+          simFunction.getParameterSet());
     }
   }
 
+  /**
+   * Indexes the base rows once for all rows to add. Cached spectra of the base rows are released
+   * afterwards as the base rows change when features are added.
+   */
+  @Override
+  public Collection<RowVsRowScore> alignRowsOnBaseRows(final Task parentTask,
+      final List<List<FeatureListRow>> unalignedRows, final List<FeatureListRow> baseRowsSorted) {
+    final FeatureListRowIndex baseIndex = FeatureListRowIndex.of(baseRowsSorted);
+    final List<RowVsRowScore> scores = FeatureRowAlignScorer.scoreAllRows(parentTask,
+        unalignedRows, (rowToAdd, rowScores) -> scoreRowAgainstBaseRows(baseIndex, rowToAdd,
+            rowScores));
+    fingerprintCache.removeAll(baseRowsSorted);
+    return scores;
+  }
+
   @Override
   public void scoreRowAgainstBaseRows(final List<FeatureListRow> baseRowsByMz,
-      final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
+      final FeatureListRow rowToAdd, final Collection<RowVsRowScore> scoresList) {
+    final SearchRanges ranges = createSearchRanges(rowToAdd);
+    // find all rows in the aligned rows that might match
+    final List<FeatureListRow> candidatesInAligned = FeatureListUtils.getCandidatesWithinRanges(
+        ranges.mz(), ranges.rt(), ranges.mobility(), baseRowsByMz, true);
+    scoreCandidates(rowToAdd, ranges, candidatesInAligned, scoresList);
+  }
+
+  private void scoreRowAgainstBaseRows(final FeatureListRowIndex baseIndex,
+      final FeatureListRow rowToAdd, final Collection<RowVsRowScore> scoresList) {
+    final SearchRanges ranges = createSearchRanges(rowToAdd);
+    // find all rows in the aligned rows that might match
+    final List<FeatureListRow> candidatesInAligned = baseIndex.getCandidates(ranges.mz(),
+        ranges.rt(), ranges.mobility());
+    scoreCandidates(rowToAdd, ranges, candidatesInAligned, scoresList);
+  }
+
+  private SearchRanges createSearchRanges(final FeatureListRow rowToAdd) {
     // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
     final Range<Double> mzRange =
         mzWeight > 0 ? mzTolerance.getToleranceRange(rowToAdd.getAverageMZ()) : Range.all();
@@ -124,21 +164,18 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
     final Range<Float> mobilityRange =
         compareMobility && mobilityWeight > 0 && rowToAdd.getAverageMobility() != null
             ? mobilityTolerance.getToleranceRange(rowToAdd.getAverageMobility()) : Range.all();
+    return new SearchRanges(mzRange, rtRange, mobilityRange);
+  }
 
-    // find all rows in the aligned rows that might match
-    final List<FeatureListRow> candidatesInAligned = FeatureListUtils.getCandidatesWithinRanges(
-        mzRange, rtRange, mobilityRange, baseRowsByMz, true);
-
-    if (candidatesInAligned.isEmpty()) {
-      return;
-    }
-
+  private void scoreCandidates(final FeatureListRow rowToAdd, final SearchRanges ranges,
+      final List<FeatureListRow> candidatesInAligned,
+      final Collection<RowVsRowScore> scoresList) {
     // calculate score for unaligned row against all candidates
     for (FeatureListRow candidateInAligned : candidatesInAligned) {
       // retention time and m/z is already checked for candidates
       if (additionalChecks(rowToAdd, candidateInAligned)) {
-        final RowVsRowScore score = new RowVsRowScore(rowToAdd, candidateInAligned, mzRange,
-            rtRange, mobilityRange, null, mzWeight, rtWeight, mobilityWeight, 0);
+        final RowVsRowScore score = new RowVsRowScore(rowToAdd, candidateInAligned, ranges.mz(),
+            ranges.rt(), ranges.mobility(), null, mzWeight, rtWeight, mobilityWeight, 0);
         scoresList.add(score);
       }
     }
@@ -156,44 +193,40 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
     // compare the similarity of spectra mass lists on MS1 or
     // MS2 level
     if (compareSpectraSimilarity) {
-      DataPoint[] rowDPs = null;
-      DataPoint[] candidateDPs = null;
-      SpectralSimilarity sim;
-
-      // get data points of mass list of the representative
-      // scans
-      if (msLevel == 1) {
-        rowDPs = getScanMassList(row.getBestFeature().getRepresentativeScan());
-        candidateDPs = getScanMassList(candidate.getBestFeature().getRepresentativeScan());
+      final SpectralFingerprint rowSpectrum = fingerprintCache.get(row);
+      final SpectralFingerprint candidateSpectrum = fingerprintCache.get(candidate);
+      if (!rowSpectrum.hasSpectrum() || !candidateSpectrum.hasSpectrum()) {
+        // MS2 is required for both rows, missing MS1 data is not compared
+        return msLevel != 2;
       }
 
-      // get data points of mass list of the best
-      // fragmentation scans
-      if (msLevel == 2) {
-        if (row.getMostIntenseFragmentScan() != null
-            && candidate.getMostIntenseFragmentScan() != null) {
-          rowDPs = getScanMassList(row.getMostIntenseFragmentScan());
-          candidateDPs = getScanMassList(candidate.getMostIntenseFragmentScan());
-        } else {
-          return false;
-        }
+      // no matching signal results in a score of 0 or NaN
+      if (minSimilarityScore > 0 && !rowSpectrum.hasMatchingSignal(candidateSpectrum,
+          mzTolerance)) {
+        return false;
       }
 
-      // compare mass list data points of selected scans
-      if (rowDPs != null && candidateDPs != null) {
-
-        // calculate similarity using SimilarityFunction
-        sim = createSimilarity(rowDPs, candidateDPs);
-
-        // check if similarity is null. Similarity is not
-        // null if similarity score is >= the
-        // user set threshold
-        return sim != null;
-      }
+      // calculate similarity using SimilarityFunction
+      // check if similarity is null. Similarity is not
+      // null if similarity score is >= the
+      // user set threshold
+      return createSimilarity(rowSpectrum.dataPoints(), candidateSpectrum.dataPoints()) != null;
     }
     return true;
   }
 
+  /**
+   * Data points of the mass list of the representative scan for MS1 or of the most intense
+   * fragmentation scan for MS2
+   */
+  private DataPoint[] extractSpectrum(final FeatureListRow row) {
+    return switch (msLevel) {
+      case 1 -> getScanMassList(row.getBestFeature().getRepresentativeScan());
+      case 2 -> getScanMassList(row.getMostIntenseFragmentScan());
+      default -> null;
+    };
+  }
+
   private static DataPoint[] getScanMassList(final Scan scan) {
     if (scan == null) {
       return null;
@@ -238,4 +271,8 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
         mzTolerance, rtTolerance, mobTol, mzWeight, rtWeight, mobilityWeight);
     FeatureListUtils.addAlignmentScores(alignedFeatureList, calculator, false);
   }
+
+  private record SearchRanges(Range<Double> mz, Range<Float> rt, Range<Float> mobility) {
+
+  }
 }
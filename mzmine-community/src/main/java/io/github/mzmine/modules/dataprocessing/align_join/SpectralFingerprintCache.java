@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarityParameters;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarityParameters;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the mass list data points that are compared by the spectral similarity check of the
+ * {@link JoinRowAlignScorer}. Unaligned rows are compared in every alignment iteration and against
+ * many candidates, so their data points are read from storage only once. The cached arrays are
+ * passed to the similarity function unchanged, so the scores are identical to the uncached
+ * comparison. Thread safe.
+ */
+class SpectralFingerprintCache {
+
+  private static final SpectralFingerprint NO_SPECTRUM = new SpectralFingerprint(null,
+      new double[0]);
+
+  private final Map<FeatureListRow, SpectralFingerprint> fingerprints = new ConcurrentHashMap<>();
+  private final Function<FeatureListRow, DataPoint[]> extractor;
+
+  /**
+   * @param extractor extracts the data points of a row or null if the row has no spectrum
+   */
+  SpectralFingerprintCache(final Function<FeatureListRow, DataPoint[]> extractor) {
+    this.extractor = extractor;
+  }
+
+  /**
+   * The similarity of two spectra without any matching signal is 0 or undefined for the weighted
+   * and composite cosine similarity. Pairs without a match can be skipped if the minimum score is
+   * above 0.
+   *
+   * @param parameters parameters of the similarity function
+   * @return the minimum score or NaN if the function is unknown
+   */
+  static double getMinimumScore(final ParameterSet parameters) {
+    return switch (parameters) {
+      case WeightedCosineSpectralSimilarityParameters _ ->
+          parameters.getValue(WeightedCosineSpectralSimilarityParameters.minCosine);
+      case CompositeCosineSpectralSimilarityParameters _ ->
+          parameters.getValue(CompositeCosineSpectralSimilarityParameters.minCosine);
+      default -> Double.NaN;
+    };
+  }
+
+  /**
+   * @return the cached fingerprint, the data points are null if the row has no spectrum
+   */
+  @NotNull
+  SpectralFingerprint get(final FeatureListRow row) {
+    return fingerprints.computeIfAbsent(row, this::createFingerprint);
+  }
+
+  /**
+   * Base rows change when features are added and are not compared again after their iteration
+   */
+  void removeAll(final Collection<FeatureListRow> rows) {
+    rows.forEach(fingerprints::remove);
+  }
+
+  private SpectralFingerprint createFingerprint(final FeatureListRow row) {
+    final DataPoint[] dataPoints = extractor.apply(row);
+    if (dataPoints == null) {
+      return NO_SPECTRUM;
+    }
+    final double[] mzs = new double[dataPoints.length];
+    for (int i = 0; i < dataPoints.length; i++) {
+      mzs[i] = dataPoints[i].getMZ();
+    }
+    Arrays.sort(mzs);
+    return new SpectralFingerprint(dataPoints, mzs);
+  }
+
+  /**
+   * @param dataPoints the original data points or null if there is no spectrum
+   * @param sortedMzs  all m/z values sorted ascending
+   */
+  record SpectralFingerprint(@Nullable DataPoint[] dataPoints, double[] sortedMzs) {
+
+    boolean hasSpectrum() {
+      return dataPoints != null;
+    }
+
+    /**
+     * Same matching window as the spectral alignment: the tolerance is calculated for the m/z of
+     * this (library) spectrum
+     *
+     * @return true if at least one signal matches a signal of the query within the tolerance
+     */
+    boolean hasMatchingSignal(final SpectralFingerprint query, final MZTolerance mzTol) {
+      final double[] queryMzs = query.sortedMzs;
+      if (queryMzs.length == 0) {
+        return false;
+      }
+      for (final double mz : sortedMzs) {
+        final double tolerance = mzTol.getMzToleranceForMass(mz);
+        int index = Arrays.binarySearch(queryMzs, mz - tolerance);
+        if (index < 0) {
+          index = -index - 1;
+        }
+        if (index < queryMzs.length && queryMzs[index] <= mz + tolerance) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
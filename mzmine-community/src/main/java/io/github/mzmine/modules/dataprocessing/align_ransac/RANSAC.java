@@ -24,20 +24,17 @@
  */
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import io.github.mzmine.parameters.ParameterSet;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math.optimization.fitting.PolynomialFitter;
 import org.apache.commons.math.optimization.general.GaussNewtonOptimizer;
 
-import com.google.common.collect.Range;
-
-import io.github.mzmine.parameters.ParameterSet;
-
 public class RANSAC {
 
   /**
@@ -48,14 +45,22 @@ public class RANSAC {
    *
    * output: model which best fit the data
    */
+  private static final long DEFAULT_SEED = 42L;
   private int n;
   private double d = 1;
   private int k = 0;
-  private int AlsoNumber;
   private double numRatePoints, t;
   private boolean Linear;
+  private final long seed;
 
   public RANSAC(ParameterSet parameters) {
+    this(parameters, DEFAULT_SEED);
+  }
+
+  /**
+   * @param seed the same seed and data result in the same alignment
+   */
+  public RANSAC(ParameterSet parameters, long seed) {
 
     this.numRatePoints = parameters.getParameter(RansacAlignerParameters.NMinPoints).getValue();
 
@@ -65,11 +70,12 @@ public class RANSAC {
 
     this.Linear = parameters.getParameter(RansacAlignerParameters.Linear).getValue();
 
+    this.seed = seed;
   }
 
   /**
    * Set all parameters and start ransac.
-   * 
+   *
    * @param data vector with the points which represent all possible alignments.
    */
   public void alignment(List<AlignStructMol> data) {
@@ -103,7 +109,7 @@ public class RANSAC {
 
   /**
    * Calculate k (number of trials)
-   * 
+   *
    * @return number of trials "k" required to select a subset of n good data points.
    */
   private double getK() {
@@ -113,174 +119,173 @@ public class RANSAC {
   }
 
   /**
-   * RANSAC algorithm
-   * 
+   * RANSAC algorithm. The iterations are independent and run in parallel, each with its own random
+   * generator split from the seed. Sets {@link AlignStructMol#Aligned} to the inliers of the best
+   * model.
+   *
    * @param data vector with the points which represent all possible alignments.
    */
   public void ransac(List<AlignStructMol> data) {
-    double besterr = 9.9E99;
+    final int size = data.size();
+    if (size <= n) {
+      return;
+    }
+    // primitive points sorted by RT
+    final int[] order = IntStream.range(0, size).toArray();
+    IntArrays.stableSort(order, (a, b) -> Double.compare(data.get(a).RT, data.get(b).RT));
+    final double[] rt = new double[size];
+    final double[] rt2 = new double[size];
+    for (int i = 0; i < size; i++) {
+      rt[i] = data.get(order[i]).RT;
+      rt2[i] = data.get(order[i]).RT2;
+    }
 
-    for (int iterations = 0; iterations < k; iterations++) {
-      AlsoNumber = n;
-      // Get the initial points
-      boolean initN = getInitN(data);
-      if (!initN) {
-        continue;
-      }
+    // split sequentially for reproducible results
+    final SplittableRandom root = new SplittableRandom(seed);
+    final SplittableRandom[] randoms = new SplittableRandom[k];
+    for (int i = 0; i < k; i++) {
+      randoms[i] = root.split();
+    }
 
-      // Calculate the model
-      fittPolinomialFunction(data, Linear);
+    // lowest error first, then the first iteration
+    final Model best = IntStream.range(0, k).parallel()
+        .mapToObj(iteration -> fitModel(rt, rt2, randoms[iteration], iteration))
+        .filter(Objects::nonNull)
+        .min(Comparator.comparingDouble(Model::error).thenComparingInt(Model::iteration))
+        .orElse(null);
 
-      // If the model has the minimun number of points
-      if (AlsoNumber >= d) {
-        // Get the error of the model based on the number of points
-        double error = 9.9E99;
-        try {
-          error = newError(data);
-        } catch (Exception ex) {
-          Logger.getLogger(RANSAC.class.getName()).log(Level.SEVERE, null, ex);
-        }
+    if (best == null) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      final AlignStructMol alignStruct = data.get(order[i]);
+      alignStruct.Aligned = best.inliers[i];
+      alignStruct.ransacAlsoInLiers = false;
+      alignStruct.ransacMaybeInLiers = false;
+    }
+  }
 
-        // If the error is less than the error of the last model
-        if (error < besterr) {
-          besterr = error;
-          for (int i = 0; i < data.size(); i++) {
-            AlignStructMol alignStruct = data.get(i);
-            if (alignStruct.ransacAlsoInLiers || alignStruct.ransacMaybeInLiers) {
-              alignStruct.Aligned = true;
-            } else {
-              alignStruct.Aligned = false;
-            }
+  /**
+   * One RANSAC iteration
+   *
+   * @return the model or null if it has not enough inliers
+   */
+  private Model fitModel(double[] rt, double[] rt2, SplittableRandom random, int iteration) {
+    // Get the initial points
+    final boolean[] maybeInliers = getInitN(rt, random);
 
-            alignStruct.ransacAlsoInLiers = false;
-            alignStruct.ransacMaybeInLiers = false;
+    // Calculate the model
+    final boolean[] inliers = new boolean[rt.length];
+    final int alsoNumber = n + fittPolinomialFunction(rt, rt2, maybeInliers, inliers);
 
-          }
-        }
-      }
-      // remove the model
-      for (int i = 0; i < data.size(); i++) {
-        AlignStructMol alignStruct = data.get(i);
-        alignStruct.ransacAlsoInLiers = false;
-        alignStruct.ransacMaybeInLiers = false;
+    // If the model has the minimun number of points
+    if (alsoNumber < d) {
+      return null;
+    }
+    // Get the error of the model based on the number of points
+    double numT = 1;
+    for (int i = 0; i < rt.length; i++) {
+      inliers[i] |= maybeInliers[i];
+      if (inliers[i]) {
+        numT++;
       }
-
     }
+    return new Model(iteration, 1 / numT, inliers);
   }
 
   /**
    * Take the initial points ramdoly. The points are divided by the initial number of points. If the
    * fractions contain enough number of points took one point from each part.
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @return false if there is any problem.
+   *
+   * @param rt the RT of all points in ascending order
+   * @return the initial points
    */
-  private boolean getInitN(List<AlignStructMol> data) {
-    if (data.size() > n) {
-      Collections.sort(data, new AlignStructMol());
-      double min = data.get(0).RT;
-      double max = data.get(data.size() - 1).RT;
-
-      Range<Double> rtRange = Range.closed(min, ((max - min) / 2) + min);
-
-      int cont = 0, bucle = 0;
-      while (cont < n / 2 && bucle < 1000) {
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
-
-        }
-
-        bucle++;
-      }
-      if (bucle >= 1000) {
-        getN(data, (n / 2) - cont);
+  private boolean[] getInitN(double[] rt, SplittableRandom random) {
+    final boolean[] maybeInliers = new boolean[rt.length];
+    double min = rt[0];
+    double max = rt[rt.length - 1];
+    final double center = ((max - min) / 2) + min;
+
+    int cont = 0, bucle = 0;
+    while (cont < n / 2 && bucle < 1000) {
+      int index = random.nextInt(rt.length);
+      if (!maybeInliers[index] && rt[index] >= min && rt[index] <= center) {
+        maybeInliers[index] = true;
+        cont++;
       }
+      bucle++;
+    }
+    if (bucle >= 1000) {
+      cont += getN(maybeInliers, (n / 2) - cont, random);
+    }
 
-      bucle = 0;
-      rtRange = Range.closed(((max - min) / 2) + min, max);
-
-      while (cont < n && bucle < 1000) {
-
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
-        }
-        bucle++;
-      }
-      if (bucle >= 1000) {
-        getN(data, n - cont);
+    bucle = 0;
+    while (cont < n && bucle < 1000) {
+      int index = random.nextInt(rt.length);
+      if (!maybeInliers[index] && rt[index] >= center && rt[index] <= max) {
+        maybeInliers[index] = true;
+        cont++;
       }
-      return true;
-    } else {
-      return false;
+      bucle++;
+    }
+    if (bucle >= 1000) {
+      getN(maybeInliers, n - cont, random);
     }
+    return maybeInliers;
   }
 
-  private void getN(List<AlignStructMol> data, int newN) {
+  /**
+   * @return number of added points
+   */
+  private int getN(boolean[] maybeInliers, int newN, SplittableRandom random) {
     if (newN < 1) {
-      return;
+      return 0;
     }
     int cont = 0;
     while (cont < newN) {
-      int index = (int) (data.size() * Math.random());
-      if (!data.get(index).ransacMaybeInLiers) {
-        data.get(index).ransacMaybeInLiers = true;
+      int index = random.nextInt(maybeInliers.length);
+      if (!maybeInliers[index]) {
+        maybeInliers[index] = true;
         cont++;
       }
     }
+    return cont;
   }
 
-  private void fittPolinomialFunction(List<AlignStructMol> data, boolean linear) {
-    List<AlignStructMol> points = new ArrayList<AlignStructMol>();
-
+  /**
+   * Fits the model to the initial points and marks all points within the threshold as inliers
+   *
+   * @return number of inliers or 0 if the fit failed
+   */
+  private int fittPolinomialFunction(double[] rt, double[] rt2, boolean[] maybeInliers,
+      boolean[] inliers) {
     int degree = 3;
-    if (linear) {
+    if (Linear) {
       degree = 1;
     }
 
     PolynomialFitter fitter = new PolynomialFitter(degree, new GaussNewtonOptimizer(true));
-    for (int i = 0; i < data.size(); i++) {
-      AlignStructMol point = data.get(i);
-      if (point.ransacMaybeInLiers) {
-        points.add(point);
-        fitter.addObservedPoint(1, point.RT, point.RT2);
+    for (int i = 0; i < rt.length; i++) {
+      if (maybeInliers[i]) {
+        fitter.addObservedPoint(1, rt[i], rt2[i]);
       }
     }
     try {
       PolynomialFunction function = fitter.fit();
-      for (AlignStructMol point : data) {
-        double y = point.RT2;
-        double bestY = function.value(point.RT);
-        if (Math.abs(y - bestY) < t) {
-          point.ransacAlsoInLiers = true;
-          AlsoNumber++;
-        } else {
-          point.ransacAlsoInLiers = false;
+      int alsoNumber = 0;
+      for (int i = 0; i < rt.length; i++) {
+        if (Math.abs(rt2[i] - function.value(rt[i])) < t) {
+          inliers[i] = true;
+          alsoNumber++;
         }
       }
+      return alsoNumber;
     } catch (Exception ex) {
+      return 0;
     }
   }
 
-  /**
-   * calculate the error in the model
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @param regression regression of the alignment points
-   * @return the error in the model
-   */
-  private double newError(List<AlignStructMol> data) throws Exception {
-
-    double numT = 1;
-    for (int i = 0; i < data.size(); i++) {
-      if (data.get(i).ransacAlsoInLiers || data.get(i).ransacMaybeInLiers) {
-        numT++;
-      }
-    }
-    return 1 / numT;
+  private record Model(int iteration, double error, boolean[] inliers) {
 
   }
 }
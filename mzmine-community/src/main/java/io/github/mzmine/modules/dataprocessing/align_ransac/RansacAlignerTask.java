@@ -49,12 +49,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math.optimization.fitting.PolynomialFitter;
 import org.apache.commons.math.optimization.general.GaussNewtonOptimizer;
@@ -248,50 +251,18 @@ class RansacAlignerTask extends AbstractTask {
     PolynomialFunction function = this.getPolynomialFunction(list);
 
     List<FeatureListRow> allRows = peakList.getRows();
+    final RowCandidateIndex alignedIndex = new RowCandidateIndex(alignedFeatureList.getRows());
 
-    for (FeatureListRow row : allRows) {
-      // Calculate limits for a row with which the row can be aligned
-      Range<Double> mzRange = mzTolerance.getToleranceRange(row.getAverageMZ());
-
-      float rt;
-      try {
-        rt = (float) function.value(row.getAverageRT());
-      } catch (NullPointerException e) {
-        rt = row.getAverageRT();
-      }
-      if (Double.isNaN(rt) || rt == -1) {
-        rt = row.getAverageRT();
-      }
-
-      Range<Float> rtRange = rtToleranceAfter.getToleranceRange(rt);
-
-      // Get all rows of the aligned peaklist within parameter limits
-      List<FeatureListRow> candidateRows = alignedFeatureList.getRowsInsideScanAndMZRange(rtRange,
-          mzRange);
-
-      for (FeatureListRow candidate : candidateRows) {
-        RowVsRowScore score;
-        if (sameChargeRequired && (!FeatureUtils.compareChargeState(row, candidate))) {
-          continue;
-        }
-
-        try {
-          score = new RowVsRowScore(row, candidate, RangeUtils.rangeLength(mzRange) / 2.0,
-              RangeUtils.rangeLength(rtRange) / 2.0, rt);
-
-          scoreSet.add(score);
-          setErrorMessage(score.getErrorMessage());
-
-        } catch (Exception e) {
-          e.printStackTrace();
-          setStatus(TaskStatus.ERROR);
-          return null;
-        }
-      }
-      processedRows++;
+    // score rows in parallel, the scores are added in row order
+    final List<List<RowVsRowScore>> rowScores = allRows.parallelStream()
+        .map(row -> scoreCandidates(row, function, alignedIndex)).toList();
+    for (List<RowVsRowScore> scores : rowScores) {
+      scoreSet.addAll(scores);
     }
+    processedRows += allRows.size();
 
     // Iterate scores by descending order
+    final Set<FeatureListRow> filledAlignedRows = new HashSet<>();
     Iterator<RowVsRowScore> scoreIterator = scoreSet.iterator();
     while (scoreIterator.hasNext()) {
 
@@ -303,7 +274,7 @@ class RansacAlignerTask extends AbstractTask {
       }
 
       // Check if the aligned row is already filled
-      if (alignmentMapping.containsValue(score.getAlignedRow())) {
+      if (!filledAlignedRows.add(score.getAlignedRow())) {
         continue;
       }
 
@@ -314,6 +285,40 @@ class RansacAlignerTask extends AbstractTask {
     return alignmentMapping;
   }
 
+  /**
+   * Scores all rows of the aligned feature list within the tolerances of the RT corrected row
+   */
+  private List<RowVsRowScore> scoreCandidates(FeatureListRow row,
+      @Nullable PolynomialFunction function, RowCandidateIndex alignedIndex) {
+    // Calculate limits for a row with which the row can be aligned
+    Range<Double> mzRange = mzTolerance.getToleranceRange(row.getAverageMZ());
+
+    float rt;
+    try {
+      rt = (float) function.value(row.getAverageRT());
+    } catch (NullPointerException e) {
+      rt = row.getAverageRT();
+    }
+    if (Double.isNaN(rt) || rt == -1) {
+      rt = row.getAverageRT();
+    }
+
+    Range<Float> rtRange = rtToleranceAfter.getToleranceRange(rt);
+
+    // Get all rows of the aligned peaklist within parameter limits
+    List<FeatureListRow> candidateRows = alignedIndex.getCandidates(mzRange, rtRange);
+
+    List<RowVsRowScore> scores = new ArrayList<>(candidateRows.size());
+    for (FeatureListRow candidate : candidateRows) {
+      if (sameChargeRequired && (!FeatureUtils.compareChargeState(row, candidate))) {
+        continue;
+      }
+      scores.add(new RowVsRowScore(row, candidate, RangeUtils.rangeLength(mzRange) / 2.0,
+          RangeUtils.rangeLength(rtRange) / 2.0, rt));
+    }
+    return scores;
+  }
+
   /**
    * RANSAC
    *
@@ -400,24 +405,20 @@ class RansacAlignerTask extends AbstractTask {
    */
   private List<AlignStructMol> getVectorAlignment(FeatureList peakListX, FeatureList peakListY) {
 
-    List<AlignStructMol> alignMol = new ArrayList<AlignStructMol>();
-    for (FeatureListRow row : peakListX.getRows()) {
-
+    final RowCandidateIndex index = new RowCandidateIndex(peakListY.getRows());
+    // candidates are collected in parallel and kept in row order
+    return peakListX.getRows().parallelStream().<AlignStructMol>mapMulti((row, consumer) -> {
       if (isCanceled()) {
-        return null;
+        return;
       }
       // Calculate limits for a row with which the row can be aligned
       Range<Double> mzRange = mzTolerance.getToleranceRange(row.getAverageMZ());
       Range<Float> rtRange = rtToleranceBefore.getToleranceRange(row.getAverageRT());
 
       // Get all rows of the aligned peaklist within parameter limits
-      List<FeatureListRow> candidateRows = peakListY.getRowsInsideScanAndMZRange(rtRange, mzRange);
-
-      for (FeatureListRow candidateRow : candidateRows) {
-        alignMol.add(new AlignStructMol(row, candidateRow));
+      for (FeatureListRow candidateRow : index.getCandidates(mzRange, rtRange)) {
+        consumer.accept(new AlignStructMol(row, candidateRow));
       }
-    }
-
-    return alignMol;
+    }).collect(Collectors.toCollection(ArrayList::new));
   }
 }
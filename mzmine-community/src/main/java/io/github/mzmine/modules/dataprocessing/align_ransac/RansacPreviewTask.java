@@ -90,7 +90,6 @@ public class RansacPreviewTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
-  //TODO This method at the moment is quite slow. Optimize it (or underlying methods) if possible
   private void updateRansacPlot() {
 
     // Select the rawDataFile which has more peaks in each feature list
@@ -123,6 +122,7 @@ public class RansacPreviewTask extends AbstractTask {
     totalRows = peakListX.getNumberOfRows();
 
     peakListX.getRows().sorted(FeatureListRowSorter.DEFAULT_RT);
+    final RowCandidateIndex index = new RowCandidateIndex(peakListY.getRows());
     for (FeatureListRow row : peakListX.getRows()) {
 
       // Calculate limits for a row with which the row can be aligned
@@ -134,7 +134,7 @@ public class RansacPreviewTask extends AbstractTask {
       Range<Float> rtRange = rtTolerance.getToleranceRange(row.getAverageRT());
 
       // Get all rows of the aligned feature list within parameter limits
-      List<FeatureListRow> candidateRows = peakListY.getRowsInsideScanAndMZRange(rtRange, mzRange);
+      List<FeatureListRow> candidateRows = index.getCandidates(mzRange, rtRange);
 
       for (FeatureListRow candidateRow : candidateRows) {
         if (file == null || file2 == null) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_ransac;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rows sorted by m/z in primitive arrays to find alignment candidates by binary search instead of
+ * iterating all rows for each query. Candidates are returned in the original row order. The index
+ * is not updated if rows are added to the source list later.
+ */
+class RowCandidateIndex {
+
+  private final List<FeatureListRow> rows;
+  // sorted by mz
+  private final double[] mzs;
+  private final float[] rts;
+  private final int[] rowIndices;
+
+  RowCandidateIndex(@NotNull List<FeatureListRow> rows) {
+    this.rows = List.copyOf(rows);
+    final IntArrayList valid = new IntArrayList(this.rows.size());
+    for (int i = 0; i < this.rows.size(); i++) {
+      final FeatureListRow row = this.rows.get(i);
+      if (row.getAverageMZ() != null && row.getAverageRT() != null) {
+        valid.add(i);
+      }
+    }
+    final int[] sorted = valid.toIntArray();
+    final double[] rowMzs = new double[this.rows.size()];
+    for (int i : sorted) {
+      rowMzs[i] = this.rows.get(i).getAverageMZ();
+    }
+    IntArrays.quickSort(sorted, (a, b) -> Double.compare(rowMzs[a], rowMzs[b]));
+
+    mzs = new double[sorted.length];
+    rts = new float[sorted.length];
+    rowIndices = sorted;
+    for (int i = 0; i < sorted.length; i++) {
+      mzs[i] = rowMzs[sorted[i]];
+      rts[i] = this.rows.get(sorted[i]).getAverageRT();
+    }
+  }
+
+  /**
+   * @return all rows within both ranges in the original row order
+   */
+  public @NotNull List<FeatureListRow> getCandidates(@NotNull Range<Double> mzRange,
+      @NotNull Range<Float> rtRange) {
+    final IntArrayList matches = new IntArrayList();
+    for (int i = lowerBound(mzRange.lowerEndpoint());
+        i < mzs.length && mzs[i] <= mzRange.upperEndpoint(); i++) {
+      if (mzRange.contains(mzs[i]) && rtRange.contains(rts[i])) {
+        matches.add(rowIndices[i]);
+      }
+    }
+    matches.sort(null);
+    final List<FeatureListRow> candidates = new ArrayList<>(matches.size());
+    for (int i = 0; i < matches.size(); i++) {
+      candidates.add(rows.get(matches.getInt(i)));
+    }
+    return candidates;
+  }
+
+  /**
+   * @return first index with mz >= the given mz
+   */
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
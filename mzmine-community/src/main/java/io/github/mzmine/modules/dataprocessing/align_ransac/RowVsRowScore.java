@@ -37,7 +37,7 @@ public class RowVsRowScore implements Comparable<RowVsRowScore> {
   private String errorMessage;
 
   public RowVsRowScore(FeatureListRow peakListRow, FeatureListRow alignedRow, double mzMaxDiff,
-      double rtMaxDiff, double correctedRT) throws Exception {
+      double rtMaxDiff, double correctedRT) {
 
     this.alignedRow = alignedRow;
     this.peakListRow = peakListRow;
@@ -76,6 +76,7 @@ public abstract class AbstractResolver implements Resolver {
   protected final RawDataFile file;
   protected BinningMobilogramDataAccess mobilogramDataAccess;
   protected double[] yBuffer;
+  private final ResolvedIntervals resolvedIntervals = new ResolvedIntervals();
 
   protected AbstractResolver(@NotNull final ParameterSet parameters,
       @NotNull final ModularFeatureList flist) {
@@ -100,19 +101,22 @@ public abstract class AbstractResolver implements Resolver {
 
     final List<T> resolved = new ArrayList<>();
     if (dimension == ResolvingDimension.RETENTION_TIME) {
-      final List<Range<Double>> resolvedRanges = resolveRt(series);
-
-      // make a new subseries for each resolved range.
-      for (final Range<Double> range : resolvedRanges) {
-        final List<? extends Scan> subList = originalSeries.getSpectra().stream()
-            .filter(s -> range.contains((double) s.getRetentionTime())).toList();
-        if (subList.isEmpty()) {
+      resolveRt(series, resolvedIntervals);
+
+      // make a new subseries for each resolved interval.
+      for (int i = 0; i < resolvedIntervals.size(); i++) {
+        // the original series may only contain a subset of the resolved scans
+        final int from = findFirstIndexAtOrAfter(originalSeries,
+            xBuffer[resolvedIntervals.getStart(i)]);
+        final int to = findFirstIndexAfter(originalSeries, xBuffer[resolvedIntervals.getEnd(i)]);
+        if (from >= to) {
           continue;
         }
         if (originalSeries instanceof IonMobilogramTimeSeries trace) {
-          resolved.add((T) trace.subSeries(null, (List<Frame>) subList, getMobilogramDataAccess()));
+          final List<Frame> subList = List.copyOf(trace.getSpectra().subList(from, to));
+          resolved.add((T) trace.subSeries(null, subList, getMobilogramDataAccess()));
         } else if (originalSeries instanceof SimpleIonTimeSeries chrom) {
-          resolved.add((T) chrom.subSeries(null, (List<Scan>) subList));
+          resolved.add((T) chrom.subSeries(null, from, to));
         } else {
           throw new IllegalStateException(
               "Resolving behaviour of " + originalSeries.getClass().getName() + " not specified.");
@@ -191,6 +195,30 @@ public abstract class AbstractResolver implements Resolver {
   @Override
   public @NotNull <T extends IntensitySeries & TimeSeries> List<Range<Double>> resolveRt(
       @NotNull T series) {
+    final double[] y = extractRtAndIntensityValues(series);
+    return resolve(xBuffer, y);
+  }
+
+  /**
+   * Resolves a series in time dimension into index intervals. The indices refer to the retention
+   * times in {@link #xBuffer}.
+   *
+   * @param series    The series.
+   * @param intervals cleared and filled with the resolved index intervals
+   */
+  public <T extends IntensitySeries & TimeSeries> void resolveRt(@NotNull T series,
+      @NotNull ResolvedIntervals intervals) {
+    final double[] y = extractRtAndIntensityValues(series);
+    resolve(xBuffer, y, intervals);
+  }
+
+  /**
+   * Extracts the rt values into the {@link #xBuffer}
+   *
+   * @return the intensity values
+   */
+  private <T extends IntensitySeries & TimeSeries> double[] extractRtAndIntensityValues(
+      @NotNull T series) {
     if (!validateChromatogramDataSource(series)) {
       // if the date comes from a different source, the results might be inconsistent.
       throw new IllegalArgumentException(
@@ -201,7 +229,7 @@ public abstract class AbstractResolver implements Resolver {
     xBuffer = extractRtValues(series, xBuffer);
 
     if (series instanceof FeatureFullDataAccess featureFullDataAccess) {
-      return resolve(xBuffer, featureFullDataAccess.getIntensityValues());
+      return featureFullDataAccess.getIntensityValues();
     } else {
       // intensities only need to be extracted if we are not using a FeatureFullDataAccess
       final int numValues = series.getNumberOfValues();
@@ -211,8 +239,42 @@ public abstract class AbstractResolver implements Resolver {
       Arrays.fill(yBuffer, 0d);
       yBuffer = series.getIntensityValues(yBuffer);
 
-      return resolve(xBuffer, yBuffer);
+      return yBuffer;
+    }
+  }
+
+  /**
+   * @return the first index with a retention time >= rt
+   */
+  private static int findFirstIndexAtOrAfter(final TimeSeries series, final double rt) {
+    int low = 0;
+    int high = series.getNumberOfValues();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if ((double) series.getRetentionTime(mid) < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the first index with a retention time > rt
+   */
+  private static int findFirstIndexAfter(final TimeSeries series, final double rt) {
+    int low = 0;
+    int high = series.getNumberOfValues();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if ((double) series.getRetentionTime(mid) <= rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
     }
+    return low;
   }
 
   @Override
@@ -35,6 +35,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -54,15 +55,21 @@ import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.maths.CenterFunction;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class FeatureResolverTask extends AbstractTask {
 
   // Logger.
   private static final Logger logger = Logger.getLogger(FeatureResolverTask.class.getName());
+  // number of rows resolved by one resolver instance
+  private static final int RESOLVE_CHUNK_SIZE = 1000;
 
   // Feature lists.
   private final MZmineProject project;
@@ -73,7 +80,7 @@ public class FeatureResolverTask extends AbstractTask {
   private final CenterFunction mzCenterFunction;
   private FeatureList newPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private int totalRows;
   private String errorMsg;
   private boolean setMSMSRange, setMSMSRT;
@@ -98,7 +105,6 @@ public class FeatureResolverTask extends AbstractTask {
     parameters = parameterSet;
     originalPeakList = list;
     newPeakList = null;
-    processedRows = 0;
     totalRows = 0;
     this.mzCenterFunction = mzCenterFunction;
   }
@@ -116,7 +122,7 @@ public class FeatureResolverTask extends AbstractTask {
     if (groupMS2Task != null) {
       return groupMS2Task.getFinishedPercentage();
     }
-    return totalRows == 0 ? 0.0 : processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -199,6 +205,11 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvePeaks((ModularFeatureList) originalPeakList);
   }
 
+  /**
+   * Resolves chunks of rows in parallel. Resolvers keep buffers and are not thread safe, so every
+   * chunk uses its own {@link FeatureDataAccess} and {@link Resolver}. The chunks are merged in the
+   * original row order, which creates the same rows and IDs as sequential resolving.
+   */
   private void dimensionIndependentResolve(ModularFeatureList originalFeatureList) {
     final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(parameters,
         originalFeatureList);
@@ -208,26 +219,75 @@ public class FeatureResolverTask extends AbstractTask {
       return;
     }
 
-    final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
-
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
 
+    final List<FeatureListRow> rows = originalFeatureList.getRows();
+    final int numChunks = (rows.size() + RESOLVE_CHUNK_SIZE - 1) / RESOLVE_CHUNK_SIZE;
+    final List<List<ModularFeature>> resolvedChunks = IntStream.range(0, numChunks).parallel()
+        .mapToObj(chunk -> {
+          final int start = chunk * RESOLVE_CHUNK_SIZE;
+          final int end = Math.min(start + RESOLVE_CHUNK_SIZE, rows.size());
+          return resolveChunk(originalFeatureList, resolvedFeatureList, rows.subList(start, end),
+              chunk == 0 ? resolver : null);
+        }).toList();
+    if (isCanceled()) {
+      return;
+    }
+
+    int peakId = 1;
     int c = 0;
+    for (List<ModularFeature> features : resolvedChunks) {
+      for (ModularFeature f : features) {
+        final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
+            peakId++);
+        newRow.addFeature(f.getRawDataFile(), f);
+        resolvedFeatureList.addRow(newRow);
+        if (f.getFeatureData().getSpectra().size() <= 3) {
+          c++;
+        }
+      }
+    }
+    logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
+        + " have less than 4 scans (frames for IMS data)");
+    //    QualityParameters.calculateAndSetModularQualityParameters(resolvedFeatureList);
+
+    resolvedFeatureList.addDescriptionOfAppliedTask(
+        new SimpleFeatureListAppliedMethod(resolver.getModuleClass(), parameters,
+            getModuleCallDate()));
+
+    newPeakList = resolvedFeatureList;
+  }
 
+  /**
+   * @param rows     the chunk of rows to resolve
+   * @param resolver the resolver for this chunk or null to create a new instance
+   * @return the resolved features in the order of the rows
+   */
+  private List<ModularFeature> resolveChunk(final ModularFeatureList originalFeatureList,
+      final ModularFeatureList resolvedFeatureList, final List<FeatureListRow> rows,
+      @Nullable Resolver resolver) {
+    if (isCanceled()) {
+      return List.of();
+    }
+    if (resolver == null) {
+      resolver = ((GeneralResolverParameters) parameters).getResolver(parameters,
+          originalFeatureList);
+    }
+
+    final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
+    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, rows);
+
+    final List<ModularFeature> resolvedFeatures = new ArrayList<>();
     while (access.hasNextFeature()) {
       final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
       final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
           getMemoryMapStorage());
 
       for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
-        final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
-            peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
             originalFeature.getRawDataFile(), resolved, originalFeature.getFeatureStatus());
 
@@ -240,23 +300,11 @@ public class FeatureResolverTask extends AbstractTask {
         if(originalFeature.get(MaldiSpotType.class) != null) {
           f.set(MaldiSpotType.class, originalFeature.get(MaldiSpotType.class));
         }
-        newRow.addFeature(originalFeature.getRawDataFile(), f);
-        resolvedFeatureList.addRow(newRow);
-        if (resolved.getSpectra().size() <= 3) {
-          c++;
-        }
+        resolvedFeatures.add(f);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
-    logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
-        + " have less than 4 scans (frames for IMS data)");
-    //    QualityParameters.calculateAndSetModularQualityParameters(resolvedFeatureList);
-
-    resolvedFeatureList.addDescriptionOfAppliedTask(
-        new SimpleFeatureListAppliedMethod(resolver.getModuleClass(), parameters,
-            getModuleCallDate()));
-
-    newPeakList = resolvedFeatureList;
+    return resolvedFeatures;
   }
 
   @Override
@@ -277,7 +325,7 @@ public class FeatureResolverTask extends AbstractTask {
 
     final FeatureResolver resolver = ((GeneralResolverParameters) parameters).getResolver();
 
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
     int peakId = 1;
     final Integer minNumDp = parameters.getValue(
@@ -308,7 +356,7 @@ public class FeatureResolverTask extends AbstractTask {
         newRow.setFeatureInformation(peak.getPeakInformation());
         resolvedFeatureList.addRow(newRow);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
 
     resolvedFeatureList.addDescriptionOfAppliedTask(
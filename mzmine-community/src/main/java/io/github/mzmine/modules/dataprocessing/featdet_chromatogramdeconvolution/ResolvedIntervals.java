@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
+
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable primitive output of a {@link Resolver}. Every resolved feature is stored as an inclusive
+ * start and end index into the x and y arrays that were resolved. The buffer only grows, so one
+ * instance per resolver avoids allocations for every chromatogram. Not thread safe.
+ */
+public class ResolvedIntervals {
+
+  // start and end index of interval i at 2i and 2i+1
+  private int[] bounds;
+  private int size;
+
+  public ResolvedIntervals() {
+    this(16);
+  }
+
+  public ResolvedIntervals(int initialCapacity) {
+    bounds = new int[Math.max(1, initialCapacity) * 2];
+  }
+
+  /**
+   * Removes all intervals and keeps the buffer
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * @param start inclusive start index
+   * @param end   inclusive end index
+   */
+  public void add(int start, int end) {
+    if (bounds.length < (size + 1) * 2) {
+      bounds = Arrays.copyOf(bounds, bounds.length * 2);
+    }
+    bounds[size * 2] = start;
+    bounds[size * 2 + 1] = end;
+    size++;
+  }
+
+  /**
+   * @return number of intervals
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return inclusive start index of the interval
+   */
+  public int getStart(int interval) {
+    assert interval < size;
+    return bounds[interval * 2];
+  }
+
+  /**
+   * @return inclusive end index of the interval
+   */
+  public int getEnd(int interval) {
+    assert interval < size;
+    return bounds[interval * 2 + 1];
+  }
+
+  /**
+   * Replaces the content with the index intervals of the ranges. Each range is mapped to the first
+   * block of x values it contains. Ranges that contain no x value are skipped.
+   *
+   * @param x      the increasing x values the ranges were resolved on
+   * @param ranges the resolved ranges
+   */
+  public void setFromRanges(double[] x, List<Range<Double>> ranges) {
+    clear();
+    for (Range<Double> range : ranges) {
+      int start = 0;
+      while (start < x.length && !range.contains(x[start])) {
+        start++;
+      }
+      int end = start;
+      while (end < x.length && range.contains(x[end])) {
+        end++;
+      }
+      if (end > start) {
+        add(start, end - 1);
+      }
+    }
+  }
+
+  /**
+   * @param x the x values the intervals were resolved on
+   * @return closed ranges from the x value at the start to the x value at the end of each interval
+   */
+  public List<Range<Double>> toRanges(double[] x) {
+    final List<Range<Double>> ranges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      ranges.add(Range.closed(x[getStart(i)], x[getEnd(i)]));
+    }
+    return ranges;
+  }
+}
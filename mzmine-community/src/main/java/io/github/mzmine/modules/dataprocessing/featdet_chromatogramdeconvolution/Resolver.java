@@ -66,6 +66,21 @@ public interface Resolver {
 
    @NotNull List<Range<Double>> resolve(final double[] x, final double[] y);
 
+  /**
+   * Resolves the data into index intervals without creating {@link Range}s. Implementations
+   * should override this method and create the ranges in {@link #resolve(double[], double[])} from
+   * the intervals.
+   *
+   * @param x         domain values of the data to be resolved (e.g. RT or mobility)
+   * @param y         range values of the data to be resolved (intensities)
+   * @param intervals cleared and filled with the inclusive start and end index of every resolved
+   *                  feature
+   */
+  default void resolve(final double[] x, final double[] y,
+      @NotNull final ResolvedIntervals intervals) {
+    intervals.setFromRanges(x, resolve(x, y));
+  }
+
   /**
    * Resolves a series (EICs) into individual series (features).
    *
@@ -37,9 +37,9 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.AbstractResolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvedIntervals;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.MathUtils;
-import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 
@@ -84,6 +84,20 @@ public class MinimumSearchFeatureResolver extends AbstractResolver {
   @Override
   @NotNull
   public List<Range<Double>> resolve(double[] x, double[] y) {
+    final ResolvedIntervals resolved = new ResolvedIntervals();
+    resolve(x, y, resolved);
+    return resolved.toRanges(x);
+  }
+
+  /**
+   * @param x        domain values of the data to be resolved
+   * @param y        range values of the data to be resolved. Values have to be <b>strictly
+   *                 monotonically increasing</b> (e.g. RT or mobility). The values inside this array
+   *                 are set to 0 if they fall below the chromatographicThresholdLevel.
+   * @param resolved filled with the inclusive start and end index of each resolved peak
+   */
+  @Override
+  public void resolve(double[] x, double[] y, @NotNull ResolvedIntervals resolved) {
     if (x.length != y.length) {
       throw new AssertionError("Length of x, y and indices array does not match.");
     }
@@ -91,7 +105,7 @@ public class MinimumSearchFeatureResolver extends AbstractResolver {
     // Important: empty scans need to be represented by a 0!
     final int valueCount = x.length;
 
-    List<Range<Double>> resolved = new ArrayList<>();
+    resolved.clear();
 
     final int lastScan = valueCount - 1;
     assert valueCount > 0;
@@ -146,7 +160,7 @@ public class MinimumSearchFeatureResolver extends AbstractResolver {
               && currentRegionHeight >= peakMinRight * minRatio && xRange
               .contains(x[currentRegionEnd] - x[currentRegionStart])) {
 
-            resolved.add(Range.closed(x[currentRegionStart], x[currentRegionEnd]));
+            resolved.add(currentRegionStart, currentRegionEnd);
           }
 
           // Set the next region start to current region end - 1
@@ -206,7 +220,7 @@ public class MinimumSearchFeatureResolver extends AbstractResolver {
                 && currentRegionHeight >= peakMinRight * minRatio && xRange
                 .contains(x[currentRegionEnd] - x[currentRegionStart])) {
 
-              resolved.add(Range.closed(x[currentRegionStart], x[currentRegionEnd]));
+              resolved.add(currentRegionStart, currentRegionEnd);
             }
 
             // Set the next region start to current region end-1
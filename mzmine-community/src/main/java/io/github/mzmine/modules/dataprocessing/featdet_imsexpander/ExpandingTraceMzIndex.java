@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Primitive m/z interval index over {@link ExpandingTrace}s. The m/z ranges of the traces may
+ * overlap. The intervals are sorted by their lower bound, and a running maximum of the upper bounds
+ * limits the search for all intervals that contain an m/z.
+ */
+class ExpandingTraceMzIndex {
+
+  private final ExpandingTrace[] traces;
+  private final double[] lowerMz;
+  private final double[] upperMz;
+  /**
+   * the maximum upper m/z of all intervals up to (and including) an index
+   */
+  private final double[] maxUpperMz;
+
+  ExpandingTraceMzIndex(@NotNull List<ExpandingTrace> expandingTraces) {
+    final List<ExpandingTrace> sorted = new ArrayList<>(expandingTraces);
+    sorted.sort(Comparator.comparingDouble(t -> t.getMzRange().lowerEndpoint()));
+
+    final int size = sorted.size();
+    traces = sorted.toArray(new ExpandingTrace[0]);
+    lowerMz = new double[size];
+    upperMz = new double[size];
+    maxUpperMz = new double[size];
+    double maxUpper = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < size; i++) {
+      lowerMz[i] = traces[i].getMzRange().lowerEndpoint();
+      upperMz[i] = traces[i].getMzRange().upperEndpoint();
+      maxUpper = Math.max(maxUpper, upperMz[i]);
+      maxUpperMz[i] = maxUpper;
+    }
+  }
+
+  /**
+   * Offers the data point to the traces that contain its m/z in the order of their lower m/z bound,
+   * until one trace accepts it.
+   *
+   * @return true if the data point was added to a trace.
+   */
+  boolean offerDataPoint(@NotNull MobilityScanDataAccess access, int index) {
+    final double mz = access.getMzValue(index);
+    final int last = lastIndexWithLowerMzAtOrBelow(mz);
+    if (last < 0) {
+      return false;
+    }
+
+    // all intervals before first end below the mz
+    int first = last;
+    while (first > 0 && maxUpperMz[first - 1] >= mz) {
+      first--;
+    }
+
+    for (int i = first; i <= last; i++) {
+      if (upperMz[i] >= mz && traces[i].offerDataPoint(access, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int size() {
+    return traces.length;
+  }
+
+  private int lastIndexWithLowerMzAtOrBelow(double mz) {
+    int low = 0;
+    int high = lowerMz.length - 1;
+    int result = -1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (lowerMz[mid] <= mz) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+}
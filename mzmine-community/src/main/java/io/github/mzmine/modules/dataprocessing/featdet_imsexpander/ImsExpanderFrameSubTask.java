@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reads the mobility scans of a block of frames once and offers all data points to the traces of
+ * the index. Multiple sub tasks of different frame blocks may share the same traces.
+ */
+public class ImsExpanderFrameSubTask extends AbstractTask {
+
+  private static final Logger logger = Logger.getLogger(ImsExpanderFrameSubTask.class.getName());
+
+  private final List<Frame> frames;
+  private final ExpandingTraceMzIndex traceIndex;
+  private final IMSRawDataFile imsFile;
+  private final boolean useRawData;
+  private final Double customNoiseLevel;
+  private final String flistName;
+  private final AtomicInteger processedFrames = new AtomicInteger(0);
+  private final int totalFrames;
+
+  ImsExpanderFrameSubTask(@NotNull final ParameterSet parameters,
+      @NotNull final List<Frame> frames, @NotNull final ExpandingTraceMzIndex traceIndex,
+      @NotNull final IMSRawDataFile imsFile, @NotNull final String flistName) {
+    super(null, Instant.now()); // just a subtask, date irrelevant
+    this.frames = frames;
+    this.traceIndex = traceIndex;
+    this.imsFile = imsFile;
+    this.flistName = flistName;
+    useRawData = parameters.getParameter(ImsExpanderParameters.useRawData).getValue();
+    customNoiseLevel = parameters.getParameter(ImsExpanderParameters.useRawData)
+        .getEmbeddedParameter().getValue();
+    totalFrames = Math.max(1, frames.size());
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return flistName + ": expanding traces for frame " + processedFrames.get() + "/" + totalFrames
+        + " of block";
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return processedFrames.get() / (double) totalFrames;
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+    if (frames.isEmpty() || traceIndex.size() == 0) {
+      setStatus(TaskStatus.FINISHED);
+      return;
+    }
+
+    final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
+        useRawData ? MobilityScanDataType.RAW : MobilityScanDataType.MASS_LIST, frames);
+    try {
+      for (int i = 0; i < access.getNumberOfScans(); i++) {
+        if (isCanceled()) {
+          return;
+        }
+
+        access.nextFrame();
+        while (access.hasNextMobilityScan()) {
+          access.nextMobilityScan();
+          for (int dpIndex = 0; dpIndex < access.getNumberOfDataPoints(); dpIndex++) {
+            if (useRawData && access.getIntensityValue(dpIndex) < customNoiseLevel) {
+              continue;
+            }
+            traceIndex.offerDataPoint(access, dpIndex);
+          }
+        }
+        processedFrames.getAndIncrement();
+      }
+    } catch (MissingMassListException e) {
+      logger.log(Level.WARNING, e.getMessage(), e);
+      setErrorMessage(e.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    setStatus(TaskStatus.FINISHED);
+  }
+}
@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
@@ -33,6 +34,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
@@ -68,6 +70,10 @@ public class ImsExpanderTask extends AbstractTask {
   private final int NUM_THREADS = MZmineCore.getConfiguration().getPreferences()
       .getParameter(MZminePreferences.numOfThreads).getValue();
   private static final String SUFFIX = " expanded";
+  /**
+   * more blocks than threads to balance the load, as the number of traces per frame varies
+   */
+  private static final int FRAME_BLOCKS_PER_THREAD = 4;
   protected final ParameterSet parameters;
   protected final ModularFeatureList flist;
   final List<AbstractTask> tasks = new ArrayList<>();
@@ -117,7 +123,8 @@ public class ImsExpanderTask extends AbstractTask {
       double finishedPercentage = task.getFinishedPercentage();
       sum += finishedPercentage;
     }
-    return 0.4 * sum / tasks.size() + 0.4 * (processedRows.get() / (double) totalRows)
+    final double tasksProgress = tasks.isEmpty() ? 0d : sum / tasks.size();
+    return 0.4 * tasksProgress + 0.4 * (processedRows.get() / (double) totalRows)
            + 0.2 * createdRows / (double) totalRows;
   }
 
@@ -164,6 +171,103 @@ public class ImsExpanderTask extends AbstractTask {
     final List<Frame> frames = (List<Frame>) flist.getSeletedScans(flist.getRawDataFile(0));
     assert frames != null;
 
+    final List<ExpandedTrace> expandedTraces;
+    if (maxNumTraces == Integer.MAX_VALUE) {
+      expandedTraces = expandByFrameBlocks(imsFile, frames, expandingTraces);
+    } else {
+      expandedTraces = expandByTraceBlocks(imsFile, frames, expandingTraces);
+    }
+    if (expandedTraces == null) {
+      setStatus(TaskStatus.CANCELED);
+      return;
+    }
+
+    desc = "Creating new features for feature list " + flist.getName();
+    for (ExpandedTrace expandedTrace : expandedTraces) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(newFlist, expandedTrace.oldRow(),
+          false);
+      final ModularFeature f = new ModularFeature(newFlist, expandedTrace.oldFeature());
+      f.set(FeatureDataType.class, expandedTrace.series());
+      FeatureDataUtils.recalculateIonSeriesDependingTypes(f);
+      row.addFeature(imsFile, f);
+      newFlist.addRow(row);
+      createdRows++;
+    }
+
+    // explicitly don't renumber, IDs are kept from the old flist.
+    FeatureListUtils.sortByDefaultRT(newFlist, false);
+
+    newFlist.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(ImsExpanderModule.class, parameters,
+            getModuleCallDate()));
+    handleOriginal.reflectNewFeatureListToProject(SUFFIX, project, newFlist, flist);
+    setStatus(TaskStatus.FINISHED);
+  }
+
+  /**
+   * Reads every frame only once. The frames are split into blocks that are processed in parallel
+   * and the data points are offered to all traces in the RT range of the block via an m/z index. The
+   * traces are kept in memory until all frames are processed.
+   *
+   * @return the expanded traces or null if the task was canceled.
+   */
+  @Nullable
+  private List<ExpandedTrace> expandByFrameBlocks(final IMSRawDataFile imsFile,
+      final List<Frame> frames, final List<ExpandingTrace> expandingTraces) {
+    final int framesPerBlock = Math.max(1,
+        (int) Math.ceil(frames.size() / (double) (NUM_THREADS * FRAME_BLOCKS_PER_THREAD)));
+    for (final List<Frame> block : Lists.partition(frames, framesPerBlock)) {
+      final Range<Float> blockRtRange = Range.closed(block.get(0).getRetentionTime(),
+          block.get(block.size() - 1).getRetentionTime());
+      final List<ExpandingTrace> blockTraces = expandingTraces.stream()
+          .filter(trace -> trace.getRtRange().isConnected(blockRtRange)).toList();
+      if (blockTraces.isEmpty()) {
+        continue;
+      }
+      tasks.add(new ImsExpanderFrameSubTask(parameters, block,
+          new ExpandingTraceMzIndex(blockTraces), imsFile, flist.getName()));
+    }
+
+    ThreadPoolTask poolTask = ThreadPoolTask.createDefaultTaskManagerPool(getTaskDescription(),
+        new ArrayList<>(tasks));
+    var wrappedTask = MZmineCore.getTaskController().runTaskOnThisThreadBlocking(poolTask);
+    if (wrappedTask == null || poolTask.getStatus() == TaskStatus.CANCELED) {
+      return null;
+    }
+
+    // create the series in parallel, binning access is not thread safe
+    desc = "Creating mobilograms for feature list " + flist.getName();
+    final int tracesPerChunk = Math.max(1,
+        (int) Math.ceil(expandingTraces.size() / (double) NUM_THREADS));
+    final List<List<ExpandingTrace>> chunks = Lists.partition(expandingTraces, tracesPerChunk);
+    final List<ExpandedTrace> expandedTraces = chunks.parallelStream()
+        .<ExpandedTrace>mapMulti((chunk, consumer) -> {
+          final BinningMobilogramDataAccess mobilogramDataAccess = EfficientDataAccess.of(imsFile,
+              binWidth);
+          for (ExpandingTrace trace : chunk) {
+            if (isCanceled()) {
+              return;
+            }
+            if (trace.getNumberOfMobilityScans() > 1) {
+              final IonMobilogramTimeSeries series = trace.toIonMobilogramTimeSeries(
+                  getMemoryMapStorage(), mobilogramDataAccess);
+              consumer.accept(new ExpandedTrace(series, trace.getRow(),
+                  trace.getRow().getFeature(imsFile)));
+            }
+            processedRows.getAndIncrement();
+          }
+        }).toList();
+    return isCanceled() ? null : expandedTraces;
+  }
+
+  /**
+   * Each sub task processes a block of traces and reads the frames of their RT range.
+   *
+   * @return the expanded traces or null if the task was canceled.
+   */
+  @Nullable
+  private List<ExpandedTrace> expandByTraceBlocks(final IMSRawDataFile imsFile,
+      final List<Frame> frames, final List<ExpandingTrace> expandingTraces) {
     // we partition the traces (sorted by rt) so we can start and end at specific frames. By splitting
     // the traces and not frames, we can also directly store the raw data on the SSD/HDD as soon as
     // a thread finishes. Thereby we can reduce the memory consumption, especially in images.
@@ -202,35 +306,15 @@ public class ImsExpanderTask extends AbstractTask {
     var wrappedTask = MZmineCore.getTaskController().runTaskOnThisThreadBlocking(poolTask);
 
     if (wrappedTask == null || poolTask.getStatus() == TaskStatus.CANCELED) {
-      setStatus(TaskStatus.CANCELED);
-      return;
+      return null;
     }
 
-    desc = "Creating new features for feature list " + flist.getName();
+    final List<ExpandedTrace> expandedTraces = new ArrayList<>();
     for (AbstractTask task : tasks) {
-      final ImsExpanderSubTask t = (ImsExpanderSubTask) task;
-      final List<ExpandedTrace> expandedTraces = t.getExpandedTraces();
-
-      for (ExpandedTrace expandedTrace : expandedTraces) {
-        final ModularFeatureListRow row = new ModularFeatureListRow(newFlist,
-            expandedTrace.oldRow(), false);
-        final ModularFeature f = new ModularFeature(newFlist, expandedTrace.oldFeature());
-        f.set(FeatureDataType.class, expandedTrace.series());
-        FeatureDataUtils.recalculateIonSeriesDependingTypes(f);
-        row.addFeature(imsFile, f);
-        newFlist.addRow(row);
-        createdRows++;
-      }
+      expandedTraces.addAll(((ImsExpanderSubTask) task).getExpandedTraces());
+      processedRows.getAndAdd(((ImsExpanderSubTask) task).getExpandedTraces().size());
     }
-
-    // explicitly don't renumber, IDs are kept from the old flist.
-    FeatureListUtils.sortByDefaultRT(newFlist, false);
-
-    newFlist.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(ImsExpanderModule.class, parameters,
-            getModuleCallDate()));
-    handleOriginal.reflectNewFeatureListToProject(SUFFIX, project, newFlist, flist);
-    setStatus(TaskStatus.FINISHED);
+    return expandedTraces;
   }
 
   @Override
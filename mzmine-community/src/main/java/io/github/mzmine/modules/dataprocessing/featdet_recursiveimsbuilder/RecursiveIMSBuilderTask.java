@@ -54,6 +54,8 @@ import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.SpectraMerging;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -175,12 +177,16 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
       return;
     }
 
-    // create ion traces from mobilograms
+    // create ion traces from mobilograms. A trace spans the whole run within its m/z range and
+    // mobilograms are assigned in global intensity order, so traces cannot be finalised per
+    // retention time window without splitting them. All mobilograms are collected first.
     currentStep++;
     stepProcessed.set(0);
     stepTotal = sortedMobilograms.size();
     final List<TempIMTrace> ionMobilityTraces = createTempIMTraces(
         sortedMobilograms, tolerance);
+    // the mobilograms are referenced by the traces now
+    sortedMobilograms.clear();
     if (isCanceled()) {
       return;
     }
@@ -190,11 +196,14 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     currentStep++;
     stepTotal = ionMobilityTraces.size();
     logger.finest(() -> "Removing noise from traces...");
+    final Object2IntMap<Frame> frameIndices = createFrameIndexMap(access.getEligibleFrames());
     final List<TempIMTrace> validTraces = ionMobilityTraces.parallelStream().filter(trace -> {
       stepProcessed.getAndIncrement();
-      return checkConsecutiveRemoveNoise(trace, access.getEligibleFrames(), numConsecutiveFrames,
+      return checkConsecutiveRemoveNoise(trace, frameIndices, numConsecutiveFrames,
           numDataPoints);
     }).collect(Collectors.toList());
+    // release invalid traces early
+    ionMobilityTraces.clear();
 
     logger.finest(() -> "Noise removed.");
     if (isCanceled()) {
@@ -206,7 +215,7 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     currentStep++;
     stepTotal = validTraces.size();
     logger.finest(() -> "Adding leading and trailing zeros...");
-    addZerosForFrames(validTraces, access.getEligibleFrames());
+    addZerosForFrames(validTraces, access.getEligibleFrames(), frameIndices);
     logger.finest(() -> "Leading and trailing zeros added.");
 
     // build feature list
@@ -260,8 +269,21 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
-  private boolean checkConsecutiveRemoveNoise(TempIMTrace trace, List<Frame> eligibleFrames,
-      int reqConsecutive, int numDataPoints) {
+  /**
+   * @return A map of frame to its index in the eligible frames. Frames that are not contained
+   * return -1.
+   */
+  private static Object2IntMap<Frame> createFrameIndexMap(List<Frame> eligibleFrames) {
+    final Object2IntMap<Frame> frameIndices = new Object2IntOpenHashMap<>(eligibleFrames.size());
+    frameIndices.defaultReturnValue(-1);
+    for (int i = 0; i < eligibleFrames.size(); i++) {
+      frameIndices.put(eligibleFrames.get(i), i);
+    }
+    return frameIndices;
+  }
+
+  private boolean checkConsecutiveRemoveNoise(TempIMTrace trace,
+      Object2IntMap<Frame> frameIndices, int reqConsecutive, int numDataPoints) {
 
     final int numDp = trace.getNumberOfDataPoints();
     if (numDp < numDataPoints
@@ -271,7 +293,6 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
 
     boolean isConsecutive = false;
     int numConsecutive = 0;
-    int allFramesIndex = 0;
     int prevIndex = 0;
 
     if (trace.getMobilograms().size() == 1 && reqConsecutive <= 1) {
@@ -282,35 +303,33 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
 
     List<IonMobilitySeries> mobilograms = trace.getMobilograms();
     final int mobilogramsSize = mobilograms.size();
-    final int numFrames = eligibleFrames.size();
 
-    for (int i = 0; i < mobilogramsSize && allFramesIndex < numFrames; i++) {
-      IonMobilitySeries mobilogram = mobilograms.get(i);
-      final Frame frame = mobilogram.getSpectrum(0).getFrame();
+    // mobilograms are sorted by frame, so the indices are ascending
+    final int[] indices = new int[mobilogramsSize];
+    for (int i = 0; i < mobilogramsSize; i++) {
+      indices[i] = frameIndices.getInt(mobilograms.get(i).getSpectrum(0).getFrame());
+    }
 
-      while (allFramesIndex < numFrames && frame != eligibleFrames.get(allFramesIndex)) {
-        allFramesIndex++;
+    for (int i = 0; i < mobilogramsSize; i++) {
+      final int allFramesIndex = indices[i];
+      if (allFramesIndex < 0) {
+        break;
       }
 
       // remove noise signals
       if (i == 0) {
-        if (mobilograms.get(i + 1).getSpectrum(0).getFrame() != eligibleFrames
-            .get(allFramesIndex + 1)) {
+        if (indices[i + 1] != allFramesIndex + 1) {
           // first signal is noise
-          noise.add(mobilogram);
+          noise.add(mobilograms.get(i));
         }
       } else if (i == mobilogramsSize - 1) {
-        if (mobilograms.get(i - 1).getSpectrum(0).getFrame() != eligibleFrames
-            .get(allFramesIndex - 1)) {
+        if (indices[i - 1] != allFramesIndex - 1) {
           // last mobilogram is noise
-          noise.add(mobilogram);
+          noise.add(mobilograms.get(i));
         }
-      } else if (mobilograms.get(i - 1).getSpectrum(0).getFrame() != eligibleFrames
-          .get(allFramesIndex - 1)
-          && mobilograms.get(i + 1).getSpectrum(0).getFrame() != eligibleFrames
-          .get(allFramesIndex + 1)) {
+      } else if (indices[i - 1] != allFramesIndex - 1 && indices[i + 1] != allFramesIndex + 1) {
         // some mobilogram is noise
-        noise.add(mobilogram);
+        noise.add(mobilograms.get(i));
       }
 
       if (allFramesIndex - prevIndex <= 1) {
@@ -330,7 +349,8 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     return isConsecutive && trace.getNumberOfDataPoints() >= numDataPoints;
   }
 
-  private void addZerosForFrames(Collection<TempIMTrace> traces, List<Frame> eligibleFrames) {
+  private void addZerosForFrames(Collection<TempIMTrace> traces, List<Frame> eligibleFrames,
+      Object2IntMap<Frame> frameIndices) {
     traces.parallelStream().forEach(trace -> {
           int mostFrequentIndex = // most frequent mobility scan index, corrected by the first scans index.
               findMostFrequentMobilityScanNumber(trace.getMobilograms()) - eligibleFrames.get(0)
@@ -348,13 +368,12 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
           for (int i = 0; i < detected.length; i++) {
             detected[i] = trace.getMobilograms().get(i).getSpectrum(0).getFrame();
           }
-          int allFramesIndex = 0;
-          int lastDetectedIndex = eligibleFrames.indexOf(detected[0]);
+          int lastDetectedIndex = frameIndices.getInt(detected[0]);
           for (final Frame frame : detected) {
-            // find the next frame we have a datapoint for
-            while (allFramesIndex < eligibleFrames.size() && frame != eligibleFrames
-                .get(allFramesIndex)) {
-              allFramesIndex++;
+            // index of the next frame we have a datapoint for
+            final int allFramesIndex = frameIndices.getInt(frame);
+            if (allFramesIndex < 0) {
+              continue;
             }
 
             if (allFramesIndex - lastDetectedIndex > 1) {
@@ -388,7 +407,14 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
   }
 
   private TreeSet<BuildingIonMobilitySeries> buildFrameMobilograms(MobilityScanDataAccess access) {
-    Set<BuildingIonMobilitySeries> buildingTraces = new HashSet<>();
+    // sort mobilograms like the adap builder, directly to not keep a second collection of all
+    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = new TreeSet<>(
+        (o1, o2) -> {
+          if (o1.getSummedIntensity() > o2.getSummedIntensity()) {
+            return -1;
+          }
+          return 1;
+        });
     try {
 
       while (access.hasNextFrame()) {
@@ -416,7 +442,7 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
 
         final Set<TempMobilogram> mobilogramMap = calcMobilograms(dps, tolerance);
         final List<BuildingIonMobilitySeries> storedTraces = storeBuldingMobilograms(mobilogramMap);
-        buildingTraces.addAll(storedTraces);
+        sortedMobilograms.addAll(storedTraces);
 
         stepProcessed.getAndIncrement();
       }
@@ -424,19 +450,6 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
       e.printStackTrace();
     }
 
-    // now sort chromatograms like the adap builder
-    logger.finest(() -> "Sorting mobilograms");
-    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = new TreeSet<>(
-        (o1, o2) -> {
-          if (o1.getSummedIntensity() > o2.getSummedIntensity()) {
-            return -1;
-          }
-          return 1;
-        });
-    sortedMobilograms.addAll(buildingTraces);
-
-    logger.finest(() -> "Mobilograms sorted");
-
     return sortedMobilograms;
   }
 
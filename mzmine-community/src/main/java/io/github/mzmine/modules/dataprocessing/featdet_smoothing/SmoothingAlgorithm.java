@@ -45,7 +45,8 @@ public interface SmoothingAlgorithm extends MZmineModule {
 
   /**
    * @param series The series.
-   * @return The smoothed intensity values.
+   * @return The smoothed intensity values. Implementations may reuse the array in the next call
+   * and it may be longer than the number of values in the series.
    */
   @Nullable
   public <T extends Scan> double[] smoothRt(@NotNull final IonTimeSeries<T> series);
@@ -40,6 +40,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -56,12 +57,15 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class SmoothingTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(SmoothingTask.class.getName());
+  // number of rows smoothed by one smoother instance
+  private static final int SMOOTHING_CHUNK_SIZE = 1000;
 
   private final ModularFeatureList flist;
   private final ParameterSet parameters;
@@ -122,20 +126,15 @@ public class SmoothingTask extends AbstractTask {
       return;
     }
 
-    // include zeros
-    final FeatureDataAccess dataAccess = EfficientDataAccess
-        .of(smoothedList, FeatureDataType.INCLUDE_ZEROS);
-
-    while (dataAccess.hasNextFeature()) {
-      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
-
-      final IonTimeSeries<? extends Scan> smoothedSeries = smoother
-          .smoothFeature(getMemoryMapStorage(), dataAccess, feature, zht);
-      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class, smoothedSeries);
-      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
-
-      processedFeatures.getAndIncrement();
-    }
+    // smoothers and data accesses keep buffers, so every chunk uses its own instances
+    final List<FeatureListRow> rows = smoothedList.getRows();
+    final int numChunks = (rows.size() + SMOOTHING_CHUNK_SIZE - 1) / SMOOTHING_CHUNK_SIZE;
+    IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+      final int start = chunk * SMOOTHING_CHUNK_SIZE;
+      final int end = Math.min(start + SMOOTHING_CHUNK_SIZE, rows.size());
+      smoothChunk(smoothedList, rows.subList(start, end),
+          chunk == 0 ? smoother : initialiseSmoother());
+    });
 
     if (isCanceled()) {
       return;
@@ -150,6 +149,31 @@ public class SmoothingTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  private void smoothChunk(@NotNull final ModularFeatureList smoothedList,
+      @NotNull final List<FeatureListRow> rows, @Nullable final SmoothingAlgorithm smoother) {
+    if (smoother == null || isCanceled()) {
+      return;
+    }
+
+    // include zeros
+    final FeatureDataAccess dataAccess = EfficientDataAccess.of(smoothedList,
+        FeatureDataType.INCLUDE_ZEROS, smoothedList.getRawDataFile(0), rows);
+
+    while (dataAccess.hasNextFeature()) {
+      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
+
+      final IonTimeSeries<? extends Scan> smoothedSeries = smoother
+          .smoothFeature(getMemoryMapStorage(), dataAccess, feature, zht);
+      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class, smoothedSeries);
+      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
+
+      processedFeatures.getAndIncrement();
+      if (isCanceled()) {
+        return;
+      }
+    }
+  }
+
   @Nullable
   private SmoothingAlgorithm initialiseSmoother() {
     final SmoothingAlgorithm smoother;
@@ -43,6 +43,10 @@ public class LoessSmoothing implements SmoothingAlgorithm {
   private final Integer rtWidth;
   private final boolean smoothRt;
   private final boolean smoothMobility;
+  // reused for all features, one instance must not be used by multiple threads
+  private LoessInterpolator rtInterpolator;
+  private double rtInterpolatorBandwidth;
+  private double[] rtBuffer;
 
   public LoessSmoothing() {
     this.mobilityWidth = null;
@@ -86,7 +90,10 @@ public class LoessSmoothing implements SmoothingAlgorithm {
 
     // bandwidth: fraction of source points, cannot be greater than 1
     final double rtBandwidth = Math.min((((double) this.rtWidth) / series.getNumberOfValues()), 1);
-    final LoessInterpolator interpolator = new LoessInterpolator(rtBandwidth, 0);
+    if (rtInterpolator == null || Double.compare(rtInterpolatorBandwidth, rtBandwidth) != 0) {
+      rtInterpolator = new LoessInterpolator(rtBandwidth, 0);
+      rtInterpolatorBandwidth = rtBandwidth;
+    }
 
     double[] intensities;
     if(series instanceof FeatureFullDataAccess access) {
@@ -95,14 +102,19 @@ public class LoessSmoothing implements SmoothingAlgorithm {
       intensities = new double[series.getNumberOfValues()];
       intensities = series.getIntensityValues(intensities);
     }
-    double[] rts = new double[series.getNumberOfValues()];
+    // the interpolator requires arrays of the exact length. The length only changes between
+    // series of different data access types
+    if (rtBuffer == null || rtBuffer.length != series.getNumberOfValues()) {
+      rtBuffer = new double[series.getNumberOfValues()];
+    }
+    final double[] rts = rtBuffer;
     for (int i = 0; i < rts.length; i++) {
       rts[i] = series.getRetentionTime(i);
     }
 
     assert intensities.length == rts.length;
 
-    double[] smoothed = interpolator.smooth(rts, intensities);
+    double[] smoothed = rtInterpolator.smooth(rts, intensities);
     for (int i = 0; i < intensities.length; i++) {
       if (Double.compare(intensities[i], 0d) <= 0) {
         smoothed[i] = 0d;
@@ -26,11 +26,13 @@
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
 
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.FeatureFullDataAccess;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.MobilitySeries;
 import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingAlgorithm;
 import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -41,6 +43,9 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
   private final double[] rtWeights;
   private final boolean smoothRt;
   private final boolean smoothMobility;
+  // reused buffers, one instance must not be used by multiple threads
+  private double[] intensityBuffer;
+  private double[] rtBuffer;
 
   public SavitzkyGolaySmoothing(ParameterSet parameters) {
 //    this.zht = zeroHandlingType;
@@ -73,6 +78,17 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
    * @return
    */
   public double[] smooth(@NotNull final IntensitySeries access, double[] normWeights) {
+    return smooth(access, normWeights, null);
+  }
+
+  /**
+   * @param access   The intensity series to be smoothed
+   * @param smoothed buffer for the result, a new array is created if the buffer is null or too
+   *                 small
+   * @return the smoothed intensities. The array may be longer than the number of values
+   */
+  private double[] smooth(@NotNull final IntensitySeries access, double[] normWeights,
+      @Nullable double[] smoothed) {
     if (normWeights == null) {
       throw new IllegalArgumentException(
           "No smoothing weights specified. Was the smoother initialised correctly?");
@@ -83,11 +99,16 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
     final int fullWidth = normWeights.length;
     final int halfWidth = (fullWidth - 1) / 2;
 
-    double[] smoothed = new double[numPoints];
+    final double[] intensities = getIntensities(access);
+    if (smoothed == null || smoothed.length < numPoints) {
+      smoothed = new double[numPoints];
+    } else {
+      Arrays.fill(smoothed, 0, numPoints, 0d);
+    }
     for (int i = 0; i < numPoints; i++) {
       final int k = i - halfWidth;
       for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
-        smoothed[i] += access.getIntensity(k + j) * normWeights[j];
+        smoothed[i] += intensities[k + j] * normWeights[j];
       }
 
       if (smoothed[i] < 0d) {
@@ -96,7 +117,7 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
 
 //      if (/*zht == ZeroHandlingType.KEEP &&*/ Double.compare(access.getIntensity(i), 0d) == 0) {
       // if values that were previously 0 shall remain 0, we process that here.
-      if (Double.compare(access.getIntensity(i), 0d) == 0) {
+      if (Double.compare(intensities[i], 0d) == 0) {
         smoothed[i] = 0;
       }
     }
@@ -104,10 +125,35 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
     return smoothed;
   }
 
+  /**
+   * The full data access already holds all intensities in an array, other series are copied into
+   * a reused buffer.
+   */
+  private double[] getIntensities(@NotNull final IntensitySeries access) {
+    if (access instanceof FeatureFullDataAccess fullAccess) {
+      return fullAccess.getIntensityValues();
+    }
+    final int numPoints = access.getNumberOfValues();
+    if (intensityBuffer == null || intensityBuffer.length < numPoints) {
+      intensityBuffer = new double[numPoints];
+    }
+    for (int i = 0; i < numPoints; i++) {
+      intensityBuffer[i] = access.getIntensity(i);
+    }
+    return intensityBuffer;
+  }
+
+  /**
+   * The returned array is reused by the next call and may be longer than the number of values.
+   */
   @Override
   @Nullable
   public <T extends Scan> double[] smoothRt(@NotNull IonTimeSeries<T> series) {
-    return smoothRt ? smooth(series, rtWeights) : null;
+    if (!smoothRt) {
+      return null;
+    }
+    rtBuffer = smooth(series, rtWeights, rtBuffer);
+    return rtBuffer;
   }
 
   @Override
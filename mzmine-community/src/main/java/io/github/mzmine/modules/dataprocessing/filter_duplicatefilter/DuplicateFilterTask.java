@@ -36,6 +36,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.FeatureListRowIndex;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -54,6 +55,8 @@ import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
@@ -190,7 +193,7 @@ public class DuplicateFilterTask extends AbstractTask {
     final int removedDuplicates = switch (mode) {
       case OLD_AVERAGE ->
           applyOldAverageFilter(mzTolerance, rtTolerance, mobilityTolerance, requireSameId,
-              peakListRows, rowCount);
+              newPeakList, peakListRows, rowCount);
       case NEW_AVERAGE ->
           applyNewMergingFilter(mzTolerance, rtTolerance, mobilityTolerance, requireSameId,
               newPeakList, peakListRows, rowCount, rawFiles);
@@ -228,11 +231,19 @@ public class DuplicateFilterTask extends AbstractTask {
   }
 
   private int applyOldAverageFilter(MZTolerance mzTolerance, RTTolerance rtTolerance,
-      MobilityTolerance mobilityTolerance, boolean requireSameId,
+      MobilityTolerance mobilityTolerance, boolean requireSameId, ModularFeatureList newPeakList,
       ModularFeatureListRow[] peakListRows, int rowCount) {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
 
+    // only rows within the mz tolerance are compared, found in the mz index of the list
+    final FeatureListRowIndex mzIndex = newPeakList.getRowIndex();
+    final Reference2IntMap<FeatureListRow> sortedPositions = new Reference2IntOpenHashMap<>(
+        rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      sortedPositions.put(peakListRows[i], i);
+    }
+
     // Loop through all feature list rows
     int removedDuplicates = 0;
     for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
@@ -243,9 +254,12 @@ public class DuplicateFilterTask extends AbstractTask {
       final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
 
       if (firstRow != null) {
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
+        final Range<Double> mzRange = mzTolerance.getToleranceRange(firstRow.getAverageMZ());
+        for (FeatureListRow candidate : mzIndex.getCandidates(mzRange, Range.all())) {
+          // only rows with a lower area are removed
+          final int secondRowIndex = sortedPositions.getOrDefault(candidate, -1);
+          if (secondRowIndex <= firstRowIndex) {
+            continue;
           }
 
           final FeatureListRow secondRow = peakListRows[secondRowIndex];
@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import static java.util.Objects.requireNonNullElse;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Groups isotope signals of a single sample feature list. Rows are processed by descending height
+ * and every row claims the isotope signals around it for the charge state with the most signals.
+ * <p>
+ * Rows are kept in a primitive index sorted by m/z (same order as {@link FeatureListRowSorter} by
+ * m/z) so that every isotope window is located by binary search instead of walking the whole m/z
+ * neighbourhood. Grouped rows are tombstoned instead of being removed from lists. Rows of
+ * RT-disjoint regions can never be grouped together, so each region is an independent problem and
+ * regions are processed in parallel. The results are identical to processing all rows in one
+ * sequence.
+ */
+class IsotopeGrouper {
+
+  /**
+   * The isotopeDistance constant defines expected distance between isotopes. Actual weight of 1
+   * neutron is 1.008665 Da, but part of this mass is consumed as binding energy to other
+   * protons/neutrons. Actual mass increase of isotopes depends on chemical formula of the molecule.
+   * Since we don't know the formula, we can assume the distance to be ~1.0033 Da, with user-defined
+   * tolerance.
+   */
+  static final double isotopeDistance = 1.0033;
+
+  /**
+   * Safety margin for the binary search of isotope windows. The exact tolerance check is done for
+   * every row within the window.
+   */
+  private static final double WINDOW_MARGIN = 1E-3;
+
+  private static final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(
+      SortingProperty.Height, SortingDirection.Descending);
+  private static final FeatureListRowSorter rowsMzSorter = FeatureListRowSorter.MZ_ASCENDING;
+  private static final Comparator<DataPoint> isotopeSorter = Comparator.comparingDouble(
+      DataPoint::getMZ).thenComparingDouble(DataPoint::getIntensity);
+
+  private final MZTolerance mzTolerance;
+  private final RTTolerance rtTolerance;
+  private final @Nullable MobilityTolerance mobilityTolerance;
+  private final boolean monotonicShape;
+  private final boolean chooseMostIntense;
+  private final boolean keepAllMS2;
+  private final int maximumCharge;
+
+  /**
+   * @param mobilityTolerance null to disable the mobility check
+   */
+  IsotopeGrouper(@NotNull MZTolerance mzTolerance, @NotNull RTTolerance rtTolerance,
+      @Nullable MobilityTolerance mobilityTolerance, boolean monotonicShape,
+      boolean chooseMostIntense, boolean keepAllMS2, int maximumCharge) {
+    this.mzTolerance = mzTolerance;
+    this.rtTolerance = rtTolerance;
+    this.mobilityTolerance = mobilityTolerance;
+    this.monotonicShape = monotonicShape;
+    this.chooseMostIntense = chooseMostIntense;
+    this.keepAllMS2 = keepAllMS2;
+    this.maximumCharge = maximumCharge;
+  }
+
+  /**
+   * Groups isotope signals and sets the detected isotope pattern and charge to the representative
+   * rows (if they do not have an isotope pattern yet).
+   *
+   * @param rows          all rows of a single sample feature list
+   * @param processedRows incremented for every processed row
+   * @param isCanceled    stops processing if true
+   * @return the remaining rows sorted by {@link FeatureListRowSorter#DEFAULT_RT} or null if
+   * canceled
+   */
+  @Nullable
+  List<FeatureListRow> group(@NotNull List<? extends FeatureListRow> rows,
+      @NotNull AtomicInteger processedRows, @NotNull BooleanSupplier isCanceled) {
+    // Sort peaks by descending height, the position is the global processing rank
+    final List<FeatureListRow> rowsSortedByHeight = new ArrayList<>(rows);
+    rowsSortedByHeight.sort(rowsHeightSorter);
+
+    // use a second sorted list to limit the number of comparisons
+    final List<FeatureListRow> rowsSortedByMz = new ArrayList<>(rows);
+    rowsSortedByMz.sort(rowsMzSorter);
+
+    final List<RtRegion> regions = splitRtRegions(rowsSortedByHeight, rowsSortedByMz);
+
+    final List<List<GroupedRow>> results = regions.parallelStream()
+        .map(region -> region.group(processedRows, isCanceled)).toList();
+    if (isCanceled.getAsBoolean() || results.contains(null)) {
+      return null;
+    }
+
+    // restore the sequential order of all regions before sorting by RT to keep the output stable
+    final List<FeatureListRow> finalRows = results.stream().flatMap(List::stream)
+        .sorted(Comparator.comparingInt(GroupedRow::rank)).map(GroupedRow::row)
+        .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+
+    finalRows.sort(FeatureListRowSorter.DEFAULT_RT);
+    return finalRows;
+  }
+
+  /**
+   * Splits the rows into regions that are separated by RT gaps larger than the RT tolerance.
+   */
+  private List<RtRegion> splitRtRegions(List<FeatureListRow> rowsSortedByHeight,
+      List<FeatureListRow> rowsSortedByMz) {
+    final int numRows = rowsSortedByMz.size();
+    final float[] rts = new float[numRows];
+    for (int i = 0; i < numRows; i++) {
+      rts[i] = requireNonNullElse(rowsSortedByMz.get(i).getAverageRT(), 0f);
+    }
+
+    final int[] regionOfRow = new int[numRows];
+    int numRegions = numRows == 0 ? 0 : 1;
+    // percentage tolerances over 100 % are not monotonic in RT - keep everything in one region
+    if (rtTolerance.getUnit() != Unit.PERCENT || rtTolerance.getTolerance() < 100f) {
+      // slightly widened tolerance for a conservative split
+      final RTTolerance splitTolerance = new RTTolerance(rtTolerance.getTolerance() * 1.01f,
+          rtTolerance.getUnit());
+      final int[] rtOrder = new int[numRows];
+      for (int i = 0; i < numRows; i++) {
+        rtOrder[i] = i;
+      }
+      IntArrays.quickSort(rtOrder, (int a, int b) -> Float.compare(rts[a], rts[b]));
+      for (int i = 1; i < numRows; i++) {
+        final float previous = rts[rtOrder[i - 1]];
+        final float next = rts[rtOrder[i]];
+        if (!splitTolerance.checkWithinTolerance(previous, next)
+            && !splitTolerance.checkWithinTolerance(next, previous)) {
+          numRegions++;
+        }
+        regionOfRow[rtOrder[i]] = numRegions - 1;
+      }
+    }
+
+    final Reference2IntOpenHashMap<FeatureListRow> mzIndexOfRow = new Reference2IntOpenHashMap<>(
+        numRows);
+    for (int i = 0; i < numRows; i++) {
+      mzIndexOfRow.put(rowsSortedByMz.get(i), i);
+    }
+
+    final List<RtRegion> regions = new ArrayList<>(numRegions);
+    for (int r = 0; r < numRegions; r++) {
+      regions.add(new RtRegion());
+    }
+    // keep the global m/z order and height order within every region
+    for (int i = 0; i < numRows; i++) {
+      regions.get(regionOfRow[i]).addRow(rowsSortedByMz.get(i));
+    }
+    for (int rank = 0; rank < numRows; rank++) {
+      final FeatureListRow row = rowsSortedByHeight.get(rank);
+      regions.get(regionOfRow[mzIndexOfRow.getInt(row)]).addHeightRank(row, rank);
+    }
+    regions.forEach(RtRegion::buildIndex);
+    return regions;
+  }
+
+  /**
+   * @param rank rank of the row that was processed when this row was retained
+   */
+  private record GroupedRow(int rank, FeatureListRow row) {
+
+  }
+
+  /**
+   * Rows of one RT-disjoint region in a primitive index sorted by m/z
+   */
+  private class RtRegion {
+
+    private final List<FeatureListRow> rows = new ArrayList<>();
+    private final IntArrayList heightOrder = new IntArrayList();
+    private final IntArrayList heightRanks = new IntArrayList();
+    private Reference2IntOpenHashMap<FeatureListRow> indexOfRow = new Reference2IntOpenHashMap<>();
+
+    private double[] mzs;
+    // the sort key of rowsMzSorter which is strictly sorted in contrast to the mz values
+    private double[] mzKeys;
+    private float[] rts;
+    private float[] mobilities;
+    private boolean[] removed;
+    // next row index to look at when a row was removed. Compressed during lookup
+    private int[] skip;
+    // cache of RT and mobility checks against the current main row, shared by all charges
+    private int[] probeStamp;
+    private boolean[] probeMatch;
+    private double maxKeyShift;
+
+    void addRow(FeatureListRow row) {
+      indexOfRow.put(row, rows.size());
+      rows.add(row);
+    }
+
+    void addHeightRank(FeatureListRow row, int rank) {
+      heightOrder.add(indexOfRow.getInt(row));
+      heightRanks.add(rank);
+    }
+
+    void buildIndex() {
+      final int size = rows.size();
+      mzs = new double[size];
+      mzKeys = new double[size];
+      rts = new float[size];
+      mobilities = new float[size];
+      removed = new boolean[size];
+      skip = new int[size];
+      probeStamp = new int[size];
+      probeMatch = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        final FeatureListRow row = rows.get(i);
+        mzs[i] = row.getAverageMZ();
+        final Float rt = row.getAverageRT();
+        mzKeys[i] = mzs[i] + requireNonNullElse(rt, 0f) / 10000000.0;
+        rts[i] = requireNonNullElse(rt, Float.NaN);
+        mobilities[i] = requireNonNullElse(row.getAverageMobility(), Float.NaN);
+        skip[i] = i + 1;
+        maxKeyShift = Math.max(maxKeyShift, Math.abs(mzKeys[i] - mzs[i]));
+      }
+      indexOfRow = null;
+    }
+
+    /**
+     * @return the retained rows with their processing rank or null if canceled
+     */
+    @Nullable
+    List<GroupedRow> group(AtomicInteger processedRows, BooleanSupplier isCanceled) {
+      final List<GroupedRow> finalRows = new ArrayList<>((int) (rows.size() * 0.9));
+
+      for (int h = 0; h < heightOrder.size(); h++) {
+        if (isCanceled.getAsBoolean()) {
+          return null;
+        }
+
+        final int main = heightOrder.getInt(h);
+        // Check if peak was already grouped
+        if (removed[main]) {
+          continue;
+        }
+        final int rank = heightRanks.getInt(h);
+        removed[main] = true;
+
+        // Check which charge state fits best around this peak
+        int bestFitCharge = 0;
+        int bestFitScore = -1;
+        IntArrayList bestFitRows = null;
+        for (int charge = 1; charge <= maximumCharge; charge++) {
+          final IntArrayList fittedRows = new IntArrayList();
+          fittedRows.add(main);
+          fitPattern(fittedRows, main, charge);
+
+          final int score = fittedRows.size();
+          if ((score > bestFitScore) || ((score == bestFitScore) && (bestFitCharge > charge))) {
+            bestFitScore = score;
+            bestFitCharge = charge;
+            bestFitRows = fittedRows;
+          }
+        }
+
+        // Verify the number of detected isotopes. If there is only one
+        // isotope, we skip this left the original peak in the feature list.
+        if (bestFitRows == null || bestFitRows.size() == 1) {
+          finalRows.add(new GroupedRow(rank, rows.get(main)));
+          processedRows.incrementAndGet();
+          continue;
+        }
+
+        final List<FeatureListRow> groupedRows = new ArrayList<>(bestFitRows.size());
+        final DataPoint[] isotopes = new DataPoint[bestFitRows.size()];
+        for (int i = 0; i < isotopes.length; i++) {
+          final FeatureListRow row = rows.get(bestFitRows.getInt(i));
+          groupedRows.add(row);
+          isotopes[i] = new SimpleDataPoint(mzs[bestFitRows.getInt(i)], row.getMaxHeight());
+        }
+        Arrays.sort(isotopes, isotopeSorter);
+        final SimpleIsotopePattern newPattern = new SimpleIsotopePattern(isotopes, bestFitCharge,
+            IsotopePatternStatus.DETECTED, rows.get(main).toString());
+
+        // Depending on user's choice, we leave either the most intense, or
+        // the lowest m/z peak
+        groupedRows.sort(chooseMostIntense ? rowsHeightSorter : rowsMzSorter);
+
+        // add to final rows
+        final FeatureListRow mainRow = groupedRows.get(0);
+        finalRows.add(new GroupedRow(rank, mainRow));
+        // set isotope pattern
+        final Feature feature = mainRow.getFeatures().get(0);
+
+        // do not set isotope pattern if feature already has an isotope pattern
+        // this means the isotope finder (or another module already ran) keep the old pattern
+        // we trust the isotope finder more on detecting all isotope signals
+        if (feature.getIsotopePattern() == null) {
+          feature.setIsotopePattern(newPattern);
+          feature.setCharge(bestFitCharge);
+        }
+
+        // tombstone all rows assigned to the isotope pattern, except the retained main row
+        groupedRows.remove(0);
+        for (final FeatureListRow isotope : groupedRows) {
+          removed[rowsIndexOf(isotope, bestFitRows)] = true;
+        }
+
+        // in case user wants to keep all features with MS2 - eventhough they were flagged as isotopes
+        // this can be useful for complex datasets
+        // in general, when an MS2 is triggered we might want to retain this feauture in any case
+        if (keepAllMS2) {
+          for (final FeatureListRow isotopeWithMS2 : groupedRows) {
+            if (isotopeWithMS2.hasMs2Fragmentation()) {
+              finalRows.add(new GroupedRow(rank, isotopeWithMS2));
+            }
+          }
+        }
+
+        // Update completion rate
+        processedRows.addAndGet(groupedRows.size());
+      }
+      return finalRows;
+    }
+
+    private int rowsIndexOf(FeatureListRow row, IntArrayList candidates) {
+      for (int i = 0; i < candidates.size(); i++) {
+        if (rows.get(candidates.getInt(i)) == row) {
+          return candidates.getInt(i);
+        }
+      }
+      throw new IllegalStateException("Row is not part of the isotope pattern");
+    }
+
+    /**
+     * Fits isotope pattern around one peak.
+     *
+     * @param fittedRows all matching rows will be added to this list
+     * @param main       Pattern is fitted around this row
+     * @param charge     Charge state of the fitted pattern
+     */
+    private void fitPattern(IntArrayList fittedRows, int main, int charge) {
+      // Search for peaks before the start peak
+      if (!monotonicShape) {
+        fitHalfPattern(main, charge, -1, fittedRows);
+      }
+
+      // Search for peaks after the start peak
+      fitHalfPattern(main, charge, 1, fittedRows);
+    }
+
+    /**
+     * Helper method for fitPattern. Fits only one half of the pattern. The scan starts at the first
+     * remaining row after the main row in both directions, just like the list based implementation
+     * did. If the main row is the highest remaining m/z of its region, only the search toward higher
+     * m/z is empty, the search toward lower m/z starts at the last row of the region.
+     *
+     * @param main       Pattern is fitted around this row
+     * @param charge     Charge state of the fitted pattern
+     * @param direction  Defines which half to fit: -1=fit to peaks before start M/Z, +1=fit to peaks
+     *                   after start M/Z
+     * @param fittedRows All matching peaks will be added to this list
+     */
+    private void fitHalfPattern(int main, int charge, int direction, IntArrayList fittedRows) {
+      final double mainMZ = mzs[main];
+      final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mainMZ);
+      final int startRowIndex = nextRemaining(main + 1);
+      if (direction > 0 && startRowIndex >= rows.size()) {
+        // there is no remaining row after the main row
+        return;
+      }
+
+      // Variable n is the number of peak we are currently searching. 1=first
+      // peak before/after start peak, 2=peak before/after previous, 3=...
+      int n = 1;
+      while (true) {
+        final double expectedDistance = isotopeDistance * n / charge;
+        final int before = fittedRows.size();
+        if (direction > 0) {
+          final double lowerMz = mainMZ + expectedDistance - absoluteMzTolerance;
+          int ind = Math.max(startRowIndex, firstIndexOfKey(lowerMz - WINDOW_MARGIN - maxKeyShift));
+          for (; ind < rows.size(); ind++) {
+            if (removed[ind]) {
+              continue;
+            }
+            if (checkCandidate(main, ind, charge, direction, n, absoluteMzTolerance, fittedRows)) {
+              break;
+            }
+          }
+        } else {
+          final double upperMz = mainMZ - expectedDistance + absoluteMzTolerance;
+          int ind = Math.min(startRowIndex, lastIndexOfKey(upperMz + WINDOW_MARGIN + maxKeyShift));
+          for (; ind >= 0; ind--) {
+            if (removed[ind]) {
+              continue;
+            }
+            if (checkCandidate(main, ind, charge, direction, n, absoluteMzTolerance, fittedRows)) {
+              break;
+            }
+          }
+        }
+
+        // Add all good candidates to the isotope pattern (note: in MZmine
+        // 2.3 and older, only the highest candidate was added)
+        if (fittedRows.size() == before) {
+          return;
+        }
+        // n:th peak was found, so let's move on to n+1
+        n++;
+      }
+    }
+
+    /**
+     * Adds the candidate to the fitted rows if it matches the n:th isotope
+     *
+     * @return true if the scan passed the maximum allowed m/z
+     */
+    private boolean checkCandidate(int main, int candidate, int charge, int direction, int n,
+        double absoluteMzTolerance, IntArrayList fittedRows) {
+      double isotopeMZ = mzs[candidate] - isotopeDistance * direction * n / charge;
+      double deltaMZ = isotopeMZ - mzs[main];
+
+      // break the loop if deltaMZ reaches out of the maximum allowed mz tolerance (one sided check)
+      if (deltaMZ * direction > absoluteMzTolerance) {
+        return true;
+      }
+
+      // check if in range
+      if (Math.abs(deltaMZ) <= absoluteMzTolerance && matchesMain(main, candidate)) {
+        fittedRows.add(candidate);
+      }
+      return false;
+    }
+
+    /**
+     * RT and mobility check against the main row, cached for all charge states of the same probe
+     */
+    private boolean matchesMain(int main, int candidate) {
+      if (probeStamp[candidate] == main + 1) {
+        return probeMatch[candidate];
+      }
+      final float mainMobility = mobilities[main];
+      final boolean match = rtTolerance.checkWithinTolerance(rts[candidate], rts[main]) && (
+          mobilityTolerance == null || Float.isNaN(mainMobility) || Float.isNaN(
+              mobilities[candidate]) || mobilityTolerance.checkWithinTolerance(mainMobility,
+              mobilities[candidate]));
+      probeStamp[candidate] = main + 1;
+      probeMatch[candidate] = match;
+      return match;
+    }
+
+    /**
+     * @return the first index at or after index that was not removed, or the size
+     */
+    private int nextRemaining(int index) {
+      int next = index;
+      while (next < removed.length && removed[next]) {
+        next = skip[next];
+      }
+      // compress the path of removed rows
+      while (index < next) {
+        final int following = skip[index];
+        skip[index] = next;
+        index = following;
+      }
+      return next;
+    }
+
+    private int firstIndexOfKey(double value) {
+      int low = 0;
+      int high = mzKeys.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (mzKeys[mid] < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private int lastIndexOfKey(double value) {
+      int low = 0;
+      int high = mzKeys.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (mzKeys[mid] <= value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+  }
+}
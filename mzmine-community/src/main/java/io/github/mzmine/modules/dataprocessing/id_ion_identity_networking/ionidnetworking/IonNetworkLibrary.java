@@ -61,6 +61,8 @@ public class IonNetworkLibrary {
   private final IonModification[] selectedAdducts;
   private final IonModification[] selectedMods;
   private List<IonType> allAdducts = new ArrayList<>();
+  // [adduct][adduct2] combinations that pass all row independent checks
+  private boolean[][] validPairs;
   private final boolean isPositive;
   private final int maxCharge;
   private final int maxMolecules;
@@ -128,12 +130,42 @@ public class IonNetworkLibrary {
     }
 
     addModification();
+    createValidPairs();
     // print them out
     for (IonType a : allAdducts) {
       LOG.finest("Adding modification: " + a.toString());
     }
   }
 
+  /**
+   * Precompute all combinations of ion types that are independent of the actual rows
+   */
+  private void createValidPairs() {
+    final int n = allAdducts.size();
+    validPairs = new boolean[n][n];
+    for (int i = 0; i < n; i++) {
+      final IonType adduct = allAdducts.get(i);
+      for (int k = 0; k < n; k++) {
+        final IonType adduct2 = allAdducts.get(k);
+        // do not check if MOL = MOL and MOL>1
+        // only one can be modified
+        validPairs[i][k] = !adduct.equals(adduct2) && checkMolCount(adduct, adduct2) //
+                           && checkMaxMod(adduct, adduct2) //
+                           && checkMultiChargeDifference(adduct, adduct2) //
+                           && checkSameAdducts(adduct, adduct2);
+      }
+    }
+  }
+
+  /**
+   * @param adductIndex  index in {@link #getAllAdducts()} of the ion type of the first row
+   * @param adduct2Index index in {@link #getAllAdducts()} of the ion type of the second row
+   * @return true if the combination passes all checks that do not depend on the rows
+   */
+  public boolean isValidPair(int adductIndex, int adduct2Index) {
+    return validPairs[adductIndex][adduct2Index];
+  }
+
   /**
    * Does find all possible adduct combinations
    */
@@ -158,47 +190,57 @@ public class IonNetworkLibrary {
     z2 = Math.abs(z2);
     List<IonIdentity[]> list = new ArrayList<>();
     // check all combinations of adducts
-    for (IonType adduct : allAdducts) {
-      for (IonType adduct2 : allAdducts) {
-        if (adduct.equals(adduct2)) {
-          continue;
-        }
-
-        // do not check if MOL = MOL and MOL>1
-        // only one can be modified
-        // check charge state if absCharge is not -1 or 0 (no charge detected)
-        if (checkMolCount(adduct, adduct2) //
-            && checkMaxMod(adduct, adduct2) //
-            && checkChargeStates(adduct, adduct2, z1, z2) //
-            && checkMultiChargeDifference(adduct, adduct2) //
-            && checkSameAdducts(adduct, adduct2)) {
-          // checks each raw file - only true if all m/z are in range
-          if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
-            // is a2 a modification of a1? (same adducts - different mods
-            if (adduct2.isModificationOf(adduct)) {
-              IonType mod = adduct2.subtractMods(adduct);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
-            } else if (adduct.isModificationOf(adduct2)) {
-              IonType mod = adduct.subtractMods(adduct2);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
-            } else {
-              // Add adduct identity and notify GUI.
-              // only if not already present
-              list.add(
-                  IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
-            }
-          }
-        }
+    for (int i = 0; i < allAdducts.size(); i++) {
+      for (int k = 0; k < allAdducts.size(); k++) {
+        findAdducts(featureList, row1, row2, z1, z2, i, k, mode, minHeight, list);
       }
     }
     // no adduct to be found
     return list;
   }
 
+  /**
+   * Checks a single combination of ion types between row1 and row2 and adds the identities to the
+   * rows and the list if they match
+   *
+   * @param z1           -1 or 0 if not set (charge state always positive)
+   * @param z2           -1 or 0 if not set (charge state always positive)
+   * @param adductIndex  index in {@link #getAllAdducts()} of the ion type of row1
+   * @param adduct2Index index in {@link #getAllAdducts()} of the ion type of row2
+   * @param list         matches are added as [row1, row2]
+   * @return true if the ion types match
+   */
+  public boolean findAdducts(final FeatureList featureList, final FeatureListRow row1,
+      final FeatureListRow row2, int z1, int z2, int adductIndex, int adduct2Index,
+      final CheckMode mode, final double minHeight, final List<IonIdentity[]> list) {
+    // check charge state if absCharge is not -1 or 0 (no charge detected)
+    final IonType adduct = allAdducts.get(adductIndex);
+    final IonType adduct2 = allAdducts.get(adduct2Index);
+    if (!validPairs[adductIndex][adduct2Index] || !checkChargeStates(adduct, adduct2,
+        Math.abs(z1), Math.abs(z2))) {
+      return false;
+    }
+    // checks each raw file - only true if all m/z are in range
+    if (!checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
+      return false;
+    }
+    // is a2 a modification of a1? (same adducts - different mods
+    if (adduct2.isModificationOf(adduct)) {
+      IonType mod = adduct2.subtractMods(adduct);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
+      list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
+    } else if (adduct.isModificationOf(adduct2)) {
+      IonType mod = adduct.subtractMods(adduct2);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
+      list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
+    } else {
+      // Add adduct identity and notify GUI.
+      // only if not already present
+      list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
+    }
+    return true;
+  }
+
 
   /**
    * Searches for an IonType for row that matches in network
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.RowGroup;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Neutral mass index of all rows in a group for all ion types of an {@link IonNetworkLibrary}.
+ * Each row and ion type is stored as the neutral mass range over the average m/z (or the feature
+ * m/z values for the per feature check modes). Two rows can only match as a combination of ion
+ * types if their neutral mass ranges overlap within the m/z tolerance, so partners are found by a
+ * binary search on the sorted masses instead of checking all row pairs against all ion type
+ * combinations. The candidates are only a pre-selection and are checked by
+ * {@link IonNetworkLibrary#findAdducts(FeatureList, FeatureListRow, FeatureListRow, int, int, int,
+ * int, CheckMode, double, List)}.
+ */
+class IonNetworkMassIndex {
+
+  private final int numRows;
+  private final int numIons;
+  // sorted by lower mass
+  private final double[] lower;
+  private final double[] upper;
+  private final int[] rows;
+  private final int[] ions;
+  // absolute tolerance that covers the largest mass in this group
+  private final double tolerance;
+
+  IonNetworkMassIndex(@NotNull FeatureList featureList, @NotNull RowGroup group,
+      @NotNull IonNetworkLibrary library, @NotNull CheckMode mode, double minHeight) {
+    final List<IonType> ionTypes = library.getAllAdducts();
+    numRows = group.size();
+    numIons = ionTypes.size();
+
+    // m/z range per row
+    final double[] minMz = new double[numRows];
+    final double[] maxMz = new double[numRows];
+    int entries = 0;
+    for (int r = 0; r < numRows; r++) {
+      if (findMzRange(featureList, group.get(r), mode, minHeight, minMz, maxMz, r)) {
+        entries += numIons;
+      }
+    }
+
+    final double[] lo = new double[entries];
+    final double[] hi = new double[entries];
+    final int[] rowIndex = new int[entries];
+    final int[] ionIndex = new int[entries];
+    double maxMass = 0;
+    int n = 0;
+    for (int r = 0; r < numRows; r++) {
+      if (Double.isNaN(minMz[r])) {
+        continue;
+      }
+      final int z = Math.abs(group.get(r).getRowCharge());
+      for (int t = 0; t < numIons; t++) {
+        final IonType ion = ionTypes.get(t);
+        // same as the charge state check of the library
+        if (z != 0 && ion.getAbsCharge() != z) {
+          continue;
+        }
+        // the neutral mass is monotonic in m/z
+        lo[n] = ion.getMass(minMz[r]);
+        hi[n] = ion.getMass(maxMz[r]);
+        maxMass = Math.max(maxMass, Math.max(Math.abs(lo[n]), Math.abs(hi[n])));
+        rowIndex[n] = r;
+        ionIndex[n] = t;
+        n++;
+      }
+    }
+
+    // sort all arrays by lower mass
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, (int a, int b) -> Double.compare(lo[a], lo[b]));
+    lower = new double[n];
+    upper = new double[n];
+    rows = new int[n];
+    ions = new int[n];
+    for (int i = 0; i < n; i++) {
+      lower[i] = lo[order[i]];
+      upper[i] = hi[order[i]];
+      rows[i] = rowIndex[order[i]];
+      ions[i] = ionIndex[order[i]];
+    }
+
+    // the ppm tolerance grows with mass, add some slack for rounding
+    final double absTolerance = library.getMzTolerance().getMzToleranceForMass(maxMass);
+    tolerance = absTolerance * (1 + 1e-9) + 1e-9;
+  }
+
+  /**
+   * @return false if the row cannot match in this mode, otherwise the range is set at index r
+   */
+  private static boolean findMzRange(FeatureList featureList, FeatureListRow row, CheckMode mode,
+      double minHeight, double[] minMz, double[] maxMz, int r) {
+    minMz[r] = Double.NaN;
+    maxMz[r] = Double.NaN;
+    if (mode == CheckMode.AVGERAGE) {
+      final Double mz = row.getAverageMZ();
+      if (mz == null) {
+        return false;
+      }
+      minMz[r] = mz;
+      maxMz[r] = mz;
+      return true;
+    }
+    // only features above the minimum height are compared
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (RawDataFile raw : featureList.getRawDataFiles()) {
+      final Feature f = row.getFeature(raw);
+      if (f != null && f.getHeight() >= minHeight) {
+        min = Math.min(min, f.getMZ());
+        max = Math.max(max, f.getMZ());
+      }
+    }
+    if (min > max) {
+      return false;
+    }
+    minMz[r] = min;
+    maxMz[r] = max;
+    return true;
+  }
+
+  /**
+   * All combinations of rows i<k and ion types that may match. Each candidate is encoded as
+   * ((i*numRows + k)*numIons + ionOfI)*numIons + ionOfK, so that the sorted result follows the
+   * iteration order of all row pairs and ion type combinations.
+   *
+   * @return sorted candidates, decode with {@link #getRowA(long)} etc.
+   */
+  long[] findCandidates(@NotNull RowGroup group, @NotNull IonNetworkLibrary library) {
+    final LongArrayList candidates = new LongArrayList();
+    for (int p = 0; p < lower.length; p++) {
+      // all following entries with a lower mass within the upper mass + tolerance overlap
+      final int end = upperBound(upper[p] + tolerance);
+      for (int q = p + 1; q < end; q++) {
+        if (rows[p] == rows[q]) {
+          continue;
+        }
+        final boolean pFirst = rows[p] < rows[q];
+        final int i = pFirst ? rows[p] : rows[q];
+        final int k = pFirst ? rows[q] : rows[p];
+        final int ionI = pFirst ? ions[p] : ions[q];
+        final int ionK = pFirst ? ions[q] : ions[p];
+        if (library.isValidPair(ionI, ionK) && group.isCorrelated(i, k)) {
+          candidates.add(((long) i * numRows + k) * numIons * numIons + (long) ionI * numIons
+                         + ionK);
+        }
+      }
+    }
+    final long[] sorted = candidates.toLongArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * @return first index with lower mass > mass
+   */
+  private int upperBound(double mass) {
+    int low = 0;
+    int high = lower.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (lower[mid] <= mass) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the row pair index i*numRows+k of a candidate
+   */
+  long getRowPair(long candidate) {
+    return candidate / ((long) numIons * numIons);
+  }
+
+  int getRowA(long candidate) {
+    return (int) (getRowPair(candidate) / numRows);
+  }
+
+  int getRowB(long candidate) {
+    return (int) (getRowPair(candidate) % numRows);
+  }
+
+  int getIonA(long candidate) {
+    return (int) (candidate / numIons % numIons);
+  }
+
+  int getIonB(long candidate) {
+    return (int) (candidate % numIons);
+  }
+}
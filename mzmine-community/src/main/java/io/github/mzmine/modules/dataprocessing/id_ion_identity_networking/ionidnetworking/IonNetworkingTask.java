@@ -28,6 +28,7 @@ package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionid
 import com.google.common.util.concurrent.AtomicDouble;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.correlation.RowGroup;
@@ -44,6 +45,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -165,28 +167,35 @@ public class IonNetworkingTask extends AbstractTask {
   }
 
   /**
-   * Annotates all rows in a group
+   * Annotates all rows in a group. Only row pairs and ion type combinations with overlapping neutral
+   * masses are checked.
    *
    * @param g
    * @param compared
    */
   private long annotateGroup(RowGroup g, AtomicInteger compared) {
+    final IonNetworkMassIndex index = new IonNetworkMassIndex(featureList, g, library,
+        adductCheckMode, minHeight);
+    final long[] candidates = index.findCandidates(g, library);
+
     long annotations = 0;
-    for (int i = 0; i < g.size() - 1; i++) {
-      // check against existing networks
-      for (int k = i + 1; k < g.size(); k++) {
-        // only if row i and k are correlated
-        if (g.isCorrelated(i, k)) {
-          compared.incrementAndGet();
-          // check for adducts in library
-          List<IonIdentity[]> id = library.findAdducts(featureList, g.get(i), g.get(k),
-              adductCheckMode, minHeight);
-          if (!id.isEmpty()) {
-            annotations++;
-          }
-        }
+    final List<IonIdentity[]> ids = new ArrayList<>();
+    // candidates are sorted by row pair
+    for (int c = 0; c < candidates.length; ) {
+      final long rowPair = index.getRowPair(candidates[c]);
+      final FeatureListRow a = g.get(index.getRowA(candidates[c]));
+      final FeatureListRow b = g.get(index.getRowB(candidates[c]));
+      compared.incrementAndGet();
+      ids.clear();
+      // check for adducts in library
+      for (; c < candidates.length && index.getRowPair(candidates[c]) == rowPair; c++) {
+        library.findAdducts(featureList, a, b, a.getRowCharge(), b.getRowCharge(),
+            index.getIonA(candidates[c]), index.getIonB(candidates[c]), adductCheckMode, minHeight,
+            ids);
+      }
+      if (!ids.isEmpty()) {
+        annotations++;
       }
-      // finished.incrementAndGet();
     }
     return annotations;
   }
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipidid.annotation_modules;
+
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.common.identification.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.common.identification.matched_levels.species_level.SpeciesLevelAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.common.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.common.lipids.ILipidClass;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.common.lipids.LipidIon;
+import io.github.mzmine.modules.dataprocessing.id_lipidid.utils.LipidFactory;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.files.FileCacheUtils;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * In-silico lipid database of precursor ions that is cached on disk and shared in memory between
+ * all tasks using the same lipid classes, chain and ionization settings (e.g., all feature lists of
+ * a batch step). The cache file is content addressed by these settings and stores m/z sorted
+ * primitive columns (m/z, lipid class, carbons, double bonds, species index, ionization), which are
+ * memory-mapped. {@link LipidIon}s are only created for m/z matches, so large multi class
+ * databases skip the generation of lipid annotations and formulas entirely.
+ */
+public class CachedLipidDatabase {
+
+  private static final Logger logger = Logger.getLogger(CachedLipidDatabase.class.getName());
+  private static final String CACHE_CATEGORY = "lipid_databases";
+  private static final String FORMAT = "mzlipdb";
+  private static final int MAGIC = 0x4D5A4C44;
+  // increment on every change of the layout or the database generation
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final LipidFactory LIPID_FACTORY = new LipidFactory();
+  private static final IonizationType[] IONIZATION_TYPES = IonizationType.values();
+
+  /**
+   * Shared between all tasks. The holders are created in the map, the databases are loaded or built
+   * outside of the map lock.
+   */
+  private static final Map<String, SharedDatabase> SHARED_DATABASES = new ConcurrentHashMap<>();
+
+  private final ILipidClass[] lipidClasses;
+  private final int size;
+  private final DoubleBuffer mzs;
+  private final IntBuffer classIndices;
+  private final IntBuffer carbons;
+  private final IntBuffer dbes;
+  private final IntBuffer speciesIndices;
+  private final IntBuffer ionizations;
+  // lazily created for matches. Species annotations are shared by all ions of the same species
+  private final Map<Integer, ILipidAnnotation> species = new ConcurrentHashMap<>();
+  private final Map<Integer, LipidIon> ions = new ConcurrentHashMap<>();
+
+  private CachedLipidDatabase(@NotNull ILipidClass[] lipidClasses, @NotNull File file)
+      throws IOException {
+    this.lipidClasses = lipidClasses;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      channel.read(header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("Not a lipid database of version " + VERSION);
+      }
+      size = header.getInt();
+      final long expectedSize =
+          HEADER_BYTES + (long) size * (Double.BYTES + 5 * Integer.BYTES);
+      if (channel.size() != expectedSize) {
+        throw new IOException("Lipid database is incomplete or corrupt");
+      }
+      // mappings stay valid after closing the channel
+      final ByteBuffer data = channel.map(MapMode.READ_ONLY, HEADER_BYTES,
+          expectedSize - HEADER_BYTES);
+      mzs = data.slice(0, size * Double.BYTES).asDoubleBuffer();
+      int offset = size * Double.BYTES;
+      classIndices = data.slice(offset, size * Integer.BYTES).asIntBuffer();
+      offset += size * Integer.BYTES;
+      carbons = data.slice(offset, size * Integer.BYTES).asIntBuffer();
+      offset += size * Integer.BYTES;
+      dbes = data.slice(offset, size * Integer.BYTES).asIntBuffer();
+      offset += size * Integer.BYTES;
+      speciesIndices = data.slice(offset, size * Integer.BYTES).asIntBuffer();
+      offset += size * Integer.BYTES;
+      ionizations = data.slice(offset, size * Integer.BYTES).asIntBuffer();
+    }
+  }
+
+  /**
+   * Loads the database from the shared memory cache, the disk cache or generates it with
+   * {@link LipidAnnotationUtils#buildLipidDatabase}. Concurrent calls with the same settings wait
+   * for the first one to finish.
+   */
+  public static @NotNull CachedLipidDatabase getOrCreate(ILipidClass[] selectedLipids,
+      int minChainLength, int maxChainLength, int minDoubleBonds, int maxDoubleBonds,
+      boolean onlySearchForEvenChains, @Nullable IonizationType[] ionizationTypesToIgnore,
+      Set<PolarityType> polarityTypes) throws IOException {
+    final String key = createKey(selectedLipids, minChainLength, maxChainLength, minDoubleBonds,
+        maxDoubleBonds, onlySearchForEvenChains, ionizationTypesToIgnore, polarityTypes);
+
+    final SharedDatabase shared = SHARED_DATABASES.computeIfAbsent(key, k -> new SharedDatabase());
+    return shared.get(
+        () -> loadOrBuild(key, selectedLipids, minChainLength, maxChainLength, minDoubleBonds,
+            maxDoubleBonds, onlySearchForEvenChains, ionizationTypesToIgnore, polarityTypes));
+  }
+
+  private static @NotNull CachedLipidDatabase loadOrBuild(String key,
+      ILipidClass[] selectedLipids, int minChainLength, int maxChainLength, int minDoubleBonds,
+      int maxDoubleBonds, boolean onlySearchForEvenChains,
+      @Nullable IonizationType[] ionizationTypesToIgnore, Set<PolarityType> polarityTypes)
+      throws IOException {
+    final File file = FileCacheUtils.getCacheFile(CACHE_CATEGORY, "lipids", key, FORMAT);
+    if (file.exists()) {
+      try {
+        logger.fine(() -> "Loading cached lipid database " + file.getAbsolutePath());
+        final CachedLipidDatabase database = new CachedLipidDatabase(selectedLipids, file);
+        FileCacheUtils.markUsed(file);
+        return database;
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot load cached lipid database, will regenerate", e);
+      }
+    }
+
+    logger.info(() -> "Generating lipid database and caching it in " + file.getAbsolutePath());
+    final List<LipidIon> lipidIons = LipidAnnotationUtils.buildLipidDatabase(selectedLipids,
+        minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains,
+        ionizationTypesToIgnore, polarityTypes);
+    write(file, selectedLipids, lipidIons);
+    return new CachedLipidDatabase(selectedLipids, file);
+  }
+
+  private static void write(File file, ILipidClass[] selectedLipids, List<LipidIon> lipidIons)
+      throws IOException {
+    final Map<ILipidClass, Integer> classIndexMap = new IdentityHashMap<>();
+    for (int i = 0; i < selectedLipids.length; i++) {
+      classIndexMap.put(selectedLipids[i], i);
+    }
+    // all ions of one species share the annotation instance
+    final Map<ILipidAnnotation, Integer> speciesIndexMap = new IdentityHashMap<>();
+    final List<Integer> speciesIndices = new ArrayList<>(lipidIons.size());
+    for (LipidIon ion : lipidIons) {
+      speciesIndices.add(
+          speciesIndexMap.computeIfAbsent(ion.lipidAnnotation(), a -> speciesIndexMap.size()));
+    }
+
+    // stable sort keeps the generation order for equal m/z
+    final Integer[] order = new Integer[lipidIons.size()];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, Comparator.comparingDouble(i -> lipidIons.get(i).mz()));
+
+    final File temp = FileCacheUtils.createTempCacheFile(file);
+    try (var out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(lipidIons.size());
+      out.writeInt(0); // reserved
+      for (int i : order) {
+        out.writeDouble(lipidIons.get(i).mz());
+      }
+      for (int i : order) {
+        out.writeInt(classIndexMap.get(lipidIons.get(i).lipidAnnotation().getLipidClass()));
+      }
+      for (int i : order) {
+        out.writeInt(((SpeciesLevelAnnotation) lipidIons.get(i).lipidAnnotation())
+            .getNumberOfCarbons());
+      }
+      for (int i : order) {
+        out.writeInt(
+            ((SpeciesLevelAnnotation) lipidIons.get(i).lipidAnnotation()).getNumberOfDBEs());
+      }
+      for (int i : order) {
+        out.writeInt(speciesIndices.get(i));
+      }
+      for (int i : order) {
+        out.writeInt(lipidIons.get(i).ionizationType().ordinal());
+      }
+    } catch (IOException e) {
+      temp.delete();
+      throw e;
+    }
+    FileCacheUtils.moveIntoPlace(temp, file);
+  }
+
+  /**
+   * @return key of all settings that change the generated database
+   */
+  private static String createKey(ILipidClass[] selectedLipids, int minChainLength,
+      int maxChainLength, int minDoubleBonds, int maxDoubleBonds,
+      boolean onlySearchForEvenChains, @Nullable IonizationType[] ionizationTypesToIgnore,
+      Set<PolarityType> polarityTypes) {
+    final List<String> classes = Arrays.stream(selectedLipids).map(
+        c -> String.join("|", c.getName(), c.getAbbr(), String.valueOf(c.getCoreClass()),
+            String.valueOf(c.getMainClass()), c.getBackBoneFormula(),
+            Arrays.toString(c.getChainTypes()), Arrays.toString(
+                Arrays.stream(c.getFragmentationRules())
+                    .map(LipidFragmentationRule::getIonizationType).toArray()))).toList();
+    final List<String> ignored = ionizationTypesToIgnore == null ? List.of()
+        : Arrays.stream(ionizationTypesToIgnore).map(Enum::name).sorted().toList();
+    final List<String> polarities = polarityTypes.stream().map(Enum::name).sorted().toList();
+    return FileCacheUtils.hashKey(VERSION, Arrays.toString(IONIZATION_TYPES), classes,
+        minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains,
+        ignored, polarities);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getMz(int index) {
+    return mzs.get(index);
+  }
+
+  /**
+   * @return indices of all lipid ions with lower <= mz <= upper
+   */
+  public @NotNull IndexRange indexRange(double lower, double upper) {
+    return BinarySearch.indexRange(lower, upper, size, mzs::get);
+  }
+
+  /**
+   * Creates the lipid ion on first access. Thread safe.
+   */
+  public @NotNull LipidIon getLipidIon(int index) {
+    return ions.computeIfAbsent(index, i -> {
+      final ILipidAnnotation lipid = species.computeIfAbsent(speciesIndices.get(i),
+          s -> LIPID_FACTORY.buildSpeciesLevelLipid(lipidClasses[classIndices.get(i)],
+              carbons.get(i), dbes.get(i), 0));
+      return new LipidIon(lipid, IONIZATION_TYPES[ionizations.get(i)], mzs.get(i));
+    });
+  }
+
+  private interface DatabaseLoader {
+
+    @NotNull CachedLipidDatabase load() throws IOException;
+  }
+
+  /**
+   * Holds one database per key. Concurrent calls with the same key wait on this holder, calls for
+   * other keys are not blocked. Soft reference so that the database can be collected after the
+   * batch step if memory is needed. A failed load is not cached and retried by the next call.
+   */
+  private static final class SharedDatabase {
+
+    private SoftReference<CachedLipidDatabase> reference = new SoftReference<>(null);
+
+    synchronized @NotNull CachedLipidDatabase get(@NotNull DatabaseLoader loader)
+        throws IOException {
+      CachedLipidDatabase db = reference.get();
+      if (db == null) {
+        db = loader.load();
+        reference = new SoftReference<>(db);
+      }
+      return db;
+    }
+  }
+}
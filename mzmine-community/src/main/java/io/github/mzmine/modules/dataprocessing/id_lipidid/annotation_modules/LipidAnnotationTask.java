@@ -44,14 +44,14 @@ import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.collections.BinarySearch;
-import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
+import io.github.mzmine.util.collections.IndexRange;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.collections.ObservableList;
 import org.jetbrains.annotations.NotNull;
@@ -183,34 +183,32 @@ public class LipidAnnotationTask extends AbstractTask {
     totalSteps = rows.size();
     Set<PolarityType> polarityTypes = getPolarityTypes();
 
-    // build lipid species database
-    List<LipidIon> lipidDatabase = LipidAnnotationUtils.buildLipidDatabase(selectedLipids,
-        minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains,
-        ionizationTypesToIgnore, polarityTypes);
-    List<LipidIon> sortedLipidDatabase = lipidDatabase.stream()
-        .sorted(Comparator.comparingDouble(LipidIon::mz)).toList();
+    // build lipid species database or reuse the cached version
+    final CachedLipidDatabase lipidDatabase;
+    try {
+      lipidDatabase = CachedLipidDatabase.getOrCreate(selectedLipids, minChainLength,
+          maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains,
+          ionizationTypesToIgnore, polarityTypes);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot create lipid database: " + e.getMessage(), e);
+      setErrorMessage("Cannot create lipid database: " + e.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
 
     rows.parallelStream().forEach(row -> {
       Range<Double> mzTolRange = mzTolerance.getToleranceRange(row.getAverageMZ());
-      double lowerEdge = mzTolRange.lowerEndpoint();
-      double upperEdge = mzTolRange.upperEndpoint();
-      int index = BinarySearch.binarySearch(lowerEdge, DefaultTo.GREATER_EQUALS,
-          sortedLipidDatabase.size(), i -> sortedLipidDatabase.get(i).mz());
-      if (index >= 0) {
-        for (int i = index; i < sortedLipidDatabase.size(); i++) {
-          if (isCanceled()) {
-            return;
-          }
-
-          LipidAnnotationUtils.findPossibleLipid(sortedLipidDatabase.get(i), row, parameters,
-              mzTolerance, mzToleranceMS2, searchForMSMSFragments, minMsMsScore,
-              keepUnconfirmedAnnotations,
-              sortedLipidDatabase.get(i).lipidAnnotation().getLipidClass().getCoreClass());
-
-          if (upperEdge < sortedLipidDatabase.get(i).mz()) {
-            break;
-          }
+      IndexRange candidates = lipidDatabase.indexRange(mzTolRange.lowerEndpoint(),
+          mzTolRange.upperEndpoint());
+      for (int i = candidates.min(); i < candidates.maxExclusive(); i++) {
+        if (isCanceled()) {
+          return;
         }
+
+        LipidIon lipidIon = lipidDatabase.getLipidIon(i);
+        LipidAnnotationUtils.findPossibleLipid(lipidIon, row, parameters, mzTolerance,
+            mzToleranceMS2, searchForMSMSFragments, minMsMsScore, keepUnconfirmedAnnotations,
+            lipidIon.lipidAnnotation().getLipidClass().getCoreClass());
       }
       finishedSteps++;
     });
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
+
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.files.FileCacheUtils;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compiled version of a local compound database. All ions (one per database line and adduct) are
+ * precomputed and stored as m/z sorted primitive columns in a memory-mapped binary file. The
+ * original csv lines are kept in a separate string dictionary section and are only decoded for
+ * matches. The file is created once by {@link Builder} and reused by all later runs with the same
+ * database and settings.
+ * <p>
+ * Layout: header (magic, version, lines, ions, dictionary offset) | ion columns: m/z (double), rt,
+ * mobility, ccs (float, NaN if undefined), line index, ion type index (int, -1 if no ion library)
+ * | line offsets (long, lines+1) | dictionary records.
+ */
+class CompiledLocalDatabase implements AutoCloseable {
+
+  public static final String CACHE_CATEGORY = "compiled_databases";
+  public static final String FORMAT = "mzcdb";
+
+  private static final Logger logger = Logger.getLogger(CompiledLocalDatabase.class.getName());
+  private static final int MAGIC = 0x4D5A4344;
+  // increment on every change of the layout
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+
+  private final FileChannel channel;
+  private final int numLines;
+  private final int numIons;
+  private final DoubleBuffer mzs;
+  private final FloatBuffer rts;
+  private final FloatBuffer mobilities;
+  private final FloatBuffer ccs;
+  private final IntBuffer lineIndices;
+  private final IntBuffer ionTypeIndices;
+  private final LongBuffer lineOffsets;
+
+  private CompiledLocalDatabase(final FileChannel channel) throws IOException {
+    this.channel = channel;
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    channel.read(header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+      throw new IOException("Not a compiled database of version " + VERSION);
+    }
+    numLines = header.getInt();
+    numIons = header.getInt();
+    final long dictionaryOffset = header.getLong();
+
+    long offset = HEADER_BYTES;
+    mzs = map(offset, (long) numIons * Double.BYTES).asDoubleBuffer();
+    offset += (long) numIons * Double.BYTES;
+    rts = map(offset, (long) numIons * Float.BYTES).asFloatBuffer();
+    offset += (long) numIons * Float.BYTES;
+    mobilities = map(offset, (long) numIons * Float.BYTES).asFloatBuffer();
+    offset += (long) numIons * Float.BYTES;
+    ccs = map(offset, (long) numIons * Float.BYTES).asFloatBuffer();
+    offset += (long) numIons * Float.BYTES;
+    lineIndices = map(offset, (long) numIons * Integer.BYTES).asIntBuffer();
+    offset += (long) numIons * Integer.BYTES;
+    ionTypeIndices = map(offset, (long) numIons * Integer.BYTES).asIntBuffer();
+    offset += (long) numIons * Integer.BYTES;
+    lineOffsets = map(offset, (long) (numLines + 1) * Long.BYTES).asLongBuffer();
+    offset += (long) (numLines + 1) * Long.BYTES;
+
+    if (offset != dictionaryOffset || channel.size() != lineOffsets.get(numLines)) {
+      throw new IOException("Compiled database is incomplete or corrupt");
+    }
+  }
+
+  /**
+   * @return the compiled database or null if the file does not exist or is invalid
+   */
+  @Nullable
+  public static CompiledLocalDatabase open(@NotNull File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      return new CompiledLocalDatabase(channel);
+    } catch (IOException e) {
+      logger.log(Level.WARNING,
+          "Cannot open compiled database %s, will recompile".formatted(file.getAbsolutePath()), e);
+      closeQuietly(channel);
+      return null;
+    }
+  }
+
+  private static void closeQuietly(@Nullable FileChannel channel) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  private ByteBuffer map(long offset, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Compiled database column exceeds the maximum size of a mapped buffer");
+    }
+    return channel.map(MapMode.READ_ONLY, offset, size);
+  }
+
+  /**
+   * @return number of csv lines including the header line
+   */
+  public int getNumLines() {
+    return numLines;
+  }
+
+  public int getNumIons() {
+    return numIons;
+  }
+
+  /**
+   * @return indices of all ions with lower <= mz <= upper
+   */
+  public @NotNull IndexRange indexRange(double lower, double upper) {
+    return BinarySearch.indexRange(lower, upper, numIons, mzs::get);
+  }
+
+  public double getMz(int ion) {
+    return mzs.get(ion);
+  }
+
+  /**
+   * @return the retention time or NaN if undefined
+   */
+  public float getRt(int ion) {
+    return rts.get(ion);
+  }
+
+  /**
+   * @return the mobility or NaN if undefined
+   */
+  public float getMobility(int ion) {
+    return mobilities.get(ion);
+  }
+
+  /**
+   * @return the CCS or NaN if undefined
+   */
+  public float getCCS(int ion) {
+    return ccs.get(ion);
+  }
+
+  /**
+   * @return index of the csv line, 0 is the header
+   */
+  public int getLineIndex(int ion) {
+    return lineIndices.get(ion);
+  }
+
+  /**
+   * @return index of the ion type in the ion library or -1 if the line was used without ionization
+   */
+  public int getIonTypeIndex(int ion) {
+    return ionTypeIndices.get(ion);
+  }
+
+  /**
+   * Decodes one line from the string dictionary. Thread safe.
+   *
+   * @param line the line index, 0 is the header
+   * @return the csv values
+   */
+  public @NotNull String[] readLine(int line) {
+    final long start = lineOffsets.get(line);
+    final int length = (int) (lineOffsets.get(line + 1) - start);
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of compiled database");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffer.flip();
+
+    final String[] values = new String[buffer.getInt()];
+    for (int i = 0; i < values.length; i++) {
+      final int bytes = buffer.getInt();
+      if (bytes < 0) {
+        continue;
+      }
+      values[i] = new String(buffer.array(), buffer.position(), bytes, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + bytes);
+    }
+    return values;
+  }
+
+  @Override
+  public void close() {
+    closeQuietly(channel);
+  }
+
+  /**
+   * Streams csv lines and their ions into a new compiled database. Lines are written to a temporary
+   * dictionary file right away, ions are collected as primitives, sorted by m/z and written on
+   * {@link #build()}.
+   */
+  static final class Builder implements AutoCloseable {
+
+    private final File target;
+    private final File dictionaryFile;
+    private final DataOutputStream dictionary;
+    private final LongArrayList lineOffsets = new LongArrayList();
+    private final DoubleArrayList mzs = new DoubleArrayList();
+    private final FloatArrayList rts = new FloatArrayList();
+    private final FloatArrayList mobilities = new FloatArrayList();
+    private final FloatArrayList ccs = new FloatArrayList();
+    private final IntArrayList lineIndices = new IntArrayList();
+    private final IntArrayList ionTypeIndices = new IntArrayList();
+    private long dictionaryBytes = 0;
+
+    Builder(@NotNull File target) throws IOException {
+      this.target = target;
+      dictionaryFile = FileCacheUtils.createTempCacheFile(target);
+      dictionary = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(dictionaryFile), 1 << 16));
+    }
+
+    /**
+     * @param values csv values of the next line. The first line is the header.
+     * @return the line index
+     */
+    int addLine(@NotNull String[] values) throws IOException {
+      lineOffsets.add(dictionaryBytes);
+      dictionary.writeInt(values.length);
+      dictionaryBytes += Integer.BYTES;
+      for (String value : values) {
+        if (value == null) {
+          dictionary.writeInt(-1);
+          dictionaryBytes += Integer.BYTES;
+          continue;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dictionary.writeInt(bytes.length);
+        dictionary.write(bytes);
+        dictionaryBytes += Integer.BYTES + bytes.length;
+      }
+      return lineOffsets.size() - 1;
+    }
+
+    /**
+     * @param line          index returned by {@link #addLine(String[])}
+     * @param ionTypeIndex  index in the ion library or -1
+     * @param rt            retention time or null
+     * @param mobility      mobility or null
+     * @param ccsValue      ccs or null
+     */
+    void addIon(int line, int ionTypeIndex, double mz, @Nullable Float rt,
+        @Nullable Float mobility, @Nullable Float ccsValue) {
+      mzs.add(mz);
+      rts.add(rt == null ? Float.NaN : rt);
+      mobilities.add(mobility == null ? Float.NaN : mobility);
+      ccs.add(ccsValue == null ? Float.NaN : ccsValue);
+      lineIndices.add(line);
+      ionTypeIndices.add(ionTypeIndex);
+    }
+
+    /**
+     * Sorts all ions by m/z, writes the final file and opens it.
+     */
+    @NotNull CompiledLocalDatabase build() throws IOException {
+      dictionary.close();
+
+      final int numIons = mzs.size();
+      final int numLines = lineOffsets.size();
+      // sort by mz and keep the insertion order (line, ion type) for equal m/z
+      final int[] order = new int[numIons];
+      for (int i = 0; i < numIons; i++) {
+        order[i] = i;
+      }
+      IntArrays.parallelQuickSort(order, (int a, int b) -> {
+        final int compare = Double.compare(mzs.getDouble(a), mzs.getDouble(b));
+        return compare != 0 ? compare : Integer.compare(a, b);
+      });
+
+      final long dictionaryOffset =
+          HEADER_BYTES + (long) numIons * (Double.BYTES + 3 * Float.BYTES + 2 * Integer.BYTES)
+              + (long) (numLines + 1) * Long.BYTES;
+
+      final File temp = FileCacheUtils.createTempCacheFile(target);
+      try (var out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(numLines);
+        out.writeInt(numIons);
+        out.writeLong(dictionaryOffset);
+        out.writeLong(0); // reserved
+
+        for (int i : order) {
+          out.writeDouble(mzs.getDouble(i));
+        }
+        for (int i : order) {
+          out.writeFloat(rts.getFloat(i));
+        }
+        for (int i : order) {
+          out.writeFloat(mobilities.getFloat(i));
+        }
+        for (int i : order) {
+          out.writeFloat(ccs.getFloat(i));
+        }
+        for (int i : order) {
+          out.writeInt(lineIndices.getInt(i));
+        }
+        for (int i : order) {
+          out.writeInt(ionTypeIndices.getInt(i));
+        }
+        for (int i = 0; i < numLines; i++) {
+          out.writeLong(dictionaryOffset + lineOffsets.getLong(i));
+        }
+        out.writeLong(dictionaryOffset + dictionaryBytes);
+
+        Files.copy(dictionaryFile.toPath(), out);
+      } catch (IOException e) {
+        Files.deleteIfExists(temp.toPath());
+        throw e;
+      } finally {
+        Files.deleteIfExists(dictionaryFile.toPath());
+      }
+
+      FileCacheUtils.moveIntoPlace(temp, target);
+      final CompiledLocalDatabase db = open(target);
+      if (db == null) {
+        throw new IOException("Cannot open compiled database " + target.getAbsolutePath());
+      }
+      return db;
+    }
+
+    @Override
+    public void close() throws IOException {
+      dictionary.close();
+      Files.deleteIfExists(dictionaryFile.toPath());
+    }
+  }
+}
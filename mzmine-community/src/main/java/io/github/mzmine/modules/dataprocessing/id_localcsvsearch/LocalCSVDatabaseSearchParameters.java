@@ -42,6 +42,7 @@ import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.IonMobilitySupport;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ImportType;
 import io.github.mzmine.parameters.parametertypes.ImportTypeParameter;
 import io.github.mzmine.parameters.parametertypes.OptionalParameter;
@@ -99,6 +100,11 @@ public class LocalCSVDatabaseSearchParameters extends SimpleParameterSet {
       "Use isotope matcher",
       "Matches predicted and detected isotope pattern. Make sure to run isotope finder before on the feature list.",
       (IsotopePatternMatcherParameters) new IsotopePatternMatcherParameters().cloneParameterSet());
+  public static final BooleanParameter compiledDatabase = new BooleanParameter(
+      "Use compiled database",
+      "Converts the database once into a binary table of precomputed ion m/z values (stored in the"
+      + " mzmine user directory). Later runs and batches with the same database file, columns and"
+      + " adducts reuse this table, which is much faster for large databases.", true);
   private static final List<ImportType> importTypes = List.of(
       new ImportType(true, "neutral_mass", new NeutralMassType()),
       new ImportType(true, "mz", new PrecursorMZType()), //
@@ -121,7 +127,7 @@ public class LocalCSVDatabaseSearchParameters extends SimpleParameterSet {
     super(
         new Parameter[]{peakLists, dataBaseFile, fieldSeparator, columns, mzTolerance, rtTolerance,
             mobTolerance, ccsTolerance, isotopePatternMatcher, ionLibrary, filterSamples,
-            commentFields},
+            commentFields, compiledDatabase},
         "https://mzmine.github.io/mzmine_documentation/module_docs/id_prec_local_cmpd_db/local-cmpd-db-search.html");
   }
 
@@ -166,4 +172,9 @@ public class LocalCSVDatabaseSearchParameters extends SimpleParameterSet {
   public @NotNull IonMobilitySupport getIonMobilitySupport() {
     return IonMobilitySupport.SUPPORTED;
   }
+
+  @Override
+  public int getVersion() {
+    return 2;
+  }
 }
@@ -26,9 +26,11 @@
 package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
 
 import com.google.common.collect.Range;
+import com.opencsv.exceptions.CsvException;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.FeatureListRowIndex;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotation;
 import io.github.mzmine.datamodel.features.compoundannotations.DatabaseMatchInfo;
@@ -49,6 +51,7 @@ import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
 import io.github.mzmine.datamodel.features.types.numbers.NeutralMassType;
 import io.github.mzmine.datamodel.features.types.numbers.PrecursorMZType;
 import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
 import io.github.mzmine.datamodel.identities.iontype.IonTypeParser;
 import io.github.mzmine.gui.DesktopService;
 import io.github.mzmine.javafx.concurrent.threading.FxThread;
@@ -64,9 +67,13 @@ import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.M
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.CSVParsingUtils;
-import io.github.mzmine.util.FeatureListRowSorter;
-import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.files.FileCacheUtils;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,13 +81,14 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.collections.transformation.SortedList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -132,10 +140,13 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   private final Boolean filterSamples;
   private final String sampleHeader;
   private final List<RawDataFile> allRawDataFiles;
+  private final boolean useCompiledDatabase;
+  private final AtomicLong finishedItems = new AtomicLong(0);
   private IonNetworkLibrary ionNetworkLibrary;
 
-  private List<String[]> databaseValues;
-  private int finishedLines = 0;
+  private long totalItems = 0;
+  private List<ImportType> lineIds;
+  private List<ImportType> commentFields;
   private int sampleColIndex = -1;
 
   LocalCSVDatabaseSearchTask(FeatureList[] featureLists, ParameterSet parameters,
@@ -167,6 +178,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
         .flatMap(Collection::stream).distinct().toList();
     sampleHeader = parameters.getParameter(LocalCSVDatabaseSearchParameters.filterSamples)
         .getEmbeddedParameter().getValue();
+    useCompiledDatabase = parameters.getValue(LocalCSVDatabaseSearchParameters.compiledDatabase);
 
     final boolean isotopePatternMatcher = parameters.getValue(
         LocalCSVDatabaseSearchParameters.isotopePatternMatcher);
@@ -196,10 +208,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    if (databaseValues == null) {
+    if (totalItems == 0) {
       return 0;
     }
-    return ((double) finishedLines) / databaseValues.size();
+    return ((double) finishedItems.get()) / totalItems;
   }
 
   @Override
@@ -211,76 +223,19 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   public void run() {
     setStatus(TaskStatus.PROCESSING);
 
-    try {
-      // read database contents in memory
-      databaseValues = CSVParsingUtils.readData(dataBaseFile, fieldSeparator);
-    } catch (Exception e) {
-      logger.log(Level.WARNING, "Could not read file " + dataBaseFile, e);
-      setStatus(TaskStatus.ERROR);
-      setErrorMessage(e.getMessage());
-      return;
-    }
-
     try {
       ionNetworkLibrary =
           ionLibraryParameterSet != null ? new IonNetworkLibrary(ionLibraryParameterSet,
               mzTolerance) : null;
 
-      final StringProperty error = new SimpleStringProperty();
-      final List<ImportType> lineIds = CSVParsingUtils.findLineIds(importTypes,
-          databaseValues.getFirst(), error);
-      if (lineIds == null) {
-        setErrorMessage(error.get());
-        DesktopService.getDesktop().displayErrorMessage(error.get());
-        setStatus(TaskStatus.ERROR);
-        return;
-      }
-
-      // option to read more fields and append to comment as json
-      List<ImportType> commentFields = extractCommentFields();
-      if (commentFields == null) {
-        setStatus(TaskStatus.ERROR);
+      final boolean success =
+          useCompiledDatabase ? searchCompiledDatabase() : searchCsvDatabase();
+      if (!success || isCanceled()) {
         return;
       }
 
-      // sample header index
-      if (filterSamples) {
-        sampleColIndex = getHeaderColumnIndex(databaseValues.getFirst(), sampleHeader);
-        if (sampleColIndex == -1) {
-          setErrorMessage("Sample header " + sampleHeader + " not found");
-          setStatus(TaskStatus.ERROR);
-          return;
-        }
-      }
-
-      // extract rows and sort by mz for binary search
-      var mzSortedRows = Arrays.stream(featureLists)
-          .map(flist -> flist.getRows().sorted(FeatureListRowSorter.MZ_ASCENDING)).toList();
-
-      for (String[] currentLine : databaseValues) {
-        if (finishedLines == 0) {
-          finishedLines++;
-          continue; // skip header
-        }
-        if (isCanceled()) {
-          return;
-        }
-        try {
-          // check already once for all raw data files
-          if (filterSamples && !matchSample(allRawDataFiles, currentLine[sampleColIndex])) {
-            // sample mismatch for this line
-            continue;
-          }
-
-          processOneLine(mzSortedRows, currentLine, lineIds, commentFields);
-        } catch (Exception e) {
-          logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
-        }
-        finishedLines++;
-      }
-
-      for (final SortedList<FeatureListRow> flist : mzSortedRows) {
-        for (final FeatureListRow row : flist) {
+      for (final FeatureList flist : featureLists) {
+        for (final FeatureListRow row : flist.getRows()) {
           var matches = row.getCompoundAnnotations().stream().sorted()
               .collect(Collectors.toCollection(ArrayList::new));
           if (matches.isEmpty()) {
@@ -314,6 +269,282 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
   }
 
+  /**
+   * Reads the whole csv into memory and searches every line against the m/z sorted rows.
+   *
+   * @return true on success, false on error or if canceled
+   */
+  private boolean searchCsvDatabase() {
+    final List<String[]> databaseValues;
+    try {
+      // read database contents in memory
+      databaseValues = CSVParsingUtils.readData(dataBaseFile, fieldSeparator);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Could not read file " + dataBaseFile, e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage(e.getMessage());
+      return false;
+    }
+    totalItems = databaseValues.size();
+
+    if (!initColumns(databaseValues.getFirst())) {
+      return false;
+    }
+
+    // index of rows by mz for binary search
+    var rowIndices = Arrays.stream(featureLists).map(FeatureList::getRowIndex).toList();
+
+    for (int line = 1; line < databaseValues.size(); line++) {
+      final String[] currentLine = databaseValues.get(line);
+      if (isCanceled()) {
+        return false;
+      }
+      try {
+        // check already once for all raw data files
+        if (filterSamples && !matchSample(allRawDataFiles, currentLine[sampleColIndex])) {
+          // sample mismatch for this line
+          continue;
+        }
+
+        processOneLine(rowIndices, currentLine, lineIds, commentFields);
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Exception while processing csv line " + line, e);
+      }
+      finishedItems.incrementAndGet();
+    }
+    return true;
+  }
+
+  /**
+   * Searches all rows against the compiled database, which is created on the first run and reused
+   * afterward.
+   *
+   * @return true on success, false on error or if canceled
+   */
+  private boolean searchCompiledDatabase() throws IOException, CsvException {
+    final File compiledFile = FileCacheUtils.getCacheFile(CompiledLocalDatabase.CACHE_CATEGORY,
+        dataBaseFile.getName(), createCompiledDatabaseKey(), CompiledLocalDatabase.FORMAT);
+
+    try (CompiledLocalDatabase db = openOrCompileDatabase(compiledFile)) {
+      if (db == null || !initColumns(db.readLine(0))) {
+        return false;
+      }
+
+      finishedItems.set(0);
+      totalItems = Arrays.stream(featureLists).mapToLong(FeatureList::getNumberOfRows).sum();
+      // annotations are created lazily for matched ions and shared between rows and feature lists
+      final Map<Integer, CompiledMatch> matches = new ConcurrentHashMap<>();
+
+      for (FeatureList flist : featureLists) {
+        final List<RawDataFile> raws = flist.getRawDataFiles();
+        flist.getRows().parallelStream().forEach(row -> {
+          if (isCanceled()) {
+            return;
+          }
+          searchRowInCompiledDatabase(db, row, raws, matches);
+          finishedItems.incrementAndGet();
+        });
+      }
+    }
+    return !isCanceled();
+  }
+
+  /**
+   * @return the key of the compiled database. Includes everything that changes the ion table.
+   * Comment fields and sample filters are applied during the search and are not part of the key.
+   */
+  private String createCompiledDatabaseKey() {
+    final List<String> columns = importTypes.stream().filter(ImportType::isSelected)
+        .map(type -> type.getCsvColumnName() + ":" + type.getDataType().getUniqueID()).toList();
+    final Object adducts = ionNetworkLibrary == null ? "no adducts"
+        : ionNetworkLibrary.getAllAdducts().stream().map(adduct -> adduct.toString(true))
+            .toList();
+    return FileCacheUtils.hashKey(FileCacheUtils.fileIdentity(dataBaseFile), fieldSeparator,
+        columns, adducts);
+  }
+
+  /**
+   * @return the compiled database or null on error or if canceled
+   */
+  @Nullable
+  private CompiledLocalDatabase openOrCompileDatabase(final File compiledFile)
+      throws IOException, CsvException {
+    final CompiledLocalDatabase existing = CompiledLocalDatabase.open(compiledFile);
+    if (existing != null) {
+      logger.info(() -> "Using compiled database " + compiledFile.getAbsolutePath());
+      FileCacheUtils.markUsed(compiledFile);
+      return existing;
+    }
+
+    logger.info(() -> "Compiling database %s to %s".formatted(dataBaseFile.getAbsolutePath(),
+        compiledFile.getAbsolutePath()));
+    totalItems = FileAndPathUtil.countLines(dataBaseFile);
+    try (var builder = new CompiledLocalDatabase.Builder(compiledFile)) {
+      CSVParsingUtils.streamData(dataBaseFile, fieldSeparator, values -> {
+        if (isCanceled()) {
+          return false;
+        }
+        finishedItems.incrementAndGet();
+        try {
+          final int line = builder.addLine(values);
+          if (line == 0) {
+            // header
+            return initColumns(values);
+          }
+          compileLine(builder, line, values);
+          return true;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+        return null;
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * Adds all ions of one csv line. Same ionization as
+   * {@link CompoundDBAnnotation#buildCompoundsWithAdducts(CompoundDBAnnotation,
+   * IonNetworkLibrary)} but keeps the adduct index.
+   */
+  private void compileLine(final CompiledLocalDatabase.Builder builder, final int line,
+      final String[] values) {
+    try {
+      final CompoundDBAnnotation base = getCompoundFromLine(values, lineIds, commentFields);
+      if (ionNetworkLibrary == null) {
+        addCompiledIon(builder, line, -1, base);
+        return;
+      }
+      final List<IonType> adducts = ionNetworkLibrary.getAllAdducts();
+      for (int i = 0; i < adducts.size(); i++) {
+        final IonType adduct = adducts.get(i);
+        if (!CompoundDBAnnotation.isDefinedAdduct(adduct)) {
+          continue;
+        }
+        try {
+          addCompiledIon(builder, line, i, base.ionize(adduct));
+        } catch (IllegalStateException e) {
+          // do not log the full stack trace as this is expected in many cases
+          logger.log(Level.WARNING, e.getMessage());
+        }
+      }
+    } catch (Exception e) {
+      logger.log(Level.FINE, "Exception while compiling csv line " + line, e);
+    }
+  }
+
+  private void addCompiledIon(final CompiledLocalDatabase.Builder builder, final int line,
+      final int ionTypeIndex, final CompoundDBAnnotation annotation) {
+    final Double mz = annotation.getPrecursorMZ();
+    if (mz == null) {
+      return;
+    }
+    builder.addIon(line, ionTypeIndex, mz, annotation.getRT(), annotation.getMobility(),
+        annotation.getCCS());
+  }
+
+  private void searchRowInCompiledDatabase(final CompiledLocalDatabase db,
+      final FeatureListRow row, final List<RawDataFile> raws,
+      final Map<Integer, CompiledMatch> matches) {
+    final double mz = row.getAverageMZ();
+    final Float rt = row.getAverageRT();
+    final Float mobility = row.getAverageMobility();
+    // ppm tolerances are applied to the database m/z
+    final Range<Double> window = mzTolerance.getReferenceRange(mz);
+    final IndexRange ions = db.indexRange(window.lowerEndpoint(), window.upperEndpoint());
+    if (ions.isEmpty()) {
+      return;
+    }
+
+    // same filters as the csv search: mz, and rt and mobility if defined
+    final IntArrayList hits = new IntArrayList();
+    for (int ion = ions.min(); ion < ions.maxExclusive(); ion++) {
+      if (!mzTolerance.checkWithinTolerance(db.getMz(ion), mz)) {
+        continue;
+      }
+      final float ionRt = db.getRt(ion);
+      if (rtTolerance != null && rt != null && !Float.isNaN(ionRt)
+          && !rtTolerance.checkWithinTolerance(ionRt, rt)) {
+        continue;
+      }
+      final float ionMobility = db.getMobility(ion);
+      if (mobTolerance != null && mobility != null && !Float.isNaN(ionMobility)
+          && !mobTolerance.checkWithinTolerance(ionMobility, mobility)) {
+        continue;
+      }
+      hits.add(ion);
+    }
+
+    // keep the csv order of annotations: by line and then by adduct
+    hits.sort((int a, int b) -> {
+      final int compare = Integer.compare(db.getLineIndex(a), db.getLineIndex(b));
+      return compare != 0 ? compare
+          : Integer.compare(db.getIonTypeIndex(a), db.getIonTypeIndex(b));
+    });
+
+    for (int i = 0; i < hits.size(); i++) {
+      final CompiledMatch match = matches.computeIfAbsent(hits.getInt(i),
+          ion -> createCompiledMatch(db, ion));
+      if (match == null || (filterSamples && !matchSample(raws, match.sample()))) {
+        continue;
+      }
+      checkMatchAndAnnotate(match.annotation(), row, mzTolerance, rtTolerance, mobTolerance,
+          ccsTolerance);
+    }
+  }
+
+  @Nullable
+  private CompiledMatch createCompiledMatch(final CompiledLocalDatabase db, final int ion) {
+    final int line = db.getLineIndex(ion);
+    try {
+      final String[] values = db.readLine(line);
+      final CompoundDBAnnotation base = getCompoundFromLine(values, lineIds, commentFields);
+      final int ionTypeIndex = db.getIonTypeIndex(ion);
+      final CompoundDBAnnotation annotation = ionTypeIndex < 0 ? base
+          : base.ionize(ionNetworkLibrary.getAllAdducts().get(ionTypeIndex));
+      return new CompiledMatch(annotation, filterSamples ? values[sampleColIndex] : null);
+    } catch (Exception e) {
+      logger.log(Level.FINE, "Exception while processing csv line " + line, e);
+      return null;
+    }
+  }
+
+  /**
+   * Finds the columns in the header line
+   *
+   * @return true on success, false on error. Sets the error status and message
+   */
+  private boolean initColumns(final String[] header) {
+    final StringProperty error = new SimpleStringProperty();
+    lineIds = CSVParsingUtils.findLineIds(importTypes, header, error);
+    if (lineIds == null) {
+      setErrorMessage(error.get());
+      DesktopService.getDesktop().displayErrorMessage(error.get());
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+
+    // option to read more fields and append to comment as json
+    commentFields = extractCommentFields(header);
+    if (commentFields == null) {
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+
+    // sample header index
+    if (filterSamples) {
+      sampleColIndex = getHeaderColumnIndex(header, sampleHeader);
+      if (sampleColIndex == -1) {
+        setErrorMessage("Sample header " + sampleHeader + " not found");
+        setStatus(TaskStatus.ERROR);
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void refineAnnotationsByIsotopes(FeatureList flist) {
     DatabaseIsotopeRefinerScanBased.refineAnnotationsByIsotopesDifferentResolutions(flist.getRows(),
         isotopeMzTolerance, minRelativeIsotopeIntensity, minIsotopeScore);
@@ -324,7 +555,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
    * extra comments were selected. Null on error.
    */
   @Nullable
-  private List<ImportType> extractCommentFields() {
+  private List<ImportType> extractCommentFields(final String[] header) {
     List<ImportType> commentFields = new ArrayList<>();
     final String appendComments = parameters.getValue(
         LocalCSVDatabaseSearchParameters.commentFields);
@@ -334,8 +565,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
           .map(s -> new ImportType(true, s, type)).toList();
       if (!commentFields.isEmpty()) {
         final SimpleStringProperty error = new SimpleStringProperty();
-        commentFields = CSVParsingUtils.findLineIds(commentFields, databaseValues.getFirst(),
-            error);
+        commentFields = CSVParsingUtils.findLineIds(commentFields, header, error);
         if (commentFields == null) {
           setErrorMessage(error.get());
         }
@@ -350,13 +580,13 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   }
 
   /**
-   * @param mzSortedRows     rows per feature list sorted by mz
+   * @param rowIndices       row index per feature list
    * @param values           csv values to be parsed into annotation
    * @param linesWithIndices columns
    * @param commentFields    comment fields that are put together into the comment
    */
   @SuppressWarnings("ResultOfMethodCallIgnored")
-  private void processOneLine(final List<SortedList<FeatureListRow>> mzSortedRows,
+  private void processOneLine(final List<FeatureListRowIndex> rowIndices,
       @NotNull String[] values, @NotNull List<ImportType> linesWithIndices,
       @NotNull final List<ImportType> commentFields) {
 
@@ -372,10 +602,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       var rawFiles = featureLists[i].getRawDataFiles();
       //  if active, check sample name contains id - this time for the feature list
       if (!filterSamples || matchSample(rawFiles, values[sampleColIndex])) {
-        var sortedRows = mzSortedRows.get(i);
+        var rowIndex = rowIndices.get(i);
 
         for (CompoundDBAnnotation annotation : annotations) {
-          List<FeatureListRow> candidates = binarySearchCandidates(sortedRows, annotation);
+          List<FeatureListRow> candidates = binarySearchCandidates(rowIndex, annotation);
 
           for (FeatureListRow row : candidates) {
             checkMatchAndAnnotate(annotation, row, mzTolerance, rtTolerance, mobTolerance,
@@ -387,7 +617,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   }
 
   @NotNull
-  private List<FeatureListRow> binarySearchCandidates(final SortedList<FeatureListRow> mzSortedRows,
+  private List<FeatureListRow> binarySearchCandidates(final FeatureListRowIndex rowIndex,
       final CompoundDBAnnotation annotation) {
     // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
     Double mz = annotation.getPrecursorMZ();
@@ -403,8 +633,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
     // get all canditates with binary search
     // CCS is still missing here but will be tested later
-    return FeatureListUtils.getCandidatesWithinRanges(mzRange, rtRange, mobilityRange, mzSortedRows,
-        true);
+    return rowIndex.getCandidates(mzRange, rtRange, mobilityRange);
   }
 
   @NotNull
@@ -513,4 +742,13 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       r.run();
     }
   }
+
+  /**
+   * A lazily created annotation of one ion in the compiled database
+   *
+   * @param sample the sample name for sample filtering or null if not active
+   */
+  private record CompiledMatch(@NotNull CompoundDBAnnotation annotation, @Nullable String sample) {
+
+  }
 }
@@ -25,8 +25,10 @@
 
 package io.github.mzmine.modules.dataprocessing.id_precursordbsearch;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.FeatureListRowIndex;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
@@ -169,27 +171,31 @@ class PrecursorDBSearchTask extends AbstractTask {
       public void processNextEntries(List<SpectralLibraryEntry> list, int alreadyProcessed) {
 
         AbstractTask task = new AbstractTask(null, Instant.now()) {
-          private final int total = peakList.getNumberOfRows();
+          private final int total = list.size();
           private int done = 0;
 
           @Override
           public void run() {
-            for (FeatureListRow row : peakList.getRows()) {
+            // shared index of the feature list to find rows by mz
+            final FeatureListRowIndex rowIndex = peakList.getRowIndex();
+            for (SpectralLibraryEntry db : list) {
               if (this.isCanceled()) {
                 break;
               }
-              for (SpectralLibraryEntry db : list) {
-                if (this.isCanceled()) {
-                  break;
-                }
-
-                if (checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null)) && checkMZ(row,
-                    db.getPrecursorMZ())) {
-                  // add identity
-                  row.addFeatureIdentity(
-                      new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME),
-                      false);
-                  matches.getAndIncrement();
+              final Double precursorMZ = db.getPrecursorMZ();
+              if (precursorMZ != null) {
+                // the tolerance is applied to the row mz - search a wider range first
+                final Range<Double> mzRange = mzTol.getToleranceRange(
+                    mzTol.getToleranceRange(precursorMZ));
+                for (FeatureListRow row : rowIndex.getCandidates(mzRange, Range.all())) {
+                  if (checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null))
+                      && checkMZ(row, precursorMZ)) {
+                    // add identity
+                    row.addFeatureIdentity(
+                        new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME),
+                        false);
+                    matches.getAndIncrement();
+                  }
                 }
               }
               done++;
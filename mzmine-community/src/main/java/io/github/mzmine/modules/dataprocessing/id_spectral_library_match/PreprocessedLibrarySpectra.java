@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoperParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Library spectra after the preprocessing that does not depend on the query spectrum
+ * (deisotoping, precursor removal). Spectra are preprocessed once on first access and are shared
+ * between all rows, tasks and batch steps that use the same library and the same
+ * {@link Settings}. The cache is bound to the lifetime of the library and is released under memory
+ * pressure.
+ */
+public final class PreprocessedLibrarySpectra {
+
+  // only the preprocessed spectra are cached as they do not reference the library
+  private static final Map<SpectralLibrary, Map<Settings, SoftReference<AtomicReferenceArray<DataPoint[]>>>> CACHE = new WeakHashMap<>();
+
+  private final SpectralLibrary library;
+  private final AtomicReferenceArray<DataPoint[]> spectra;
+  private final Function<SpectralLibraryEntry, DataPoint[]> preprocessor;
+
+  private PreprocessedLibrarySpectra(SpectralLibrary library,
+      AtomicReferenceArray<DataPoint[]> spectra,
+      Function<SpectralLibraryEntry, DataPoint[]> preprocessor) {
+    this.library = library;
+    this.spectra = spectra;
+    this.preprocessor = preprocessor;
+  }
+
+  /**
+   * @param library      the library
+   * @param settings     describes the preprocessing. Equal settings need to create the same
+   *                     preprocessed spectra
+   * @param preprocessor applies the preprocessing to a library entry
+   * @return the preprocessed spectra of the library, shared with all previous calls of the same
+   * library and settings
+   */
+  public static PreprocessedLibrarySpectra of(@NotNull SpectralLibrary library,
+      @NotNull Settings settings,
+      @NotNull Function<SpectralLibraryEntry, DataPoint[]> preprocessor) {
+    final int size = library.getNumEntries();
+    synchronized (CACHE) {
+      final var cachedSettings = CACHE.computeIfAbsent(library, lib -> new HashMap<>());
+      final var reference = cachedSettings.get(settings);
+      AtomicReferenceArray<DataPoint[]> spectra = reference == null ? null : reference.get();
+      // entries may have been added to the library
+      if (spectra == null || spectra.length() != size) {
+        spectra = new AtomicReferenceArray<>(size);
+        cachedSettings.put(settings, new SoftReference<>(spectra));
+      }
+      return new PreprocessedLibrarySpectra(library, spectra, preprocessor);
+    }
+  }
+
+  public SpectralLibrary getLibrary() {
+    return library;
+  }
+
+  public int size() {
+    return spectra.length();
+  }
+
+  public SpectralLibraryEntry getEntry(int index) {
+    return library.getEntries().get(index);
+  }
+
+  /**
+   * @return the preprocessed data points of the entry at index. Preprocessed on first access
+   */
+  public DataPoint[] getDataPoints(int index) {
+    DataPoint[] dps = spectra.get(index);
+    if (dps == null) {
+      // concurrent calls create the same result
+      dps = preprocessor.apply(getEntry(index));
+      spectra.set(index, dps);
+    }
+    return dps;
+  }
+
+  /**
+   * All values that change the preprocessed library spectra
+   *
+   * @param deisotopeMzTolerance null if deisotoping is off
+   * @param removePrecursor      remove the signals around the library precursor m/z
+   */
+  public record Settings(@Nullable MZTolerance deisotopeMzTolerance,
+                         boolean deisotopeMonotonicShape, int deisotopeMaximumCharge,
+                         boolean removePrecursor) {
+
+    /**
+     * @param deisotopeParam null if deisotoping is off
+     */
+    public static Settings create(@Nullable ParameterSet deisotopeParam,
+        boolean removePrecursor) {
+      if (deisotopeParam == null) {
+        return new Settings(null, false, 0, removePrecursor);
+      }
+      return new Settings(deisotopeParam.getValue(MassListDeisotoperParameters.mzTolerance),
+          deisotopeParam.getValue(MassListDeisotoperParameters.monotonicShape),
+          deisotopeParam.getValue(MassListDeisotoperParameters.maximumCharge), removePrecursor);
+    }
+  }
+}
@@ -37,6 +37,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.dataprocessing.id_ccscalc.CCSUtils;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.PreprocessedLibrarySpectra.Settings;
 import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.SpectralLibrarySearchParameters.ScanMatchingSelection;
 import io.github.mzmine.modules.dataprocessing.id_spectral_match_sort.SortSpectralMatchesTask;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoper;
@@ -289,28 +290,30 @@ public class RowsSpectralMatchTask extends AbstractTask {
   @Override
   public void run() {
 
-    // combine libraries
-    List<SpectralLibraryEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
-    }
+    // combine libraries - the row independent preprocessing is shared with other tasks
+    final Settings settings = Settings.create(removeIsotopes ? deisotopeParam : null,
+        isRemovePrecursorFromLibrary());
+    final List<PreprocessedLibrarySpectra> entries = libraries.stream()
+        .map(lib -> PreprocessedLibrarySpectra.of(lib, settings, this::preprocessLibrarySpectrum))
+        .toList();
+    final int numEntries = entries.stream().mapToInt(PreprocessedLibrarySpectra::size).sum();
 
     // run on spectra
     if (scan != null) {
       logger.info(
-          () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
+          () -> String.format("Comparing %d library spectra to scan: %s", numEntries, scan));
 
       matchScan(entries, scan);
 
       logger.info(
           () -> String.format("library matches=%d (Errors:%d); library entries=%d; for scan: %s",
-              getCount(), getErrorCount(), entries.size(), scan));
+              getCount(), getErrorCount(), numEntries, scan));
     }
 
     // run in parallel
     if (rows != null) {
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
-          entries.size(), totalRows));
+          numEntries, totalRows));
       // cannot use parallel.forEach with side effects - this thread will continue without waiting for
       // stream to finish
       var totalMatches = rows.stream().filter(FeatureListRow::hasMs2Fragmentation).parallel()
@@ -324,17 +327,17 @@ public class RowsSpectralMatchTask extends AbstractTask {
           }).sum();
       logger.info("Total spectral library matches " + totalMatches);
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
-          getCount(), getErrorCount(), totalRows, entries.size()));
+          getCount(), getErrorCount(), totalRows, numEntries));
     }
   }
 
   /**
    * Match row against all entries, add matches, sort them by score
    *
-   * @param entries combined library entries
+   * @param entries preprocessed library entries
    * @param scan    target scan
    */
-  public void matchScan(List<SpectralLibraryEntry> entries, Scan scan) {
+  public void matchScan(List<PreprocessedLibrarySpectra> entries, Scan scan) {
     try {
       // get mass list and perform deisotoping if active
       DataPoint[] masses = getDataPoints(scan, scan.getPrecursorMz());
@@ -342,17 +345,20 @@ public class RowsSpectralMatchTask extends AbstractTask {
       // get a ccs for the precursor of this scan
       final Float precursorCCS = getPrecursorCCSFromMsMs(scan);
 
-      for (var entry : entries) {
-        float rt = scan.getRetentionTime();
-        final SpectralSimilarity sim = matchSpectrum(rt, scanPrecursorMZ,
-            precursorCCS, masses, entry);
-        if (sim != null) {
-          Float ccsError = PercentTolerance.getPercentError(entry.getOrElse(DBEntryField.CCS, null),
-              precursorCCS);
-
-          matches.incrementAndGet();
-          addIdentities(null,
-              List.of(new SpectralDBAnnotation(entry, sim, scan, ccsError, scanPrecursorMZ, rt)));
+      for (var library : entries) {
+        for (int i = 0; i < library.size(); i++) {
+          final SpectralLibraryEntry entry = library.getEntry(i);
+          float rt = scan.getRetentionTime();
+          final SpectralSimilarity sim = matchSpectrum(rt, scanPrecursorMZ, precursorCCS, masses,
+              library, i);
+          if (sim != null) {
+            Float ccsError = PercentTolerance.getPercentError(
+                entry.getOrElse(DBEntryField.CCS, null), precursorCCS);
+
+            matches.incrementAndGet();
+            addIdentities(null,
+                List.of(new SpectralDBAnnotation(entry, sim, scan, ccsError, scanPrecursorMZ, rt)));
+          }
         }
       }
     } catch (MissingMassListException e) {
@@ -397,10 +403,10 @@ public class RowsSpectralMatchTask extends AbstractTask {
   /**
    * Match row against all entries, add matches, sort them by score
    *
-   * @param entries combined library entries
+   * @param entries preprocessed library entries
    * @param row     target row
    */
-  public int matchRowToLibraries(List<SpectralLibraryEntry> entries, FeatureListRow row) {
+  public int matchRowToLibraries(List<PreprocessedLibrarySpectra> entries, FeatureListRow row) {
     try {
       // All MS2 or only best MS2 scan
       // best MS1 scan
@@ -420,40 +426,43 @@ public class RowsSpectralMatchTask extends AbstractTask {
       final Float rowCCS = row.getAverageCCS();
       List<SpectralDBAnnotation> ids = null;
       // match against all library entries
-      for (SpectralLibraryEntry ident : entries) {
-
-        final String entryPolarity = ident.getOrElse(DBEntryField.POLARITY, null);
-
-        final Float libCCS = ident.getOrElse(DBEntryField.CCS, null);
-        SpectralDBAnnotation best = null;
-        // match all scans against this ident to find best match
-        for (int i = 0; i < scans.size(); i++) {
-          final PolarityType scanPolarity = scans.get(i).getPolarity();
-          if (!weakPolarityCheck(entryPolarity, scanPolarity)) {
-            // check each ms2 scan individually, maybe we have grouped pos/neg rows in the future.
-            continue;
-          }
+      for (var library : entries) {
+        for (int e = 0; e < library.size(); e++) {
+          final SpectralLibraryEntry ident = library.getEntry(e);
+
+          final String entryPolarity = ident.getOrElse(DBEntryField.POLARITY, null);
+
+          final Float libCCS = ident.getOrElse(DBEntryField.CCS, null);
+          SpectralDBAnnotation best = null;
+          // match all scans against this ident to find best match
+          for (int i = 0; i < scans.size(); i++) {
+            final PolarityType scanPolarity = scans.get(i).getPolarity();
+            if (!weakPolarityCheck(entryPolarity, scanPolarity)) {
+              // check each ms2 scan individually, maybe we have grouped pos/neg rows in the future.
+              continue;
+            }
 
-          SpectralSimilarity sim = matchSpectrum(row.getAverageRT(), row.getAverageMZ(), rowCCS,
-              rowMassLists.get(i), ident);
-          if (sim != null && (!needsIsotopePattern || checkForIsotopePattern(sim,
-              mzToleranceSpectra, minMatchedIsoSignals)) && (best == null
-                                                             || best.getSimilarity().getScore()
-                                                                < sim.getScore())) {
+            SpectralSimilarity sim = matchSpectrum(row.getAverageRT(), row.getAverageMZ(), rowCCS,
+                rowMassLists.get(i), library, e);
+            if (sim != null && (!needsIsotopePattern || checkForIsotopePattern(sim,
+                mzToleranceSpectra, minMatchedIsoSignals)) && (best == null
+                                                               || best.getSimilarity().getScore()
+                                                                  < sim.getScore())) {
 
-            Float ccsRelativeError = PercentTolerance.getPercentError(rowCCS, libCCS);
+              Float ccsRelativeError = PercentTolerance.getPercentError(rowCCS, libCCS);
 
-            best = new SpectralDBAnnotation(ident, sim, scans.get(i), ccsRelativeError,
-                row.getAverageMZ(), row.getAverageRT());
+              best = new SpectralDBAnnotation(ident, sim, scans.get(i), ccsRelativeError,
+                  row.getAverageMZ(), row.getAverageRT());
+            }
           }
-        }
-        // has match?
-        if (best != null) {
-          if (ids == null) {
-            ids = new ArrayList<>();
+          // has match?
+          if (best != null) {
+            if (ids == null) {
+              ids = new ArrayList<>();
+            }
+            ids.add(best);
+            matches.getAndIncrement();
           }
-          ids.add(best);
-          matches.getAndIncrement();
         }
       }
 
@@ -478,47 +487,76 @@ public class RowsSpectralMatchTask extends AbstractTask {
     return MassListDeisotoper.filterIsotopes(a, deisotopeParam);
   }
 
+  /**
+   * The library spectra are preprocessed independent of the query. Only if the spectra are cropped
+   * to their overlap, the precursor is removed afterwards for each query.
+   *
+   * @return true if the library precursor signals are removed during preprocessing
+   */
+  private boolean isRemovePrecursorFromLibrary() {
+    return !msLevelFilter.isMs1Only() && removePrecursor && !cropSpectraToOverlap;
+  }
+
+  /**
+   * Applies all processing steps to a library spectrum that do not depend on the query spectrum
+   *
+   * @param ident library entry
+   * @return the preprocessed data points
+   */
+  private DataPoint[] preprocessLibrarySpectrum(SpectralLibraryEntry ident) {
+    DataPoint[] library = ident.getDataPoints();
+    if (removeIsotopes) {
+      library = removeIsotopes(library);
+    }
+
+    // remove precursor signals
+    if (isRemovePrecursorFromLibrary() && ident.getPrecursorMZ() != null) {
+      // precursor mz from library entry for signal filtering
+      library = removePrecursor(library, ident.getPrecursorMZ());
+    }
+    return library;
+  }
+
   /**
    * match row against library entry
    *
    * @param rowRT       retention time of query row
    * @param rowMZ       m/z of query row
    * @param rowMassList mass list (data points) for row
-   * @param ident       library entry
+   * @param library     preprocessed library
+   * @param index       index of the library entry
    * @return spectral similarity or null if no match
    */
   private SpectralSimilarity matchSpectrum(Float rowRT, double rowMZ, Float rowCCS,
-      DataPoint[] rowMassList, SpectralLibraryEntry ident) {
+      DataPoint[] rowMassList, PreprocessedLibrarySpectra library, int index) {
+    final SpectralLibraryEntry ident = library.getEntry(index);
     // retention time
     // MS level 1 or check precursorMZ
     if (checkRT(rowRT, ident) && (msLevelFilter.isMs1Only() || checkPrecursorMZ(rowMZ, ident))
         && checkCCS(rowCCS, ident)) {
-      DataPoint[] library = ident.getDataPoints();
-      if (removeIsotopes) {
-        library = removeIsotopes(library);
-      }
+      // deisotoped and without precursor signals (if not cropped)
+      // copy as the shared array is sorted in place during alignment
+      DataPoint[] libraryDps = library.getDataPoints(index).clone();
 
       // crop the spectra to their overlapping mz range
       // helpful when comparing spectra, acquired with different
       // fragmentation energy
       DataPoint[] query = rowMassList;
       if (cropSpectraToOverlap) {
-        DataPoint[][] cropped = ScanAlignment.cropToOverlap(mzToleranceSpectra, library, query,
+        DataPoint[][] cropped = ScanAlignment.cropToOverlap(mzToleranceSpectra, libraryDps, query,
             ident.getPrecursorMZ(), rowMZ);
-        library = cropped[0];
+        libraryDps = cropped[0];
         query = cropped[1];
-      }
 
-      // remove precursor signals
-      if (!msLevelFilter.isMs1Only() && removePrecursor && ident.getPrecursorMZ() != null) {
-        // precursor mz from library entry for signal filtering
-        double precursorMZ = ident.getPrecursorMZ();
-        // remove from both spectra
-        library = removePrecursor(library, precursorMZ);
+        // remove precursor signals after cropping
+        if (!msLevelFilter.isMs1Only() && removePrecursor && ident.getPrecursorMZ() != null) {
+          // precursor mz from library entry for signal filtering
+          libraryDps = removePrecursor(libraryDps, ident.getPrecursorMZ());
+        }
       }
 
       // check spectra similarity
-      return createSimilarity(library, query);
+      return createSimilarity(libraryDps, query);
     }
     return null;
   }
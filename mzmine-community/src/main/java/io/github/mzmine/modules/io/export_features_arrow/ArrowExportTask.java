@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_arrow;
+
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.RANGE_MAX;
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.RANGE_MIN;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.ProcessedItemsCounter;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.arrow.ArrowColumn;
+import io.github.mzmine.util.io.arrow.ArrowColumnType;
+import io.github.mzmine.util.io.arrow.ArrowIpcWriter;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Exports row types and feature types (one column per raw data file) as typed columns. Types
+ * without a typed representation, e.g., annotation lists, are skipped and remain available in the
+ * CSV export. Columns are extracted and encoded in parallel.
+ */
+public class ArrowExportTask extends AbstractTask implements ProcessedItemsCounter {
+
+  private static final Logger logger = Logger.getLogger(ArrowExportTask.class.getName());
+
+  private final ModularFeatureList[] featureLists;
+  private final File fileName;
+  private final FeatureListRowsFilter rowFilter;
+  private final boolean removeEmptyCols;
+  private final ParameterSet parameters;
+  private final AtomicInteger exportedRows = new AtomicInteger(0);
+  private final AtomicInteger processedColumns = new AtomicInteger(0);
+  private int totalColumns = 0;
+
+  public ArrowExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
+    super(null, moduleCallDate); // no new data stored -> null
+    featureLists = parameters.getValue(ArrowExportParameters.featureLists)
+        .getMatchingFeatureLists();
+    fileName = parameters.getValue(ArrowExportParameters.filename);
+    rowFilter = parameters.getValue(ArrowExportParameters.filter);
+    removeEmptyCols = parameters.getValue(ArrowExportParameters.omitEmptyColumns);
+    this.parameters = parameters;
+  }
+
+  @Override
+  public int getProcessedItems() {
+    return exportedRows.get();
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return totalColumns == 0 ? 0 : (double) processedColumns.get() / totalColumns;
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return "Exporting feature list(s) " + Arrays.toString(featureLists) + " to Arrow file(s)";
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    String plNamePattern = "{}";
+    boolean substitute = fileName.getPath().contains(plNamePattern);
+
+    if (!substitute && featureLists.length > 1) {
+      setErrorMessage("""
+          Cannot export multiple feature lists to the same Arrow file. Please use "{}" pattern in filename.\
+          This will be replaced with the feature list name to generate one file per feature list.
+          """);
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    for (ModularFeatureList featureList : featureLists) {
+      if (isCanceled()) {
+        return;
+      }
+
+      File curFile = fileName;
+      if (substitute) {
+        // Cleanup from illegal filename characters
+        String cleanPlName = featureList.getName().replaceAll("[^a-zA-Z0-9.-]", "_");
+        String newFilename = fileName.getPath()
+            .replaceAll(Pattern.quote(plNamePattern), cleanPlName);
+        curFile = new File(newFilename);
+      }
+      curFile = FileAndPathUtil.getRealFilePath(curFile, "arrow");
+
+      try {
+        exportFeatureList(featureList, curFile);
+      } catch (IOException e) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Could not write file " + curFile + ": " + e.getMessage());
+        logger.log(Level.WARNING, "Error writing Arrow file " + curFile.getAbsolutePath()
+                                  + " for feature list " + featureList.getName(), e);
+        return;
+      }
+
+      if (isCanceled()) {
+        return;
+      }
+      featureList.getAppliedMethods().add(
+          new SimpleFeatureListAppliedMethod(ArrowExportModule.class, parameters,
+              getModuleCallDate()));
+
+      if (!substitute) {
+        break;
+      }
+    }
+
+    if (getStatus() == TaskStatus.PROCESSING) {
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+
+  private void exportFeatureList(ModularFeatureList flist, File file) throws IOException {
+    final List<FeatureListRow> rows = flist.getRows().stream().filter(rowFilter::accept)
+        .sorted(FeatureListRowSorter.DEFAULT_ID).toList();
+
+    final List<ColumnDefinition> definitions = new ArrayList<>();
+    for (DataType<?> type : flist.getRowTypes()) {
+      addDefinitions(definitions, type, null);
+    }
+    for (RawDataFile raw : flist.getRawDataFiles()) {
+      for (DataType<?> type : flist.getFeatureTypes()) {
+        addDefinitions(definitions, type, raw);
+      }
+    }
+    totalColumns += definitions.size();
+
+    final List<ArrowColumn> columns = definitions.parallelStream().map(def -> {
+      if (isCanceled()) {
+        return null;
+      }
+      final ArrowColumn column = extractColumn(rows, def);
+      processedColumns.incrementAndGet();
+      return column;
+    }).filter(Objects::nonNull).toList();
+
+    if (isCanceled()) {
+      return;
+    }
+    ArrowIpcWriter.write(file.toPath(), columns);
+    exportedRows.addAndGet(rows.size());
+  }
+
+  private void addDefinitions(List<ColumnDefinition> definitions, DataType<?> type,
+      @Nullable RawDataFile raw) {
+    final ArrowColumnType columnType = FeatureListArrowColumns.getColumnType(type);
+    if (columnType == null) {
+      return;
+    }
+    final String rawName = raw == null ? null : raw.getName();
+    if (FeatureListArrowColumns.isRange(type)) {
+      definitions.add(new ColumnDefinition(
+          FeatureListArrowColumns.getColumnName(rawName, type, RANGE_MIN), columnType, type,
+          RANGE_MIN, raw));
+      definitions.add(new ColumnDefinition(
+          FeatureListArrowColumns.getColumnName(rawName, type, RANGE_MAX), columnType, type,
+          RANGE_MAX, raw));
+    } else {
+      definitions.add(
+          new ColumnDefinition(FeatureListArrowColumns.getColumnName(rawName, type, null),
+              columnType, type, null, raw));
+    }
+  }
+
+  /**
+   * @return the column or null if empty columns are removed and this column has no values
+   */
+  @Nullable
+  private ArrowColumn extractColumn(List<FeatureListRow> rows, ColumnDefinition def) {
+    final Object[] values = new Object[rows.size()];
+    boolean containsData = false;
+    for (int i = 0; i < values.length; i++) {
+      final FeatureListRow row = rows.get(i);
+      final ModularDataModel data =
+          def.raw() == null ? (ModularDataModel) row : (ModularDataModel) row.getFeature(def.raw());
+      if (data == null) {
+        continue;
+      }
+      values[i] = FeatureListArrowColumns.toColumnValue(data.get(def.type()), def.sub());
+      containsData |= values[i] != null;
+    }
+    if (removeEmptyCols && !containsData) {
+      return null;
+    }
+    return new ArrowColumn(def.name(), def.columnType(), values);
+  }
+
+  /**
+   * @param sub null or the range min / max
+   * @param raw null for row types
+   */
+  private record ColumnDefinition(String name, ArrowColumnType columnType, DataType<?> type,
+                                  @Nullable String sub, @Nullable RawDataFile raw) {
+
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_arrow;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.abstr.BooleanType;
+import io.github.mzmine.datamodel.features.types.abstr.StringType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.IntegerType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberRangeType;
+import io.github.mzmine.util.io.arrow.ArrowColumnType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps {@link DataType}s to typed Arrow columns. Column names follow the CSV export: row types use
+ * the unique ID, feature types are prefixed with datafile:raw file name:, and ranges are split into
+ * :min and :max columns.
+ */
+public final class FeatureListArrowColumns {
+
+  public static final String DATAFILE_PREFIX = "datafile";
+  public static final String SEPARATOR = ":";
+  public static final String RANGE_MIN = "min";
+  public static final String RANGE_MAX = "max";
+
+  private FeatureListArrowColumns() {
+  }
+
+  /**
+   * @return the column type or null if the type cannot be exported as a typed column
+   */
+  @Nullable
+  public static ArrowColumnType getColumnType(@NotNull DataType<?> type) {
+    if (type instanceof IntegerType) {
+      return ArrowColumnType.INT32;
+    } else if (type instanceof FloatType || type instanceof FloatRangeType) {
+      return ArrowColumnType.FLOAT32;
+    } else if (type instanceof DoubleType || type instanceof DoubleRangeType) {
+      return ArrowColumnType.FLOAT64;
+    } else if (type instanceof StringType) {
+      return ArrowColumnType.UTF8;
+    } else if (type instanceof BooleanType) {
+      return ArrowColumnType.BOOL;
+    }
+    return null;
+  }
+
+  public static boolean isRange(@NotNull DataType<?> type) {
+    return type instanceof NumberRangeType<?>;
+  }
+
+  /**
+   * @param rawName null for row types
+   * @param sub     null or {@link #RANGE_MIN} / {@link #RANGE_MAX}
+   */
+  @NotNull
+  public static String getColumnName(@Nullable String rawName, @NotNull DataType<?> type,
+      @Nullable String sub) {
+    final String name = sub == null ? type.getUniqueID() : type.getUniqueID() + SEPARATOR + sub;
+    return rawName == null ? name : DATAFILE_PREFIX + SEPARATOR + rawName + SEPARATOR + name;
+  }
+
+  /**
+   * @param value the range of a range type or the value of any other type
+   * @param sub   null or {@link #RANGE_MIN} / {@link #RANGE_MAX}
+   * @return the column value
+   */
+  @Nullable
+  public static Object toColumnValue(@Nullable Object value, @Nullable String sub) {
+    if (value instanceof Range<?> range) {
+      return RANGE_MIN.equals(sub) ? range.lowerEndpoint() : range.upperEndpoint();
+    }
+    return value;
+  }
+
+  /**
+   * Converts a column value to the value class of the data type. Integer columns written by other
+   * tools may be 64 bit and floating point columns may have a different precision.
+   *
+   * @return the value or null
+   */
+  @Nullable
+  public static Object toTypeValue(@NotNull DataType<?> type, @Nullable Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (type instanceof IntegerType) {
+      return ((Number) value).intValue();
+    } else if (type instanceof FloatType || type instanceof FloatRangeType) {
+      return ((Number) value).floatValue();
+    } else if (type instanceof DoubleType || type instanceof DoubleRangeType) {
+      return ((Number) value).doubleValue();
+    } else if (type instanceof StringType) {
+      return value.toString();
+    }
+    return value;
+  }
+}
@@ -54,11 +54,13 @@ import io.github.mzmine.taskcontrol.ProcessedItemsCounter;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.FastDecimalFormat;
+import io.github.mzmine.util.io.OrderedParallelWriter;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
@@ -73,6 +75,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Exports all files needed for GNPS
@@ -97,10 +100,12 @@ public class GnpsFbmnMgfExportTask extends AbstractTask implements ProcessedItem
   private final OnlineReactionJsonWriter reactionJsonWriter;
   private int currentIndex = 0;
   // by robin
-  private NumberFormat mzForm = MZmineCore.getConfiguration().getMZFormat();
-  private NumberFormat intensityForm = MZmineCore.getConfiguration().getIntensityFormat();
+  private final FastDecimalFormat mzForm = new FastDecimalFormat(
+      MZmineCore.getConfiguration().getMZFormat());
+  private final FastDecimalFormat intensityForm = new FastDecimalFormat(
+      MZmineCore.getConfiguration().getIntensityFormat());
   // seconds
-  private NumberFormat rtsForm = new DecimalFormat("0.###");
+  private final FastDecimalFormat rtsForm = new FastDecimalFormat("0.###");
   // correlation
   private NumberFormat corrForm = new DecimalFormat("0.0000");
 
@@ -169,10 +174,9 @@ public class GnpsFbmnMgfExportTask extends AbstractTask implements ProcessedItem
       }
 
       // Open file
-      try (BufferedWriter writer = Files.newBufferedWriter(curFile.toPath(),
-          StandardCharsets.UTF_8)) {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(curFile.toPath()))) {
 
-        export(featureList, rows, writer);
+        export(featureList, rows, out);
       } catch (IOException e) {
         setStatus(TaskStatus.ERROR);
         setErrorMessage("Error during mgf export to " + curFile);
@@ -224,105 +228,115 @@ public class GnpsFbmnMgfExportTask extends AbstractTask implements ProcessedItem
     }
   }
 
-  private long export(FeatureList featureList, List<FeatureListRow> rows, BufferedWriter writer)
+  private long export(FeatureList featureList, List<FeatureListRow> rows, OutputStream out)
       throws IOException {
-    final String newLine = System.lineSeparator();
+    final AtomicInteger noMS2Counter = new AtomicInteger(0);
+    // rows are rendered in parallel and written in the original order
+    OrderedParallelWriter.write(out, rows, row -> createMgfEntry(row, noMS2Counter), this);
 
-    int noMS2Counter = 0;
-    // count exported
-    for (FeatureListRow row : rows) {
-      // do not export if no MSMS
-      if (!filter.accept(row)) {
-        continue;
-      }
+    if (exportedRows.get() == 0) {
+      logger.log(Level.WARNING, "No MS/MS scans exported.");
+    } else {
+      logger.info(
+          MessageFormat.format("Total of {0} feature rows (MS/MS mass lists) were exported ({1})",
+              exportedRows.get(), featureList.getName()));
+    }
+    if (noMS2Counter.get() > 0 && filter.requiresMS2()) {
+      logger.warning(
+          noMS2Counter.get() + " features had no MS/MS scan after already filtering for MS2");
+    }
 
-      // Get the MS/MS scan number
-      Scan msmsScan = row.getMostIntenseFragmentScan();
-      if (msmsScan == null) {
-        noMS2Counter++;
-        // with IIMN, filter also accepts feature without MS2
-        continue;
-      }
+    return exportedRows.get();
+  }
 
-      MassList massList = msmsScan.getMassList();
+  /**
+   * Thread safe creation of the mgf entry of a single row
+   *
+   * @return the mgf entry or null if the row is not exported
+   */
+  @Nullable
+  private String createMgfEntry(FeatureListRow row, AtomicInteger noMS2Counter) {
+    // do not export if no MSMS
+    if (!filter.accept(row)) {
+      return null;
+    }
 
-      if (massList == null) {
-        setErrorMessage("MS2 scan has no mass list. Run Mass detection on all scans");
-        setStatus(TaskStatus.ERROR);
-        throw new IllegalArgumentException(
-            "MS2 scan has no mass list. Run Mass detection on all scans");
-      }
+    // Get the MS/MS scan number
+    Scan msmsScan = row.getMostIntenseFragmentScan();
+    if (msmsScan == null) {
+      noMS2Counter.incrementAndGet();
+      // with IIMN, filter also accepts feature without MS2
+      return null;
+    }
 
-      String rowID = Integer.toString(row.getID());
-      final Float averageRT = row.getAverageRT();
-      double retTimeInSeconds = averageRT == null ? 0d : ((averageRT * 60 * 100.0) / 100.);
+    MassList massList = msmsScan.getMassList();
 
-      writer.append("BEGIN IONS").append(newLine);
-      writer.append("FEATURE_ID=").append(rowID).write(newLine);
+    if (massList == null) {
+      setErrorMessage("MS2 scan has no mass list. Run Mass detection on all scans");
+      setStatus(TaskStatus.ERROR);
+      throw new IllegalArgumentException(
+          "MS2 scan has no mass list. Run Mass detection on all scans");
+    }
 
-      final Double mz = row.getAverageMZ();
-      if (mz != null) {
-        writer.append("PEPMASS=").append(mzForm.format(mz)).write(newLine);
-      }
+    final String newLine = System.lineSeparator();
+    String rowID = Integer.toString(row.getID());
+    final Float averageRT = row.getAverageRT();
+    double retTimeInSeconds = averageRT == null ? 0d : ((averageRT * 60 * 100.0) / 100.);
 
-      writer.append("SCANS=").append(rowID).write(newLine);
-      writer.append("RTINSECONDS=").append(rtsForm.format(retTimeInSeconds)).write(newLine);
+    final StringBuilder b = new StringBuilder(4096);
+    b.append("BEGIN IONS").append(newLine);
+    b.append("FEATURE_ID=").append(rowID).append(newLine);
 
-      // write reactions if available
-      List<OnlineReactionMatch> reactions = row.getOnlineReactionMatches();
-      String reactionJson = reactionJsonWriter.createReactivityString(row, reactions);
-      if (reactionJson != null) {
-        writer.append(DBEntryField.ONLINE_REACTIVITY.getMgfID()).append("=").append(reactionJson)
-            .write(newLine);
-      }
+    final Double mz = row.getAverageMZ();
+    if (mz != null) {
+      mzForm.append(b.append("PEPMASS="), mz).append(newLine);
+    }
 
-      final int charge = FeatureUtils.extractBestAbsoluteChargeState(row, msmsScan);
-      final PolarityType pol = FeatureUtils.extractBestPolarity(row, msmsScan);
-      writer.write(STR."CHARGE=\{charge}\{pol.asSingleChar()}\{newLine}");
-
-      writer.append("MSLEVEL=2").write(newLine);
-
-      DataPoint[] dataPoints = null;
-      // merge MS/MS spectra
-      if (mergeMS2) {
-        try {
-          MergedSpectrum spectrum = merger.getBestMergedSpectrum(mergeParameters, row);
-          if (spectrum != null) {
-            dataPoints = spectrum.data;
-            writer.write("MERGED_STATS=");
-            writer.write(spectrum.getMergeStatsDescription());
-            writer.write(newLine);
-          }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error during MS2 merge in mgf export: " + ex.getMessage(), ex);
-        }
-      }
-      // nothing after merging or no merging active
-      if (dataPoints == null) {
-        dataPoints = massList.getDataPoints();
-      }
+    b.append("SCANS=").append(rowID).append(newLine);
+    rtsForm.append(b.append("RTINSECONDS="), retTimeInSeconds).append(newLine);
 
-      for (DataPoint feature : dataPoints) {
-        writer.append(mzForm.format(feature.getMZ())).append(" ")
-            .append(intensityForm.format(feature.getIntensity())).write(newLine);
-      }
-      //
-      writer.append("END IONS").append(newLine).write(newLine);
-      exportedRows.incrementAndGet();
+    // write reactions if available
+    List<OnlineReactionMatch> reactions = row.getOnlineReactionMatches();
+    String reactionJson = reactionJsonWriter.createReactivityString(row, reactions);
+    if (reactionJson != null) {
+      b.append(DBEntryField.ONLINE_REACTIVITY.getMgfID()).append("=").append(reactionJson)
+          .append(newLine);
     }
 
-    if (exportedRows.get() == 0) {
-      logger.log(Level.WARNING, "No MS/MS scans exported.");
-    } else {
-      logger.info(
-          MessageFormat.format("Total of {0} feature rows (MS/MS mass lists) were exported ({1})",
-              exportedRows.get(), featureList.getName()));
+    final int charge = FeatureUtils.extractBestAbsoluteChargeState(row, msmsScan);
+    final PolarityType pol = FeatureUtils.extractBestPolarity(row, msmsScan);
+    b.append(STR."CHARGE=\{charge}\{pol.asSingleChar()}\{newLine}");
+
+    b.append("MSLEVEL=2").append(newLine);
+
+    DataPoint[] dataPoints = null;
+    // merge MS/MS spectra
+    if (mergeMS2) {
+      try {
+        MergedSpectrum spectrum = merger.getBestMergedSpectrum(mergeParameters, row);
+        if (spectrum != null) {
+          dataPoints = spectrum.data;
+          b.append("MERGED_STATS=");
+          b.append(spectrum.getMergeStatsDescription());
+          b.append(newLine);
+        }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error during MS2 merge in mgf export: " + ex.getMessage(), ex);
+      }
     }
-    if (noMS2Counter > 0 && filter.requiresMS2()) {
-      logger.warning(noMS2Counter + " features had no MS/MS scan after already filtering for MS2");
+    // nothing after merging or no merging active
+    if (dataPoints == null) {
+      dataPoints = massList.getDataPoints();
     }
 
-    return exportedRows.get();
+    for (DataPoint feature : dataPoints) {
+      mzForm.append(b, feature.getMZ()).append(" ");
+      intensityForm.append(b, feature.getIntensity()).append(newLine);
+    }
+    //
+    b.append("END IONS").append(newLine).append(newLine);
+    exportedRows.incrementAndGet();
+    return b.toString();
   }
 
   @Override
@@ -61,13 +61,15 @@ import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.OrderedParallelWriter;
 import io.github.mzmine.util.scans.ScanUtils;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -183,11 +185,10 @@ public class SiriusExportTask extends AbstractTask {
       }
 
       // Open file
-      try (BufferedWriter writer = Files.newBufferedWriter(curFile.toPath(),
-          StandardCharsets.UTF_8)) {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(curFile.toPath()))) {
         logger.fine(() -> String.format("Exporting SIRIUS mgf for feature list: %s to file %s",
             featureList.getName(), curFile.getAbsolutePath()));
-        exportFeatureList(featureList, writer);
+        exportFeatureList(featureList, out);
       } catch (IOException e) {
         setStatus(TaskStatus.ERROR);
         setErrorMessage("Could not open file " + curFile + " for writing.");
@@ -215,29 +216,40 @@ public class SiriusExportTask extends AbstractTask {
     return substitute;
   }
 
-  private void exportFeatureList(FeatureList featureList, BufferedWriter writer)
-      throws IOException {
-
-    for (FeatureListRow row : featureList.getRows()) {
-      if (isCanceled()) {
-        return;
-      }
-
-      if (exportRow(writer, row)) {
+  private void exportFeatureList(FeatureList featureList, OutputStream out) throws IOException {
+    // rows are rendered in parallel and written in the original order
+    OrderedParallelWriter.write(out, new ArrayList<>(featureList.getRows()), row -> {
+      final String entries = createRowEntries(row);
+      if (entries != null) {
         exportedRows.getAndIncrement();
       }
-
       processedRows.getAndIncrement();
-    }
+      return entries;
+    }, this);
   }
 
   /**
    * @return True if the row was exported.
    */
   public boolean exportRow(BufferedWriter writer, FeatureListRow row) throws IOException {
+    final String entries = createRowEntries(row);
+    if (entries == null) {
+      return false;
+    }
+    writer.write(entries);
+    return true;
+  }
+
+  /**
+   * Thread safe creation of all mgf entries of a row.
+   *
+   * @return the mgf entries or null if the row is not exported
+   */
+  @Nullable
+  public String createRowEntries(FeatureListRow row) {
 
     if (!checkFeatureCriteria(row)) {
-      return false;
+      return null;
     }
 
     // Use SpectralLibraryEntry to easily generate MGF files
@@ -267,15 +279,15 @@ public class SiriusExportTask extends AbstractTask {
 
     if (entries.size() < 2) {
       // only MS1
-      return false;
+      return null;
     }
 
+    final String newLine = System.lineSeparator();
+    final StringBuilder b = new StringBuilder();
     for (SpectralLibraryEntry entry : entries) {
-      final String mgfEntry = MGFEntryGenerator.createMGFEntry(entry);
-      writer.write(mgfEntry);
-      writer.newLine();
+      b.append(MGFEntryGenerator.createMGFEntry(entry)).append(newLine);
     }
-    return true;
+    return b.toString();
   }
 
   public SpectralLibraryEntry spectrumToEntry(MsType spectrumType, MassSpectrum spectrum,
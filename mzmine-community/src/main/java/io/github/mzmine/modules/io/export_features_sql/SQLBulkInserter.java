@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Inserts lines into a database table on one writer thread per connection. Lines are handed over
+ * through a bounded queue so that formatting and inserting run in parallel. Each writer uses JDBC
+ * batches of a fixed size or the COPY command on PostgreSQL connections if there are no BLOB
+ * columns. Each connection runs in one transaction that is committed by {@link #finish()}. Call
+ * {@link #abort()} in a finally block to stop the writers and roll back if the export did not
+ * finish.
+ */
+class SQLBulkInserter {
+
+  private static final Logger logger = Logger.getLogger(SQLBulkInserter.class.getName());
+  // marks the end of the queue for one writer
+  private static final List<Object[]> END = new ArrayList<>();
+
+  private final String insertSql;
+  private final @Nullable String copySql;
+  private final int[] sqlTypes;
+  private final int batchSize;
+  private final List<Connection> connections;
+  private final BlockingQueue<List<Object[]>> queue;
+  private final List<Thread> writers = new ArrayList<>();
+  private final AtomicReference<Exception> error = new AtomicReference<>();
+  private final AtomicLong insertedLines = new AtomicLong();
+  // only accessed by the producer thread
+  private int sentEnds = 0;
+  private boolean completed = false;
+
+  /**
+   * @param connections one writer per connection. Auto commit is disabled.
+   * @param tableName   the target table
+   * @param columns     column names
+   * @param sqlTypes    {@link Types} of each column, only used for null values and BLOBs
+   * @param batchSize   number of lines per JDBC batch
+   */
+  SQLBulkInserter(@NotNull List<Connection> connections, @NotNull String tableName,
+      @NotNull String[] columns, int[] sqlTypes, int batchSize) throws SQLException {
+    this.connections = connections;
+    this.sqlTypes = sqlTypes;
+    this.batchSize = Math.max(1, batchSize);
+    queue = new ArrayBlockingQueue<>(2 * connections.size());
+
+    final String columnList = String.join(",", columns);
+    insertSql = "INSERT INTO " + tableName + " (" + columnList + ") VALUES (" + String.join(",",
+        Collections.nCopies(columns.length, "?")) + ")";
+
+    boolean hasBlob = false;
+    for (int type : sqlTypes) {
+      hasBlob |= type == Types.BLOB;
+    }
+    copySql = hasBlob ? null : "COPY " + tableName + " (" + columnList + ") FROM STDIN WITH CSV";
+
+    for (Connection connection : connections) {
+      connection.setAutoCommit(false);
+    }
+    for (int i = 0; i < connections.size(); i++) {
+      final Connection connection = connections.get(i);
+      final Thread writer = new Thread(() -> write(connection), "SQL export writer " + i);
+      writer.setDaemon(true);
+      writers.add(writer);
+      writer.start();
+    }
+  }
+
+  /**
+   * Hands the lines over to the next free writer. Blocks if all writers are busy and the queue is
+   * full.
+   *
+   * @param lines values of each line in column order: String, Double, Integer, byte[] for BLOB,
+   *              or null
+   * @throws SQLException if a writer failed
+   */
+  void insert(@NotNull List<Object[]> lines) throws SQLException, InterruptedException {
+    throwError();
+    if (!lines.isEmpty()) {
+      queue.put(lines);
+    }
+  }
+
+  /**
+   * Waits for all writers and commits all connections. Rolls back all connections if a writer
+   * failed.
+   *
+   * @throws SQLException the first error of any writer
+   */
+  void finish() throws SQLException, InterruptedException {
+    while (sentEnds < writers.size()) {
+      queue.put(END);
+      sentEnds++;
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    if (error.get() != null) {
+      completed = true;
+      rollbackAll();
+      throwError();
+    }
+    for (Connection connection : connections) {
+      connection.commit();
+    }
+    completed = true;
+  }
+
+  /**
+   * Stops all writers, discards queued lines, and rolls back all connections. Does nothing if
+   * {@link #finish()} completed. Used if the export failed or was canceled.
+   */
+  void abort() {
+    if (completed) {
+      return;
+    }
+    completed = true;
+    // writers discard all further lines
+    error.compareAndSet(null, new SQLException("SQL export was aborted"));
+    // make room for the end markers without blocking, also if the thread was interrupted
+    queue.removeIf(lines -> lines != END);
+    while (sentEnds < writers.size()) {
+      if (!queue.offer(END)) {
+        queue.removeIf(lines -> lines != END);
+        continue;
+      }
+      sentEnds++;
+    }
+    // connections are not thread safe, wait for the writers before rolling back
+    boolean interrupted = false;
+    for (Thread writer : writers) {
+      while (writer.isAlive()) {
+        try {
+          writer.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    rollbackAll();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void rollbackAll() {
+    for (Connection connection : connections) {
+      try {
+        connection.rollback();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Cannot roll back SQL export", e);
+      }
+    }
+  }
+
+  long getInsertedLines() {
+    return insertedLines.get();
+  }
+
+  private void throwError() throws SQLException {
+    final Exception e = error.get();
+    if (e instanceof SQLException sqlException) {
+      throw sqlException;
+    } else if (e != null) {
+      throw new SQLException(e.getMessage(), e);
+    }
+  }
+
+  private void write(Connection connection) {
+    try {
+      final CopyManager copyManager = getCopyManager(connection);
+      try (PreparedStatement statement = copyManager == null ? connection.prepareStatement(
+          insertSql) : null) {
+        while (true) {
+          final List<Object[]> lines = queue.take();
+          if (lines == END) {
+            return;
+          }
+          if (error.get() != null) {
+            // drain the queue so that the producer does not block
+            continue;
+          }
+          if (copyManager != null) {
+            copyManager.copyIn(copySql, new StringReader(toCsv(lines)));
+            insertedLines.addAndGet(lines.size());
+          } else {
+            executeBatches(statement, lines);
+          }
+        }
+      }
+    } catch (Exception e) {
+      error.compareAndSet(null, e);
+      // keep draining until the end marker
+      drainUntilEnd();
+    }
+  }
+
+  private void drainUntilEnd() {
+    try {
+      while (queue.take() != END) {
+        // discard
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void executeBatches(PreparedStatement statement, List<Object[]> lines)
+      throws SQLException {
+    int batched = 0;
+    for (Object[] line : lines) {
+      bind(statement, line);
+      statement.addBatch();
+      batched++;
+      if (batched == batchSize) {
+        statement.executeBatch();
+        insertedLines.addAndGet(batched);
+        batched = 0;
+      }
+    }
+    if (batched > 0) {
+      statement.executeBatch();
+      insertedLines.addAndGet(batched);
+    }
+  }
+
+  private void bind(PreparedStatement statement, Object[] line) throws SQLException {
+    for (int i = 0; i < line.length; i++) {
+      final int index = i + 1;
+      switch (line[i]) {
+        case null -> statement.setNull(index, sqlTypes[i] == Types.BLOB ? Types.BLOB : Types.VARCHAR);
+        case String s -> statement.setString(index, s);
+        case Double d -> statement.setDouble(index, d);
+        case Integer v -> statement.setInt(index, v);
+        case byte[] bytes -> statement.setBlob(index, new ByteArrayInputStream(bytes));
+        default -> statement.setString(index, line[i].toString());
+      }
+    }
+  }
+
+  /**
+   * @return the copy API of PostgreSQL connections if it can be used for all columns, otherwise
+   * null to use JDBC batches
+   */
+  @Nullable
+  private CopyManager getCopyManager(Connection connection) {
+    if (copySql == null) {
+      return null;
+    }
+    try {
+      if (connection.isWrapperFor(PGConnection.class)) {
+        return connection.unwrap(PGConnection.class).getCopyAPI();
+      }
+    } catch (SQLException e) {
+      logger.log(Level.FINE, "Cannot use COPY for SQL export, using batch inserts", e);
+    }
+    return null;
+  }
+
+  /**
+   * PostgreSQL CSV format: unquoted empty values are null, strings are quoted
+   */
+  static @NotNull String toCsv(@NotNull List<Object[]> lines) {
+    final StringBuilder csv = new StringBuilder(lines.size() * 64);
+    for (Object[] line : lines) {
+      for (int i = 0; i < line.length; i++) {
+        if (i > 0) {
+          csv.append(',');
+        }
+        switch (line[i]) {
+          case null -> {
+          }
+          case Double d -> appendNumber(csv, d);
+          case Integer v -> csv.append(v.intValue());
+          default -> csv.append('"').append(line[i].toString().replace("\"", "\"\"")).append('"');
+        }
+      }
+      csv.append('\n');
+    }
+    return csv.toString();
+  }
+
+  private static void appendNumber(StringBuilder csv, double value) {
+    // integral values are written without decimals so that they can be copied into int columns
+    if (value == Math.rint(value) && Math.abs(value) < 1E15) {
+      csv.append((long) value);
+    } else {
+      csv.append(value);
+    }
+  }
+}
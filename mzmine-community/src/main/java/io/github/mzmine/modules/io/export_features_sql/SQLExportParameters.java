@@ -28,6 +28,7 @@ package io.github.mzmine.modules.io.export_features_sql;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.StringParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 
@@ -49,8 +50,21 @@ public class SQLExportParameters extends SimpleParameterSet {
       "Export empty feature list",
       "If selected, an empty feature list will be exported with null values for all column other than the rawdatafile and any constant values.");
 
+  public static final IntegerParameter batchSize = new IntegerParameter("Batch size",
+      "Number of lines that are sent to the database in one batch", 1000, 1, null);
+
+  public static final IntegerParameter connections = new IntegerParameter("Parallel connections",
+      "Number of database connections that insert lines in parallel. Each connection commits its own transaction.\n"
+          + "Use 1 for SQLite and other databases that only allow a single writer.", 1, 1, 32);
+
   public SQLExportParameters() {
-    super(new Parameter[] {featureList, connectionString, tableName, exportColumns, emptyExport});
+    super(new Parameter[] {featureList, connectionString, tableName, exportColumns, emptyExport,
+        batchSize, connections});
+  }
+
+  @Override
+  public int getVersion() {
+    return 2;
   }
 
 }
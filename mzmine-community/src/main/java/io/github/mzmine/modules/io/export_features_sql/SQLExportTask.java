@@ -25,12 +25,6 @@
 
 package io.github.mzmine.modules.io.export_features_sql;
 
-import java.io.ByteArrayInputStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.Types;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.FeatureIdentity;
 import io.github.mzmine.datamodel.IsotopePattern;
@@ -45,21 +39,32 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 class SQLExportTask extends AbstractTask {
 
+  private static final Logger logger = Logger.getLogger(SQLExportTask.class.getName());
+
   private final FeatureList featureList;
   private final String connectionString;
   private final String tableName;
   private final SQLColumnSettings exportColumns;
   private final boolean emptyExport;
+  private final int batchSize;
+  private final int numConnections;
 
   private int processedRows = 0, totalRows = 0;
 
-  private Connection dbConnection;
-
   SQLExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
 
@@ -71,7 +76,8 @@ class SQLExportTask extends AbstractTask {
     this.tableName = parameters.getParameter(SQLExportParameters.tableName).getValue();
     this.exportColumns = parameters.getParameter(SQLExportParameters.exportColumns).getValue();
     this.emptyExport = parameters.getParameter(SQLExportParameters.emptyExport).getValue();
-
+    this.batchSize = parameters.getValue(SQLExportParameters.batchSize);
+    this.numConnections = parameters.getValue(SQLExportParameters.connections);
   }
 
   @Override
@@ -94,9 +100,13 @@ class SQLExportTask extends AbstractTask {
     // Get number of rows
     totalRows = featureList.getNumberOfRows();
 
+    final List<Connection> connections = new ArrayList<>();
     try {
-      this.dbConnection = DriverManager.getConnection(connectionString);
+      for (int i = 0; i < numConnections; i++) {
+        connections.add(DriverManager.getConnection(connectionString));
+      }
     } catch (SQLException e) {
+      closeAll(connections);
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Error connecting to the SQL database: " + e.toString());
       return;
@@ -105,26 +115,61 @@ class SQLExportTask extends AbstractTask {
     FeatureListRow rows[] = featureList.getRows().toArray(FeatureListRow[]::new);
 
     try {
-      dbConnection.setAutoCommit(false);
+      final int numColumns = exportColumns.getRowCount();
+      final String[] columns = new String[numColumns];
+      final int[] sqlTypes = new int[numColumns];
+      for (int i = 0; i < numColumns; i++) {
+        columns[i] = (String) exportColumns.getValueAt(i, 0);
+        sqlTypes[i] = switch (((SQLExportDataType) exportColumns.getValueAt(i, 1)).valueType()) {
+          case "INT" -> Types.INTEGER;
+          case "DOUBLE" -> Types.DOUBLE;
+          case "BLOB" -> Types.BLOB;
+          default -> Types.VARCHAR;
+        };
+      }
 
-      // If select, an empty row with just the raw data file
-      // information will be exported
-      if (rows.length < 1 && emptyExport) {
-        exportFeatureListRow(null);
-      } else {
-        for (FeatureListRow row : rows) {
-          if (getStatus() != TaskStatus.PROCESSING)
-            break;
-          exportFeatureListRow(row);
-          processedRows++;
+      final SQLBulkInserter inserter = new SQLBulkInserter(connections, tableName, columns,
+          sqlTypes, batchSize);
+      try {
+        // If select, an empty row with just the raw data file
+        // information will be exported
+        if (rows.length < 1 && emptyExport) {
+          inserter.insert(List.of(formatEmptyLine()));
+        } else {
+          // lines are formatted in parallel and inserted by the writers while the next chunk is
+          // formatted
+          final int chunkSize = Math.max(batchSize, 1000);
+          for (int start = 0; start < rows.length; start += chunkSize) {
+            if (getStatus() != TaskStatus.PROCESSING) {
+              break;
+            }
+            final List<FeatureListRow> chunk = List.of(rows)
+                .subList(start, Math.min(rows.length, start + chunkSize));
+            final List<Object[]> lines = chunk.parallelStream().map(this::formatFeatureListRow)
+                .flatMap(List::stream).toList();
+            inserter.insert(lines);
+            processedRows += chunk.size();
+          }
+        }
+        // canceled exports are rolled back
+        if (getStatus() == TaskStatus.PROCESSING) {
+          inserter.finish();
         }
+      } finally {
+        // stops the writers and rolls back if the export failed or was canceled
+        inserter.abort();
       }
-      dbConnection.commit();
-      dbConnection.close();
     } catch (SQLException e) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Error running SQL query: " + e.toString());
       return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("SQL export was interrupted");
+      return;
+    } finally {
+      closeAll(connections);
     }
 
     if (getStatus() == TaskStatus.PROCESSING)
@@ -132,190 +177,178 @@ class SQLExportTask extends AbstractTask {
 
   }
 
-  private void exportFeatureListRow(FeatureListRow row) throws SQLException {
+  private static void closeAll(List<Connection> connections) {
+    for (Connection connection : connections) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Cannot close SQL connection", e);
+      }
+    }
+  }
+
+  /**
+   * @return a line with null values for all columns other than the raw data file and constants
+   */
+  private Object[] formatEmptyLine() {
+    final Object[] line = new Object[exportColumns.getRowCount()];
+    for (int i = 0; i < line.length; i++) {
+      SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
+      String dataValue = (String) exportColumns.getValueAt(i, 2);
+      line[i] = switch (dataType) {
+        case CONSTANT -> dataValue;
+        case RAWFILE -> featureList.getRawDataFiles().getFirst().getName();
+        default -> null;
+      };
+    }
+    return line;
+  }
+
+  /**
+   * @return one line per raw data file if data file elements are exported, otherwise one line for
+   * the first raw data file
+   */
+  private List<Object[]> formatFeatureListRow(FeatureListRow row) {
+    final List<Object[]> lines = new ArrayList<>();
 
     // Cancel?
     if (isCanceled()) {
-      return;
+      return lines;
     }
 
     // Value for looping through raw data files
     boolean loopDataFiles = false;
 
-    StringBuilder sql = new StringBuilder();
-    sql.append("INSERT INTO ");
-    sql.append(tableName);
-    sql.append(" (");
-    for (int i = 0; i < exportColumns.getRowCount(); i++) {
-      sql.append(exportColumns.getValueAt(i, 0));
-      if (i < exportColumns.getRowCount() - 1)
-        sql.append(",");
-    }
-    sql.append(" ) VALUES (");
-    for (int i = 0; i < exportColumns.getRowCount(); i++) {
-      sql.append("?");
-      if (i < exportColumns.getRowCount() - 1)
-        sql.append(",");
-    }
-    sql.append(")");
-
-    PreparedStatement statement = dbConnection.prepareStatement(sql.toString());
+    for (RawDataFile rawDataFile : row.getRawDataFiles()) {
+      Feature feature = row.getFeature(rawDataFile);
+      final Object[] line = new Object[exportColumns.getRowCount()];
 
-    if (row == null) {
-      for (int i = 0; i < exportColumns.getRowCount(); i++) {
+      for (int i = 0; i < line.length; i++) {
         SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
         String dataValue = (String) exportColumns.getValueAt(i, 2);
         switch (dataType) {
           case CONSTANT:
-            statement.setString(i + 1, dataValue);
+            line[i] = dataValue;
+            break;
+          case MZ:
+            line[i] = row.getAverageMZ();
+            break;
+          case RT:
+            line[i] = (double) row.getAverageRT();
+            break;
+          case ID:
+            line[i] = row.getID();
+            break;
+          case FEATURECHARGE:
+            line[i] = (double) feature.getCharge();
+            loopDataFiles = true;
+            break;
+          case FEATUREDURATION:
+            line[i] = RangeUtils.rangeLength(feature.getRawDataPointsRTRange()).doubleValue();
+            loopDataFiles = true;
+            break;
+          case FEATURESTATUS:
+            line[i] = feature.getFeatureStatus().name();
+            loopDataFiles = true;
+            break;
+          case FEATUREMZ:
+            line[i] = feature.getMZ();
+            loopDataFiles = true;
+            break;
+          case FEATURERT:
+            line[i] = (double) feature.getRT();
+            loopDataFiles = true;
+            break;
+          case FEATURERT_START:
+            line[i] = feature.getRawDataPointsRTRange().lowerEndpoint().doubleValue();
+            loopDataFiles = true;
+            break;
+          case FEATURERT_END:
+            line[i] = feature.getRawDataPointsRTRange().upperEndpoint().doubleValue();
+            loopDataFiles = true;
+            break;
+          case FEATUREHEIGHT:
+            line[i] = (double) feature.getHeight();
+            loopDataFiles = true;
+            break;
+          case FEATUREAREA:
+            line[i] = (double) feature.getArea();
+            loopDataFiles = true;
+            break;
+          case DATAPOINTS:
+            line[i] = (double) feature.getScanNumbers().size();
+            loopDataFiles = true;
+            break;
+          case FWHM:
+            line[i] = toDouble(feature.getFWHM());
+            loopDataFiles = true;
+            break;
+          case TAILINGFACTOR:
+            line[i] = toDouble(feature.getTailingFactor());
+            loopDataFiles = true;
+            break;
+          case ASYMMETRYFACTOR:
+            line[i] = toDouble(feature.getAsymmetryFactor());
+            loopDataFiles = true;
             break;
           case RAWFILE:
-            RawDataFile rawdatafiles[] = featureList.getRawDataFiles().toArray(RawDataFile[]::new);
-            statement.setString(i + 1, rawdatafiles[0].getName());
+            line[i] = rawDataFile.getName();
+            loopDataFiles = true;
             break;
-          default:
-            statement.setString(i + 1, null);
+          case HEIGHT:
+            line[i] = (double) row.getMaxHeight();
             break;
-        }
-      }
-      statement.executeUpdate();
-    }
-
-    else {
-      for (RawDataFile rawDataFile : row.getRawDataFiles()) {
-        Feature feature = row.getFeature(rawDataFile);
-
-        for (int i = 0; i < exportColumns.getRowCount(); i++) {
-          SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
-          String dataValue = (String) exportColumns.getValueAt(i, 2);
-          switch (dataType) {
-            case CONSTANT:
-              statement.setString(i + 1, dataValue);
-              break;
-            case MZ:
-              statement.setDouble(i + 1, row.getAverageMZ());
-              break;
-            case RT:
-              statement.setDouble(i + 1, row.getAverageRT());
-              break;
-            case ID:
-              statement.setInt(i + 1, row.getID());
-              break;
-            case FEATURECHARGE:
-              statement.setDouble(i + 1, feature.getCharge());
-              loopDataFiles = true;
-              break;
-            case FEATUREDURATION:
-              statement.setDouble(i + 1, RangeUtils.rangeLength(feature.getRawDataPointsRTRange()));
-              loopDataFiles = true;
-              break;
-            case FEATURESTATUS:
-              statement.setString(i + 1, feature.getFeatureStatus().name());
-              loopDataFiles = true;
-              break;
-            case FEATUREMZ:
-              statement.setDouble(i + 1, feature.getMZ());
-              loopDataFiles = true;
-              break;
-            case FEATURERT:
-              statement.setDouble(i + 1, feature.getRT());
-              loopDataFiles = true;
-              break;
-            case FEATURERT_START:
-              statement.setDouble(i + 1, feature.getRawDataPointsRTRange().lowerEndpoint());
-              loopDataFiles = true;
-              break;
-            case FEATURERT_END:
-              statement.setDouble(i + 1, feature.getRawDataPointsRTRange().upperEndpoint());
-              loopDataFiles = true;
-              break;
-            case FEATUREHEIGHT:
-              statement.setDouble(i + 1, feature.getHeight());
-              loopDataFiles = true;
-              break;
-            case FEATUREAREA:
-              statement.setDouble(i + 1, feature.getArea());
-              loopDataFiles = true;
-              break;
-            case DATAPOINTS:
-              statement.setDouble(i + 1, feature.getScanNumbers().size());
-              loopDataFiles = true;
-              break;
-            case FWHM:
-              statement.setDouble(i + 1, feature.getFWHM());
-              loopDataFiles = true;
-              break;
-            case TAILINGFACTOR:
-              statement.setDouble(i + 1, feature.getTailingFactor());
-              loopDataFiles = true;
-              break;
-            case ASYMMETRYFACTOR:
-              statement.setDouble(i + 1, feature.getAsymmetryFactor());
-              loopDataFiles = true;
-              break;
-            case RAWFILE:
-              statement.setString(i + 1, rawDataFile.getName());
-              loopDataFiles = true;
-              break;
-            case HEIGHT:
-              statement.setDouble(i + 1, row.getMaxHeight());
-              break;
-            case AREA:
-              statement.setDouble(i + 1, row.getMaxArea());
-              break;
-            case COMMENT:
-              statement.setString(i + 1, row.getComment());
-              break;
-            case IDENTITY:
-              FeatureIdentity id = row.getPreferredFeatureIdentity();
-              if (id != null) {
-                statement.setString(i + 1, id.getName());
-              } else {
-                statement.setNull(i + 1, Types.VARCHAR);
-              }
-              break;
-            case ISOTOPEPATTERN:
-              IsotopePattern isotopes = row.getBestIsotopePattern();
-              if (isotopes == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              DataPoint dataPoints[] = ScanUtils.extractDataPoints(isotopes);
-              byte bytes[] = ScanUtils.encodeDataPointsToBytes(dataPoints);
-              ByteArrayInputStream is = new ByteArrayInputStream(bytes);
-              statement.setBlob(i + 1, is);
+          case AREA:
+            line[i] = (double) row.getMaxArea();
+            break;
+          case COMMENT:
+            line[i] = row.getComment();
+            break;
+          case IDENTITY:
+            FeatureIdentity id = row.getPreferredFeatureIdentity();
+            line[i] = id != null ? id.getName() : null;
+            break;
+          case ISOTOPEPATTERN:
+            IsotopePattern isotopes = row.getBestIsotopePattern();
+            if (isotopes == null) {
               break;
-            case MSMS:
-              Scan msmsScan = row.getBestFeature().getMostIntenseFragmentScan();
-              // Check if there is any MS/MS scan
-              if (msmsScan == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              MassList msmsMassList = msmsScan.getMassList();
-              // Check if there is a masslist for the scan
-              if (msmsMassList == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              dataPoints = msmsMassList.getDataPoints();
-              bytes = ScanUtils.encodeDataPointsToBytes(dataPoints);
-              is = new ByteArrayInputStream(bytes);
-              statement.setBlob(i + 1, is);
+            }
+            DataPoint dataPoints[] = ScanUtils.extractDataPoints(isotopes);
+            line[i] = ScanUtils.encodeDataPointsToBytes(dataPoints);
+            break;
+          case MSMS:
+            Scan msmsScan = row.getBestFeature().getMostIntenseFragmentScan();
+            // Check if there is any MS/MS scan
+            if (msmsScan == null) {
               break;
-            default:
+            }
+            MassList msmsMassList = msmsScan.getMassList();
+            // Check if there is a masslist for the scan
+            if (msmsMassList == null) {
               break;
-          }
+            }
+            line[i] = ScanUtils.encodeDataPointsToBytes(msmsMassList.getDataPoints());
+            break;
+          default:
+            break;
         }
-        statement.executeUpdate();
+      }
+      lines.add(line);
 
-        // If no data file elements are selected then don't loop through
-        // all
-        // data files in feature list
-        if (!loopDataFiles) {
-          break;
-        }
+      // If no data file elements are selected then don't loop through
+      // all
+      // data files in feature list
+      if (!loopDataFiles) {
+        break;
       }
     }
+    return lines;
+  }
+
+  /**
+   * @return the value or null to export missing values as SQL NULL
+   */
+  private static @Nullable Double toDouble(@Nullable Float value) {
+    return value == null ? null : value.doubleValue();
   }
 }
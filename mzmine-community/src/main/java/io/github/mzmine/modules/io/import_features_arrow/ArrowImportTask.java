@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_features_arrow;
+
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.DATAFILE_PREFIX;
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.RANGE_MAX;
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.RANGE_MIN;
+import static io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns.SEPARATOR;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.modules.io.export_features_arrow.FeatureListArrowColumns;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.io.arrow.ArrowColumn;
+import io.github.mzmine.util.io.arrow.ArrowIpcReader;
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Imports a feature list from the typed columns of an Arrow file. The file is decoded in parallel
+ * by {@link ArrowIpcReader}, columns of unknown types or of raw data files that are not in the
+ * project are skipped.
+ */
+public class ArrowImportTask extends AbstractTask {
+
+  private static final Logger logger = Logger.getLogger(ArrowImportTask.class.getName());
+
+  private final MZmineProject project;
+  private final File file;
+  private final ParameterSet parameters;
+  private int processedRows, totalRows;
+
+  ArrowImportTask(MZmineProject project, File file, ParameterSet parameters,
+      @Nullable MemoryMapStorage storage, @NotNull Instant moduleCallDate) {
+    super(storage, moduleCallDate);
+    this.project = project;
+    this.file = file;
+    this.parameters = parameters;
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return "Importing feature list from Arrow file " + file.getName();
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return totalRows == 0 ? 0 : (double) processedRows / totalRows;
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    try {
+      final List<ArrowColumn> columns = ArrowIpcReader.read(file.toPath());
+      if (isCanceled()) {
+        return;
+      }
+
+      final Map<String, RawDataFile> projectFiles = new HashMap<>();
+      for (RawDataFile raw : project.getCurrentRawDataFiles()) {
+        projectFiles.put(raw.getName(), raw);
+      }
+
+      // combine min and max columns of ranges
+      final Map<String, ImportField> fieldMap = new LinkedHashMap<>();
+      for (ArrowColumn column : columns) {
+        addColumn(fieldMap, column, projectFiles);
+      }
+
+      final List<RawDataFile> raws = fieldMap.values().stream().map(ImportField::raw)
+          .filter(Objects::nonNull).distinct().toList();
+      final ModularFeatureList flist = new ModularFeatureList(file.getName(), storage, raws);
+
+      final List<ImportField> rowFields = new ArrayList<>();
+      final Map<RawDataFile, List<ImportField>> featureFields = new LinkedHashMap<>();
+      ImportField idField = null;
+      for (ImportField field : fieldMap.values()) {
+        if (field.raw() != null) {
+          featureFields.computeIfAbsent(field.raw(), r -> new ArrayList<>()).add(field);
+        } else if (field.type() instanceof IDType) {
+          idField = field;
+        } else {
+          rowFields.add(field);
+        }
+      }
+
+      totalRows = columns.isEmpty() ? 0 : columns.getFirst().length();
+      for (int i = 0; i < totalRows; i++) {
+        if (isCanceled()) {
+          return;
+        }
+        final Object id = idField == null ? null : idField.getValue(i);
+        final ModularFeatureListRow row = new ModularFeatureListRow(flist,
+            id != null ? (Integer) id : i + 1);
+        for (ImportField field : rowFields) {
+          field.setValue(row, i);
+        }
+
+        for (var entry : featureFields.entrySet()) {
+          // missing features have no values
+          final List<ImportField> fields = entry.getValue();
+          final int rowIndex = i;
+          if (fields.stream().allMatch(field -> field.getValue(rowIndex) == null)) {
+            continue;
+          }
+          final ModularFeature feature = new ModularFeature(flist, entry.getKey(), null,
+              FeatureStatus.DETECTED);
+          for (ImportField field : fields) {
+            field.setValue(feature, i);
+          }
+          row.addFeature(entry.getKey(), feature);
+        }
+        flist.addRow(row);
+        processedRows++;
+      }
+
+      for (RawDataFile raw : raws) {
+        flist.setSelectedScans(raw, raw.getScanNumbers(1));
+      }
+      flist.addDescriptionOfAppliedTask(
+          new SimpleFeatureListAppliedMethod(ArrowImportModule.class, parameters,
+              getModuleCallDate()));
+      project.addFeatureList(flist);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Could not import Arrow file " + file, e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage(
+          "Could not import feature list from file " + file.getName() + ": " + e.getMessage());
+      return;
+    }
+
+    if (getStatus() == TaskStatus.PROCESSING) {
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+
+  /**
+   * Parses column names of the format [datafile:raw name:]type id[:min|:max]
+   */
+  private void addColumn(Map<String, ImportField> fieldMap, ArrowColumn column,
+      Map<String, RawDataFile> projectFiles) {
+    final String name = column.name();
+    final boolean isFeatureColumn = name.startsWith(DATAFILE_PREFIX + SEPARATOR);
+    // raw names may contain the separator, parse from the end
+    final String typePart = isFeatureColumn ? name.substring(DATAFILE_PREFIX.length() + 1) : name;
+    final int last = typePart.lastIndexOf(SEPARATOR);
+    final String lastToken = typePart.substring(last + 1);
+
+    String sub = null;
+    int typeStart = last + 1;
+    DataType<?> type = null;
+    if (last > 0 && (RANGE_MIN.equals(lastToken) || RANGE_MAX.equals(lastToken))) {
+      final int secondLast = typePart.lastIndexOf(SEPARATOR, last - 1);
+      final DataType<?> rangeType = DataTypes.getTypeForId(
+          typePart.substring(secondLast + 1, last));
+      if (rangeType != null && FeatureListArrowColumns.isRange(rangeType)) {
+        type = rangeType;
+        sub = lastToken;
+        typeStart = secondLast + 1;
+      }
+    }
+    if (type == null) {
+      type = DataTypes.getTypeForId(lastToken);
+    }
+    if (type == null || FeatureListArrowColumns.getColumnType(type) == null) {
+      logger.fine(() -> "Skipping column " + name + " without a matching data type");
+      return;
+    }
+
+    RawDataFile raw = null;
+    if (isFeatureColumn) {
+      final String rawName = typeStart > 0 ? typePart.substring(0, typeStart - 1) : "";
+      raw = projectFiles.get(rawName);
+      if (raw == null) {
+        logger.warning(() -> "Skipping column " + name + ". Raw data file " + rawName
+                             + " is not in the project.");
+        return;
+      }
+    }
+
+    final String key = (raw == null ? "" : raw.getName()) + SEPARATOR + type.getUniqueID();
+    ImportField field = fieldMap.get(key);
+    if (field == null) {
+      field = new ImportField(raw, type, new ArrowColumn[2]);
+      fieldMap.put(key, field);
+    }
+    field.columns()[RANGE_MAX.equals(sub) ? 1 : 0] = column;
+  }
+
+  /**
+   * @param raw     null for row types
+   * @param columns value column or min and max columns for ranges
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private record ImportField(@Nullable RawDataFile raw, DataType type, ArrowColumn[] columns) {
+
+    @Nullable
+    Object getValue(int row) {
+      if (FeatureListArrowColumns.isRange(type)) {
+        if (columns[0] == null || columns[1] == null) {
+          return null;
+        }
+        final Object min = FeatureListArrowColumns.toTypeValue(type, columns[0].values()[row]);
+        final Object max = FeatureListArrowColumns.toTypeValue(type, columns[1].values()[row]);
+        return min == null || max == null ? null : Range.closed((Comparable) min, (Comparable) max);
+      }
+      return FeatureListArrowColumns.toTypeValue(type, columns[0].values()[row]);
+    }
+
+    void setValue(ModularDataModel model, int row) {
+      final Object value = getValue(row);
+      if (value != null) {
+        model.set(type, value);
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.io.import_rawdata_bruker_tdf;
 import com.google.common.base.Strings;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.main.AdaptiveMemoryPolicy;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
@@ -110,7 +111,7 @@ public class TDFImportModule implements MZmineProcessingModule {
 
       try {
         // IMS files are big, reserve a single storage for each file
-        final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+        final MemoryMapStorage storage = AdaptiveMemoryPolicy.forRawDataFiles(fileNames[i]);
 
         IMSRawDataFile newMZmineFile = MZmineCore.createNewIMSFile(newName,
             fileNames[i].getAbsolutePath(), storage);
@@ -42,6 +42,7 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.BrukerScanMode;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.TDFLibrary;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql.BuildingPASEFMsMsInfo;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql.FramePrecursorTable;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql.MaldiSpotInfo;
@@ -58,19 +59,25 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.Nonnull;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -80,6 +87,10 @@ import org.jetbrains.annotations.Nullable;
 public class TDFImportTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(TDFImportTask.class.getName());
+  /**
+   * Frames are decoded in blocks in parallel, each block needs its own file handle.
+   */
+  private static final int MIN_FRAMES_PER_BLOCK = 100;
   private final MZmineProject project;
 
   private File fileNameToOpen;
@@ -98,6 +109,11 @@ public class TDFImportTask extends AbstractTask {
   private final ScanImportProcessorConfig scanProcessorConfig;
   private final Class<? extends MZmineModule> module;
   private final ParameterSet parameters;
+  /**
+   * Creates the library for each handle, null to load the native Bruker library.
+   */
+  @Nullable
+  private final Supplier<TDFLibrary> librarySupplier;
   private boolean isMaldi;
   private String description;
   private double finishedPercentage;
@@ -133,6 +149,18 @@ public class TDFImportTask extends AbstractTask {
       final @NotNull ScanImportProcessorConfig scanProcessorConfig,
       @NotNull final Class<? extends MZmineModule> module, @NotNull final ParameterSet parameters,
       @NotNull Instant moduleCallDate) {
+    this(project, file, newMZmineFile, scanProcessorConfig, module, parameters, moduleCallDate,
+        null);
+  }
+
+  /**
+   * @param librarySupplier creates the library for each file handle, e.g., for testing. Null to
+   *                        load the native Bruker library.
+   */
+  TDFImportTask(MZmineProject project, File file, IMSRawDataFile newMZmineFile,
+      final @NotNull ScanImportProcessorConfig scanProcessorConfig,
+      @NotNull final Class<? extends MZmineModule> module, @NotNull final ParameterSet parameters,
+      @NotNull Instant moduleCallDate, @Nullable Supplier<TDFLibrary> librarySupplier) {
     super(newMZmineFile.getMemoryMapStorage(), moduleCallDate);
     this.fileNameToOpen = file;
     this.project = project;
@@ -140,6 +168,7 @@ public class TDFImportTask extends AbstractTask {
     this.scanProcessorConfig = scanProcessorConfig;
     this.module = module;
     this.parameters = parameters;
+    this.librarySupplier = librarySupplier;
   }
 
   @Override
@@ -227,7 +256,7 @@ public class TDFImportTask extends AbstractTask {
       return;
     }
 
-    final TDFUtils tdfUtils = new TDFUtils();
+    final TDFUtils tdfUtils = createTDFUtils(TDFUtils.getDefaultNumThreads());
     logger.finest(() -> "Opening tdf file " + tdfBin.getAbsolutePath());
     final long handle = tdfUtils.openFile(tdfBin);
 //    newMZmineFile.setName(rawDataFileName);
@@ -236,6 +265,14 @@ public class TDFImportTask extends AbstractTask {
       setErrorMessage("Failed to open the file " + tdfBin + " using the Bruker TDF library");
       return;
     }
+    try {
+      importFrames(tdfUtils);
+    } finally {
+      tdfUtils.close();
+    }
+  }
+
+  private void importFrames(@NotNull final TDFUtils tdfUtils) {
 
     loadedFrames = 0;
     final int numFrames = frameTable.getFrameIdColumn().size();
@@ -283,7 +320,6 @@ public class TDFImportTask extends AbstractTask {
         frames.add(frame);
         loadedFrames++;
         if (isCanceled()) {
-          tdfUtils.close();
           return;
         }
       }
@@ -293,7 +329,9 @@ public class TDFImportTask extends AbstractTask {
 
     // extract mobility scans
     try {
-      appendScansFromTimsSegment(tdfUtils, frameTable, frames);
+      if (!appendScansFromTimsSegment(tdfBin, frameTable, frames)) {
+        return;
+      }
     } catch (IndexOutOfBoundsException e) {
       // happens on corrupt data
       logger.warning("Cannot import raw data from " + tdf.getName() + ", data is corrupt.");
@@ -304,8 +342,6 @@ public class TDFImportTask extends AbstractTask {
     // now assign MS/MS infos
     constructMsMsInfo(newMZmineFile, framePrecursorTable);
 
-    tdfUtils.close();
-
     if (isCanceled()) {
       return;
     }
@@ -387,39 +423,90 @@ public class TDFImportTask extends AbstractTask {
     description = desc;
   }
 
+  private TDFUtils createTDFUtils(int numThreads) {
+    return librarySupplier == null ? new TDFUtils(numThreads)
+        : new TDFUtils(librarySupplier.get(), numThreads);
+  }
+
   /**
-   * Adds all scans from the pasef segment to a raw data file. Does not add the frame spectra!
+   * Adds all scans from the pasef segment to a raw data file. Does not add the frame spectra! The
+   * frames are split into blocks, which are decoded in parallel. Every block opens its own handle
+   * to the tdf_bin file, because a handle must not be used by multiple threads concurrently. The
+   * native threads are split between the handles.
    *
+   * @param tdfBin        the tdf_bin file
    * @param tdfFrameTable {@link TDFFrameTable} of the tdf file
    * @param frames        the frames to load mobility spectra for
+   * @return false if a block failed to open its handle or to load scans. The task status is set
+   * to error.
    */
-  private void appendScansFromTimsSegment(@Nonnull final TDFUtils tdfUtils,
+  boolean appendScansFromTimsSegment(@NotNull final File tdfBin,
       @NotNull final TDFFrameTable tdfFrameTable, Set<SimpleFrame> frames) {
 
-    loadedFrames = 0;
     final long numFrames = tdfFrameTable.lastFrameId();
-
-    for (SimpleFrame frame : frames) {
-      setDescription(
-          "Loading mobility scans of " + rawDataFileName + ": Frame " + frame.getFrameId() + "/"
-          + numFrames);
-      setFinishedPercentage(0.1 + (0.9 * ((double) loadedFrames / numFrames)));
-
-      final List<BuildingMobilityScan> spectra = tdfUtils.loadSpectraForTIMSFrame(frame, frameTable,
-          scanProcessorConfig);
-      if (spectra.isEmpty()) {
-        spectra.add(new BuildingMobilityScan(0, new double[]{}, new double[]{}));
+    final AtomicInteger loadedMobilityFrames = new AtomicInteger(0);
+    setDescription("Loading mobility scans of " + rawDataFileName);
+
+    final List<SimpleFrame> frameList = List.copyOf(frames);
+    final int numThreads = TDFUtils.getDefaultNumThreads();
+    final int numBlocks = Math.max(1,
+        Math.min(numThreads, frameList.size() / MIN_FRAMES_PER_BLOCK));
+    final int framesPerBlock = (int) Math.ceil(frameList.size() / (double) numBlocks);
+    final int threadsPerHandle = Math.max(1, numThreads / numBlocks);
+    final AtomicReference<String> error = new AtomicReference<>();
+
+    IntStream.range(0, numBlocks).parallel().forEach(block -> {
+      final int start = block * framesPerBlock;
+      final int end = Math.min(start + framesPerBlock, frameList.size());
+      if (start >= end || isCanceled() || error.get() != null) {
+        return;
       }
 
-      boolean useAsMassList = scanProcessorConfig.isMassDetectActive(frame.getMSLevel());
-      frame.setMobilityScans(spectra, useAsMassList);
-
-      if (isCanceled()) {
-        return;
+      final TDFUtils blockUtils = createTDFUtils(threadsPerHandle);
+      try {
+        if (blockUtils.openFile(tdfBin) == 0L) {
+          error.compareAndSet(null, "Failed to open the file " + tdfBin
+                                    + " using the Bruker TDF library");
+          return;
+        }
+        for (final SimpleFrame frame : frameList.subList(start, end)) {
+          if (isCanceled() || error.get() != null) {
+            return;
+          }
+          List<BuildingMobilityScan> spectra = blockUtils.loadSpectraForTIMSFrame(frame,
+              tdfFrameTable, scanProcessorConfig);
+          if (spectra == null) {
+            spectra = new ArrayList<>(1);
+          }
+          if (spectra.isEmpty()) {
+            spectra.add(new BuildingMobilityScan(0, new double[]{}, new double[]{}));
+          }
+
+          boolean useAsMassList = scanProcessorConfig.isMassDetectActive(frame.getMSLevel());
+          frame.setMobilityScans(spectra, useAsMassList);
+
+          setFinishedPercentage(
+              0.1 + (0.9 * ((double) loadedMobilityFrames.incrementAndGet() / numFrames)));
+        }
+      } catch (IndexOutOfBoundsException e) {
+        // corrupt data, handled by the caller
+        throw e;
+      } catch (RuntimeException e) {
+        // opening throws if the library returns no handle
+        logger.log(Level.WARNING, e.getMessage(), e);
+        error.compareAndSet(null,
+            "Failed to load mobility scans of " + tdfBin + ": " + e.getMessage());
+      } finally {
+        blockUtils.close();
       }
-      loadedFrames++;
-    }
+    });
 
+    if (error.get() != null) {
+      setErrorMessage(error.get());
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+    return true;
   }
 
   private File[] getDataFilesFromDir(File dir) {
@@ -459,6 +546,12 @@ public class TDFImportTask extends AbstractTask {
 
     Date start = new Date();
     int constructed = 0;
+    final Int2ObjectMap<Frame> framesById = new Int2ObjectOpenHashMap<>(
+        file.getNumberOfFrames());
+    for (Frame frame : file.getFrames()) {
+      framesById.put(frame.getFrameId(), frame);
+    }
+
     for (Frame frame : file.getFrames()) {
       if (frame.getMSLevel() == 1) {
         continue;
@@ -481,7 +574,8 @@ public class TDFImportTask extends AbstractTask {
       for (BuildingPASEFMsMsInfo building : pasefBuildingInfo) {
         Integer parentFrameNumber = building.getParentFrameNumber();
 
-        final Frame parentFrame = getParentFrame(file, parentFrameNumber);
+        final Frame parentFrame =
+            parentFrameNumber != null ? framesById.get(parentFrameNumber.intValue()) : null;
 
         PasefMsMsInfo info = new PasefMsMsInfoImpl(building.getLargestPeakMz(),
             Range.closedOpen(building.getSpectrumNumberRange().lowerEndpoint() - 1,
@@ -501,17 +595,6 @@ public class TDFImportTask extends AbstractTask {
             end.getTime() - start.getTime()) + " ms");
   }
 
-  @Nullable
-  private Frame getParentFrame(IMSRawDataFile file, Integer parentFrameNumber) {
-    if (parentFrameNumber == null) {
-      return null;
-    }
-    Optional<Frame> optionalFrame = (Optional<Frame>) file.getFrames().stream()
-        .filter(f -> f.getFrameId() == parentFrameNumber).findFirst();
-    Frame parentFrame = optionalFrame.orElseGet(() -> null);
-    return parentFrame;
-  }
-
  /*private void compareMobilities(IMSRawDataFile rawDataFile) {
     for (int i = 1; i < rawDataFile.getNumberOfFrames() - 1; i++) {
       Frame thisFrame = rawDataFile.getFrame(i);
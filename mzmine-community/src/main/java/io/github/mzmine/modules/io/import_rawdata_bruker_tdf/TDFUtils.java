@@ -96,6 +96,14 @@ public class TDFUtils {
     this.numThreads = numThreads;
   }
 
+  /**
+   * Uses the given library instead of loading the native Bruker library, e.g., for testing.
+   */
+  public TDFUtils(@NotNull TDFLibrary library, int numThreads) {
+    this.numThreads = numThreads;
+    tdfLib = library;
+  }
+
   /**
    * Creates an array of the given size and populates it with numbers from 1 to size
    *
@@ -144,6 +152,13 @@ public class TDFUtils {
     DEFAULT_NUMTHREADS = numThreads;
   }
 
+  /**
+   * @return the default number of threads to use for each raw file
+   */
+  public static int getDefaultNumThreads() {
+    return DEFAULT_NUMTHREADS;
+  }
+
   /**
    * Initialises the tdf library. Is called when openFile is called.
    *
@@ -360,7 +375,7 @@ public class TDFUtils {
       @NotNull final TDFFrameTable frameTable,
       @NotNull final ScanImportProcessorConfig processorConfig) {
     final long frameId = frame.getFrameId();
-    final int frameIndex = frameTable.getFrameIdColumn().indexOf(frameId);
+    final int frameIndex = frameTable.getFrameIndex(frameId);
     final int numScans = frameTable.getNumScansColumn().get(frameIndex).intValue();
     final List<BuildingMobilityScan> spectra = new ArrayList<>(numScans);
     final List<SimpleSpectralArrays> dataPoints = loadDataPointsForFrame(frameId, 0, numScans);
@@ -424,7 +439,7 @@ public class TDFUtils {
       @Nullable final TDFMaldiFrameInfoTable maldiFrameInfoTable,
       final ScanImportProcessorConfig scanProcessorConfig) {
 
-    final int frameIndex = frameTable.getFrameIdColumn().indexOf(frameId);
+    final int frameIndex = frameTable.getFrameIndex(frameId);
     final int numScans = frameTable.getNumScansColumn().get(frameIndex).intValue();
 
     final float rt = (float) (frameTable.getTimeColumn().get(frameIndex) / 60); // to minutes
@@ -507,7 +522,7 @@ public class TDFUtils {
       @Nullable final TDFMaldiFrameInfoTable maldiFrameInfoTable,
       @NotNull final ScanImportProcessorConfig scanProcessorConfig) {
 
-    final int frameIndex = frameTable.getFrameIdColumn().indexOf(frameId);
+    final int frameIndex = frameTable.getFrameIndex(frameId);
     final int numScans = frameTable.getNumScansColumn().get(frameIndex).intValue();
 
     final float rt = (float) (frameTable.getTimeColumn().get(frameIndex) / 60); // to minutes
@@ -25,6 +25,9 @@
 
 package io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql;
 
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.sql.Connection;
 import java.util.Arrays;
 
 /**
@@ -146,6 +149,11 @@ public class TDFFrameTable extends TDFDataTable<Long> {
   private final TDFDataColumn<Double> accumulationTimeColumn;
   private final TDFDataColumn<Double> rampTimeColumn;
 
+  /**
+   * Maps the frame id to the index in the columns. Created on first access.
+   */
+  private volatile Long2IntMap frameIdToIndex;
+
   public TDFFrameTable() {
     super(FRAME_TABLE_NAME, FRAME_ID);
     columns.addAll(Arrays.asList(new TDFDataColumn<Double>(TIME),
@@ -184,6 +192,31 @@ public class TDFFrameTable extends TDFDataTable<Long> {
     rampTimeColumn = (TDFDataColumn<Double>) getColumn(RAMP_TIME);
   }
 
+  @Override
+  public boolean executeQuery(Connection connection) {
+    frameIdToIndex = null;
+    return super.executeQuery(connection);
+  }
+
+  /**
+   * @param frameId the frame id
+   * @return the index of the frame in the columns of this table or -1 if the frame id is not
+   * contained.
+   */
+  public int getFrameIndex(long frameId) {
+    Long2IntMap map = frameIdToIndex;
+    if (map == null) {
+      final TDFDataColumn<Long> ids = getFrameIdColumn();
+      map = new Long2IntOpenHashMap(ids.size());
+      map.defaultReturnValue(-1);
+      for (int i = 0; i < ids.size(); i++) {
+        map.put(ids.get(i).longValue(), i);
+      }
+      frameIdToIndex = map;
+    }
+    return map.get(frameId);
+  }
+
   public long getFirstFrameNumber() {
     return getFrameIdColumn().get(0);
   }
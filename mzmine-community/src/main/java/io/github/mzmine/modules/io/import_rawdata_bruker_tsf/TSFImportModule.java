@@ -27,6 +27,7 @@ package io.github.mzmine.modules.io.import_rawdata_bruker_tsf;
 
 import com.google.common.base.Strings;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.main.AdaptiveMemoryPolicy;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
@@ -72,7 +73,7 @@ public class TSFImportModule implements MZmineProcessingModule {
   public ExitCode runModule(@NotNull MZmineProject project, @NotNull ParameterSet parameters,
       @NotNull Collection<Task> tasks, @NotNull Instant moduleCallDate) {
     File fileNames[] = parameters.getParameter(TDFImportParameters.fileNames).getValue();
-    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    final MemoryMapStorage storage = AdaptiveMemoryPolicy.forRawDataFiles(fileNames);
 
     if (Arrays.asList(fileNames).contains(null)) {
       logger.warning("List of filenames contains null");
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import com.alanmrace.jimzmlparser.mzml.BinaryDataArray;
+import com.alanmrace.jimzmlparser.mzml.CVParam;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads uncompressed binary arrays directly from the memory mapped .ibd file of an imzML file by
+ * their external offsets. Arrays of multiple spectra are read from one mapped region, so blocks of
+ * pixels can be decoded in parallel, each with its own mapping. Only arrays that declare no
+ * compression are read, see {@link ExternalArray#of(BinaryDataArray)}.
+ */
+class ImzMLIbdReader implements AutoCloseable {
+
+  // imzML external data
+  private static final String EXTERNAL_OFFSET = "IMS:1000102";
+  private static final String EXTERNAL_ARRAY_LENGTH = "IMS:1000103";
+  private static final String EXTERNAL_ENCODED_LENGTH = "IMS:1000104";
+  // only arrays with this explicit compression term are read directly
+  private static final String NO_COMPRESSION = "MS:1000576";
+
+  private final FileChannel channel;
+
+  ImzMLIbdReader(@NotNull File ibdFile) throws IOException {
+    channel = FileChannel.open(ibdFile.toPath(), StandardOpenOption.READ);
+  }
+
+  /**
+   * @param imzmlFile the imzML file
+   * @return the .ibd file with the same name next to the imzML file
+   */
+  static @NotNull File getIbdFile(@NotNull File imzmlFile) {
+    final String name = imzmlFile.getName();
+    final int dot = name.lastIndexOf('.');
+    final String baseName = dot > 0 ? name.substring(0, dot) : name;
+    return new File(imzmlFile.getParentFile(), baseName + ".ibd");
+  }
+
+  /**
+   * Maps the region covering all arrays once and decodes them in order.
+   *
+   * @param arrays arrays to read
+   * @return the decoded arrays in the same order
+   */
+  double[][] read(@NotNull List<ExternalArray> arrays) throws IOException {
+    final double[][] result = new double[arrays.size()][];
+    if (arrays.isEmpty()) {
+      return result;
+    }
+
+    long start = Long.MAX_VALUE;
+    long end = 0;
+    for (ExternalArray array : arrays) {
+      start = Math.min(start, array.offset());
+      end = Math.max(end, array.end());
+    }
+
+    if (end - start > Integer.MAX_VALUE) {
+      // arrays are spread too far for a single mapping
+      for (int i = 0; i < result.length; i++) {
+        result[i] = read(arrays.get(i));
+      }
+      return result;
+    }
+
+    final ByteBuffer region = map(start, end - start);
+    for (int i = 0; i < result.length; i++) {
+      final ExternalArray array = arrays.get(i);
+      result[i] = array.type().decode(region, (int) (array.offset() - start), array.length());
+    }
+    return result;
+  }
+
+  double[] read(@NotNull ExternalArray array) throws IOException {
+    return array.type().decode(map(array.offset(), array.numBytes()), 0, array.length());
+  }
+
+  private ByteBuffer map(long offset, long size) throws IOException {
+    if (offset + size > channel.size()) {
+      throw new IOException(
+          "Binary array at offset %d with %d bytes exceeds the .ibd file size of %d bytes"
+              .formatted(offset, size, channel.size()));
+    }
+    return channel.map(MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Binary data types of imzML arrays with their mzML and imzML accessions.
+   */
+  enum ExternalDataType {
+    FLOAT_32(Float.BYTES, "MS:1000521"), FLOAT_64(Double.BYTES, "MS:1000523"), //
+    INT_32(Integer.BYTES, "MS:1000519", "IMS:1000141"), //
+    INT_64(Long.BYTES, "MS:1000522", "IMS:1000142");
+
+    private final int bytes;
+    private final String[] accessions;
+
+    ExternalDataType(int bytes, String... accessions) {
+      this.bytes = bytes;
+      this.accessions = accessions;
+    }
+
+    static @Nullable ExternalDataType of(@NotNull BinaryDataArray array) {
+      for (ExternalDataType type : values()) {
+        for (String accession : type.accessions) {
+          if (array.getCVParam(accession) != null) {
+            return type;
+          }
+        }
+      }
+      return null;
+    }
+
+    int bytes() {
+      return bytes;
+    }
+
+    double[] decode(@NotNull ByteBuffer buffer, int position, int length) {
+      final double[] values = new double[length];
+      switch (this) {
+        case FLOAT_32 -> {
+          for (int i = 0; i < length; i++) {
+            values[i] = buffer.getFloat(position + i * Float.BYTES);
+          }
+        }
+        case FLOAT_64 -> buffer.slice(position, length * Double.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+        case INT_32 -> {
+          for (int i = 0; i < length; i++) {
+            values[i] = buffer.getInt(position + i * Integer.BYTES);
+          }
+        }
+        case INT_64 -> {
+          for (int i = 0; i < length; i++) {
+            values[i] = buffer.getLong(position + i * Long.BYTES);
+          }
+        }
+      }
+      return values;
+    }
+  }
+
+  /**
+   * Location of an uncompressed binary array in the .ibd file
+   *
+   * @param offset byte offset in the .ibd file
+   * @param length number of values
+   * @param type   the binary data type
+   */
+  record ExternalArray(long offset, int length, @NotNull ExternalDataType type) {
+
+    /**
+     * @return the external array or null if the array is not stored externally, does not declare
+     * "no compression", or uses an unknown data type. Those arrays are decoded by jimzMLParser,
+     * which handles zlib and other compressions.
+     */
+    static @Nullable ExternalArray of(@Nullable BinaryDataArray array) {
+      if (array == null || array.getCVParam(NO_COMPRESSION) == null) {
+        return null;
+      }
+      final ExternalDataType type = ExternalDataType.of(array);
+      final CVParam offset = array.getCVParam(EXTERNAL_OFFSET);
+      final CVParam length = array.getCVParam(EXTERNAL_ARRAY_LENGTH);
+      if (type == null || offset == null || length == null) {
+        return null;
+      }
+      final ExternalArray external = new ExternalArray((long) offset.getValueAsDouble(),
+          length.getValueAsInteger(), type);
+      // the encoded length is optional but if present it must match an uncompressed array
+      final CVParam encodedLength = array.getCVParam(EXTERNAL_ENCODED_LENGTH);
+      if (encodedLength != null && (long) encodedLength.getValueAsDouble() != external.numBytes()) {
+        return null;
+      }
+      return external;
+    }
+
+    long numBytes() {
+      return (long) length * type.bytes();
+    }
+
+    long end() {
+      return offset + numBytes();
+    }
+  }
+}
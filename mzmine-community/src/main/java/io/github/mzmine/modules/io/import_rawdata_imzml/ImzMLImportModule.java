@@ -28,6 +28,7 @@ package io.github.mzmine.modules.io.import_rawdata_imzml;
 import com.google.common.base.Strings;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.main.AdaptiveMemoryPolicy;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
@@ -95,7 +96,7 @@ public class ImzMLImportModule implements MZmineProcessingModule {
     String commonPrefix = RawDataFileUtils.askToRemoveCommonPrefix(fileNames);
 
     // one storage for all files in the same module call
-    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    final MemoryMapStorage storage = AdaptiveMemoryPolicy.forRawDataFiles(fileNames);
 
     for (int i = 0; i < fileNames.length; i++) {
 
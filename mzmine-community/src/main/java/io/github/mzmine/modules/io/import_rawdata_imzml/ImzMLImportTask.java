@@ -44,10 +44,10 @@ import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleImagingScan;
-import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.datamodel.impl.builders.SimpleBuildingScan;
 import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
 import io.github.mzmine.modules.MZmineModule;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLIbdReader.ExternalArray;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
 import io.github.mzmine.parameters.ParameterSet;
@@ -57,14 +57,19 @@ import io.github.mzmine.util.exceptions.ExceptionUtils;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class reads mzML 1.0 and 1.1.0 files (http://www.psidev.info/index.php?q=node/257) using the
@@ -80,21 +85,17 @@ public class ImzMLImportTask extends AbstractTask {
   private ImagingRawDataFile newMZmineFile;
   private final ParameterSet parameters;
   private final Class<? extends MZmineModule> module;
-  private int totalScans = 0, parsedScans;
+  private int totalScans = 0;
+  private final AtomicInteger parsedScans = new AtomicInteger(0);
 
   private int lastScanNumber = 0;
 
   private Map<String, Integer> scanIdTable = new Hashtable<>();
 
-  /*
-   * This stack stores at most 20 consecutive scans. This window serves to find possible fragments
-   * (current scan) that belongs to any of the stored scans in the stack. The reason of the size
-   * follows the concept of neighborhood of scans and all his fragments. These solution is
-   * implemented because exists the possibility to find fragments of one scan after one or more full
-   * scans.
+  /**
+   * Pixels are decoded in blocks, each block maps the region of its arrays in the .ibd file once
    */
-  private static final int PARENT_STACK_SIZE = 20;
-  private LinkedList<SimpleScan> parentStack = new LinkedList<>();
+  private static final int PIXELS_PER_BLOCK = 256;
 
   public ImzMLImportTask(MZmineProject project, File fileToOpen,
       final @NotNull ScanImportProcessorConfig scanProcessorConfig,
@@ -111,7 +112,7 @@ public class ImzMLImportTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return totalScans == 0 ? 0 : (double) parsedScans / totalScans;
+    return totalScans == 0 ? 0 : (double) parsedScans.get() / totalScans;
   }
 
   /**
@@ -129,6 +130,8 @@ public class ImzMLImportTask extends AbstractTask {
 
       SpectrumList spectra = imzml.getRun().getSpectrumList();
       totalScans = spectra.size();
+      // metadata is extracted sequentially because scan numbers depend on the order
+      final List<PixelSpectrum> pixels = new ArrayList<>(totalScans);
       for (int i = 0; i < totalScans; i++) {
 
         if (isCanceled()) {
@@ -139,7 +142,7 @@ public class ImzMLImportTask extends AbstractTask {
 
         // Ignore scans that are not MS, e.g. UV
         if (!isMsSpectrum(spectrum)) {
-          parsedScans++;
+          parsedScans.incrementAndGet();
           continue;
         }
 
@@ -162,47 +165,25 @@ public class ImzMLImportTask extends AbstractTask {
             MassSpectrumType.CENTROIDED, retentionTime, precursorMz, precursorCharge);
         if (!scanProcessorConfig.scanFilter().matches(metadataScan)) {
           // skip parsing of data and skip this scan completely
-          parsedScans++;
+          parsedScans.incrementAndGet();
           continue;
         }
 
-        double[] mzValues = extractMzValues(spectrum);
-        double[] intensityValues = extractIntensityValues(spectrum);
-        // Auto-detect whether this scan is centroided
-        SimpleSpectralArrays data = new SimpleSpectralArrays(mzValues, intensityValues);
-        MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
-
-        data = scanProcessorConfig.processor().processScan(metadataScan, data);
-
-        if (scanProcessorConfig.isMassDetectActive(msLevel)) {
-          spectrumType = MassSpectrumType.CENTROIDED;
-        }
-
-        SimpleImagingScan scan = new SimpleImagingScan(newMZmineFile, scanNumber, msLevel,
-            retentionTime, precursorMz, precursorCharge, data.mzs(), data.intensities(),
-            spectrumType, polarity, scanDefinition, null, coord);
-
-        if (scanProcessorConfig.isMassDetectActive(msLevel)) {
-          scan.addMassList(new ScanPointerMassList(scan));
-        }
-
-        /*
-         * Verify the size of parentStack. The actual size of the window to cover possible
-         * candidates is defined by limitSize.
-         */
-        if (parentStack.size() > PARENT_STACK_SIZE) {
-          io.github.mzmine.datamodel.Scan firstScan = parentStack.removeLast();
-          newMZmineFile.addScan(firstScan);
-        }
-
-        parentStack.addFirst(scan);
-
-        parsedScans++;
+        BinaryDataArrayList dataList = spectrum.getBinaryDataArrayList();
+        pixels.add(new PixelSpectrum(spectrum, metadataScan, precursorMz, precursorCharge,
+            scanDefinition, coord, ExternalArray.of(dataList.getmzArray()),
+            ExternalArray.of(dataList.getIntensityArray())));
+      }
 
+      final SimpleImagingScan[] scans;
+      try (var reader = new ImzMLIbdReader(ImzMLIbdReader.getIbdFile(file))) {
+        scans = decodePixels(pixels, reader);
+      }
+      if (isCanceled()) {
+        return;
       }
 
-      while (!parentStack.isEmpty()) {
-        io.github.mzmine.datamodel.Scan scan = parentStack.removeLast();
+      for (SimpleImagingScan scan : scans) {
         newMZmineFile.addScan(scan);
       }
 
@@ -219,17 +200,109 @@ public class ImzMLImportTask extends AbstractTask {
       return;
     }
 
-    if (parsedScans == 0) {
+    if (parsedScans.get() == 0) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("No scans found");
       return;
     }
 
-    logger.info("Finished parsing " + file + ", parsed " + parsedScans + " scans");
+    logger.info("Finished parsing " + file + ", parsed " + parsedScans.get() + " scans");
     setStatus(TaskStatus.FINISHED);
 
   }
 
+  /**
+   * Decodes all pixels in parallel blocks directly from the .ibd file. In continuous mode, all
+   * pixels share the same m/z array, which is only decoded once.
+   *
+   * @return the scans in the same order as the pixels
+   */
+  private SimpleImagingScan[] decodePixels(@NotNull List<PixelSpectrum> pixels,
+      @NotNull ImzMLIbdReader reader) throws IOException {
+    final SimpleImagingScan[] scans = new SimpleImagingScan[pixels.size()];
+    if (pixels.isEmpty()) {
+      return scans;
+    }
+
+    final ExternalArray sharedMzArray = pixels.getFirst().mzArray();
+    final double[] sharedMzs = sharedMzArray != null ? reader.read(sharedMzArray) : null;
+
+    final int numBlocks = (pixels.size() + PIXELS_PER_BLOCK - 1) / PIXELS_PER_BLOCK;
+    IntStream.range(0, numBlocks).parallel().forEach(block -> {
+      if (isCanceled()) {
+        return;
+      }
+      final int from = block * PIXELS_PER_BLOCK;
+      final int to = Math.min(from + PIXELS_PER_BLOCK, pixels.size());
+      try {
+        decodeBlock(pixels, from, to, reader, sharedMzArray, sharedMzs, scans);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    return scans;
+  }
+
+  private void decodeBlock(@NotNull List<PixelSpectrum> pixels, int from, int to,
+      @NotNull ImzMLIbdReader reader, @Nullable ExternalArray sharedMzArray,
+      @Nullable double[] sharedMzs, @NotNull SimpleImagingScan[] scans) throws IOException {
+    // collect all arrays of this block that are read from the .ibd file
+    final List<ExternalArray> arrays = new ArrayList<>((to - from) * 2);
+    for (int i = from; i < to; i++) {
+      final PixelSpectrum pixel = pixels.get(i);
+      if (pixel.intensityArray() != null && pixel.mzArray() != null) {
+        arrays.add(pixel.intensityArray());
+        if (!pixel.mzArray().equals(sharedMzArray)) {
+          arrays.add(pixel.mzArray());
+        }
+      }
+    }
+    final double[][] decoded = reader.read(arrays);
+
+    int next = 0;
+    for (int i = from; i < to; i++) {
+      final PixelSpectrum pixel = pixels.get(i);
+      final double[] mzValues;
+      final double[] intensityValues;
+      if (pixel.intensityArray() != null && pixel.mzArray() != null) {
+        intensityValues = decoded[next++];
+        mzValues = pixel.mzArray().equals(sharedMzArray) ? sharedMzs : decoded[next++];
+      } else {
+        // compressed or unknown binary format
+        mzValues = extractMzValues(pixel.spectrum());
+        intensityValues = extractIntensityValues(pixel.spectrum());
+      }
+      scans[i] = createScan(pixel, mzValues, intensityValues);
+      parsedScans.incrementAndGet();
+    }
+  }
+
+  private SimpleImagingScan createScan(@NotNull PixelSpectrum pixel, double[] mzValues,
+      double[] intensityValues) {
+    final SimpleBuildingScan metadataScan = pixel.metadataScan();
+    final int msLevel = metadataScan.getMSLevel();
+
+    // Auto-detect whether this scan is centroided
+    SimpleSpectralArrays data = new SimpleSpectralArrays(mzValues, intensityValues);
+    MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
+
+    data = scanProcessorConfig.processor().processScan(metadataScan, data);
+
+    if (scanProcessorConfig.isMassDetectActive(msLevel)) {
+      spectrumType = MassSpectrumType.CENTROIDED;
+    }
+
+    SimpleImagingScan scan = new SimpleImagingScan(newMZmineFile, metadataScan.getScanNumber(),
+        msLevel, metadataScan.getRetentionTime(), pixel.precursorMz(), pixel.precursorCharge(),
+        data.mzs(), data.intensities(), spectrumType, metadataScan.getPolarity(),
+        pixel.scanDefinition(), null, pixel.coordinates());
+
+    if (scanProcessorConfig.isMassDetectActive(msLevel)) {
+      scan.addMassList(new ScanPointerMassList(scan));
+    }
+    return scan;
+  }
+
   private int convertScanIdToScanNumber(String scanId) {
 
     if (scanIdTable.containsKey(scanId)) {
@@ -285,7 +358,10 @@ public class ImzMLImportTask extends AbstractTask {
     return 0;
   }
 
-  private double[] extractIntensityValues(Spectrum spectrum) {
+  /**
+   * Decoding by jimzMLParser reads from a shared file handle and is therefore synchronized
+   */
+  private synchronized double[] extractIntensityValues(Spectrum spectrum) {
     try {
       BinaryDataArrayList dataList = spectrum.getBinaryDataArrayList();
       BinaryDataArray intensityArray = dataList.getIntensityArray();
@@ -297,7 +373,7 @@ public class ImzMLImportTask extends AbstractTask {
     }
   }
 
-  private double[] extractMzValues(Spectrum spectrum) {
+  private synchronized double[] extractMzValues(Spectrum spectrum) {
     try {
       BinaryDataArrayList dataList = spectrum.getBinaryDataArrayList();
 
@@ -465,4 +541,13 @@ public class ImzMLImportTask extends AbstractTask {
     return cvParams == null;
   }
 
+
+  private record PixelSpectrum(@NotNull Spectrum spectrum,
+                               @NotNull SimpleBuildingScan metadataScan, double precursorMz,
+                               int precursorCharge, String scanDefinition,
+                               @Nullable Coordinates coordinates,
+                               @Nullable ExternalArray mzArray,
+                               @Nullable ExternalArray intensityArray) {
+
+  }
 }
@@ -27,6 +27,7 @@ package io.github.mzmine.modules.io.import_rawdata_mzml;
 
 import com.google.common.base.Strings;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.main.AdaptiveMemoryPolicy;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
@@ -92,7 +93,7 @@ public class MSDKmzMLImportModule implements MZmineProcessingModule {
     String commonPrefix = RawDataFileUtils.askToRemoveCommonPrefix(fileNames);
 
     // one storage for all files imported in the same task as they are typically analyzed together
-    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    final MemoryMapStorage storage = AdaptiveMemoryPolicy.forRawDataFiles(fileNames);
 
     for (int i = 0; i < fileNames.length; i++) {
 
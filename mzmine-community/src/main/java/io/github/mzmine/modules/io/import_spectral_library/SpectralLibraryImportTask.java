@@ -26,12 +26,15 @@
 package io.github.mzmine.modules.io.import_spectral_library;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import io.github.mzmine.util.spectraldb.parser.AutoLibraryParser;
+import io.github.mzmine.util.spectraldb.parser.CompiledSpectralLibrary;
 import io.github.mzmine.util.spectraldb.parser.UnsupportedFormatException;
 import java.io.File;
 import java.io.IOException;
@@ -48,6 +51,7 @@ public class SpectralLibraryImportTask extends AbstractTask {
   private final MZmineProject project;
   private final File dataBaseFile;
   private AutoLibraryParser parser;
+  private CompiledSpectralLibrary compiledLibrary;
 
   public SpectralLibraryImportTask(MZmineProject project, File dataBaseFile,
       @NotNull Instant moduleCallDate) {
@@ -58,7 +62,10 @@ public class SpectralLibraryImportTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return parser == null ? 0 : parser.getProgress();
+    if (parser != null) {
+      return parser.getProgress();
+    }
+    return compiledLibrary == null ? 0 : compiledLibrary.getProgress();
   }
 
   @Override
@@ -67,6 +74,10 @@ public class SpectralLibraryImportTask extends AbstractTask {
       return "Import spectral library from %s (%d)".formatted(dataBaseFile,
           parser.getProcessedEntries());
     }
+    if (compiledLibrary != null) {
+      return "Load compiled spectral library %s (%d)".formatted(dataBaseFile,
+          compiledLibrary.getLoadedEntries());
+    }
     return "Import spectral library from " + dataBaseFile;
   }
 
@@ -97,7 +108,8 @@ public class SpectralLibraryImportTask extends AbstractTask {
   }
 
   /**
-   * Load all library entries from data base file
+   * Load all library entries from the compiled library or from the data base file. A parsed file is
+   * compiled for later imports if enabled in the {@link MZminePreferences#spectralLibraryCache}.
    *
    * @param dataBaseFile the target database file
    */
@@ -105,9 +117,31 @@ public class SpectralLibraryImportTask extends AbstractTask {
       throws UnsupportedFormatException, IOException {
     //
     SpectralLibrary library = new SpectralLibrary(MemoryMapStorage.forMassList(), dataBaseFile);
+    final Integer maxCacheGB = MZmineCore.getConfiguration().getPreferences()
+        .getEmbeddedParameterValueIfSelectedOrElse(MZminePreferences.spectralLibraryCache, null);
+    if (maxCacheGB != null) {
+      compiledLibrary = new CompiledSpectralLibrary(dataBaseFile);
+    }
+    if (compiledLibrary != null && compiledLibrary.load(library, this)) {
+      logger.fine(() -> "Loaded compiled spectral library " + compiledLibrary.getCacheFile()
+          .getAbsolutePath());
+      return library;
+    }
+    if (isCanceled()) {
+      return library;
+    }
+
     parser = new AutoLibraryParser(1000, (list, alreadyProcessed) -> library.addEntries(list));
     // return tasks
-    parser.parse(this, dataBaseFile, library);
+    final boolean parsed = parser.parse(this, dataBaseFile, library);
+    if (compiledLibrary != null && parsed && !isCanceled() && library.size() > 0) {
+      try {
+        compiledLibrary.write(library, maxCacheGB * 1024L * 1024 * 1024);
+      } catch (IOException e) {
+        logger.log(Level.WARNING,
+            "Cannot compile spectral library %s for faster imports".formatted(dataBaseFile), e);
+      }
+    }
     return library;
   }
 
@@ -40,15 +40,17 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.modules.io.spectraldbsubmit.formats.GnpsValues.Polarity;
 import io.github.mzmine.modules.io.spectraldbsubmit.param.LibraryMetaDataParameters;
 import io.github.mzmine.modules.io.spectraldbsubmit.param.LibrarySubmitIonParameters;
+import io.github.mzmine.util.io.FastDecimalFormat;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.Arrays;
 import org.jetbrains.annotations.Nullable;
 
 public class MGFEntryGenerator {
 
+  private static final FastDecimalFormat MZ_FORMAT = new FastDecimalFormat("0.######");
+  private static final FastDecimalFormat PERCENT_FORMAT = new FastDecimalFormat("0.###");
+
   /**
    * Creates a simple MSP nist format DB entry
    *
@@ -114,9 +116,8 @@ public class MGFEntryGenerator {
       }
     }
 
-    NumberFormat mzForm = new DecimalFormat("0.######");
     for (DataPoint dp : dps) {
-      s.append(mzForm.format(dp.getMZ()) + " " + dp.getIntensity() + br);
+      MZ_FORMAT.append(s, dp.getMZ()).append(" ").append(dp.getIntensity()).append(br);
     }
     s.append("END IONS").append(br);
     return s.toString();
@@ -158,17 +159,15 @@ public class MGFEntryGenerator {
     // num peaks and data
     DataPoint[] dps = entry.getDataPoints();
 
-    NumberFormat mzForm = new DecimalFormat("0.######");
     // minimum intensity after formatting
-    NumberFormat percentForm = new DecimalFormat("0.###");
     double minIntensity = 0.0005;
 
     double max = Arrays.stream(dps).mapToDouble(DataPoint::getIntensity).max().orElse(1d);
     for (DataPoint dp : dps) {
       double intensityPercent = dp.getIntensity() / max * 100.0;
       if (intensityPercent >= minIntensity) {
-        s.append(mzForm.format(dp.getMZ())).append(" ").append(percentForm.format(intensityPercent))
-            .append(br);
+        MZ_FORMAT.append(s, dp.getMZ()).append(" ");
+        PERCENT_FORMAT.append(s, intensityPercent).append(br);
       }
     }
     s.append("END IONS").append(br);
@@ -29,6 +29,7 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.types.numbers.RTRangeType;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @param filter      defines how to apply the filter
@@ -56,17 +57,26 @@ public record RtLimitsFilter(FeatureLimitOptions filter, RTTolerance rtTolerance
    * @return true if tested rt is matching the feature's retention time
    */
   public boolean accept(final ModularFeature feature, final float testedRt) {
+    final Range<Float> rtRange = getRtRange(feature);
+    return rtRange == null || rtRange.contains(testedRt);
+  }
+
+  /**
+   * The retention time range that is accepted by {@link #accept(ModularFeature, float)}
+   *
+   * @param feature tested feature
+   * @return the accepted range or null if all retention times are accepted, e.g., for IMS-MS data
+   * without time component
+   */
+  @Nullable
+  public Range<Float> getRtRange(final ModularFeature feature) {
     return switch (filter) {
-      case USE_FEATURE_EDGES -> {
-        // don't use shortcut as this returns a non-null singleton range.
-        // Range<Float> rtRange = feature.getRawDataPointsRTRange();
-        // true if no range means that there was no retention time like in IMS-MS data without time component
-        Range<Float> rtRange = feature.get(RTRangeType.class);
-        yield rtRange == null || rtRange.contains(testedRt);
-      }
+      // don't use shortcut as this returns a non-null singleton range.
+      // Range<Float> rtRange = feature.getRawDataPointsRTRange();
+      case USE_FEATURE_EDGES -> feature.get(RTRangeType.class);
       case USE_TOLERANCE -> {
         Float rt = feature.getRT();
-        yield rt == null || rtTolerance.checkWithinTolerance(rt, testedRt);
+        yield rt == null ? null : rtTolerance.getToleranceRange(rt);
       }
     };
   }
@@ -108,6 +108,24 @@ public class MZTolerance {
         mzRange.upperEndpoint() + getMzToleranceForMass(mzRange.upperEndpoint()));
   }
 
+  /**
+   * The inverse of {@link #getToleranceRange(double)}: the range of all reference values mz1 for
+   * which {@link #checkWithinTolerance(double, double)} with mz2=mzValue is true. Differs from the
+   * tolerance range of mzValue because the ppm tolerance scales with the reference value. The range
+   * is widened by a few ulps to not lose boundary values by rounding.
+   *
+   * @param mzValue the measured value
+   * @return the range to search for reference values, e.g., in a sorted database
+   */
+  public Range<Double> getReferenceRange(final double mzValue) {
+    final double relative = ppmTolerance / MILLION;
+    final double slack = 4 * Math.ulp(mzValue);
+    final double lower = Math.min(mzValue - mzTolerance, mzValue / (1 + relative)) - slack;
+    final double upper = relative < 1 ? Math.max(mzValue + mzTolerance, mzValue / (1 - relative))
+        : Double.POSITIVE_INFINITY;
+    return Range.closed(lower, upper + slack);
+  }
+
   public boolean checkWithinTolerance(final double mz1, final double mz2) {
     return getToleranceRange(mz1).contains(mz2);
   }
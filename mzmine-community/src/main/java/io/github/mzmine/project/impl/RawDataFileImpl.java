@@ -33,8 +33,10 @@ import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.SharedMzAxisStorage;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.FragmentScanIndex;
 import io.github.mzmine.javafx.util.FxColorUtil;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import java.io.IOException;
@@ -77,6 +79,7 @@ public class RawDataFileImpl implements RawDataFile {
   private final Int2DoubleOpenHashMap dataMaxTIC = new Int2DoubleOpenHashMap(2);
   // Temporary file for scan data storage
   private final MemoryMapStorage storageMemoryMap;
+  private final SharedMzAxisStorage sharedMzAxisStorage = new SharedMzAxisStorage();
   private final ObjectProperty<Color> color = new SimpleObjectProperty<>();
   // maximum number of data points and centroid data points in all scans
   protected int maxRawDataPoints = -1;
@@ -88,6 +91,8 @@ public class RawDataFileImpl implements RawDataFile {
 
   private boolean containsEmptyScans;
   private MassSpectrumType spectraType;
+  // lazily created and reset when scans are added
+  private volatile FragmentScanIndex fragmentScanIndex;
 
   @Nullable
   private LocalDateTime startTimeStamp = null;
@@ -114,6 +119,11 @@ public class RawDataFileImpl implements RawDataFile {
     return storageMemoryMap;
   }
 
+  @Override
+  public @NotNull SharedMzAxisStorage getSharedMzAxisStorage() {
+    return sharedMzAxisStorage;
+  }
+
   @Override
   public RawDataFile clone() throws CloneNotSupportedException {
     return (RawDataFile) super.clone();
@@ -220,6 +230,23 @@ public class RawDataFileImpl implements RawDataFile {
     dataRTRange.clear();
     dataMaxBasePeakIntensity.clear();
     dataMaxTIC.clear();
+    fragmentScanIndex = null;
+  }
+
+  @Override
+  public @NotNull FragmentScanIndex getFragmentScanIndex() {
+    FragmentScanIndex index = fragmentScanIndex;
+    if (index != null && index.isUpToDate(this)) {
+      return index;
+    }
+    synchronized (this) {
+      index = fragmentScanIndex;
+      if (index == null || !index.isUpToDate(this)) {
+        index = FragmentScanIndex.create(this);
+        fragmentScanIndex = index;
+      }
+      return index;
+    }
   }
 
   @Override
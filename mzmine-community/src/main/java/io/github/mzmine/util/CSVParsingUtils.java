@@ -56,6 +56,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javafx.beans.property.SimpleStringProperty;
@@ -302,6 +303,29 @@ public class CSVParsingUtils {
     }
   }
 
+  /**
+   * Streams all lines to the consumer without retaining them. Skips empty lines.
+   *
+   * @param separator    separator
+   * @param lineConsumer consumes each line, return false to stop reading
+   * @throws IOException if read is unsuccessful
+   */
+  public static void streamData(final File file, final String separator,
+      final Predicate<String[]> lineConsumer) throws IOException, CsvException {
+    char sep = "\\t".equals(separator) ? '\t' : separator.charAt(0);
+    try (var reader = Files.newBufferedReader(file.toPath()); //
+        CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(
+            new RFC4180ParserBuilder().withSeparator(sep).build()).build()) {
+      String[] row;
+      while ((row = csvReader.readNext()) != null) {
+        boolean empty = Arrays.stream(row).allMatch(s -> s == null || s.isBlank());
+        if (!empty && !lineConsumer.test(row)) {
+          return;
+        }
+      }
+    }
+  }
+
   public static String[][] readDataMapToColumns(final File file, final String sep)
       throws IOException, CsvException {
     return readDataMapToColumns(file, sep, 0);
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thread safe number formatting that appends the same characters as the wrapped
+ * {@link NumberFormat} without allocating intermediate objects. Plain (e.g., 0.0000, 0.###) and
+ * scientific (e.g., 0.0E0, 0.##E0) {@link DecimalFormat} patterns of positive finite values are
+ * formatted directly. Negative values, values close to a rounding tie, and all other patterns are
+ * delegated to a per thread copy of the original format.
+ */
+public final class FastDecimalFormat {
+
+  private static final double[] POW10 = new double[23];
+  private static final long[] LONG_POW10 = new long[19];
+
+  static {
+    // all powers up to 10^22 are exact doubles
+    double d = 1;
+    for (int i = 0; i < POW10.length; i++) {
+      POW10[i] = d;
+      d *= 10;
+    }
+    long l = 1;
+    for (int i = 0; i < LONG_POW10.length; i++) {
+      LONG_POW10[i] = l;
+      l *= 10;
+    }
+  }
+
+  private final ThreadLocal<NumberFormat> fallback;
+  private final boolean fastPath;
+  private final boolean scientific;
+  private final int minInt;
+  private final int minFrac;
+  private final int maxFrac;
+  private final int minExponentDigits;
+  private final boolean decimalSeparatorAlwaysShown;
+  private final char decimalSeparator;
+  private final String exponentSeparator;
+  private final char minusSign;
+
+  public FastDecimalFormat(@NotNull String pattern) {
+    this(new DecimalFormat(pattern));
+  }
+
+  public FastDecimalFormat(@NotNull NumberFormat format) {
+    final NumberFormat copy = (NumberFormat) format.clone();
+    fallback = ThreadLocal.withInitial(() -> (NumberFormat) copy.clone());
+
+    if (!(copy instanceof DecimalFormat df)) {
+      fastPath = false;
+      scientific = false;
+      minInt = minFrac = maxFrac = minExponentDigits = 0;
+      decimalSeparatorAlwaysShown = false;
+      decimalSeparator = '.';
+      exponentSeparator = "E";
+      minusSign = '-';
+      return;
+    }
+
+    final DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+    final String pattern = df.toPattern();
+    final int exponentIndex = pattern.indexOf('E');
+    scientific = exponentIndex >= 0;
+    minInt = df.getMinimumIntegerDigits();
+    minFrac = df.getMinimumFractionDigits();
+    maxFrac = df.getMaximumFractionDigits();
+    minExponentDigits = scientific ? countZeros(pattern, exponentIndex + 1) : 0;
+    decimalSeparatorAlwaysShown = df.isDecimalSeparatorAlwaysShown();
+    decimalSeparator = symbols.getDecimalSeparator();
+    exponentSeparator = symbols.getExponentSeparator();
+    minusSign = symbols.getMinusSign();
+
+    final RoundingMode rounding = df.getRoundingMode();
+    // the half modes only differ for ties, which are always delegated
+    final boolean halfRounding = rounding == RoundingMode.HALF_EVEN
+                                 || rounding == RoundingMode.HALF_UP
+                                 || rounding == RoundingMode.HALF_DOWN;
+    final boolean plainAffixes =
+        df.getPositivePrefix().isEmpty() && df.getPositiveSuffix().isEmpty();
+    final boolean layout = scientific ? minInt == 1 && df.getMaximumIntegerDigits() == 1
+                                        && minExponentDigits > 0 && pattern.indexOf(';') < 0
+        : minInt >= 1 && df.getMaximumIntegerDigits() >= 309;
+    fastPath = halfRounding && plainAffixes && layout && df.getMultiplier() == 1
+               && !df.isGroupingUsed() && symbols.getZeroDigit() == '0' && maxFrac <= 15;
+  }
+
+  private static int countZeros(String pattern, int start) {
+    int zeros = 0;
+    for (int i = start; i < pattern.length() && pattern.charAt(i) == '0'; i++) {
+      zeros++;
+    }
+    return zeros;
+  }
+
+  public @NotNull String format(double value) {
+    return append(new StringBuilder(24), value).toString();
+  }
+
+  /**
+   * Appends the formatted value
+   *
+   * @return the same builder
+   */
+  public @NotNull StringBuilder append(@NotNull StringBuilder b, double value) {
+    // negative values including -0 and NaN are delegated
+    final boolean handled = fastPath && value >= 0 && Double.doubleToRawLongBits(value) >= 0
+                            && !Double.isInfinite(value) && (scientific ? appendScientific(b,
+        value) : appendPlain(b, value));
+    if (!handled) {
+      b.append(fallback.get().format(value));
+    }
+    return b;
+  }
+
+  /**
+   * @return false if the value was not appended
+   */
+  private boolean appendPlain(StringBuilder b, double value) {
+    final double scaled = value * POW10[maxFrac];
+    if (scaled >= 1e15) {
+      return false;
+    }
+    final long rounded = roundHalf(scaled);
+    if (rounded < 0) {
+      return false;
+    }
+    final long factor = LONG_POW10[maxFrac];
+    appendDigits(b, rounded / factor, minInt);
+    appendFraction(b, rounded % factor, maxFrac);
+    return true;
+  }
+
+  /**
+   * Scientific notation with one integer digit
+   *
+   * @return false if the value was not appended
+   */
+  private boolean appendScientific(StringBuilder b, double value) {
+    if (value == 0) {
+      return false;
+    }
+    int exponent = (int) Math.floor(Math.log10(value));
+    final long lower = LONG_POW10[maxFrac];
+    final long upper = LONG_POW10[maxFrac + 1];
+    // correct a possible error of log10 by one
+    for (int attempt = 0; attempt < 2; attempt++) {
+      final double scaled = scale(value, maxFrac - exponent);
+      if (Double.isNaN(scaled)) {
+        return false;
+      }
+      if (scaled < lower) {
+        exponent--;
+        continue;
+      }
+      if (scaled >= upper) {
+        exponent++;
+        continue;
+      }
+      long rounded = roundHalf(scaled);
+      if (rounded < 0) {
+        return false;
+      }
+      if (rounded == upper) {
+        rounded = lower;
+        exponent++;
+      }
+      appendDigits(b, rounded / lower, 1);
+      appendFraction(b, rounded % lower, maxFrac);
+      b.append(exponentSeparator);
+      if (exponent < 0) {
+        b.append(minusSign);
+      }
+      appendDigits(b, Math.abs(exponent), minExponentDigits);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return value * 10^shift with a single rounding or NaN if the power is not exact
+   */
+  private static double scale(double value, int shift) {
+    if (shift >= 0) {
+      return shift < POW10.length ? value * POW10[shift] : Double.NaN;
+    }
+    return -shift < POW10.length ? value / POW10[-shift] : Double.NaN;
+  }
+
+  /**
+   * Rounds to the nearest integer.
+   *
+   * @return the rounded value or -1 if the exact value may be a tie and the rounding mode decides
+   */
+  private static long roundHalf(double scaled) {
+    final double floor = Math.floor(scaled);
+    final double fraction = scaled - floor;
+    // the scaled value carries a rounding error of up to one ulp
+    if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+      return -1;
+    }
+    return (long) floor + (fraction > 0.5 ? 1 : 0);
+  }
+
+  private static void appendDigits(StringBuilder b, long value, int minDigits) {
+    int digits = 1;
+    while (digits < 19 && value >= LONG_POW10[digits]) {
+      digits++;
+    }
+    for (int i = digits; i < minDigits; i++) {
+      b.append('0');
+    }
+    for (int i = digits - 1; i >= 0; i--) {
+      b.append((char) ('0' + (value / LONG_POW10[i]) % 10));
+    }
+  }
+
+  /**
+   * Appends the fraction digits without trailing zeros beyond the minimum fraction digits
+   */
+  private void appendFraction(StringBuilder b, long fraction, int digits) {
+    int length = digits;
+    while (length > minFrac && fraction % 10 == 0 && length > 0) {
+      fraction /= 10;
+      length--;
+    }
+    if (length > 0 || decimalSeparatorAlwaysShown) {
+      b.append(decimalSeparator);
+    }
+    for (int i = length - 1; i >= 0; i--) {
+      b.append((char) ('0' + (fraction / LONG_POW10[i]) % 10));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import io.github.mzmine.taskcontrol.Task;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renders items to text in parallel and writes the results in the original item order. Items are
+ * processed in chunks: while the calling thread writes one chunk, the next chunk is already
+ * rendered by the common pool. In contrast to {@link ParallelTextWriterTask}, the output is
+ * identical to a sequential export.
+ */
+public class OrderedParallelWriter {
+
+  public static final int DEFAULT_CHUNK_SIZE = 512;
+
+  /**
+   * @param out      the target, only accessed by the calling thread
+   * @param items    the items in output order
+   * @param renderer creates the text of a single item or null to skip an item. Must be thread
+   *                 safe
+   * @param task     stops writing if canceled, may be null
+   * @return the number of written items
+   */
+  public static <T> int write(@NotNull OutputStream out, @NotNull List<T> items,
+      @NotNull Function<T, @Nullable String> renderer, @Nullable Task task) throws IOException {
+    return write(out, items, DEFAULT_CHUNK_SIZE, renderer, task);
+  }
+
+  /**
+   * @param out       the target, only accessed by the calling thread
+   * @param items     the items in output order
+   * @param chunkSize number of items rendered in one parallel step
+   * @param renderer  creates the text of a single item or null to skip an item. Must be thread
+   *                  safe
+   * @param task      stops writing if canceled, may be null
+   * @return the number of written items
+   */
+  public static <T> int write(@NotNull OutputStream out, @NotNull List<T> items, int chunkSize,
+      @NotNull Function<T, @Nullable String> renderer, @Nullable Task task) throws IOException {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be at least 1 but was " + chunkSize);
+    }
+    int written = 0;
+    CompletableFuture<byte[][]> next = renderAsync(items, 0, chunkSize, renderer);
+    for (int start = 0; start < items.size(); start += chunkSize) {
+      final byte[][] chunk = join(next);
+      if (task != null && task.isCanceled()) {
+        return written;
+      }
+      final int nextStart = start + chunkSize;
+      next = nextStart < items.size() ? renderAsync(items, nextStart, chunkSize, renderer) : null;
+
+      for (byte[] text : chunk) {
+        if (text != null) {
+          out.write(text);
+          written++;
+        }
+      }
+    }
+    return written;
+  }
+
+  private static <T> CompletableFuture<byte[][]> renderAsync(List<T> items, int start,
+      int chunkSize, Function<T, String> renderer) {
+    final List<T> chunk = items.subList(start, Math.min(items.size(), start + chunkSize));
+    return CompletableFuture.supplyAsync(() -> chunk.parallelStream().map(item -> {
+      final String text = renderer.apply(item);
+      return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }).toArray(byte[][]::new));
+  }
+
+  private static byte[][] join(CompletableFuture<byte[][]> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      // rethrow the original exception of the renderer
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      if (e.getCause() instanceof Error err) {
+        throw err;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io.arrow;
+
+/**
+ * Column types that are written and read by {@link ArrowIpcWriter} and {@link ArrowIpcReader}.
+ * Values are boxed Java objects of the {@link #getValueClass()}.
+ */
+public enum ArrowColumnType {
+  INT32(Integer.class), INT64(Long.class), FLOAT32(Float.class), FLOAT64(Double.class), //
+  UTF8(String.class), BOOL(Boolean.class);
+
+  private final Class<?> valueClass;
+
+  ArrowColumnType(Class<?> valueClass) {
+    this.valueClass = valueClass;
+  }
+
+  public Class<?> getValueClass() {
+    return valueClass;
+  }
+}
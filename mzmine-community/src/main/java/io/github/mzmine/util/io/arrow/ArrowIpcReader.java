@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io.arrow;
+
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.CONTINUATION;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.HEADER_RECORD_BATCH;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.MAGIC;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.PRECISION_DOUBLE;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.PRECISION_SINGLE;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.TYPE_BOOL;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.TYPE_FLOATING_POINT;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.TYPE_INT;
+import static io.github.mzmine.util.io.arrow.ArrowIpcWriter.TYPE_UTF8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads uncompressed Arrow IPC files (Feather V2) with flat columns of signed or unsigned integers,
+ * 32 and 64 bit floating point numbers, strings, and booleans. This covers the files of
+ * {@link ArrowIpcWriter} and tables of these types written by pyarrow, pandas, or R with
+ * compression="uncompressed". Flat columns of other types (null, binary, decimal, date, time,
+ * timestamp, interval, duration, fixed size binary, 128 or unsigned 64 bit integers, half precision
+ * floats) are skipped. The file is memory mapped and all column slices of all record batches are
+ * decoded in parallel.
+ */
+public class ArrowIpcReader {
+
+  // flat types that are skipped
+  private static final byte TYPE_NULL = 1;
+  private static final byte TYPE_BINARY = 4;
+  private static final byte TYPE_DECIMAL = 7;
+  private static final byte TYPE_DATE = 8;
+  private static final byte TYPE_TIME = 9;
+  private static final byte TYPE_TIMESTAMP = 10;
+  private static final byte TYPE_INTERVAL = 11;
+  private static final byte TYPE_FIXED_SIZE_BINARY = 15;
+  private static final byte TYPE_DURATION = 18;
+  private static final byte TYPE_LARGE_BINARY = 19;
+  private static final byte TYPE_LARGE_UTF8 = 20;
+
+  private ArrowIpcReader() {
+  }
+
+  /**
+   * @return all columns of supported types with the values of all record batches
+   * @throws IOException if the file is no Arrow file or contains nested columns, view types,
+   *                     dictionaries, or compressed buffers
+   */
+  public static @NotNull List<ArrowColumn> read(@NotNull Path file) throws IOException {
+    final ByteBuffer bb;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Arrow files larger than 2 GB are not supported: " + file);
+      }
+      bb = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    final int size = bb.capacity();
+    if (size < 2 * MAGIC.length + 4 || !hasMagic(bb, 0) || !hasMagic(bb, size - MAGIC.length)) {
+      throw new IOException("Not an Arrow IPC file: " + file);
+    }
+
+    final int footerLength = bb.getInt(size - MAGIC.length - 4);
+    final Table footer = Table.root(bb, size - MAGIC.length - 4 - footerLength);
+    if (footer.vectorLength(2) > 0) {
+      throw new IOException("Dictionary encoded Arrow columns are not supported: " + file);
+    }
+
+    final List<FieldInfo> fields = readSchema(footer.table(1));
+    final List<BatchInfo> batches = readBatches(bb, footer);
+    final int numRows = batches.stream().mapToInt(BatchInfo::length).sum();
+
+    // flat columns: one node per column, buffers are counted in column order
+    final int[] firstBuffers = new int[fields.size()];
+    for (int i = 1; i < fields.size(); i++) {
+      firstBuffers[i] = firstBuffers[i - 1] + fields.get(i - 1).numBuffers();
+    }
+
+    final Object[][] values = new Object[fields.size()][numRows];
+    IntStream.range(0, batches.size() * fields.size()).parallel().forEach(i -> {
+      final BatchInfo batch = batches.get(i / fields.size());
+      final int column = i % fields.size();
+      if (!fields.get(column).isSkipped()) {
+        decode(bb, fields.get(column), batch, column, firstBuffers[column], values[column]);
+      }
+    });
+
+    final List<ArrowColumn> columns = new ArrayList<>(fields.size());
+    for (int i = 0; i < fields.size(); i++) {
+      if (!fields.get(i).isSkipped()) {
+        columns.add(new ArrowColumn(fields.get(i).name(), fields.get(i).type(), values[i]));
+      }
+    }
+    return columns;
+  }
+
+  private static boolean hasMagic(ByteBuffer bb, int pos) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bb.get(pos + i) != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<FieldInfo> readSchema(Table schema) throws IOException {
+    final int numFields = schema.vectorLength(1);
+    final List<FieldInfo> fields = new ArrayList<>(numFields);
+    for (int i = 0; i < numFields; i++) {
+      final Table field = schema.tableElement(1, i);
+      final String name = field.string(0);
+      if (field.vectorLength(5) > 0) {
+        throw new IOException("Nested Arrow columns are not supported: " + name);
+      }
+      final byte typeId = field.getByte(2);
+      final Table type = field.table(3);
+      final FieldInfo info = switch (typeId) {
+        case TYPE_INT -> {
+          final int bitWidth = type.getInt(0);
+          final boolean signed = type.getBoolean(1);
+          if (bitWidth > 64 || (bitWidth == 64 && !signed)) {
+            yield FieldInfo.skipped(name, 2);
+          }
+          final boolean fitsInt = bitWidth < 32 || (bitWidth == 32 && signed);
+          yield new FieldInfo(name, fitsInt ? ArrowColumnType.INT32 : ArrowColumnType.INT64,
+              bitWidth, signed, 2);
+        }
+        case TYPE_FLOATING_POINT -> {
+          final short precision = type.getShort(0);
+          if (precision == PRECISION_SINGLE) {
+            yield new FieldInfo(name, ArrowColumnType.FLOAT32, 32, true, 2);
+          } else if (precision == PRECISION_DOUBLE) {
+            yield new FieldInfo(name, ArrowColumnType.FLOAT64, 64, true, 2);
+          }
+          // half precision
+          yield FieldInfo.skipped(name, 2);
+        }
+        case TYPE_UTF8 -> new FieldInfo(name, ArrowColumnType.UTF8, 32, true, 3);
+        case TYPE_LARGE_UTF8 -> new FieldInfo(name, ArrowColumnType.UTF8, 64, true, 3);
+        case TYPE_BOOL -> new FieldInfo(name, ArrowColumnType.BOOL, 1, false, 2);
+        // the null type has no buffers, only a field node
+        case TYPE_NULL -> FieldInfo.skipped(name, 0);
+        // validity, offsets, data
+        case TYPE_BINARY, TYPE_LARGE_BINARY -> FieldInfo.skipped(name, 3);
+        // validity, data
+        case TYPE_DECIMAL, TYPE_DATE, TYPE_TIME, TYPE_TIMESTAMP, TYPE_INTERVAL,
+             TYPE_FIXED_SIZE_BINARY, TYPE_DURATION -> FieldInfo.skipped(name, 2);
+        // view types have a variable number of buffers per record batch
+        default -> throw new IOException(
+            "Unsupported Arrow type id " + typeId + " of column " + name);
+      };
+      fields.add(info);
+    }
+    return fields;
+  }
+
+  private static List<BatchInfo> readBatches(ByteBuffer bb, Table footer) throws IOException {
+    final int numBatches = footer.vectorLength(3);
+    final int blocks = footer.vectorStart(3);
+    final List<BatchInfo> batches = new ArrayList<>(numBatches);
+    int firstRow = 0;
+    for (int i = 0; i < numBatches; i++) {
+      final int block = blocks + i * 24;
+      final int offset = (int) bb.getLong(block);
+      final int metadataLength = bb.getInt(block + 8);
+      // messages before Arrow 0.15 have no continuation marker
+      final int metadataStart = bb.getInt(offset) == CONTINUATION ? offset + 8 : offset + 4;
+      final Table message = Table.root(bb, metadataStart);
+      if (message.getByte(1) != HEADER_RECORD_BATCH) {
+        throw new IOException("Expected a record batch message in block " + i);
+      }
+      final Table recordBatch = message.table(2);
+      if (recordBatch.fieldPosition(3) != 0) {
+        throw new IOException("Compressed Arrow files are not supported, "
+                              + "use compression=\"uncompressed\" when writing");
+      }
+      final int length = (int) recordBatch.getLong(0);
+      batches.add(new BatchInfo(firstRow, length, offset + metadataLength,
+          recordBatch.vectorStart(1), recordBatch.vectorStart(2)));
+      firstRow += length;
+    }
+    return batches;
+  }
+
+  private static void decode(ByteBuffer bb, FieldInfo field, BatchInfo batch, int column,
+      int firstBuffer, Object[] target) {
+    final int node = batch.nodes() + column * 16;
+    final long nullCount = bb.getLong(node + 8);
+    final int n = batch.length();
+    int buffer = batch.buffers() + firstBuffer * 16;
+
+    final int validityLength = (int) bb.getLong(buffer + 8);
+    final int validity = batch.bodyStart() + (int) bb.getLong(buffer);
+    final boolean hasValidity = nullCount != 0 && validityLength > 0;
+    buffer += 16;
+    final int data = batch.bodyStart() + (int) bb.getLong(buffer);
+
+    for (int i = 0; i < n; i++) {
+      if (hasValidity && (bb.get(validity + (i >> 3)) & (1 << (i & 7))) == 0) {
+        continue;
+      }
+      target[batch.firstRow() + i] = switch (field.type()) {
+        case INT32, INT64 -> readInteger(bb, data, i, field);
+        case FLOAT32 -> bb.getFloat(data + i * 4);
+        case FLOAT64 -> bb.getDouble(data + i * 8);
+        case BOOL -> (bb.get(data + (i >> 3)) & (1 << (i & 7))) != 0;
+        case UTF8 -> {
+          // data is the offsets buffer, the characters follow
+          final int chars = batch.bodyStart() + (int) bb.getLong(buffer + 16);
+          final long start;
+          final long end;
+          if (field.bitWidth() == 64) {
+            start = bb.getLong(data + i * 8);
+            end = bb.getLong(data + i * 8 + 8);
+          } else {
+            start = bb.getInt(data + i * 4);
+            end = bb.getInt(data + i * 4 + 4);
+          }
+          final byte[] bytes = new byte[(int) (end - start)];
+          bb.get(chars + (int) start, bytes);
+          yield new String(bytes, StandardCharsets.UTF_8);
+        }
+      };
+    }
+  }
+
+  private static Object readInteger(ByteBuffer bb, int data, int i, FieldInfo field) {
+    final long value = switch (field.bitWidth()) {
+      case 8 -> field.signed() ? bb.get(data + i) : bb.get(data + i) & 0xFFL;
+      case 16 -> field.signed() ? bb.getShort(data + i * 2) : bb.getShort(data + i * 2) & 0xFFFFL;
+      case 32 -> field.signed() ? bb.getInt(data + i * 4) : bb.getInt(data + i * 4) & 0xFFFFFFFFL;
+      default -> bb.getLong(data + i * 8);
+    };
+    return field.type() == ArrowColumnType.INT32 ? (Object) (int) value : (Object) value;
+  }
+
+  /**
+   * @param type       null if the column is skipped
+   * @param numBuffers number of buffers of this column in each record batch
+   */
+  private record FieldInfo(String name, @Nullable ArrowColumnType type, int bitWidth,
+                           boolean signed, int numBuffers) {
+
+    static FieldInfo skipped(String name, int numBuffers) {
+      return new FieldInfo(name, null, 0, false, numBuffers);
+    }
+
+    boolean isSkipped() {
+      return type == null;
+    }
+  }
+
+  /**
+   * @param nodes   position of the first FieldNode struct
+   * @param buffers position of the first Buffer struct
+   */
+  private record BatchInfo(int firstRow, int length, int bodyStart, int nodes, int buffers) {
+
+  }
+
+  /**
+   * Flatbuffer table with absolute positions in the file
+   */
+  private record Table(ByteBuffer bb, int pos) {
+
+    static Table root(ByteBuffer bb, int start) {
+      return new Table(bb, start + bb.getInt(start));
+    }
+
+    /**
+     * @return absolute position of the field or 0 if absent
+     */
+    int fieldPosition(int field) {
+      final int vtable = pos - bb.getInt(pos);
+      final int vtableSize = bb.getShort(vtable) & 0xFFFF;
+      final int entry = 4 + 2 * field;
+      if (entry >= vtableSize) {
+        return 0;
+      }
+      final int offset = bb.getShort(vtable + entry) & 0xFFFF;
+      return offset == 0 ? 0 : pos + offset;
+    }
+
+    byte getByte(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : bb.get(p);
+    }
+
+    boolean getBoolean(int field) {
+      return getByte(field) != 0;
+    }
+
+    short getShort(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : bb.getShort(p);
+    }
+
+    int getInt(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : bb.getInt(p);
+    }
+
+    long getLong(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : bb.getLong(p);
+    }
+
+    private int indirect(int p) {
+      return p + bb.getInt(p);
+    }
+
+    Table table(int field) throws IOException {
+      final int p = fieldPosition(field);
+      if (p == 0) {
+        throw new IOException("Missing table in Arrow metadata");
+      }
+      return new Table(bb, indirect(p));
+    }
+
+    int vectorLength(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : bb.getInt(indirect(p));
+    }
+
+    /**
+     * @return position of the first element
+     */
+    int vectorStart(int field) {
+      final int p = fieldPosition(field);
+      return p == 0 ? 0 : indirect(p) + 4;
+    }
+
+    Table tableElement(int field, int index) {
+      return new Table(bb, indirect(vectorStart(field) + 4 * index));
+    }
+
+    String string(int field) {
+      final int p = fieldPosition(field);
+      if (p == 0) {
+        return "";
+      }
+      final int start = indirect(p);
+      final byte[] bytes = new byte[bb.getInt(start)];
+      bb.get(start + 4, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
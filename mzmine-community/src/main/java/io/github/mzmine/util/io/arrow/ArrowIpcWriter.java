@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io.arrow;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes columns to an uncompressed Arrow IPC file (also known as Feather V2). The files can be
+ * read by pyarrow (pyarrow.feather.read_feather), pandas (pandas.read_feather), R (arrow::read_feather)
+ * and {@link ArrowIpcReader}. Rows are split into record batches and the columns of each batch are
+ * encoded in parallel.
+ * <p>
+ * Format: https://arrow.apache.org/docs/format/Columnar.html#ipc-file-format
+ */
+public class ArrowIpcWriter {
+
+  public static final int DEFAULT_BATCH_ROWS = 1 << 16;
+
+  static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+  static final int CONTINUATION = 0xFFFFFFFF;
+  static final short METADATA_V5 = 4;
+  // MessageHeader union
+  static final byte HEADER_SCHEMA = 1;
+  static final byte HEADER_RECORD_BATCH = 3;
+  // Type union
+  static final byte TYPE_INT = 2;
+  static final byte TYPE_FLOATING_POINT = 3;
+  static final byte TYPE_UTF8 = 5;
+  static final byte TYPE_BOOL = 6;
+  static final short PRECISION_SINGLE = 1;
+  static final short PRECISION_DOUBLE = 2;
+
+  private ArrowIpcWriter() {
+  }
+
+  /**
+   * @param file    the output file, will be replaced
+   * @param columns all columns need the same length
+   */
+  public static void write(@NotNull Path file, @NotNull List<ArrowColumn> columns)
+      throws IOException {
+    write(file, columns, DEFAULT_BATCH_ROWS);
+  }
+
+  /**
+   * @param file      the output file, will be replaced
+   * @param columns   all columns need the same length
+   * @param batchRows maximum number of rows per record batch
+   */
+  public static void write(@NotNull Path file, @NotNull List<ArrowColumn> columns, int batchRows)
+      throws IOException {
+    final int numRows = columns.isEmpty() ? 0 : columns.getFirst().length();
+    for (ArrowColumn column : columns) {
+      if (column.length() != numRows) {
+        throw new IllegalArgumentException(
+            "All columns need the same length. Column " + column.name() + " has " + column.length()
+            + " values instead of " + numRows);
+      }
+    }
+    batchRows = Math.max(1, batchRows);
+
+    try (var out = new PositionOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+      out.write(MAGIC);
+      out.pad(8);
+
+      writeMessage(out, createSchemaMessage(columns), new byte[0][], new long[0]);
+
+      final List<long[]> blocks = new ArrayList<>();
+      for (int start = 0; start < numRows; start += batchRows) {
+        final int from = start;
+        final int to = Math.min(numRows, start + batchRows);
+        final List<EncodedColumn> encoded = IntStream.range(0, columns.size()).parallel()
+            .mapToObj(i -> encode(columns.get(i), from, to)).toList();
+        blocks.add(writeRecordBatch(out, to - from, encoded));
+      }
+
+      // end of stream
+      out.writeInt(CONTINUATION);
+      out.writeInt(0);
+
+      final byte[] footer = createFooter(columns, blocks);
+      out.write(footer);
+      out.writeInt(footer.length);
+      out.write(MAGIC);
+    }
+  }
+
+  /**
+   * @return block with offset, metadata length, body length
+   */
+  private static long[] writeRecordBatch(PositionOutputStream out, int length,
+      List<EncodedColumn> columns) throws IOException {
+    final long[] nodeLengths = new long[columns.size()];
+    final long[] nullCounts = new long[columns.size()];
+    final int numBuffers = columns.stream().mapToInt(c -> c.buffers().length).sum();
+    final long[] bufferOffsets = new long[numBuffers];
+    final long[] bufferLengths = new long[numBuffers];
+    final byte[][] buffers = new byte[numBuffers][];
+
+    long bodyLength = 0;
+    int b = 0;
+    for (int i = 0; i < columns.size(); i++) {
+      final EncodedColumn column = columns.get(i);
+      nodeLengths[i] = length;
+      nullCounts[i] = column.nullCount();
+      for (byte[] buffer : column.buffers()) {
+        buffers[b] = buffer;
+        bufferOffsets[b] = bodyLength;
+        bufferLengths[b] = buffer.length;
+        bodyLength += align8(buffer.length);
+        b++;
+      }
+    }
+
+    final FlatBufferBuilder builder = new FlatBufferBuilder(256 + 32 * numBuffers);
+    final int nodes = builder.createLongPairVector(nodeLengths, nullCounts);
+    final int bufferVector = builder.createLongPairVector(bufferOffsets, bufferLengths);
+    builder.startTable(4);
+    builder.addLong(0, length);
+    builder.addOffset(1, nodes);
+    builder.addOffset(2, bufferVector);
+    final int recordBatch = builder.endTable();
+    final byte[] metadata = finishMessage(builder, HEADER_RECORD_BATCH, recordBatch, bodyLength);
+
+    return writeMessage(out, metadata, buffers, bufferLengths);
+  }
+
+  /**
+   * Writes the encapsulated message: continuation marker, metadata length, metadata, padding,
+   * body
+   *
+   * @return block with offset, metadata length, body length
+   */
+  private static long[] writeMessage(PositionOutputStream out, byte[] metadata, byte[][] body,
+      long[] bodyLengths) throws IOException {
+    final long offset = out.position();
+    final int paddedMetadata = (int) align8(8 + metadata.length) - 8;
+    out.writeInt(CONTINUATION);
+    out.writeInt(paddedMetadata);
+    out.write(metadata);
+    out.pad(8);
+
+    final long bodyStart = out.position();
+    for (int i = 0; i < body.length; i++) {
+      out.write(body[i], 0, (int) bodyLengths[i]);
+      out.pad(8);
+    }
+    return new long[]{offset, 8 + paddedMetadata, out.position() - bodyStart};
+  }
+
+  private static byte[] finishMessage(FlatBufferBuilder builder, byte headerType, int header,
+      long bodyLength) {
+    builder.startTable(5);
+    builder.addLong(3, bodyLength);
+    builder.addOffset(2, header);
+    builder.addShort(0, METADATA_V5);
+    builder.addByte(1, headerType);
+    return builder.finish(builder.endTable());
+  }
+
+  private static byte[] createSchemaMessage(List<ArrowColumn> columns) {
+    final FlatBufferBuilder builder = new FlatBufferBuilder(256 + 64 * columns.size());
+    final int schema = createSchema(builder, columns);
+    return finishMessage(builder, HEADER_SCHEMA, schema, 0);
+  }
+
+  private static int createSchema(FlatBufferBuilder builder, List<ArrowColumn> columns) {
+    final int[] fields = new int[columns.size()];
+    for (int i = 0; i < fields.length; i++) {
+      final ArrowColumn column = columns.get(i);
+      final int name = builder.createString(column.name());
+      final int type = createType(builder, column.type());
+      // readers expect an empty children vector
+      final int children = builder.createOffsetVector(new int[0]);
+      builder.startTable(7);
+      builder.addOffset(0, name);
+      builder.addOffset(3, type);
+      builder.addOffset(5, children);
+      builder.addBoolean(1, true);
+      builder.addByte(2, getTypeId(column.type()));
+      fields[i] = builder.endTable();
+    }
+    final int fieldVector = builder.createOffsetVector(fields);
+    builder.startTable(4);
+    builder.addOffset(1, fieldVector);
+    // little endian
+    builder.addShort(0, 0);
+    return builder.endTable();
+  }
+
+  private static byte getTypeId(ArrowColumnType type) {
+    return switch (type) {
+      case INT32, INT64 -> TYPE_INT;
+      case FLOAT32, FLOAT64 -> TYPE_FLOATING_POINT;
+      case UTF8 -> TYPE_UTF8;
+      case BOOL -> TYPE_BOOL;
+    };
+  }
+
+  private static int createType(FlatBufferBuilder builder, ArrowColumnType type) {
+    switch (type) {
+      case INT32, INT64 -> {
+        builder.startTable(2);
+        builder.addInt(0, type == ArrowColumnType.INT32 ? 32 : 64);
+        builder.addBoolean(1, true);
+      }
+      case FLOAT32, FLOAT64 -> {
+        builder.startTable(1);
+        builder.addShort(0, type == ArrowColumnType.FLOAT32 ? PRECISION_SINGLE : PRECISION_DOUBLE);
+      }
+      case UTF8, BOOL -> builder.startTable(0);
+    }
+    return builder.endTable();
+  }
+
+  private static byte[] createFooter(List<ArrowColumn> columns, List<long[]> blocks) {
+    final FlatBufferBuilder builder = new FlatBufferBuilder(256 + 64 * columns.size());
+    final int schema = createSchema(builder, columns);
+
+    final int n = blocks.size();
+    final long[] offsets = new long[n];
+    final int[] metadataLengths = new int[n];
+    final long[] bodyLengths = new long[n];
+    for (int i = 0; i < n; i++) {
+      offsets[i] = blocks.get(i)[0];
+      metadataLengths[i] = (int) blocks.get(i)[1];
+      bodyLengths[i] = blocks.get(i)[2];
+    }
+    final int dictionaries = builder.createBlockVector(new long[0], new int[0], new long[0]);
+    final int recordBatches = builder.createBlockVector(offsets, metadataLengths, bodyLengths);
+
+    builder.startTable(5);
+    builder.addOffset(1, schema);
+    builder.addOffset(2, dictionaries);
+    builder.addOffset(3, recordBatches);
+    builder.addShort(0, METADATA_V5);
+    return builder.finish(builder.endTable());
+  }
+
+  /**
+   * Encodes the validity bitmap and value buffers of a column slice
+   */
+  static EncodedColumn encode(ArrowColumn column, int from, int to) {
+    final Object[] values = column.values();
+    final int n = to - from;
+    final byte[] validity = new byte[(n + 7) / 8];
+    int nullCount = 0;
+    for (int i = 0; i < n; i++) {
+      if (values[from + i] == null) {
+        nullCount++;
+      } else {
+        validity[i >> 3] |= (byte) (1 << (i & 7));
+      }
+    }
+    // the validity buffer may be omitted without nulls
+    final byte[] validityBuffer = nullCount == 0 ? new byte[0] : validity;
+
+    return switch (column.type()) {
+      case INT32 -> {
+        final ByteBuffer data = allocate(n * 4);
+        for (int i = from; i < to; i++) {
+          data.putInt(values[i] == null ? 0 : ((Number) values[i]).intValue());
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, data.array());
+      }
+      case INT64 -> {
+        final ByteBuffer data = allocate(n * 8);
+        for (int i = from; i < to; i++) {
+          data.putLong(values[i] == null ? 0 : ((Number) values[i]).longValue());
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, data.array());
+      }
+      case FLOAT32 -> {
+        final ByteBuffer data = allocate(n * 4);
+        for (int i = from; i < to; i++) {
+          data.putFloat(values[i] == null ? 0f : ((Number) values[i]).floatValue());
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, data.array());
+      }
+      case FLOAT64 -> {
+        final ByteBuffer data = allocate(n * 8);
+        for (int i = from; i < to; i++) {
+          data.putDouble(values[i] == null ? 0d : ((Number) values[i]).doubleValue());
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, data.array());
+      }
+      case BOOL -> {
+        final byte[] data = new byte[(n + 7) / 8];
+        for (int i = 0; i < n; i++) {
+          if (Boolean.TRUE.equals(values[from + i])) {
+            data[i >> 3] |= (byte) (1 << (i & 7));
+          }
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, data);
+      }
+      case UTF8 -> {
+        final ByteBuffer offsets = allocate((n + 1) * 4);
+        final byte[][] strings = new byte[n][];
+        int length = 0;
+        offsets.putInt(0);
+        for (int i = 0; i < n; i++) {
+          final Object value = values[from + i];
+          strings[i] = value == null ? new byte[0] : value.toString().getBytes(StandardCharsets.UTF_8);
+          length += strings[i].length;
+          offsets.putInt(length);
+        }
+        final byte[] data = new byte[length];
+        int pos = 0;
+        for (byte[] string : strings) {
+          System.arraycopy(string, 0, data, pos, string.length);
+          pos += string.length;
+        }
+        yield new EncodedColumn(nullCount, validityBuffer, offsets.array(), data);
+      }
+    };
+  }
+
+  private static ByteBuffer allocate(int bytes) {
+    return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  static long align8(long value) {
+    return (value + 7) & ~7L;
+  }
+
+  /**
+   * @param nullCount number of null values
+   * @param buffers   validity bitmap followed by the type specific buffers
+   */
+  record EncodedColumn(int nullCount, byte[]... buffers) {
+
+  }
+
+  /**
+   * Tracks the position for the block offsets and writes little endian integers
+   */
+  private static class PositionOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private long position;
+
+    private PositionOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    long position() {
+      return position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      position++;
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      position += len;
+    }
+
+    void writeInt(int value) throws IOException {
+      write(value);
+      write(value >> 8);
+      write(value >> 16);
+      write(value >> 24);
+    }
+
+    /**
+     * Pads with zeros to the next multiple of alignment
+     */
+    void pad(int alignment) throws IOException {
+      while (position % alignment != 0) {
+        write(0);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
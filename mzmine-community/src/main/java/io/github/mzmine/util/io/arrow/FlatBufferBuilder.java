@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal flatbuffer builder for the Arrow IPC metadata. Like the reference implementation, the
+ * buffer is filled from back to front so that all offsets point forward. All table fields are
+ * written, even if they equal the schema default.
+ */
+class FlatBufferBuilder {
+
+  private byte[] buf;
+  // write position, data is in buf[space, buf.length[
+  private int space;
+  private int minAlign = 1;
+  // table state
+  private int[] vtable;
+  private int objectStart;
+  // vector state
+  private int vectorElements;
+
+  FlatBufferBuilder(int initialSize) {
+    buf = new byte[Math.max(initialSize, 64)];
+    space = buf.length;
+  }
+
+  /**
+   * @return the current offset measured from the end of the buffer
+   */
+  int offset() {
+    return buf.length - space;
+  }
+
+  private void grow() {
+    final int oldLength = buf.length;
+    final byte[] grown = new byte[oldLength * 2];
+    System.arraycopy(buf, 0, grown, oldLength, oldLength);
+    buf = grown;
+    space += oldLength;
+  }
+
+  private void pad(int bytes) {
+    for (int i = 0; i < bytes; i++) {
+      buf[--space] = 0;
+    }
+  }
+
+  /**
+   * Aligns the write position so that size bytes written after additionalBytes are aligned to
+   * size
+   */
+  private void prep(int size, int additionalBytes) {
+    minAlign = Math.max(minAlign, size);
+    final int alignSize = (~(offset() + additionalBytes) + 1) & (size - 1);
+    while (space < alignSize + size + additionalBytes) {
+      grow();
+    }
+    pad(alignSize);
+  }
+
+  private void putByte(int value) {
+    buf[--space] = (byte) value;
+  }
+
+  private void putShort(int value) {
+    putByte(value >> 8);
+    putByte(value);
+  }
+
+  private void putInt(int value) {
+    putByte(value >> 24);
+    putByte(value >> 16);
+    putByte(value >> 8);
+    putByte(value);
+  }
+
+  private void putLong(long value) {
+    putInt((int) (value >> 32));
+    putInt((int) value);
+  }
+
+  void addByte(int value) {
+    prep(1, 0);
+    putByte(value);
+  }
+
+  void addShort(int value) {
+    prep(2, 0);
+    putShort(value);
+  }
+
+  void addInt(int value) {
+    prep(4, 0);
+    putInt(value);
+  }
+
+  void addLong(long value) {
+    prep(8, 0);
+    putLong(value);
+  }
+
+  void addOffset(int offset) {
+    prep(4, 0);
+    putInt(offset() - offset + 4);
+  }
+
+  void startTable(int numFields) {
+    vtable = new int[numFields];
+    objectStart = offset();
+  }
+
+  void addBoolean(int field, boolean value) {
+    addByte(value ? 1 : 0);
+    vtable[field] = offset();
+  }
+
+  void addByte(int field, int value) {
+    addByte(value);
+    vtable[field] = offset();
+  }
+
+  void addShort(int field, int value) {
+    addShort(value);
+    vtable[field] = offset();
+  }
+
+  void addInt(int field, int value) {
+    addInt(value);
+    vtable[field] = offset();
+  }
+
+  void addLong(int field, long value) {
+    addLong(value);
+    vtable[field] = offset();
+  }
+
+  void addOffset(int field, int offset) {
+    addOffset(offset);
+    vtable[field] = offset();
+  }
+
+  /**
+   * @return the offset of the table
+   */
+  int endTable() {
+    // placeholder for the signed offset to the vtable
+    addInt(0);
+    final int tableOffset = offset();
+
+    int lastField = vtable.length - 1;
+    while (lastField >= 0 && vtable[lastField] == 0) {
+      lastField--;
+    }
+    for (int i = lastField; i >= 0; i--) {
+      addShort(vtable[i] != 0 ? tableOffset - vtable[i] : 0);
+    }
+    addShort(tableOffset - objectStart);
+    addShort((lastField + 1 + 2) * 2);
+
+    // vtable is located before the table, table - vtable is positive
+    final int vtableOffset = offset();
+    final int pos = buf.length - tableOffset;
+    final int relative = vtableOffset - tableOffset;
+    buf[pos] = (byte) relative;
+    buf[pos + 1] = (byte) (relative >> 8);
+    buf[pos + 2] = (byte) (relative >> 16);
+    buf[pos + 3] = (byte) (relative >> 24);
+    vtable = null;
+    return tableOffset;
+  }
+
+  /**
+   * Elements are added in reverse order after this call
+   */
+  void startVector(int elementSize, int numElements, int alignment) {
+    vectorElements = numElements;
+    prep(4, elementSize * numElements);
+    prep(alignment, elementSize * numElements);
+  }
+
+  int endVector() {
+    putInt(vectorElements);
+    return offset();
+  }
+
+  int createString(String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    // null terminated
+    addByte(0);
+    startVector(1, bytes.length, 1);
+    space -= bytes.length;
+    System.arraycopy(bytes, 0, buf, space, bytes.length);
+    return endVector();
+  }
+
+  int createOffsetVector(int[] offsets) {
+    startVector(4, offsets.length, 4);
+    for (int i = offsets.length - 1; i >= 0; i--) {
+      addOffset(offsets[i]);
+    }
+    return endVector();
+  }
+
+  /**
+   * Vector of structs with two longs, e.g., the Arrow FieldNode and Buffer
+   */
+  int createLongPairVector(long[] firsts, long[] seconds) {
+    startVector(16, firsts.length, 8);
+    for (int i = firsts.length - 1; i >= 0; i--) {
+      prep(8, 16);
+      putLong(seconds[i]);
+      putLong(firsts[i]);
+    }
+    return endVector();
+  }
+
+  /**
+   * Vector of Arrow Block structs (offset: long, metaDataLength: int, bodyLength: long)
+   */
+  int createBlockVector(long[] offsets, int[] metaDataLengths, long[] bodyLengths) {
+    startVector(24, offsets.length, 8);
+    for (int i = offsets.length - 1; i >= 0; i--) {
+      prep(8, 24);
+      putLong(bodyLengths[i]);
+      pad(4);
+      putInt(metaDataLengths[i]);
+      putLong(offsets[i]);
+    }
+    return endVector();
+  }
+
+  /**
+   * @return the finished buffer with the root table
+   */
+  byte[] finish(int rootTable) {
+    prep(minAlign, 4);
+    addOffset(rootTable);
+    return Arrays.copyOfRange(buf, space, buf.length);
+  }
+}
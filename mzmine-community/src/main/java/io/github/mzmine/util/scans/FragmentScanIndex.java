@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.MSnInfoImpl;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of all fragment scans of a {@link RawDataFile} to look up fragment scans by retention time
+ * and precursor m/z without iterating all scans. Scans of a raw data file are sorted by retention
+ * time, so the retention time range is found by binary search and only the scans within are checked
+ * for their precursor m/z. PASEF {@link PasefMsMsInfo} of MS2 {@link Frame}s are indexed with their
+ * isolation m/z and mobility range.
+ * <p>
+ * Use {@link RawDataFile#getFragmentScanIndex()} to get the cached instance of a data file.
+ */
+public final class FragmentScanIndex {
+
+  private final int numberOfScans;
+
+  // all scans with MS level > 1 in order of the data file (sorted by retention time)
+  private final Scan[] scans;
+  private final float[] scanRts;
+  // 0 if there is no precursor
+  private final double[] precursorMzs;
+
+  // PASEF MS/MS infos of all MS2 frames in order of the data file (sorted by retention time)
+  private final PasefMsMsInfo[] pasefInfos;
+  private final float[] pasefRts;
+  private final double[] isolationMzs;
+  private final float[] lowerMobilities;
+  private final float[] upperMobilities;
+
+  private FragmentScanIndex(@NotNull RawDataFile file) {
+    final List<Scan> allScans = file.getScans();
+    numberOfScans = allScans.size();
+
+    final List<Scan> fragmentScans = new ArrayList<>();
+    final List<PasefMsMsInfo> infos = new ArrayList<>();
+    final List<Frame> infoFrames = new ArrayList<>();
+    for (Scan scan : allScans) {
+      if (scan.getMSLevel() <= 1) {
+        continue;
+      }
+      fragmentScans.add(scan);
+      if (scan.getMSLevel() == 2 && scan instanceof Frame frame) {
+        for (PasefMsMsInfo info : frame.getImsMsMsInfos()) {
+          infos.add(info);
+          infoFrames.add(frame);
+        }
+      }
+    }
+
+    scans = fragmentScans.toArray(Scan[]::new);
+    scanRts = new float[scans.length];
+    precursorMzs = new double[scans.length];
+    for (int i = 0; i < scans.length; i++) {
+      scanRts[i] = scans[i].getRetentionTime();
+      precursorMzs[i] = getPrecursorMz(scans[i]);
+    }
+
+    pasefInfos = infos.toArray(PasefMsMsInfo[]::new);
+    pasefRts = new float[pasefInfos.length];
+    isolationMzs = new double[pasefInfos.length];
+    lowerMobilities = new float[pasefInfos.length];
+    upperMobilities = new float[pasefInfos.length];
+    for (int i = 0; i < pasefInfos.length; i++) {
+      final PasefMsMsInfo info = pasefInfos[i];
+      final Frame frame = infoFrames.get(i);
+      pasefRts[i] = frame.getRetentionTime();
+      isolationMzs[i] = info.getIsolationMz();
+
+      final MobilityScan firstMobilityScan = frame.getMobilityScan(0);
+      if (firstMobilityScan == null) {
+        // never matches a mobility
+        lowerMobilities[i] = Float.NaN;
+        upperMobilities[i] = Float.NaN;
+        continue;
+      }
+      final int mobilityScanNumberOffset = firstMobilityScan.getMobilityScanNumber();
+      final float mobility1 = (float) frame.getMobilityForMobilityScanNumber(
+          info.getSpectrumNumberRange().lowerEndpoint() - mobilityScanNumberOffset);
+      final float mobility2 = (float) frame.getMobilityForMobilityScanNumber(
+          info.getSpectrumNumberRange().upperEndpoint() - mobilityScanNumberOffset);
+      lowerMobilities[i] = Math.min(mobility1, mobility2);
+      upperMobilities[i] = Math.max(mobility1, mobility2);
+    }
+  }
+
+  /**
+   * Creates a new index. Prefer {@link RawDataFile#getFragmentScanIndex()} which caches the index.
+   *
+   * @param file the indexed data file
+   * @return a new index of all fragment scans
+   */
+  public static @NotNull FragmentScanIndex create(@NotNull RawDataFile file) {
+    return new FragmentScanIndex(file);
+  }
+
+  /**
+   * The precursor m/z used to group fragment scans to features
+   *
+   * @return the precursor m/z or 0 if there is no precursor m/z
+   */
+  public static double getPrecursorMz(@NotNull Scan scan) {
+    if (scan.getMsMsInfo() instanceof MSnInfoImpl msn) {
+      return msn.getMS2PrecursorMz();
+    } else if (scan.getMsMsInfo() instanceof DDAMsMsInfo info) {
+      return info.getIsolationMz();
+    } else {
+      return Objects.requireNonNullElse(scan.getPrecursorMz(), 0d);
+    }
+  }
+
+  /**
+   * @return true if the index still reflects the scans of the data file
+   */
+  public boolean isUpToDate(@NotNull RawDataFile file) {
+    return file.getNumOfScans() == numberOfScans;
+  }
+
+  /**
+   * @return number of indexed fragment scans
+   */
+  public int getNumberOfFragmentScans() {
+    return scans.length;
+  }
+
+  /**
+   * Find all fragment scans (MS level > 1) within the retention time range and with a precursor
+   * m/z within the tolerance.
+   *
+   * @param rtRange retention time range or null to search all scans
+   * @param mzTol   tolerance for the precursor m/z
+   * @param mz      the m/z to match the precursor
+   * @return list of fragment scans in data file order
+   */
+  public @NotNull List<Scan> getFragmentScans(@Nullable Range<Float> rtRange,
+      @NotNull MZTolerance mzTol, double mz) {
+    final int from = fromIndex(scanRts, rtRange);
+    final int to = toIndex(scanRts, rtRange);
+
+    final List<Scan> result = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      final double precursorMz = precursorMzs[i];
+      if (precursorMz != 0 && mzTol.checkWithinTolerance(mz, precursorMz) && (rtRange == null
+          || rtRange.contains(scanRts[i]))) {
+        result.add(scans[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find all PASEF MS/MS infos of MS2 frames within the retention time range and with an isolation
+   * m/z within the tolerance.
+   *
+   * @param rtRange  retention time range of the frames or null to search all frames
+   * @param mzTol    tolerance for the isolation m/z
+   * @param mz       the m/z to match the isolation m/z
+   * @param mobility if not null, the mobility range of the MS/MS info needs to contain this
+   *                 mobility
+   * @return list of MS/MS infos in data file order
+   */
+  public @NotNull List<PasefMsMsInfo> getPasefMsMsInfos(@Nullable Range<Float> rtRange,
+      @NotNull MZTolerance mzTol, double mz, @Nullable Float mobility) {
+    final int from = fromIndex(pasefRts, rtRange);
+    final int to = toIndex(pasefRts, rtRange);
+
+    final List<PasefMsMsInfo> result = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      if (!mzTol.checkWithinTolerance(mz, isolationMzs[i]) || (rtRange != null
+          && !rtRange.contains(pasefRts[i]))) {
+        continue;
+      }
+      if (mobility == null || (lowerMobilities[i] <= mobility && mobility <= upperMobilities[i])) {
+        result.add(pasefInfos[i]);
+      }
+    }
+    return result;
+  }
+
+  private static int fromIndex(float[] rts, @Nullable Range<Float> rtRange) {
+    return rtRange == null || !rtRange.hasLowerBound() ? 0
+        : firstIndexOf(rts, rtRange.lowerEndpoint(), false);
+  }
+
+  private static int toIndex(float[] rts, @Nullable Range<Float> rtRange) {
+    return rtRange == null || !rtRange.hasUpperBound() ? rts.length
+        : firstIndexOf(rts, rtRange.upperEndpoint(), true);
+  }
+
+  /**
+   * Binary search that handles equal retention times, e.g., of multiple MS/MS infos of one frame
+   *
+   * @param after false: first index with rt >= value; true: first index with rt > value
+   */
+  private static int firstIndexOf(float[] rts, float value, boolean after) {
+    int low = 0;
+    int high = rts.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (rts[mid] < value || (after && rts[mid] == value)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
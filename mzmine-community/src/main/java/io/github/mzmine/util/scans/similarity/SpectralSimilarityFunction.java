@@ -36,6 +36,8 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.kernel.CosineKernelResult;
+import io.github.mzmine.util.scans.similarity.kernel.CosineSimilarityKernel;
 
 /**
  * Abstract class to implement differnt spactal similarity functions to match 2 spectra
@@ -44,6 +46,9 @@ import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectral
  */
 public abstract class SpectralSimilarityFunction implements MZmineModule {
 
+  private static final ThreadLocal<CosineKernelResult> KERNEL_RESULTS = ThreadLocal.withInitial(
+      CosineKernelResult::new);
+
   public static final WeightedCosineSpectralSimilarity weightedCosine = MZmineCore
       .getModuleInstance(WeightedCosineSpectralSimilarity.class);
   public static final CompositeCosineSpectralSimilarity compositeCosine = MZmineCore
@@ -77,6 +82,23 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
     return ScanAlignment.align(mzTol, a, b);
   }
 
+  /**
+   * Weighted cosine on primitive arrays with the same alignment as
+   * {@link #alignDataPoints(MZTolerance, DataPoint[], DataPoint[])}. The aligned data points are
+   * only created for accepted pairs by {@link CosineKernelResult#createAlignment(DataPoint[],
+   * DataPoint[])}. Functions that override the alignment cannot use the kernel. The result is
+   * reused per thread.
+   *
+   * @return the overlap and weighted cosine score
+   */
+  protected CosineKernelResult kernelWeightedCosine(MZTolerance mzTol, Weights weights,
+      HandleUnmatchedSignalOptions handleUnmatched, DataPoint[] library, DataPoint[] query) {
+    final CosineKernelResult result = KERNEL_RESULTS.get();
+    CosineSimilarityKernel.getInstance()
+        .weightedCosine(library, query, mzTol, weights, handleUnmatched, result);
+    return result;
+  }
+
   /**
    * Calculate overlap
    *
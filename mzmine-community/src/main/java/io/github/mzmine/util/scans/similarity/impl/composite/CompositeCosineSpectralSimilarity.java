@@ -28,12 +28,11 @@ package io.github.mzmine.util.scans.similarity.impl.composite;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
-import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
+import io.github.mzmine.util.scans.similarity.kernel.CosineKernelResult;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -68,23 +67,20 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
       HandleUnmatchedSignalOptions handleUnmatched, MZTolerance mzTol, int minMatch,
       DataPoint[] library, DataPoint[] query) {
 
-    // align
-    List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
+    // score on primitive arrays, the relative neighbour factor is at most 1
+    final CosineKernelResult result = kernelWeightedCosine(mzTol, weights, handleUnmatched,
+        library, query);
+    final int queryN = query.length;
+    final int overlap = result.getOverlap();
+    final double diffCosine = result.getScore();
+    if (overlap >= minMatch && (queryN * diffCosine + overlap) / (queryN + overlap) >= minCos) {
+      // removes all signals which were not found in both masslists
+      final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+          result.createAlignment(library, query));
 
-    int queryN = query.length;
-    int overlap = calcOverlap(aligned);
-
-    if (overlap >= minMatch) {
       // relative factor ranges from 0-1
       double relativeFactor = calcRelativeNeighbourFactor(aligned);
 
-      // weighted cosine
-      double[][] diffArray = ScanAlignment.toIntensityMatrixWeighted(aligned,
-          weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
-
       // composite dot product identity score
       // NIST search similar
       double composite = (queryN * diffCosine + overlap * relativeFactor) / (queryN + overlap);
@@ -28,12 +28,11 @@ package io.github.mzmine.util.scans.similarity.impl.cosine;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
-import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
+import io.github.mzmine.util.scans.similarity.kernel.CosineKernelResult;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -59,23 +58,16 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     HandleUnmatchedSignalOptions handleUnmatched = parameters
         .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
 
-    // align
-    List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
-
-    // overlapping within mass tolerance
-    int overlap = calcOverlap(aligned);
-
-    if (overlap >= minMatch) {
-      // weighted cosine
-      double[][] diffArray =
-          ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
-      if (diffCosine >= minCos)
-        return new SpectralSimilarity(getName(), diffCosine, overlap, library, query, aligned);
-      else
-        return null;
+    // score on primitive arrays, data points are only aligned for matches
+    final CosineKernelResult result = kernelWeightedCosine(mzTol, weights, handleUnmatched,
+        library, query);
+    final int overlap = result.getOverlap();
+    final double diffCosine = result.getScore();
+    if (overlap >= minMatch && diffCosine >= minCos) {
+      // removes all signals which were not found in both masslists
+      final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+          result.createAlignment(library, query));
+      return new SpectralSimilarity(getName(), diffCosine, overlap, library, query, aligned);
     }
     return null;
   }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.util.scans.ScanAlignment;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reusable result and working memory of a {@link CosineSimilarityKernel}. Buffers only grow, so one
+ * instance per thread avoids allocations in the inner loops of spectral matching. Not thread safe.
+ */
+public final class CosineKernelResult {
+
+  // input buffers for data point conversion
+  double[] libraryMzs = new double[0];
+  double[] libraryIntensities = new double[0];
+  double[] queryMzs = new double[0];
+  double[] queryIntensities = new double[0];
+
+  // weighted intensities of all signals
+  double[] weightedLibrary = new double[0];
+  double[] weightedQuery = new double[0];
+  // weighted intensities of matched pairs
+  double[] matchedLibrary = new double[0];
+  double[] matchedQuery = new double[0];
+
+  // alignment
+  int[] libraryOrder = new int[0];
+  // matched query index for each library signal or -1
+  int[] libraryMatch = new int[0];
+  int[] queryByMz = new int[0];
+  boolean[] queryMatched = new boolean[0];
+
+  private double score;
+  private int overlap;
+  private int librarySize;
+  private int querySize;
+
+  /**
+   * @return the weighted cosine similarity or NaN if undefined
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * @return the number of matched signal pairs
+   */
+  public int getOverlap() {
+    return overlap;
+  }
+
+  void set(double score, int overlap) {
+    this.score = score;
+    this.overlap = overlap;
+  }
+
+  /**
+   * Creates the same aligned list as
+   * {@link ScanAlignment#align(io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance,
+   * DataPoint[], DataPoint[])} from the alignment of the last call of
+   * {@link CosineSimilarityKernel#weightedCosine(DataPoint[], DataPoint[],
+   * io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance,
+   * io.github.mzmine.util.scans.similarity.Weights,
+   * io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions, CosineKernelResult)}: all
+   * library signals by
+   * descending intensity with their match or null, followed by the unmatched query signals by
+   * descending intensity. The arrays are not sorted in place.
+   *
+   * @param library the library spectrum of the last kernel call
+   * @param query   the query spectrum of the last kernel call
+   * @return list of aligned signals DataPoint[library, query]
+   */
+  public @NotNull List<DataPoint[]> createAlignment(@NotNull DataPoint[] library,
+      @NotNull DataPoint[] query) {
+    assert library.length == librarySize && query.length == querySize;
+    final List<DataPoint[]> aligned = new ArrayList<>(librarySize + querySize - overlap);
+    for (int o = 0; o < librarySize; o++) {
+      final int lib = libraryOrder[o];
+      final int match = libraryMatch[lib];
+      aligned.add(new DataPoint[]{library[lib], match == -1 ? null : query[match]});
+    }
+
+    final int[] unmatched = new int[querySize - overlap];
+    int n = 0;
+    for (int q = 0; q < querySize; q++) {
+      if (!queryMatched[q]) {
+        unmatched[n++] = q;
+      }
+    }
+    // index breaks ties like the stable sort of ScanAlignment
+    IntArrays.quickSort(unmatched, 0, n, (int a, int b) -> {
+      final int order = CosineSimilarityKernel.compareIntensityDescending(queryMzs,
+          queryIntensities, a, b);
+      return order != 0 ? order : Integer.compare(a, b);
+    });
+    for (int i = 0; i < n; i++) {
+      aligned.add(new DataPoint[]{null, query[unmatched[i]]});
+    }
+    return aligned;
+  }
+
+  void ensureCapacity(int librarySize, int querySize) {
+    this.librarySize = librarySize;
+    this.querySize = querySize;
+    if (weightedLibrary.length < librarySize) {
+      libraryMzs = new double[librarySize];
+      libraryIntensities = new double[librarySize];
+      weightedLibrary = new double[librarySize];
+      libraryOrder = new int[librarySize];
+      libraryMatch = new int[librarySize];
+    }
+    if (weightedQuery.length < querySize) {
+      queryMzs = new double[querySize];
+      queryIntensities = new double[querySize];
+      weightedQuery = new double[querySize];
+      queryByMz = new int[querySize];
+      queryMatched = new boolean[querySize];
+    }
+    final int pairs = Math.min(librarySize, querySize);
+    if (matchedLibrary.length < pairs) {
+      matchedLibrary = new double[pairs];
+      matchedQuery = new double[pairs];
+    }
+  }
+
+  void setInput(DataPoint[] library, DataPoint[] query) {
+    ensureCapacity(library.length, query.length);
+    for (int i = 0; i < library.length; i++) {
+      libraryMzs[i] = library[i].getMZ();
+      libraryIntensities[i] = library[i].getIntensity();
+    }
+    for (int i = 0; i < query.length; i++) {
+      queryMzs[i] = query[i].getMZ();
+      queryIntensities[i] = query[i].getIntensity();
+    }
+  }
+}
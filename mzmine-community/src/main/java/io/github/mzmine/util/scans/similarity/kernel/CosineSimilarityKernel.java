@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.Weights;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Weighted cosine similarity on primitive m/z and intensity arrays. Signals are aligned exactly like
+ * {@link ScanAlignment#align(MZTolerance, DataPoint[], DataPoint[])}: library signals are matched by
+ * descending intensity to the most intense unmatched query signal within the m/z tolerance. The
+ * query signals are searched in a sorted m/z window instead of a linear scan. Weighting is applied
+ * once per signal and the dot product and norms are computed on dense arrays.
+ * <p>
+ * The score equals {@link io.github.mzmine.util.maths.similarity.Similarity#COSINE} on the weighted
+ * intensity matrix up to floating point summation order, see {@link #SCORE_MARGIN}. The overlap and
+ * the alignment, see {@link CosineKernelResult#createAlignment(DataPoint[], DataPoint[])}, are
+ * exact.
+ * <p>
+ * {@link #getInstance()} returns an implementation based on the JDK vector API if the module
+ * jdk.incubator.vector is available and a scalar implementation otherwise.
+ */
+public abstract class CosineSimilarityKernel {
+
+  /**
+   * Maximum difference in score to the {@link DataPoint} based calculation due to a different
+   * floating point summation order
+   */
+  public static final double SCORE_MARGIN = 1E-6;
+
+  private static final Logger logger = Logger.getLogger(CosineSimilarityKernel.class.getName());
+  private static final CosineSimilarityKernel INSTANCE = createInstance();
+
+  /**
+   * @return the shared kernel, which is stateless. All working memory is in the
+   * {@link CosineKernelResult}. Uses the vector API implementation if available or the scalar
+   * fallback.
+   */
+  public static CosineSimilarityKernel getInstance() {
+    return INSTANCE;
+  }
+
+  private static CosineSimilarityKernel createInstance() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        return new VectorCosineSimilarityKernel();
+      } catch (LinkageError e) {
+        logger.log(Level.WARNING,
+            "Cannot use vector API for spectral similarity, using scalar fallback", e);
+      }
+    }
+    return new ScalarCosineSimilarityKernel();
+  }
+
+  /**
+   * Weighted cosine of two spectra
+   *
+   * @param library         library spectrum (index 0 in the aligned data points)
+   * @param query           query spectrum
+   * @param handleUnmatched defines which unmatched signals contribute to the norms
+   * @param result          the reusable result
+   */
+  public void weightedCosine(@NotNull DataPoint[] library, @NotNull DataPoint[] query,
+      @NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, @NotNull CosineKernelResult result) {
+    result.setInput(library, query);
+    weightedCosine(result.libraryMzs, result.libraryIntensities, library.length, result.queryMzs,
+        result.queryIntensities, query.length, mzTol, weights, handleUnmatched, result);
+  }
+
+  /**
+   * Weighted cosine of two spectra. The input arrays are not modified and may be unsorted.
+   *
+   * @param librarySize     number of library signals to use from the arrays
+   * @param querySize       number of query signals to use from the arrays
+   * @param handleUnmatched defines which unmatched signals contribute to the norms
+   * @param result          the reusable result
+   */
+  public void weightedCosine(@NotNull double[] libraryMzs, @NotNull double[] libraryIntensities,
+      int librarySize, @NotNull double[] queryMzs, @NotNull double[] queryIntensities,
+      int querySize, @NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, @NotNull CosineKernelResult result) {
+    result.ensureCapacity(librarySize, querySize);
+
+    final double[] weightedLibrary = result.weightedLibrary;
+    final double[] weightedQuery = result.weightedQuery;
+    weight(libraryMzs, libraryIntensities, librarySize, weights.getMz(), weights.getIntensity(),
+        weightedLibrary);
+    weight(queryMzs, queryIntensities, querySize, weights.getMz(), weights.getIntensity(),
+        weightedQuery);
+
+    final int overlap = align(libraryMzs, libraryIntensities, librarySize, queryMzs,
+        queryIntensities, querySize, mzTol, result);
+
+    final double[] matchedLibrary = result.matchedLibrary;
+    final double[] matchedQuery = result.matchedQuery;
+    final double dot = dot(matchedLibrary, matchedQuery, overlap);
+    final double libraryNorm = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_LIBRARY_SIGNALS ->
+          dot(weightedLibrary, weightedLibrary, librarySize);
+      case REMOVE_ALL, KEEP_EXPERIMENTAL_SIGNALS -> dot(matchedLibrary, matchedLibrary, overlap);
+    };
+    final double queryNorm = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_EXPERIMENTAL_SIGNALS ->
+          dot(weightedQuery, weightedQuery, querySize);
+      case REMOVE_ALL, KEEP_LIBRARY_SIGNALS -> dot(matchedQuery, matchedQuery, overlap);
+    };
+
+    result.set(dot / (Math.sqrt(libraryNorm) * Math.sqrt(queryNorm)), overlap);
+  }
+
+  /**
+   * Greedy alignment by descending intensity. Fills the weighted intensities of matched pairs.
+   *
+   * @return the number of matched pairs
+   */
+  private int align(double[] libraryMzs, double[] libraryIntensities, int librarySize,
+      double[] queryMzs, double[] queryIntensities, int querySize, MZTolerance mzTol,
+      CosineKernelResult result) {
+    final int[] libraryOrder = result.libraryOrder;
+    final int[] libraryMatch = result.libraryMatch;
+    final int[] queryByMz = result.queryByMz;
+    final boolean[] queryMatched = result.queryMatched;
+
+    for (int i = 0; i < librarySize; i++) {
+      libraryOrder[i] = i;
+    }
+    // same order as ScanAlignment.sorter: descending intensity, then descending m/z
+    // index breaks ties like the stable sort of ScanAlignment
+    IntArrays.quickSort(libraryOrder, 0, librarySize, (int a, int b) -> {
+      final int order = compareIntensityDescending(libraryMzs, libraryIntensities, a, b);
+      return order != 0 ? order : Integer.compare(a, b);
+    });
+
+    boolean sortedByMz = true;
+    for (int i = 0; i < querySize; i++) {
+      queryByMz[i] = i;
+      queryMatched[i] = false;
+      if (i > 0 && queryMzs[i - 1] > queryMzs[i]) {
+        sortedByMz = false;
+      }
+    }
+    // mass lists are usually sorted by m/z already
+    if (!sortedByMz) {
+      IntArrays.quickSort(queryByMz, 0, querySize,
+          (int a, int b) -> Double.compare(queryMzs[a], queryMzs[b]));
+    }
+
+    int overlap = 0;
+    for (int o = 0; o < librarySize; o++) {
+      final int lib = libraryOrder[o];
+      final double mz = libraryMzs[lib];
+      final double tolerance = mzTol.getMzToleranceForMass(mz);
+      final double lower = mz - tolerance;
+      final double upper = mz + tolerance;
+
+      int best = -1;
+      for (int i = firstIndexOfMz(queryByMz, queryMzs, querySize, lower); i < querySize; i++) {
+        final int q = queryByMz[i];
+        if (queryMzs[q] > upper) {
+          break;
+        }
+        // the first in intensity order is matched, index breaks ties like a stable sort
+        if (!queryMatched[q] && (best == -1 || isBefore(queryMzs, queryIntensities, q, best))) {
+          best = q;
+        }
+      }
+
+      libraryMatch[lib] = best;
+      if (best != -1) {
+        queryMatched[best] = true;
+        result.matchedLibrary[overlap] = result.weightedLibrary[lib];
+        result.matchedQuery[overlap] = result.weightedQuery[best];
+        overlap++;
+      }
+    }
+    return overlap;
+  }
+
+  static int compareIntensityDescending(double[] mzs, double[] intensities, int a, int b) {
+    int result = Double.compare(intensities[b], intensities[a]);
+    if (result == 0) {
+      result = Double.compare(mzs[b], mzs[a]);
+    }
+    return result;
+  }
+
+  private static boolean isBefore(double[] mzs, double[] intensities, int a, int b) {
+    final int order = compareIntensityDescending(mzs, intensities, a, b);
+    return order < 0 || (order == 0 && a < b);
+  }
+
+  private static int firstIndexOfMz(int[] order, double[] mzs, int size, double value) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[order[mid]] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Weighted intensity = intensity^intensityWeight * mz^mzWeight, see
+   * {@link Weights#apply(double, double)}
+   *
+   * @param dst destination of the weighted intensities
+   */
+  protected abstract void weight(double[] mzs, double[] intensities, int size, double mzWeight,
+      double intensityWeight, double[] dst);
+
+  /**
+   * @return the dot product of the first size values
+   */
+  protected abstract double dot(double[] a, double[] b, int size);
+}
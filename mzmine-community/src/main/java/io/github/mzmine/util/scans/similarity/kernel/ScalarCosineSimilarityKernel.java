@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+/**
+ * Scalar fallback if the vector API is not available
+ */
+class ScalarCosineSimilarityKernel extends CosineSimilarityKernel {
+
+  @Override
+  protected void weight(double[] mzs, double[] intensities, int size, double mzWeight,
+      double intensityWeight, double[] dst) {
+    for (int i = 0; i < size; i++) {
+      dst[i] = Math.pow(intensities[i], intensityWeight) * Math.pow(mzs[i], mzWeight);
+    }
+  }
+
+  @Override
+  protected double dot(double[] a, double[] b, int size) {
+    double sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}
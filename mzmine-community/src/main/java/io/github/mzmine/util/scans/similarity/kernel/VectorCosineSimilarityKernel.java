@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Uses the JDK vector API (module jdk.incubator.vector) for weighting and dot products. Only loaded
+ * if the module is available.
+ */
+class VectorCosineSimilarityKernel extends CosineSimilarityKernel {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  protected void weight(double[] mzs, double[] intensities, int size, double mzWeight,
+      double intensityWeight, double[] dst) {
+    final int upperBound = SPECIES.loopBound(size);
+    int i = 0;
+    for (; i < upperBound; i += SPECIES.length()) {
+      DoubleVector weighted = pow(DoubleVector.fromArray(SPECIES, intensities, i),
+          intensityWeight);
+      if (mzWeight != 0) {
+        weighted = weighted.mul(pow(DoubleVector.fromArray(SPECIES, mzs, i), mzWeight));
+      }
+      weighted.intoArray(dst, i);
+    }
+    // tail
+    for (; i < size; i++) {
+      dst[i] = Math.pow(intensities[i], intensityWeight) * Math.pow(mzs[i], mzWeight);
+    }
+  }
+
+  private static DoubleVector pow(DoubleVector values, double exponent) {
+    if (exponent == 1) {
+      return values;
+    }
+    if (exponent == 0.5) {
+      return values.lanewise(VectorOperators.SQRT);
+    }
+    return values.lanewise(VectorOperators.POW, exponent);
+  }
+
+  @Override
+  protected double dot(double[] a, double[] b, int size) {
+    final int upperBound = SPECIES.loopBound(size);
+    DoubleVector sum = DoubleVector.zero(SPECIES);
+    int i = 0;
+    for (; i < upperBound; i += SPECIES.length()) {
+      sum = DoubleVector.fromArray(SPECIES, a, i)
+          .fma(DoubleVector.fromArray(SPECIES, b, i), sum);
+    }
+    double result = sum.reduceLanes(VectorOperators.ADD);
+    // tail
+    for (; i < size; i++) {
+      result += a[i] * b[i];
+    }
+    return result;
+  }
+}
@@ -52,7 +52,9 @@ import io.github.mzmine.datamodel.features.types.numbers.RelativeHeightType;
 import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
 import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatType;
 import io.github.mzmine.datamodel.features.types.numbers.abstr.IntegerType;
+import io.github.mzmine.gui.preferences.NumberFormats;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.util.io.FastDecimalFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -603,6 +605,9 @@ public enum DBEntryField {
     return content;
   }
 
+  /**
+   * Thread safe, as MGF entries are created in parallel, e.g., by the SIRIUS export
+   */
   public String formatForMgf(@NotNull final Object value) {
     return switch (this) {
       case UNSPECIFIED, QUALITY, QUALITY_EXPLAINED_INTENSITY, QUALITY_EXPLAINED_SIGNALS, GNPS_ID, //
@@ -622,18 +627,31 @@ public enum DBEntryField {
         default -> throw new IllegalArgumentException("RT has to be a number");
       };
       case PRECURSOR_MZ, EXACT_MASS -> switch (value) {
-        case Number d -> MZmineCore.getConfiguration().getExportFormats().mz(d);
+        case Number d -> MgfFormats.MZ.format(d.doubleValue());
         default -> throw new IllegalArgumentException("MZ has to be a number");
       };
       case FEATURE_MS1_HEIGHT -> switch (value) {
-        case Number d -> MZmineCore.getConfiguration().getExportFormats().intensity(d);
+        case Number d -> MgfFormats.INTENSITY.format(d.doubleValue());
         default -> throw new IllegalArgumentException("Height has to be a number");
       };
       case FEATURE_MS1_REL_HEIGHT -> switch (value) {
-        case Number d -> MZmineCore.getConfiguration().getExportFormats().percent(d);
+        case Number d -> MgfFormats.PERCENT.format(d.doubleValue());
         default -> throw new IllegalArgumentException("Relative height has to be a number");
       };
       case POLARITY -> PolarityType.NEGATIVE.equals(value) ? "Negative" : "Positive";
     };
   }
+
+  /**
+   * Thread safe copies of the export formats, which are shared {@link java.text.NumberFormat}
+   * instances
+   */
+  private static final class MgfFormats {
+
+    private static final NumberFormats EXPORT = MZmineCore.getConfiguration().getExportFormats();
+    private static final FastDecimalFormat MZ = new FastDecimalFormat(EXPORT.mzFormat());
+    private static final FastDecimalFormat INTENSITY = new FastDecimalFormat(
+        EXPORT.intensityFormat());
+    private static final FastDecimalFormat PERCENT = new FastDecimalFormat(EXPORT.percentFormat());
+  }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.files.FileCacheUtils;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compiled binary version of an imported spectral library. The file is written once after a library
+ * was parsed and is memory-mapped to load the same library file on later imports without parsing
+ * the text format again. Peaks are copied from the mapped file into the {@link SpectralLibrary}
+ * storage. The cache file is keyed by the identity of the library file and invalidated when it
+ * changes.
+ * <p>
+ * Layout: header (magic, version, entries) | entries: byte length, number of fields, fields (name,
+ * value type, value), number of peaks, m/z values, intensity values.
+ */
+public class CompiledSpectralLibrary {
+
+  public static final String CACHE_CATEGORY = "compiled_spectral_libraries";
+  public static final String FORMAT = "mzcsl";
+
+  private static final Logger logger = Logger.getLogger(CompiledSpectralLibrary.class.getName());
+  private static final int MAGIC = 0x4D5A534C;
+  // increment on every change of the layout
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  // entries are read from mapped windows of this size
+  private static final long WINDOW_BYTES = 64L << 20;
+
+  // value types of fields
+  private static final byte NULL = 0, STRING = 1, DOUBLE = 2, FLOAT = 3, INTEGER = 4, LONG = 5,
+      BOOLEAN = 6;
+
+  // cache files of libraries with field values that cannot be compiled, only tried once per session
+  private static final Set<File> unsupportedLibraries = ConcurrentHashMap.newKeySet();
+
+  private final File cacheFile;
+  private int totalEntries;
+  private volatile int loadedEntries;
+
+  /**
+   * @param libraryFile the original library file
+   */
+  public CompiledSpectralLibrary(@NotNull File libraryFile) {
+    final String key = FileCacheUtils.hashKey(VERSION, FileCacheUtils.fileIdentity(libraryFile));
+    cacheFile = FileCacheUtils.getCacheFile(CACHE_CATEGORY, libraryFile.getName(), key, FORMAT);
+  }
+
+  public @NotNull File getCacheFile() {
+    return cacheFile;
+  }
+
+  public boolean exists() {
+    return cacheFile.exists();
+  }
+
+  public int getLoadedEntries() {
+    return loadedEntries;
+  }
+
+  public double getProgress() {
+    return totalEntries == 0 ? 0 : loadedEntries / (double) totalEntries;
+  }
+
+  /**
+   * Adds all entries of the compiled library to the library
+   *
+   * @param library the target library, entries are stored in its memory map
+   * @param task    the calling task to check for cancellation
+   * @return true if all entries were loaded. False if the file is missing, invalid, or the task was
+   * canceled. Entries are only added to the library if the whole file was read.
+   */
+  public boolean load(@NotNull SpectralLibrary library, @Nullable AbstractTask task) {
+    if (!cacheFile.exists()) {
+      return false;
+    }
+    try (var channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      final List<SpectralLibraryEntry> entries = read(channel, library, task);
+      if (entries == null) {
+        return false;
+      }
+      library.addEntries(entries);
+      FileCacheUtils.markUsed(cacheFile);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING,
+          "Cannot load compiled spectral library %s, will parse the library file".formatted(
+              cacheFile.getAbsolutePath()), e);
+      return false;
+    }
+  }
+
+  @Nullable
+  private List<SpectralLibraryEntry> read(FileChannel channel, SpectralLibrary library,
+      @Nullable AbstractTask task) throws IOException {
+    final long size = channel.size();
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    channel.read(header, 0);
+    header.flip();
+    if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC
+        || header.getInt() != VERSION) {
+      throw new IOException("Not a compiled spectral library of version " + VERSION);
+    }
+    totalEntries = header.getInt();
+
+    final List<SpectralLibraryEntry> entries = new ArrayList<>(totalEntries);
+    ByteBuffer window = null;
+    long windowStart = 0;
+    long position = HEADER_BYTES;
+    for (int i = 0; i < totalEntries; i++) {
+      if (task != null && task.isCanceled()) {
+        return null;
+      }
+      // map a new window if the entry does not fit into the current one
+      if (window == null || position + Integer.BYTES > windowStart + window.limit()) {
+        windowStart = position;
+        window = channel.map(MapMode.READ_ONLY, position,
+            Math.min(size - position, WINDOW_BYTES));
+      }
+      final int entryBytes = window.getInt((int) (position - windowStart));
+      position += Integer.BYTES;
+      if (position + entryBytes > windowStart + window.limit()) {
+        if (position + entryBytes > size) {
+          throw new IOException("Compiled spectral library is incomplete or corrupt");
+        }
+        windowStart = position;
+        window = channel.map(MapMode.READ_ONLY, position,
+            Math.min(size - position, Math.max(entryBytes, WINDOW_BYTES)));
+      }
+      window.position((int) (position - windowStart));
+      entries.add(readEntry(window, library));
+      position += entryBytes;
+      loadedEntries = i + 1;
+    }
+    if (position != size) {
+      throw new IOException("Compiled spectral library is incomplete or corrupt");
+    }
+    return entries;
+  }
+
+  private static SpectralLibraryEntry readEntry(ByteBuffer buffer, SpectralLibrary library)
+      throws IOException {
+    final int numFields = buffer.getInt();
+    final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    for (int f = 0; f < numFields; f++) {
+      final DBEntryField field = DBEntryField.valueOf(readString(buffer));
+      final byte type = buffer.get();
+      final Object value = switch (type) {
+        case NULL -> null;
+        case STRING -> readString(buffer);
+        case DOUBLE -> buffer.getDouble();
+        case FLOAT -> buffer.getFloat();
+        case INTEGER -> buffer.getInt();
+        case LONG -> buffer.getLong();
+        case BOOLEAN -> buffer.get() != 0;
+        default -> throw new IOException("Unknown value type " + type);
+      };
+      fields.put(field, value);
+    }
+
+    final int numPeaks = buffer.getInt();
+    final double[] mzs = new double[numPeaks];
+    final double[] intensities = new double[numPeaks];
+    buffer.slice(buffer.position(), numPeaks * Double.BYTES).asDoubleBuffer().get(mzs);
+    buffer.position(buffer.position() + numPeaks * Double.BYTES);
+    buffer.slice(buffer.position(), numPeaks * Double.BYTES).asDoubleBuffer().get(intensities);
+    buffer.position(buffer.position() + numPeaks * Double.BYTES);
+    return new SpectralDBEntry(library.getStorage(), mzs, intensities, fields);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes all entries of the library to the cache file. Field values need to be null, String,
+   * Double, Float, Integer, Long, or Boolean, otherwise the library is not cached.
+   *
+   * @param library       the parsed library
+   * @param maxCacheBytes the size limit of all compiled libraries, least recently used libraries
+   *                      are deleted to stay below
+   * @return true if the library was written, false if it contains unsupported field values
+   * @throws IOException if the file cannot be written
+   */
+  public boolean write(@NotNull SpectralLibrary library, long maxCacheBytes) throws IOException {
+    if (unsupportedLibraries.contains(cacheFile)) {
+      return false;
+    }
+    final List<SpectralLibraryEntry> entries = library.getEntries();
+    final File temp = FileCacheUtils.createTempCacheFile(cacheFile);
+    try (var out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      out.writeInt(0); // reserved
+
+      // each entry is written to a buffer first to prefix it with its length
+      final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(1 << 12);
+      final DataOutputStream entryOut = new DataOutputStream(entryBytes);
+      double[] buffer = new double[0];
+      for (SpectralLibraryEntry entry : entries) {
+        entryBytes.reset();
+        final Map<DBEntryField, Object> fields = entry.getFields();
+        entryOut.writeInt(fields.size());
+        for (Entry<DBEntryField, Object> field : fields.entrySet()) {
+          writeString(entryOut, field.getKey().name());
+          writeValue(entryOut, field.getKey(), field.getValue());
+        }
+
+        final int numPeaks = entry.getNumberOfDataPoints();
+        entryOut.writeInt(numPeaks);
+        buffer = entry.getMzValues(buffer);
+        for (int i = 0; i < numPeaks; i++) {
+          entryOut.writeDouble(buffer[i]);
+        }
+        buffer = entry.getIntensityValues(buffer);
+        for (int i = 0; i < numPeaks; i++) {
+          entryOut.writeDouble(buffer[i]);
+        }
+
+        entryOut.flush();
+        out.writeInt(entryBytes.size());
+        entryBytes.writeTo(out);
+      }
+    } catch (UnsupportedValueException e) {
+      temp.delete();
+      if (unsupportedLibraries.add(cacheFile)) {
+        logger.fine(() -> "Spectral library %s is not compiled: %s".formatted(
+            library.getPath().getAbsolutePath(), e.getMessage()));
+      }
+      return false;
+    } catch (IOException e) {
+      temp.delete();
+      throw e;
+    }
+    FileCacheUtils.moveIntoPlace(temp, cacheFile, maxCacheBytes);
+    return true;
+  }
+
+  private static void writeValue(DataOutputStream out, DBEntryField field, Object value)
+      throws IOException {
+    switch (value) {
+      case null -> out.writeByte(NULL);
+      case String s -> {
+        out.writeByte(STRING);
+        writeString(out, s);
+      }
+      case Double d -> {
+        out.writeByte(DOUBLE);
+        out.writeDouble(d);
+      }
+      case Float f -> {
+        out.writeByte(FLOAT);
+        out.writeFloat(f);
+      }
+      case Integer i -> {
+        out.writeByte(INTEGER);
+        out.writeInt(i);
+      }
+      case Long l -> {
+        out.writeByte(LONG);
+        out.writeLong(l);
+      }
+      case Boolean b -> {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean(b);
+      }
+      default -> throw new UnsupportedValueException(
+          "Cannot cache value of type %s for field %s".formatted(value.getClass().getName(),
+              field));
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static class UnsupportedValueException extends IOException {
+
+    private UnsupportedValueException(String message) {
+      super(message);
+    }
+  }
+}
@@ -69,11 +69,12 @@ public class GnpsMgfParser extends SpectralDBTextParser {
     // data
     // END IONS
 
-    int correct = 0;
-    State state = State.WAIT_FOR_META;
-    Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
-    int sep = -1;
+    // records are split at BEGIN IONS and END IONS and parsed in parallel
+    // fields are carried over from one record to the next
+    final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    final List<DataPoint> dps = new ArrayList<>();
+    final List<List<String>> records = new ArrayList<>();
+    List<String> recordLines = null;
     // create db
     try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
       for (String l; (l = br.readLine()) != null; ) {
@@ -81,106 +82,129 @@ public class GnpsMgfParser extends SpectralDBTextParser {
         if (mainTask != null && mainTask.isCanceled()) {
           return false;
         }
-        try {
-          if (l.length() > 1) {
+        if (l.length() > 1) {
+          if (recordLines == null) {
             // meta data start?
-            if (state.equals(State.WAIT_FOR_META)) {
-              if (l.equalsIgnoreCase("BEGIN IONS")) {
-                fields = new EnumMap<>(fields);
-                dps.clear();
-                state = State.META;
-              }
-            } else {
-              if (l.equalsIgnoreCase("END IONS")) {
-                // add entry and reset
-                if (fields.size() > 1 && dps.size() > 1) {
-                  SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(),
-                      fields, dps.toArray(new DataPoint[dps.size()]));
-                  // add and push
-                  addLibraryEntry(entry);
-                  correct++;
-                }
-                state = State.WAIT_FOR_META;
-              } else {
-                sep = l.indexOf('=');
-                if (sep == -1) {
-                  // data starts
-                  state = State.DATA;
-                }
-                switch (state) {
-                  case WAIT_FOR_META:
-                    // wait for next entry
-                    break;
-                  case DATA:
-                    // split for any white space (tab or space ...)
-                    String[] data = l.split("\\s+");
-                    dps.add(new SimpleDataPoint(Double.parseDouble(data[0]),
-                        Double.parseDouble(data[1])));
-                    break;
-                  case META:
-                    if (sep != -1 && sep < l.length() - 1) {
-                      DBEntryField field = DBEntryField.forMgfID(l.substring(0, sep));
-                      if (field != null) {
-                        String content = l.substring(sep + 1);
-                        if (!content.isBlank()) {
-                          try {
-                            // allow 1+ as 1 and 2- as -2
-                            if (field.equals(DBEntryField.CHARGE)) {
-                              content = parseCharge(content);
-                            }
-
-                            Object value = field.convertValue(content);
-
-                            // name
-                            if (field.equals(DBEntryField.NAME)) {
-                              String name = ((String) value);
-                              int lastSpace = name.lastIndexOf(' ');
-                              if (lastSpace != -1 && lastSpace < name.length() - 2) {
-                                String adductCandidate = name.substring(lastSpace + 1);
-                                // check for valid
-                                // adduct with the
-                                // adduct parser
-                                // from export
-                                // use as adduct
-                                String adduct = AdductParser.parse(adductCandidate);
-                                if (adduct != null && !adduct.isEmpty()) {
-                                  fields.put(DBEntryField.ION_TYPE, adduct);
-                                }
-                              }
-                            }
-                            // retention time is in seconds, mzmine uses minutes
-                            if (field.equals(DBEntryField.RT)) {
-                              value = ((Float) value) / 60.f;
-                            }
-
-                            if (value != null) {
-                              fields.put(field, value);
-                            }
-                          } catch (Exception e) {
-                            logger.log(Level.WARNING,
-                                "Cannot convert value type of " + content + " to "
-                                + field.getObjectClass().toString(), e);
-                          }
-                        }
-                      }
-                    }
-                    break;
-                }
-              }
+            if (l.equalsIgnoreCase("BEGIN IONS")) {
+              recordLines = new ArrayList<>();
+            }
+          } else if (l.equalsIgnoreCase("END IONS")) {
+            records.add(recordLines);
+            recordLines = null;
+            if (records.size() >= PARALLEL_BATCH_RECORDS) {
+              parseInParallel(library, records, this::parseRecord, fields, dps, 2, 2);
+              records.clear();
             }
+          } else {
+            recordLines.add(l);
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          state = State.WAIT_FOR_META;
         }
         processedLines.incrementAndGet();
       }
+      // a last record without END IONS is not added
+      parseInParallel(library, records, this::parseRecord, fields, dps, 2, 2);
       // finish and process all entries
       finish();
       return true;
     }
   }
 
+  /**
+   * Parses the lines between BEGIN IONS and END IONS. After an error, all lines are skipped until
+   * the next BEGIN IONS, which starts a new record.
+   *
+   * @param lines all lines of a record without BEGIN IONS and END IONS
+   * @return the parsed records, only the last one might be complete
+   */
+  private List<ParsedRecord> parseRecord(List<String> lines) {
+    final List<ParsedRecord> records = new ArrayList<>(1);
+    State state = State.META;
+    Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    List<DataPoint> dps = new ArrayList<>();
+    int sep = -1;
+    for (String l : lines) {
+      try {
+        if (state.equals(State.WAIT_FOR_META)) {
+          if (l.equalsIgnoreCase("BEGIN IONS")) {
+            records.add(new ParsedRecord(fields, true, dps, false));
+            fields = new EnumMap<>(DBEntryField.class);
+            dps = new ArrayList<>();
+            state = State.META;
+          }
+          continue;
+        }
+
+        sep = l.indexOf('=');
+        if (sep == -1) {
+          // data starts
+          state = State.DATA;
+        }
+        switch (state) {
+          case WAIT_FOR_META:
+            // wait for next entry
+            break;
+          case DATA:
+            // split for any white space (tab or space ...)
+            String[] data = l.split("\\s+");
+            dps.add(new SimpleDataPoint(Double.parseDouble(data[0]), Double.parseDouble(data[1])));
+            break;
+          case META:
+            if (sep != -1 && sep < l.length() - 1) {
+              DBEntryField field = DBEntryField.forMgfID(l.substring(0, sep));
+              if (field != null) {
+                String content = l.substring(sep + 1);
+                if (!content.isBlank()) {
+                  try {
+                    // allow 1+ as 1 and 2- as -2
+                    if (field.equals(DBEntryField.CHARGE)) {
+                      content = parseCharge(content);
+                    }
+
+                    Object value = field.convertValue(content);
+
+                    // name
+                    if (field.equals(DBEntryField.NAME)) {
+                      String name = ((String) value);
+                      int lastSpace = name.lastIndexOf(' ');
+                      if (lastSpace != -1 && lastSpace < name.length() - 2) {
+                        String adductCandidate = name.substring(lastSpace + 1);
+                        // check for valid
+                        // adduct with the
+                        // adduct parser
+                        // from export
+                        // use as adduct
+                        String adduct = AdductParser.parse(adductCandidate);
+                        if (adduct != null && !adduct.isEmpty()) {
+                          fields.put(DBEntryField.ION_TYPE, adduct);
+                        }
+                      }
+                    }
+                    // retention time is in seconds, mzmine uses minutes
+                    if (field.equals(DBEntryField.RT)) {
+                      value = ((Float) value) / 60.f;
+                    }
+
+                    if (value != null) {
+                      fields.put(field, value);
+                    }
+                  } catch (Exception e) {
+                    logger.log(Level.WARNING, "Cannot convert value type of " + content + " to "
+                                              + field.getObjectClass().toString(), e);
+                  }
+                }
+              }
+            }
+            break;
+        }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        state = State.WAIT_FOR_META;
+      }
+    }
+    records.add(new ParsedRecord(fields, true, dps, state != State.WAIT_FOR_META));
+    return records;
+  }
+
   private String parseCharge(final String str) {
     var lastChar = str.charAt(str.length() - 1);
     if (lastChar == '+' || lastChar == '-') {
@@ -36,13 +36,16 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.json.JsonReaderFactory;
 import jakarta.json.JsonValue;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,6 +54,8 @@ import org.jetbrains.annotations.Nullable;
 public class MZmineJsonParser extends SpectralDBTextParser {
 
   private final static Logger logger = Logger.getLogger(MZmineJsonParser.class.getName());
+  // creating readers from a factory avoids the provider lookup for every line
+  private static final JsonReaderFactory JSON_READER_FACTORY = Json.createReaderFactory(null);
 
   public MZmineJsonParser(int bufferEntries, LibraryEntryProcessor processor) {
     super(bufferEntries, processor);
@@ -65,6 +70,8 @@ public class MZmineJsonParser extends SpectralDBTextParser {
 
     int correct = 0;
     int error = 0;
+    // lines are independent entries and are parsed in parallel batches
+    final List<String> lines = new ArrayList<>();
     // create db
     try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
       for (String l; (l = br.readLine()) != null; ) {
@@ -72,31 +79,32 @@ public class MZmineJsonParser extends SpectralDBTextParser {
         if (mainTask != null && mainTask.isCanceled()) {
           return false;
         }
-
-        JsonReader reader = null;
-        try {
-          reader = Json.createReader(new StringReader(l));
-          JsonObject json = reader.readObject();
-          SpectralLibraryEntry entry = getDBEntry(library, json);
-          if (entry != null) {
-            correct++;
-            // add entry and process
-            addLibraryEntry(entry);
-          } else {
-            error++;
-          }
-        } catch (Exception ex) {
-          error++;
-          logger.log(Level.WARNING, "Error for entry", ex);
-        } finally {
-          if (reader != null) {
-            reader.close();
+        lines.add(l);
+        // parse the first lines directly to detect a wrong format early
+        if (lines.size() >= PARALLEL_BATCH_RECORDS || correct + error < 10) {
+          for (SpectralLibraryEntry entry : lines.parallelStream()
+              .map(line -> parseLineToEntry(library, line)).toList()) {
+            if (entry != null) {
+              correct++;
+              // add entry and process
+              addLibraryEntry(entry);
+            } else {
+              error++;
+            }
+            // to many errors? wrong data format?
+            if (error > 5 && correct < 5) {
+              logger.log(Level.WARNING, "This file was no MZmine spectral json library");
+              return false;
+            }
+            processedLines.incrementAndGet();
           }
+          lines.clear();
         }
-        // to many errors? wrong data format?
-        if (error > 5 && correct < 5) {
-          logger.log(Level.WARNING, "This file was no MZmine spectral json library");
-          return false;
+      }
+      for (SpectralLibraryEntry entry : lines.parallelStream()
+          .map(line -> parseLineToEntry(library, line)).toList()) {
+        if (entry != null) {
+          addLibraryEntry(entry);
         }
         processedLines.incrementAndGet();
       }
@@ -107,6 +115,20 @@ public class MZmineJsonParser extends SpectralDBTextParser {
     return true;
   }
 
+  /**
+   * @return the entry or null if the line is no valid entry
+   */
+  @Nullable
+  private SpectralLibraryEntry parseLineToEntry(SpectralLibrary library, String line) {
+    try (JsonReader reader = JSON_READER_FACTORY.createReader(new StringReader(line))) {
+      JsonObject json = reader.readObject();
+      return getDBEntry(library, json);
+    } catch (Exception ex) {
+      logger.log(Level.WARNING, "Error for entry", ex);
+      return null;
+    }
+  }
+
   @Nullable
   private static Object getValue(final JsonObject main, final DBEntryField f, final String id) {
     Object o = null;
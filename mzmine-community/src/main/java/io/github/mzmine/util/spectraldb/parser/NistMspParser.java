@@ -58,13 +58,12 @@ public class NistMspParser extends SpectralDBTextParser {
     super.parse(mainTask, dataBaseFile, library);
     logger.info("Parsing NIST msp spectral library " + dataBaseFile.getAbsolutePath());
 
-    // metadata fields and data points
-    Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
-    // separation index (metadata is separated by ': '
-    int sep = -1;
-    // currently loading data?
-    boolean isData = false;
+    // metadata fields and data points, carried over from one record to the next
+    final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    final List<DataPoint> dps = new ArrayList<>();
+    // records are split at empty rows and parsed in parallel
+    final List<RecordLines> records = new ArrayList<>();
+    List<String> recordLines = new ArrayList<>();
 
     // read DB file
     try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
@@ -73,52 +72,71 @@ public class NistMspParser extends SpectralDBTextParser {
         if (mainTask != null && mainTask.isCanceled()) {
           return false;
         }
-        try {
-          if (l.length() > 1) {
-            // meta data?
-            sep = isData ? -1 : l.indexOf(": ");
-            if (sep != -1 && sep < l.length() - 2) {
-              extractMetaData(fields, l, sep);
-            } else {
-              // data?
-              DataPoint dp = extractDataPoint(l);
-              if (dp != null) {
-                dps.add(dp);
-                isData = true;
-              } else {
-                isData = false;
-              }
-            }
-          } else {
-            // empty row
-            if (isData) {
-              // empty row after data
-              // add entry and reset
-              SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(), fields,
-                  dps.toArray(new DataPoint[dps.size()]));
-              // add and push
-              addLibraryEntry(entry);
-              // reset
-              fields = new EnumMap<>(fields);
-              dps.clear();
-              isData = false;
-            }
+        if (l.length() > 1) {
+          recordLines.add(l);
+        } else if (!recordLines.isEmpty()) {
+          // empty row
+          records.add(new RecordLines(recordLines, true));
+          recordLines = new ArrayList<>();
+          if (records.size() >= PARALLEL_BATCH_RECORDS) {
+            parseInParallel(library, records, this::parseRecord, fields, dps, 0, 0);
+            records.clear();
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          // reset on error
-          isData = false;
-          fields = new EnumMap<>(fields);
-          dps.clear();
         }
         processedLines.incrementAndGet();
       }
+      if (!recordLines.isEmpty()) {
+        records.add(new RecordLines(recordLines, false));
+      }
+      parseInParallel(library, records, this::parseRecord, fields, dps, 0, 0);
       // finish and process all entries
       finish();
       return true;
     }
   }
 
+  /**
+   * Parses the lines between two empty rows
+   *
+   * @return the parsed record, complete if the record ends with data points and an empty row
+   */
+  private List<ParsedRecord> parseRecord(RecordLines record) {
+    final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    final List<DataPoint> dps = new ArrayList<>();
+    boolean clearDataPoints = false;
+    // separation index (metadata is separated by ': '
+    int sep = -1;
+    // currently loading data?
+    boolean isData = false;
+    for (String l : record.lines()) {
+      try {
+        // meta data?
+        sep = isData ? -1 : l.indexOf(": ");
+        if (sep != -1 && sep < l.length() - 2) {
+          extractMetaData(fields, l, sep);
+        } else {
+          // data?
+          DataPoint dp = extractDataPoint(l);
+          if (dp != null) {
+            dps.add(dp);
+            isData = true;
+          } else {
+            isData = false;
+          }
+        }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        // reset on error
+        isData = false;
+        dps.clear();
+        clearDataPoints = true;
+      }
+    }
+    // empty row after data
+    return List.of(
+        new ParsedRecord(fields, clearDataPoints, dps, record.endsWithEmptyRow() && isData));
+  }
+
   /**
    * Extract data point
    *
@@ -178,4 +196,11 @@ public class NistMspParser extends SpectralDBTextParser {
     }
   }
 
+  /**
+   * @param lines            all lines of a record
+   * @param endsWithEmptyRow false for the last record if the file does not end with an empty row
+   */
+  private record RecordLines(List<String> lines, boolean endsWithEmptyRow) {
+
+  }
 }
@@ -25,14 +25,21 @@
 
 package io.github.mzmine.util.spectraldb.parser;
 
+import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * @author Robin Schmid (https://github.com/robinschmid)
@@ -41,6 +48,11 @@ public abstract class SpectralDBTextParser extends SpectralDBParser {
 
   private static final Logger logger = Logger.getLogger(SpectralDBTextParser.class.getName());
 
+  /**
+   * Number of records that are read before they are parsed in parallel
+   */
+  protected static final int PARALLEL_BATCH_RECORDS = 2048;
+
   protected long totalLines = 0L;
   protected AtomicLong processedLines = new AtomicLong(0L);
 
@@ -73,4 +85,61 @@ public abstract class SpectralDBTextParser extends SpectralDBParser {
   public void setTotalLines(long totalLines) {
     this.totalLines = totalLines;
   }
+
+  /**
+   * Parses a batch of records on parallel threads and adds the resulting entries in file order.
+   * Metadata fields and data points are carried over from one record to the next, exactly like
+   * sequential parsing with one map of fields.
+   *
+   * @param library          the target library
+   * @param records          the lines of each record
+   * @param recordParser     parses one record into one or more results (thread safe)
+   * @param fields           metadata fields of the previous records, updated with each record
+   * @param dataPoints       data points of the previous records, updated with each record
+   * @param minFields        minimum number of fields to create an entry
+   * @param minDataPoints    minimum number of data points to create an entry
+   */
+  protected <T> void parseInParallel(@NotNull SpectralLibrary library, @NotNull List<T> records,
+      @NotNull Function<T, List<ParsedRecord>> recordParser,
+      @NotNull Map<DBEntryField, Object> fields, @NotNull List<DataPoint> dataPoints,
+      int minFields, int minDataPoints) {
+    final List<List<ParsedRecord>> parsed = records.parallelStream().map(recordParser).toList();
+    for (List<ParsedRecord> results : parsed) {
+      for (ParsedRecord record : results) {
+        fields.putAll(record.fields());
+        if (record.clearDataPoints()) {
+          dataPoints.clear();
+        }
+        dataPoints.addAll(record.dataPoints());
+        if (!record.complete()) {
+          continue;
+        }
+        try {
+          if (fields.size() >= minFields && dataPoints.size() >= minDataPoints) {
+            SpectralLibraryEntry entry = SpectralLibraryEntry.create(library.getStorage(), fields,
+                dataPoints.toArray(new DataPoint[0]));
+            // add and push
+            addLibraryEntry(entry);
+          }
+        } catch (Exception ex) {
+          logger.log(Level.WARNING, "Error for entry", ex);
+        }
+        dataPoints.clear();
+      }
+    }
+  }
+
+  /**
+   * Result of parsing one record independent of the previous records
+   *
+   * @param fields          metadata fields set in this record
+   * @param clearDataPoints true if the data points of previous records are discarded
+   * @param dataPoints      data points added in this record
+   * @param complete        true if this record ends with a complete entry
+   */
+  protected record ParsedRecord(@NotNull Map<DBEntryField, Object> fields,
+                                boolean clearDataPoints, @NotNull List<DataPoint> dataPoints,
+                                boolean complete) {
+
+  }
 }
@@ -53,6 +53,7 @@ import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Parameter
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2SubParameters;
 import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
 import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperParameters;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperRegression;
 import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
 import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
 import io.github.mzmine.modules.tools.batchwizard.subparameters.MassDetectorWizardOptions;
@@ -523,6 +524,10 @@ public class FeatureFindingTest {
         "No charge detected");
     assertTrue(processed2.streamFeatures().mapToInt(Feature::getCharge).anyMatch(c -> c > 0),
         "No charge detected");
+
+    // same result as the former list based implementation
+    IsotopeGrouperRegression.assertSameGrouping(lastFlistA);
+    IsotopeGrouperRegression.assertSameGrouping(lastFlistB);
   }
 
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class FeatureListRowIndexTest {
+
+  RawDataFile raw;
+  ModularFeatureList flist;
+
+  @BeforeEach
+  void setUp() {
+    raw = Mockito.mock(RawDataFile.class);
+    flist = new ModularFeatureList("List", null, raw);
+    // mz and rt
+    double[][] values = {{300, 5}, {100, 1}, {200, 2}, {200.002, 8}, {150, 3}, {100.001, 4}};
+    for (int i = 0; i < values.length; i++) {
+      flist.addRow(createRow(i + 1, values[i][0], (float) values[i][1]));
+    }
+  }
+
+  private FeatureListRow createRow(int id, double mz, float rt) {
+    ModularFeature f = new ModularFeature(flist);
+    f.set(RawFileType.class, raw);
+    f.set(MZType.class, mz);
+    f.set(RTType.class, rt);
+    f.set(DetectionType.class, FeatureStatus.DETECTED);
+    return new ModularFeatureListRow(flist, id, f);
+  }
+
+  @Test
+  void getCandidates() {
+    final FeatureListRowIndex index = flist.getRowIndex();
+    assertEquals(6, index.size());
+
+    List<FeatureListRow> candidates = index.getCandidates(Range.closed(99.9, 200.001), Range.all());
+    assertEquals(List.of(2, 6, 5, 3), candidates.stream().map(FeatureListRow::getID).toList());
+
+    candidates = index.getCandidates(Range.closed(99.9, 200.001), Range.closed(1.5f, 3.5f));
+    assertEquals(List.of(5, 3), candidates.stream().map(FeatureListRow::getID).toList());
+
+    assertEquals(0, index.getCandidates(Range.closed(400d, 500d), Range.all()).size());
+  }
+
+  @Test
+  void nearest() {
+    final FeatureListRowIndex index = flist.getRowIndex();
+    assertEquals(5, index.getClosestMz(160).getID());
+    assertEquals(2, index.getClosestMz(10).getID());
+    assertEquals(1, index.getClosestMz(1000).getID());
+
+    // closer in mz but not in rt
+    assertEquals(3, index.getNearest(200.0015, 2.5f, 0.005, 1f).getID());
+    assertEquals(4, index.getNearest(200.0015, 7.5f, 0.005, 1f).getID());
+    assertNull(index.getNearest(200.0015, 5f, 0.005, 1f));
+  }
+
+  @Test
+  void invalidateOnRowChange() {
+    final FeatureListRowIndex index = flist.getRowIndex();
+    assertSame(index, flist.getRowIndex());
+
+    flist.addRow(createRow(7, 250, 1));
+    final FeatureListRowIndex changed = flist.getRowIndex();
+    assertNotSame(index, changed);
+    assertEquals(7, changed.size());
+    assertEquals(7, changed.getClosestMz(251).getID());
+  }
+
+  @Test
+  void invalidateOnValueChange() {
+    final FeatureListRowIndex index = flist.getRowIndex();
+    // e.g., gap filling in place
+    final FeatureListRow row = flist.findRowByID(2);
+    row.set(MZType.class, 400d);
+    final FeatureListRowIndex changed = flist.getRowIndex();
+    assertNotSame(index, changed);
+    assertEquals(2, changed.getClosestMz(401).getID());
+    assertSame(changed, flist.getRowIndex());
+
+    ((ModularFeature) row.getBestFeature()).set(RTType.class, 10f);
+    assertNotSame(changed, flist.getRowIndex());
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class DataTypesTest {
+
+  @Test
+  void typesAreLoaded() {
+    assertFalse(DataTypes.getInstances().isEmpty());
+    assertEquals(MZType.class, DataTypes.get(MZType.class).getClass());
+  }
+
+  /**
+   * The generated registry needs to list the same classes as the class path scan.
+   */
+  @Test
+  void registryMatchesClassPathScan() {
+    final List<String> registry = DataTypes.readRegistryClassNames();
+    // registry is only generated by the gradle build
+    assumeTrue(registry != null);
+
+    final Set<String> scanned = new HashSet<>(DataTypes.scanClassPathClassNames());
+    // the test class path may contain additional classes in the package
+    assertTrue(scanned.containsAll(registry));
+    for (String type : DataTypes.getClasses()) {
+      assertTrue(registry.contains(type), "Registry is missing " + type);
+    }
+  }
+
+  /**
+   * Types outside the main classes, e.g., of plugins, are found by scanning the other class path
+   * roots. The main classes are only listed by the registry.
+   */
+  @Test
+  void additionalScanSkipsMainClasses() {
+    final List<String> additional = DataTypes.scanAdditionalClassNames();
+    assertFalse(additional.contains(MZType.class.getName()));
+    assertFalse(additional.contains(DataTypes.class.getName()));
+    // test classes are in a separate class path root
+    assertTrue(additional.contains(DataTypesTest.class.getName()));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SharedMzAxisStorageTest {
+
+  @Test
+  void identicalAxesAreShared() {
+    final SharedMzAxisStorage storage = new SharedMzAxisStorage();
+    final double[] axis = {100.0, 100.5, 101.0, 101.5};
+
+    final DoubleBuffer first = storage.storeMzValues(null, axis);
+    final DoubleBuffer second = storage.storeMzValues(null, axis.clone());
+    final DoubleBuffer other = storage.storeMzValues(null, new double[]{100.0, 100.5, 101.0, 102});
+
+    assertSame(first.array(), second.array());
+    assertNotSame(first, second);
+    assertNotSame(first.array(), other.array());
+    assertEquals(1, storage.getSharedCount());
+    assertEquals(2, storage.getNumDistinctAxes());
+
+    final double[] values = new double[axis.length];
+    second.get(0, values);
+    assertArrayEquals(axis, values);
+  }
+
+  @Test
+  void disabledForDistinctAxes() {
+    final SharedMzAxisStorage storage = new SharedMzAxisStorage();
+    for (int i = 0; i <= SharedMzAxisStorage.MAX_DISTINCT_AXES; i++) {
+      storage.storeMzValues(null, new double[]{i, i + 1});
+    }
+    assertEquals(0, storage.getNumDistinctAxes());
+
+    final double[] axis = {0, 1};
+    final DoubleBuffer stored = storage.storeMzValues(null, axis);
+    assertSame(axis, stored.array());
+    assertEquals(0, storage.getSharedCount());
+  }
+
+  @Test
+  void concurrentIdenticalAxesAreRegisteredOnce() {
+    final SharedMzAxisStorage storage = new SharedMzAxisStorage();
+    final double[] axis = {100.0, 100.5, 101.0, 101.5};
+    final int n = 1000;
+
+    final List<DoubleBuffer> buffers = IntStream.range(0, n).parallel()
+        .mapToObj(i -> storage.storeMzValues(null, axis.clone())).toList();
+
+    assertEquals(1, storage.getNumDistinctAxes());
+    assertEquals(n - 1, storage.getSharedCount());
+    final double[] values = new double[axis.length];
+    for (DoubleBuffer buffer : buffers) {
+      buffer.get(0, values);
+      assertArrayEquals(axis, values);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveMemoryPolicyTest {
+
+  private static final double BUDGET = 0.8;
+
+  @Test
+  void startWithLowestLevel() {
+    // thresholds: level 3 < 0.4, level 2 < 0.6, level 1 < 0.8
+    int level = 0;
+    for (int expected = 1; expected <= 3; expected++) {
+      level = AdaptiveMemoryPolicy.nextLevel(level, 0.1, true, BUDGET);
+      assertEquals(expected, level);
+    }
+    assertEquals(3, AdaptiveMemoryPolicy.nextLevel(level, 0.1, true, BUDGET));
+  }
+
+  @Test
+  void increaseOnlyWhenMeasured() {
+    assertEquals(0, AdaptiveMemoryPolicy.nextLevel(0, 0.1, false, BUDGET));
+    assertEquals(2, AdaptiveMemoryPolicy.nextLevel(2, 0.1, false, BUDGET));
+    // reduce without a measurement, the current heap usage is an upper bound
+    assertEquals(1, AdaptiveMemoryPolicy.nextLevel(3, 0.7, false, BUDGET));
+  }
+
+  @Test
+  void reduceDirectly() {
+    assertEquals(3, AdaptiveMemoryPolicy.nextLevel(3, 0.39, true, BUDGET));
+    assertEquals(2, AdaptiveMemoryPolicy.nextLevel(3, 0.4, true, BUDGET));
+    assertEquals(0, AdaptiveMemoryPolicy.nextLevel(3, 0.85, true, BUDGET));
+  }
+
+  @Test
+  void increaseWithHysteresis() {
+    // below the threshold of level 3 but not clearly below
+    assertEquals(2, AdaptiveMemoryPolicy.nextLevel(2, 0.35, true, BUDGET));
+    assertEquals(3, AdaptiveMemoryPolicy.nextLevel(2, 0.3, true, BUDGET));
+    // only one level at a time
+    assertEquals(1, AdaptiveMemoryPolicy.nextLevel(0, 0.1, true, BUDGET));
+    assertEquals(1, AdaptiveMemoryPolicy.nextLevel(1, 0.55, true, BUDGET));
+    assertEquals(2, AdaptiveMemoryPolicy.nextLevel(1, 0.45, true, BUDGET));
+  }
+
+  @Test
+  void noToggleAroundThreshold() {
+    int level = 3;
+    for (double used : new double[]{0.41, 0.39, 0.41, 0.38, 0.36, 0.41}) {
+      level = AdaptiveMemoryPolicy.nextLevel(level, used, true, BUDGET);
+      assertEquals(2, level, "Toggled at heap usage " + used);
+    }
+    level = AdaptiveMemoryPolicy.nextLevel(level, 0.31, true, BUDGET);
+    assertEquals(3, level);
+  }
+
+  @Test
+  void rawDataFitsIntoBudget() {
+    // half of the remaining budget stays free for mass lists and features
+    assertTrue(AdaptiveMemoryPolicy.fitsIntoBudget(400, 1000));
+    assertTrue(AdaptiveMemoryPolicy.fitsIntoBudget(500, 1000));
+    assertFalse(AdaptiveMemoryPolicy.fitsIntoBudget(501, 1000));
+    assertFalse(AdaptiveMemoryPolicy.fitsIntoBudget(0, -1000));
+  }
+}
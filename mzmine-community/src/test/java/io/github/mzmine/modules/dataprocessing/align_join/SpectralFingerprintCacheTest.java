@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.align_join.SpectralFingerprintCache.SpectralFingerprint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class SpectralFingerprintCacheTest {
+
+  private static DataPoint[] spectrum(double... mzs) {
+    DataPoint[] dps = new DataPoint[mzs.length];
+    for (int i = 0; i < mzs.length; i++) {
+      dps[i] = new SimpleDataPoint(mzs[i], 100 * (i + 1));
+    }
+    return dps;
+  }
+
+  @Test
+  void cachesSpectra() {
+    FeatureListRow a = Mockito.mock(FeatureListRow.class);
+    FeatureListRow b = Mockito.mock(FeatureListRow.class);
+    DataPoint[] dps = spectrum(300, 100, 200);
+    AtomicInteger extracted = new AtomicInteger();
+    SpectralFingerprintCache cache = new SpectralFingerprintCache(row -> {
+      extracted.incrementAndGet();
+      return row == a ? dps : null;
+    });
+
+    SpectralFingerprint fingerprint = cache.get(a);
+    assertTrue(fingerprint.hasSpectrum());
+    // the original data points are passed on to the similarity function
+    assertSame(dps, fingerprint.dataPoints());
+    assertArrayEquals(new double[]{100, 200, 300}, fingerprint.sortedMzs());
+    assertSame(fingerprint, cache.get(a));
+
+    assertFalse(cache.get(b).hasSpectrum());
+    cache.get(b);
+    assertEquals(2, extracted.get());
+
+    cache.removeAll(List.of(a));
+    cache.get(a);
+    assertEquals(3, extracted.get());
+  }
+
+  @Test
+  void hasMatchingSignal() {
+    Map<String, DataPoint[]> spectra = Map.of( //
+        "library", spectrum(150.003, 100, 250), //
+        "match", spectrum(400, 150.006, 500), //
+        "noMatch", spectrum(99.99, 150.02, 250.02), //
+        "empty", spectrum());
+    FeatureListRow library = Mockito.mock(FeatureListRow.class);
+    FeatureListRow match = Mockito.mock(FeatureListRow.class);
+    FeatureListRow noMatch = Mockito.mock(FeatureListRow.class);
+    FeatureListRow empty = Mockito.mock(FeatureListRow.class);
+    Map<FeatureListRow, String> names = Map.of(library, "library", match, "match", noMatch,
+        "noMatch", empty, "empty");
+    SpectralFingerprintCache cache = new SpectralFingerprintCache(
+        row -> spectra.get(names.get(row)));
+
+    MZTolerance mzTol = new MZTolerance(0.005, 0);
+    assertTrue(cache.get(library).hasMatchingSignal(cache.get(match), mzTol));
+    assertTrue(cache.get(match).hasMatchingSignal(cache.get(library), mzTol));
+    assertFalse(cache.get(library).hasMatchingSignal(cache.get(noMatch), mzTol));
+    assertFalse(cache.get(library).hasMatchingSignal(cache.get(empty), mzTol));
+    assertFalse(cache.get(empty).hasMatchingSignal(cache.get(library), mzTol));
+  }
+}
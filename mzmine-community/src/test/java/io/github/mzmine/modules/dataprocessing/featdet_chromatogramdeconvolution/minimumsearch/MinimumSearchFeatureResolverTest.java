@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvedIntervals;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MinimumSearchFeatureResolverTest {
+
+  private static final Logger logger = Logger.getLogger(
+      MinimumSearchFeatureResolverTest.class.getName());
+
+  private MinimumSearchFeatureResolver resolver;
+  private double[] x;
+  private List<double[]> chromatograms;
+
+  @BeforeEach
+  void setUp() {
+    MinimumSearchFeatureResolverParameters param = new MinimumSearchFeatureResolverParameters();
+    param.setParameter(MinimumSearchFeatureResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    param.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+        0.5);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 1E3);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    param.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0.02, 1d));
+    param.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.05);
+
+    final ModularFeatureList flist = new ModularFeatureList("flist", null,
+        Mockito.mock(RawDataFile.class));
+    resolver = new MinimumSearchFeatureResolver(param, flist);
+
+    // chromatograms with multiple gaussian peaks and noise
+    final Random random = new Random(42);
+    final int numValues = 1500;
+    x = new double[numValues];
+    for (int i = 0; i < numValues; i++) {
+      x[i] = i * 0.01;
+    }
+    chromatograms = new ArrayList<>();
+    for (int c = 0; c < 2000; c++) {
+      final double[] y = new double[numValues];
+      for (int p = 0; p < 1 + random.nextInt(8); p++) {
+        final double center = random.nextDouble() * x[numValues - 1];
+        final double sigma = 0.01 + random.nextDouble() * 0.05;
+        final double height = 1E3 + random.nextDouble() * 1E6;
+        for (int i = 0; i < numValues; i++) {
+          final double diff = (x[i] - center) / sigma;
+          y[i] += height * Math.exp(-0.5 * diff * diff);
+        }
+      }
+      for (int i = 0; i < numValues; i++) {
+        y[i] += random.nextDouble() * 500;
+      }
+      chromatograms.add(y);
+    }
+  }
+
+  @Test
+  void intervalsEqualRanges() {
+    final ResolvedIntervals intervals = new ResolvedIntervals(2);
+    int resolved = 0;
+    for (double[] y : chromatograms) {
+      // the resolver sets values below the threshold to 0
+      final List<Range<Double>> ranges = resolver.resolve(x, y.clone());
+      resolver.resolve(x, y.clone(), intervals);
+
+      assertEquals(ranges, intervals.toRanges(x));
+      resolved += intervals.size();
+
+      // the default implementation maps the ranges back to the same indices
+      final ResolvedIntervals fromRanges = new ResolvedIntervals();
+      fromRanges.setFromRanges(x, ranges);
+      assertEquals(intervals.size(), fromRanges.size());
+      for (int i = 0; i < intervals.size(); i++) {
+        assertEquals(intervals.getStart(i), fromRanges.getStart(i));
+        assertEquals(intervals.getEnd(i), fromRanges.getEnd(i));
+      }
+    }
+    assertTrue(resolved > 0);
+  }
+
+  /**
+   * Logs the time of the range based and the primitive interval output
+   */
+  @Test
+  void compareSpeed() {
+    final ResolvedIntervals intervals = new ResolvedIntervals();
+    final List<double[]> copies = chromatograms.stream().map(double[]::clone).toList();
+
+    // warm up
+    for (int i = 0; i < 3; i++) {
+      for (double[] y : chromatograms) {
+        resolver.resolve(x, y.clone());
+        resolver.resolve(x, y.clone(), intervals);
+      }
+    }
+
+    long start = System.nanoTime();
+    long rangeCount = 0;
+    for (double[] y : chromatograms) {
+      rangeCount += resolver.resolve(x, y).size();
+    }
+    final long rangesTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    long intervalCount = 0;
+    for (double[] y : copies) {
+      resolver.resolve(x, y, intervals);
+      intervalCount += intervals.size();
+    }
+    final long intervalsTime = System.nanoTime() - start;
+
+    assertEquals(rangeCount, intervalCount);
+    logger.info("Ranges: %d ms, intervals: %d ms for %d chromatograms and %d features".formatted(
+        rangesTime / 1_000_000, intervalsTime / 1_000_000, chromatograms.size(), intervalCount));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ExpandingTraceMzIndexTest {
+
+  private static ExpandingTrace trace(double lower, double upper) {
+    return new ExpandingTrace(Mockito.mock(ModularFeatureListRow.class),
+        Range.closed(lower, upper), Range.closed(1f, 2f));
+  }
+
+  @Test
+  void offersToOverlappingTraces() {
+    // wide trace first, so later traces are only found via the running maximum
+    final ExpandingTrace wide = trace(100, 300);
+    final ExpandingTrace a = trace(150, 151);
+    final ExpandingTrace b = trace(150.5, 152);
+    final ExpandingTrace c = trace(400, 401);
+    final ExpandingTraceMzIndex index = new ExpandingTraceMzIndex(List.of(c, b, a, wide));
+
+    final MobilityScanDataAccess access = Mockito.mock(MobilityScanDataAccess.class);
+    final MobilityScan scan = Mockito.mock(MobilityScan.class);
+    Mockito.when(access.getCurrentMobilityScan()).thenReturn(scan);
+    Mockito.when(access.getRetentionTime()).thenReturn(1.5f);
+    Mockito.when(access.getMzValue(0)).thenReturn(150.7);
+    Mockito.when(access.getMzValue(1)).thenReturn(150.8);
+    Mockito.when(access.getMzValue(2)).thenReturn(150.9);
+    Mockito.when(access.getMzValue(3)).thenReturn(151.5);
+    Mockito.when(access.getMzValue(4)).thenReturn(350d);
+    Mockito.when(access.getMzValue(5)).thenReturn(400.5);
+
+    // one data point per trace and mobility scan, in order of the lower m/z
+    assertTrue(index.offerDataPoint(access, 0));
+    assertTrue(index.offerDataPoint(access, 1));
+    assertTrue(index.offerDataPoint(access, 2));
+    assertFalse(index.offerDataPoint(access, 3));
+    assertFalse(index.offerDataPoint(access, 4));
+    assertTrue(index.offerDataPoint(access, 5));
+
+    assertEquals(1, wide.getNumberOfMobilityScans());
+    assertEquals(1, a.getNumberOfMobilityScans());
+    assertEquals(1, b.getNumberOfMobilityScans());
+    assertEquals(1, c.getNumberOfMobilityScans());
+  }
+
+  @Test
+  void rejectsOutsideRt() {
+    final ExpandingTrace a = trace(150, 151);
+    final ExpandingTraceMzIndex index = new ExpandingTraceMzIndex(List.of(a));
+
+    final MobilityScanDataAccess access = Mockito.mock(MobilityScanDataAccess.class);
+    Mockito.when(access.getCurrentMobilityScan()).thenReturn(Mockito.mock(MobilityScan.class));
+    Mockito.when(access.getRetentionTime()).thenReturn(3f);
+    Mockito.when(access.getMzValue(0)).thenReturn(150.5);
+
+    assertFalse(index.offerDataPoint(access, 0));
+    assertEquals(0, a.getNumberOfMobilityScans());
+  }
+}
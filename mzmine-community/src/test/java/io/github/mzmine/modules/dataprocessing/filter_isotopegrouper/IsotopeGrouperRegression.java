@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the {@link IsotopeGrouper} with the former list based implementation of the
+ * {@link IsotopeGrouperTask} on real feature lists. Both have to create exactly the same rows and
+ * isotope patterns.
+ */
+public class IsotopeGrouperRegression {
+
+  private static final double isotopeDistance = 1.0033;
+
+  /**
+   * Runs both implementations on copies of the feature list for multiple parameter combinations.
+   *
+   * @param source a feature list of a single sample without isotope patterns
+   */
+  public static void assertSameGrouping(ModularFeatureList source) {
+    final MZTolerance mzTol = new MZTolerance(0.003, 10);
+    assertSameGrouping(source, mzTol, new RTTolerance(0.1f, Unit.MINUTES), 2, true, true);
+    assertSameGrouping(source, mzTol, new RTTolerance(0.1f, Unit.MINUTES), 3, false, false);
+    assertSameGrouping(source, mzTol, new RTTolerance(3f, Unit.SECONDS), 1, false, true);
+    assertSameGrouping(source, new MZTolerance(0.01, 25), new RTTolerance(2f, Unit.PERCENT), 4,
+        true, false);
+  }
+
+  private static void assertSameGrouping(ModularFeatureList source, MZTolerance mzTolerance,
+      RTTolerance rtTolerance, int maximumCharge, boolean monotonicShape,
+      boolean chooseMostIntense) {
+    final ModularFeatureList expectedList = source.createCopy("expected", null, false);
+    final ModularFeatureList actualList = source.createCopy("actual", null, false);
+
+    final List<FeatureListRow> expected = groupListBased(expectedList.getRows(), mzTolerance,
+        rtTolerance, maximumCharge, monotonicShape, chooseMostIntense);
+    final List<FeatureListRow> actual = new IsotopeGrouper(mzTolerance, rtTolerance, null,
+        monotonicShape, chooseMostIntense, false, maximumCharge).group(actualList.getRows(),
+        new AtomicInteger(), () -> false);
+
+    assertNotNull(actual);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      final FeatureListRow e = expected.get(i);
+      final FeatureListRow a = actual.get(i);
+      assertEquals(e.getID(), a.getID());
+
+      final Feature ef = e.getFeatures().get(0);
+      final Feature af = a.getFeatures().get(0);
+      assertEquals(ef.getCharge(), af.getCharge());
+      final IsotopePattern ep = ef.getIsotopePattern();
+      final IsotopePattern ap = af.getIsotopePattern();
+      assertEquals(ep == null, ap == null);
+      if (ep != null) {
+        final double[] emzs = new double[ep.getNumberOfDataPoints()];
+        final double[] amzs = new double[ap.getNumberOfDataPoints()];
+        assertEquals(emzs.length, amzs.length);
+        ep.getMzValues(emzs);
+        ap.getMzValues(amzs);
+        assertArrayEquals(emzs, amzs);
+        assertEquals(ep.getCharge(), ap.getCharge());
+      }
+    }
+  }
+
+  /**
+   * The former implementation that removed grouped rows from height and m/z sorted lists.
+   */
+  private static List<FeatureListRow> groupListBased(List<FeatureListRow> rows,
+      MZTolerance mzTolerance, RTTolerance rtTolerance, int maximumCharge, boolean monotonicShape,
+      boolean chooseMostIntense) {
+    final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(SortingProperty.Height,
+        SortingDirection.Descending);
+    final FeatureListRowSorter rowsMzSorter = new FeatureListRowSorter(SortingProperty.MZ,
+        SortingDirection.Ascending);
+
+    List<FeatureListRow> rowsSortedByHeight = new ArrayList<>(rows);
+    rowsSortedByHeight.sort(rowsHeightSorter);
+    List<FeatureListRow> rowsSortedByMz = new ArrayList<>(rows);
+    rowsSortedByMz.sort(rowsMzSorter);
+
+    List<FeatureListRow> finalRows = new ArrayList<>();
+    while (!rowsSortedByHeight.isEmpty()) {
+      FeatureListRow mostIntenseRow = rowsSortedByHeight.remove(0);
+      int indexMzSorted = Collections.binarySearch(rowsSortedByMz, mostIntenseRow, rowsMzSorter);
+      rowsSortedByMz.remove(indexMzSorted);
+
+      int bestFitCharge = 0;
+      int bestFitScore = -1;
+      List<FeatureListRow> bestFitRows = null;
+      for (int charge = 1; charge <= maximumCharge; charge++) {
+        List<FeatureListRow> fittedRows = new ArrayList<>();
+        fittedRows.add(mostIntenseRow);
+        if (!monotonicShape) {
+          fitHalfPattern(mostIntenseRow, charge, -1, fittedRows, rowsSortedByMz, indexMzSorted,
+              mzTolerance, rtTolerance);
+        }
+        fitHalfPattern(mostIntenseRow, charge, 1, fittedRows, rowsSortedByMz, indexMzSorted,
+            mzTolerance, rtTolerance);
+
+        int score = fittedRows.size();
+        if ((score > bestFitScore) || ((score == bestFitScore) && (bestFitCharge > charge))) {
+          bestFitScore = score;
+          bestFitCharge = charge;
+          bestFitRows = fittedRows;
+        }
+      }
+
+      assert bestFitRows != null;
+      if (bestFitRows.size() == 1) {
+        finalRows.add(mostIntenseRow);
+        continue;
+      }
+
+      final DataPoint[] isotopes = bestFitRows.stream()
+          .map(r -> new SimpleDataPoint(r.getAverageMZ(), r.getMaxHeight()))
+          .sorted(new DataPointSorter(SortingProperty.MZ, SortingDirection.Ascending))
+          .toArray(DataPoint[]::new);
+      SimpleIsotopePattern newPattern = new SimpleIsotopePattern(isotopes, bestFitCharge,
+          IsotopePatternStatus.DETECTED, mostIntenseRow.toString());
+
+      bestFitRows.sort(chooseMostIntense ? rowsHeightSorter : rowsMzSorter);
+
+      final FeatureListRow mainRow = bestFitRows.get(0);
+      finalRows.add(mainRow);
+      Feature feature = mainRow.getFeatures().get(0);
+      if (feature.getIsotopePattern() == null) {
+        feature.setIsotopePattern(newPattern);
+        feature.setCharge(bestFitCharge);
+      }
+
+      bestFitRows.remove(0);
+      rowsSortedByHeight.removeAll(bestFitRows);
+      rowsSortedByMz.removeAll(bestFitRows);
+    }
+
+    finalRows.sort(FeatureListRowSorter.DEFAULT_RT);
+    return finalRows;
+  }
+
+  private static void fitHalfPattern(FeatureListRow row, int charge, int direction,
+      List<FeatureListRow> fittedRows, List<FeatureListRow> rowsSortedByMz, int startRowIndex,
+      MZTolerance mzTolerance, RTTolerance rtTolerance) {
+    double mainMZ = row.getAverageMZ();
+    float mainRT = row.getAverageRT();
+    final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mainMZ);
+
+    boolean followingPeakFound;
+    int n = 1;
+    do {
+      followingPeakFound = false;
+      List<FeatureListRow> goodCandidates = new ArrayList<>();
+      for (int ind = startRowIndex; ind < rowsSortedByMz.size() && ind >= 0; ind += direction) {
+        FeatureListRow candidatePeak = rowsSortedByMz.get(ind);
+        double isotopeMZ = candidatePeak.getAverageMZ() - isotopeDistance * direction * n / charge;
+        double deltaMZ = isotopeMZ - mainMZ;
+        if (deltaMZ * direction > absoluteMzTolerance) {
+          break;
+        }
+        if (Math.abs(deltaMZ) <= absoluteMzTolerance && rtTolerance.checkWithinTolerance(
+            candidatePeak.getAverageRT(), mainRT)) {
+          goodCandidates.add(candidatePeak);
+        }
+      }
+
+      if (!goodCandidates.isEmpty()) {
+        fittedRows.addAll(goodCandidates);
+        n++;
+        followingPeakFound = true;
+      }
+    } while (followingPeakFound);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class IsotopeGrouperTest {
+
+  RawDataFile raw;
+  ModularFeatureList flist;
+
+  @BeforeEach
+  void setUp() {
+    raw = Mockito.mock(RawDataFile.class);
+    flist = new ModularFeatureList("List", null, raw);
+    // the main row 2 is the highest m/z of its RT region, row 3 of another region has a higher m/z
+    flist.addRow(createRow(1, 200.0, 1f, 500f));
+    flist.addRow(createRow(2, 200.0 + IsotopeGrouper.isotopeDistance, 1f, 1000f));
+    flist.addRow(createRow(3, 500.0, 10f, 100f));
+  }
+
+  private FeatureListRow createRow(int id, double mz, float rt, float height) {
+    ModularFeature f = new ModularFeature(flist);
+    f.set(RawFileType.class, raw);
+    f.set(MZType.class, mz);
+    f.set(RTType.class, rt);
+    f.set(HeightType.class, height);
+    f.set(DetectionType.class, FeatureStatus.DETECTED);
+    return new ModularFeatureListRow(flist, id, f);
+  }
+
+  private List<FeatureListRow> group(boolean monotonicShape) {
+    return new IsotopeGrouper(new MZTolerance(0.003, 10), new RTTolerance(0.1f, Unit.MINUTES),
+        null, monotonicShape, true, false, 2).group(flist.getRows(), new AtomicInteger(),
+        () -> false);
+  }
+
+  @Test
+  void lowerIsotopeOfMainAtTopOfRegion() {
+    final List<FeatureListRow> grouped = group(false);
+    assertNotNull(grouped);
+    assertEquals(List.of(2, 3), grouped.stream().map(FeatureListRow::getID).toList());
+
+    final IsotopePattern pattern = grouped.getFirst().getFeatures().getFirst().getIsotopePattern();
+    assertNotNull(pattern);
+    final double[] mzs = new double[pattern.getNumberOfDataPoints()];
+    pattern.getMzValues(mzs);
+    assertArrayEquals(new double[]{200.0, 200.0 + IsotopeGrouper.isotopeDistance}, mzs);
+  }
+
+  @Test
+  void monotonicShapeOnlySearchesHigherMz() {
+    final List<FeatureListRow> grouped = group(true);
+    assertNotNull(grouped);
+    assertEquals(List.of(1, 2, 3),
+        grouped.stream().map(FeatureListRow::getID).sorted().toList());
+    for (FeatureListRow row : grouped) {
+      assertNull(row.getFeatures().getFirst().getIsotopePattern());
+    }
+  }
+}
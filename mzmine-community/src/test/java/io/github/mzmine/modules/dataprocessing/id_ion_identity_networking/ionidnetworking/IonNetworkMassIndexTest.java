@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.RowGroup;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.annotations.iin.IonIdentityListType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
+import io.github.mzmine.datamodel.identities.iontype.IonModification;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class IonNetworkMassIndexTest {
+
+  private static final Logger logger = Logger.getLogger(IonNetworkMassIndexTest.class.getName());
+
+  /**
+   * Synthetic large group of ions of a few neutral molecules and random noise rows. The index needs
+   * to find the same matches as checking all pairs.
+   */
+  @Test
+  void sameMatchesAsAllPairs() {
+    final RawDataFile raw = Mockito.mock(RawDataFile.class);
+    final ModularFeatureList flist = new ModularFeatureList("List", null, raw);
+    flist.addRowType(new IonIdentityListType());
+    final IonNetworkLibrary library = new IonNetworkLibrary(new MZTolerance(0.002, 5), 1, true, 2,
+        new IonModification[]{IonModification.H, IonModification.NA, IonModification.NH4,
+            IonModification.K}, new IonModification[]{IonModification.H2O, IonModification.NH3});
+    final List<IonType> ions = library.getAllAdducts();
+
+    final Random random = new Random(42);
+    final List<FeatureListRow> rows = new ArrayList<>();
+    for (int m = 0; m < 40; m++) {
+      final double neutralMass = 150 + random.nextDouble() * 600;
+      for (int i = 0; i < 4; i++) {
+        final IonType ion = ions.get(1 + random.nextInt(ions.size() - 1));
+        rows.add(createRow(flist, raw, rows.size(), ion.getMZ(neutralMass)));
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      rows.add(createRow(flist, raw, rows.size(), 100 + random.nextDouble() * 1400));
+    }
+    final RowGroup group = createGroup(rows);
+
+    long start = System.nanoTime();
+    int allPairMatches = 0;
+    for (int i = 0; i < group.size() - 1; i++) {
+      for (int k = i + 1; k < group.size(); k++) {
+        allPairMatches += library.findAdducts(flist, group.get(i), group.get(k),
+            CheckMode.AVGERAGE, 0).size();
+      }
+    }
+    final long allPairsTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    final IonNetworkMassIndex index = new IonNetworkMassIndex(flist, group, library,
+        CheckMode.AVGERAGE, 0);
+    final List<IonIdentity[]> matches = new ArrayList<>();
+    for (long candidate : index.findCandidates(group, library)) {
+      final FeatureListRow a = group.get(index.getRowA(candidate));
+      final FeatureListRow b = group.get(index.getRowB(candidate));
+      library.findAdducts(flist, a, b, a.getRowCharge(), b.getRowCharge(),
+          index.getIonA(candidate), index.getIonB(candidate), CheckMode.AVGERAGE, 0, matches);
+    }
+    final long indexTime = System.nanoTime() - start;
+
+    logger.info("All pairs: %d ms, index: %d ms for %d rows and %d ion types".formatted(
+        allPairsTime / 1_000_000, indexTime / 1_000_000, rows.size(), ions.size()));
+    assertTrue(allPairMatches > 0);
+    assertEquals(allPairMatches, matches.size());
+  }
+
+  private static FeatureListRow createRow(ModularFeatureList flist, RawDataFile raw, int id,
+      double mz) {
+    ModularFeature f = new ModularFeature(flist);
+    f.set(RawFileType.class, raw);
+    f.set(MZType.class, mz);
+    f.set(RTType.class, 1f);
+    f.set(HeightType.class, 1e5f);
+    f.set(DetectionType.class, FeatureStatus.DETECTED);
+    return new ModularFeatureListRow(flist, id, f);
+  }
+
+  private static RowGroup createGroup(List<FeatureListRow> rows) {
+    return new RowGroup() {
+      @Override
+      public List<FeatureListRow> getRows() {
+        return rows;
+      }
+
+      @Override
+      public boolean add(FeatureListRow e) {
+        return rows.add(e);
+      }
+
+      @Override
+      public int getGroupID() {
+        return 1;
+      }
+
+      @Override
+      public void setGroupID(int groupID) {
+      }
+    };
+  }
+}
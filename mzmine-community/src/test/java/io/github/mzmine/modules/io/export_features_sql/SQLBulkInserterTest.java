@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SQLBulkInserterTest {
+
+  private static final String[] COLUMNS = {"id", "mz", "name"};
+  private static final int[] TYPES = {Types.INTEGER, Types.DOUBLE, Types.VARCHAR};
+
+  @TempDir
+  Path tempDir;
+
+  private Connection createDatabase() throws SQLException {
+    final Connection connection = DriverManager.getConnection(
+        "jdbc:sqlite:" + tempDir.resolve("export.db"));
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE features (id INT, mz DOUBLE, name TEXT)");
+    }
+    return connection;
+  }
+
+  @Test
+  void insertInBatches() throws Exception {
+    try (Connection connection = createDatabase()) {
+      // batch size does not divide the chunk size
+      final SQLBulkInserter inserter = new SQLBulkInserter(List.of(connection), "features",
+          COLUMNS, TYPES, 7);
+      int id = 0;
+      for (int chunk = 0; chunk < 5; chunk++) {
+        final List<Object[]> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++, id++) {
+          lines.add(new Object[]{id, 100d + id, id % 10 == 0 ? null : "feature " + id});
+        }
+        inserter.insert(lines);
+      }
+      inserter.finish();
+      assertEquals(500, inserter.getInsertedLines());
+
+      try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(
+          "SELECT id, mz, name FROM features ORDER BY id")) {
+        int expected = 0;
+        while (result.next()) {
+          assertEquals(expected, result.getInt(1));
+          assertEquals(100d + expected, result.getDouble(2));
+          if (expected % 10 == 0) {
+            assertNull(result.getString(3));
+          } else {
+            assertEquals("feature " + expected, result.getString(3));
+          }
+          expected++;
+        }
+        assertEquals(500, expected);
+      }
+    }
+  }
+
+  @Test
+  void failedInsertRollsBack() throws Exception {
+    try (Connection connection = createDatabase()) {
+      final SQLBulkInserter inserter = new SQLBulkInserter(List.of(connection), "missing_table",
+          COLUMNS, TYPES, 10);
+      inserter.insert(List.<Object[]>of(new Object[]{1, 1d, "a"}));
+      assertThrows(SQLException.class, inserter::finish);
+    }
+  }
+
+  @Test
+  void abortStopsWritersAndRollsBack() throws Exception {
+    try (Connection connection = createDatabase()) {
+      final SQLBulkInserter inserter = new SQLBulkInserter(List.of(connection), "features",
+          COLUMNS, TYPES, 10);
+      for (int chunk = 0; chunk < 10; chunk++) {
+        final List<Object[]> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+          lines.add(new Object[]{i, 100d + i, "feature " + i});
+        }
+        inserter.insert(lines);
+      }
+      // simulates a canceled export, returns only after all writers stopped
+      inserter.abort();
+      // no effect after abort
+      inserter.abort();
+
+      try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(
+          "SELECT COUNT(*) FROM features")) {
+        result.next();
+        assertEquals(0, result.getInt(1));
+      }
+    }
+  }
+
+  @Test
+  void abortAfterFinishKeepsCommit() throws Exception {
+    try (Connection connection = createDatabase()) {
+      final SQLBulkInserter inserter = new SQLBulkInserter(List.of(connection), "features",
+          COLUMNS, TYPES, 10);
+      inserter.insert(List.<Object[]>of(new Object[]{1, 1d, "a"}));
+      inserter.finish();
+      inserter.abort();
+
+      try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(
+          "SELECT COUNT(*) FROM features")) {
+        result.next();
+        assertEquals(1, result.getInt(1));
+      }
+    }
+  }
+
+  @Test
+  void csvForCopy() {
+    final String csv = SQLBulkInserter.toCsv(
+        List.of(new Object[]{1, 2d, "a \"b\", c"}, new Object[]{null, 2.5d, null}));
+    assertEquals("1,2,\"a \"\"b\"\", c\"\n,2.5,\n", csv);
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_bruker_tdf;
+
+import com.sun.jna.Pointer;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.TDFLibrary;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.CentroidCallback;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.CentroidData;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.MultipleCentroidData;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.MultipleProfileData;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.ProfileCallback;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.callbacks.ProfileData;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pure java stand-in for the native Bruker library. Serves synthetic frames and records if a
+ * handle was used by multiple threads at the same time. Every native library that is loaded is a
+ * separate instance, so {@link #SyntheticTDFLibrary(SyntheticTDFLibrary)} creates instances that
+ * share the handles of the same file.
+ */
+class SyntheticTDFLibrary implements TDFLibrary {
+
+  /**
+   * This frame exceeds the default buffer size of {@link TDFUtils}
+   */
+  static final int BIG_FRAME = 3;
+
+  private final AtomicLong nextHandle;
+  private final Set<Long> handlesInUse;
+  private final Set<Long> openHandles;
+  private final AtomicInteger openedHandles;
+  private final AtomicBoolean concurrentHandleUse;
+  private final boolean failOpen;
+
+  SyntheticTDFLibrary() {
+    this(false);
+  }
+
+  /**
+   * @param failOpen no handle is returned on open
+   */
+  SyntheticTDFLibrary(boolean failOpen) {
+    nextHandle = new AtomicLong(1);
+    handlesInUse = ConcurrentHashMap.newKeySet();
+    openHandles = ConcurrentHashMap.newKeySet();
+    openedHandles = new AtomicInteger(0);
+    concurrentHandleUse = new AtomicBoolean(false);
+    this.failOpen = failOpen;
+  }
+
+  /**
+   * @param shared shares the handles and the recorded usage with this library
+   */
+  SyntheticTDFLibrary(SyntheticTDFLibrary shared) {
+    nextHandle = shared.nextHandle;
+    handlesInUse = shared.handlesInUse;
+    openHandles = shared.openHandles;
+    openedHandles = shared.openedHandles;
+    concurrentHandleUse = shared.concurrentHandleUse;
+    failOpen = shared.failOpen;
+  }
+
+  static int numPeaks(long frameId, long scan) {
+    return frameId == BIG_FRAME ? 800 : (int) (scan % 5);
+  }
+
+  static int index(long frameId, long scan, int peak) {
+    return (int) (1000 * frameId + scan * 10 + peak);
+  }
+
+  static int intensity(long scan, int peak) {
+    return (int) (scan + peak + 1);
+  }
+
+  static double indexToMz(double index) {
+    return 100 + index * 0.001;
+  }
+
+  boolean isConcurrentHandleUse() {
+    return concurrentHandleUse.get();
+  }
+
+  /**
+   * @return the number of handles that were opened in total
+   */
+  int getOpenedHandles() {
+    return openedHandles.get();
+  }
+
+  /**
+   * @return the number of handles that are not closed
+   */
+  int getNumOpenHandles() {
+    return openHandles.size();
+  }
+
+  @Override
+  public long tims_open(String analysis_dir, long use_recalib) {
+    return tims_open_v2(analysis_dir, use_recalib, 0);
+  }
+
+  @Override
+  public long tims_open_v2(String analysis_dir, long use_recalib, int pressureCompensation) {
+    if (failOpen) {
+      return 0;
+    }
+    final long handle = nextHandle.getAndIncrement();
+    openHandles.add(handle);
+    openedHandles.incrementAndGet();
+    return handle;
+  }
+
+  @Override
+  public void tims_close(long handle) {
+    openHandles.remove(handle);
+  }
+
+  @Override
+  public long tims_get_last_error_string(byte[] error, long len) {
+    return 0;
+  }
+
+  @Override
+  public long tims_has_recalibrated_state(long handle) {
+    return 0;
+  }
+
+  @Override
+  public long tims_read_scans_v2(long handle, long frameId, long scanBegin, long scanEnd,
+      byte[] scanBuffer, long len) {
+    if (!handlesInUse.add(handle)) {
+      concurrentHandleUse.set(true);
+    }
+    try {
+      int totalPeaks = 0;
+      for (long scan = scanBegin; scan < scanEnd; scan++) {
+        totalPeaks += numPeaks(frameId, scan);
+      }
+      final long required = 4L * ((scanEnd - scanBegin) + 2L * totalPeaks);
+      if (required > len) {
+        return required;
+      }
+
+      final ByteBuffer buffer = ByteBuffer.wrap(scanBuffer).order(ByteOrder.LITTLE_ENDIAN);
+      for (long scan = scanBegin; scan < scanEnd; scan++) {
+        buffer.putInt(numPeaks(frameId, scan));
+      }
+      for (long scan = scanBegin; scan < scanEnd; scan++) {
+        final int peaks = numPeaks(frameId, scan);
+        for (int p = 0; p < peaks; p++) {
+          buffer.putInt(index(frameId, scan, p));
+        }
+        for (int p = 0; p < peaks; p++) {
+          buffer.putInt(intensity(scan, p));
+        }
+      }
+      return required;
+    } finally {
+      handlesInUse.remove(handle);
+    }
+  }
+
+  @Override
+  public long tims_read_pasef_msms(long handle, long[] precursors, long num_precursors,
+      CentroidCallback callback) {
+    return 0;
+  }
+
+  @Override
+  public long tims_read_pasef_msms_v2(long handle, long[] precursors, long num_precursors,
+      CentroidData callback, Pointer user_data) {
+    return 0;
+  }
+
+  @Override
+  public long tims_read_pasef_msms_for_frame_v2(long handle, long frameId,
+      MultipleCentroidData my_callback) {
+    return 0;
+  }
+
+  @Override
+  public long tims_read_pasef_profile_msms_v2(long handle, long[] precursors,
+      long num_precursors, ProfileData callback, Pointer user_data) {
+    return 0;
+  }
+
+  @Override
+  public long tims_read_pasef_profile_msms_for_frame_v2(long handle, long frame_id,
+      MultipleProfileData callback, Pointer user_data) {
+    return 0;
+  }
+
+  @Override
+  public long tims_index_to_mz(long handle, long frameId, double[] index, double[] mz,
+      long len) {
+    for (int i = 0; i < len; i++) {
+      mz[i] = indexToMz(index[i]);
+    }
+    return 1;
+  }
+
+  @Override
+  public long tims_scannum_to_oneoverk0(long handle, long frameId, double[] scannum,
+      double[] oneOverK0, long len) {
+    for (int i = 0; i < len; i++) {
+      oneOverK0[i] = 1.6 - scannum[i] * 0.001;
+    }
+    return 1;
+  }
+
+  @Override
+  public double tims_oneoverk0_to_ccs_for_mz(double ook0, long charge, double mz) {
+    return 0;
+  }
+
+  @Override
+  public double tims_ccs_to_oneoverk0_for_mz(double ccs, long charge, double mz) {
+    return 0;
+  }
+
+  @Override
+  public long tims_extract_centroided_spectrum_for_frame_v2(long handle, long frame_id,
+      long scan_begin, long scan_end, CentroidCallback callback, Pointer user_data) {
+    return 0;
+  }
+
+  @Override
+  public long tims_extract_profile_for_frame(long handle, long frame_id, long scan_begin,
+      long scan_end, ProfileCallback callback, Pointer userData) {
+    return 0;
+  }
+
+  @Override
+  public void tims_set_num_threads(int numThreads) {
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_bruker_tdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.impl.IMSRawDataFileImpl;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
+import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.datamodel.sql.TDFFrameTable;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class TDFImportTaskTest {
+
+  private static final File FILE = new File("synthetic.d");
+  private static final int NUM_FRAMES = 450;
+  private static final int NUM_SCANS = 20;
+  private static final int NUM_THREADS = 4;
+
+  private int defaultNumThreads;
+  private IMSRawDataFile file;
+
+  @BeforeEach
+  void setUp() {
+    defaultNumThreads = TDFUtils.getDefaultNumThreads();
+    TDFUtils.setDefaultNumThreads(NUM_THREADS);
+    file = new IMSRawDataFileImpl("synthetic", null, null, Color.BLACK);
+  }
+
+  @AfterEach
+  void tearDown() {
+    TDFUtils.setDefaultNumThreads(defaultNumThreads);
+  }
+
+  private TDFImportTask createTask(SyntheticTDFLibrary library) {
+    // one library instance per handle, like the native library loaded by each TDFUtils
+    return new TDFImportTask(Mockito.mock(MZmineProject.class), FILE, file,
+        ScanImportProcessorConfig.createDefault(), TDFImportModule.class,
+        Mockito.mock(ParameterSet.class), Instant.now(), () -> new SyntheticTDFLibrary(library));
+  }
+
+  private static TDFFrameTable createFrameTable() {
+    final TDFFrameTable table = new TDFFrameTable();
+    for (long frameId = 1; frameId <= NUM_FRAMES; frameId++) {
+      table.getFrameIdColumn().add(frameId);
+      table.getNumScansColumn().add((long) NUM_SCANS);
+    }
+    return table;
+  }
+
+  private Set<SimpleFrame> createFrames() {
+    final Set<SimpleFrame> frames = new LinkedHashSet<>();
+    for (int frameId = 1; frameId <= NUM_FRAMES; frameId++) {
+      frames.add(new SimpleFrame(file, frameId, 1, frameId, null, null,
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(100d, 200d),
+          MobilityType.TIMS, null, null));
+    }
+    return frames;
+  }
+
+  /**
+   * Parallel import decodes blocks of frames with one handle per block.
+   */
+  @Test
+  void decodesFramesInParallelWithSeparateHandles() {
+    final SyntheticTDFLibrary library = new SyntheticTDFLibrary();
+    final TDFImportTask task = createTask(library);
+    final Set<SimpleFrame> frames = createFrames();
+
+    assertTrue(task.appendScansFromTimsSegment(FILE, createFrameTable(), frames));
+
+    assertEquals(NUM_THREADS, library.getOpenedHandles());
+    assertEquals(0, library.getNumOpenHandles());
+    assertFalse(library.isConcurrentHandleUse());
+
+    for (SimpleFrame frame : frames) {
+      final int frameId = frame.getFrameId();
+      assertEquals(NUM_SCANS, frame.getNumberOfMobilityScans());
+      for (int scan = 0; scan < NUM_SCANS; scan++) {
+        final MobilityScan mobilityScan = frame.getMobilityScan(scan);
+        final int peaks = SyntheticTDFLibrary.numPeaks(frameId, scan);
+        assertEquals(peaks, mobilityScan.getNumberOfDataPoints(),
+            "frame " + frameId + " scan " + scan);
+        for (int p = 0; p < peaks; p++) {
+          assertEquals(
+              SyntheticTDFLibrary.indexToMz(SyntheticTDFLibrary.index(frameId, scan, p)),
+              mobilityScan.getMzValue(p));
+          assertEquals(SyntheticTDFLibrary.intensity(scan, p), mobilityScan.getIntensityValue(p));
+        }
+      }
+    }
+  }
+
+  @Test
+  void failedOpenSetsError() {
+    final SyntheticTDFLibrary library = new SyntheticTDFLibrary(true);
+    final TDFImportTask task = createTask(library);
+
+    assertFalse(task.appendScansFromTimsSegment(FILE, createFrameTable(), createFrames()));
+    assertEquals(TaskStatus.ERROR, task.getStatus());
+    assertTrue(task.getErrorMessage().contains(FILE.getName()));
+    assertEquals(0, library.getNumOpenHandles());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_bruker_tdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TDFUtilsTest {
+
+  private static final File FILE = new File("synthetic.d");
+  private static final int NUM_SCANS = 120;
+
+  private static void assertSyntheticFrame(long frameId, List<SimpleSpectralArrays> scans) {
+    assertEquals(NUM_SCANS, scans.size());
+    for (int scan = 0; scan < NUM_SCANS; scan++) {
+      final int peaks = SyntheticTDFLibrary.numPeaks(frameId, scan);
+      final double[] mzs = new double[peaks];
+      final double[] intensities = new double[peaks];
+      for (int p = 0; p < peaks; p++) {
+        mzs[p] = SyntheticTDFLibrary.indexToMz(SyntheticTDFLibrary.index(frameId, scan, p));
+        intensities[p] = SyntheticTDFLibrary.intensity(scan, p);
+      }
+      assertArrayEquals(mzs, scans.get(scan).mzs(), "frame " + frameId + " scan " + scan);
+      assertArrayEquals(intensities, scans.get(scan).intensities());
+    }
+  }
+
+  @Test
+  void decodesScanPackages() {
+    final TDFUtils utils = new TDFUtils(new SyntheticTDFLibrary(), 1);
+    assertNotEquals(0L, utils.openFile(FILE));
+    assertSyntheticFrame(1, utils.loadDataPointsForFrame(1, 0, NUM_SCANS));
+    utils.close();
+  }
+
+  @Test
+  void growsBufferForLargeFrames() {
+    final TDFUtils utils = new TDFUtils(new SyntheticTDFLibrary(), 1);
+    final int initialBufferSize = utils.BUFFER_SIZE;
+    utils.openFile(FILE);
+    assertSyntheticFrame(SyntheticTDFLibrary.BIG_FRAME,
+        utils.loadDataPointsForFrame(SyntheticTDFLibrary.BIG_FRAME, 0, NUM_SCANS));
+    assertNotEquals(initialBufferSize, utils.BUFFER_SIZE);
+    utils.close();
+  }
+}
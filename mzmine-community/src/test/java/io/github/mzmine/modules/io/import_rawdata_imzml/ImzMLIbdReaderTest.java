@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.alanmrace.jimzmlparser.mzml.BinaryDataArray;
+import com.alanmrace.jimzmlparser.mzml.CVParam;
+
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLIbdReader.ExternalArray;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLIbdReader.ExternalDataType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImzMLIbdReaderTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void readContinuousPixels() throws IOException {
+    // uuid header, shared m/z axis as 64 bit floats, then 32 bit intensities per pixel
+    final double[] mzs = {100.1, 200.2, 300.3};
+    final float[][] intensities = {{1f, 2f, 3f}, {4f, 5f, 6f}, {7f, 8f, 9f}};
+    final ByteBuffer bb = ByteBuffer.allocate(16 + mzs.length * Double.BYTES
+        + intensities.length * mzs.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    bb.position(16);
+    for (double mz : mzs) {
+      bb.putDouble(mz);
+    }
+    for (float[] pixel : intensities) {
+      for (float intensity : pixel) {
+        bb.putFloat(intensity);
+      }
+    }
+    final Path ibd = tempDir.resolve("image.ibd");
+    Files.write(ibd, bb.array());
+
+    final ExternalArray mzArray = new ExternalArray(16, mzs.length, ExternalDataType.FLOAT_64);
+    final long intensityStart = mzArray.end();
+    final List<ExternalArray> arrays = List.of(
+        new ExternalArray(intensityStart + 2 * 3 * Float.BYTES, 3, ExternalDataType.FLOAT_32),
+        new ExternalArray(intensityStart, 3, ExternalDataType.FLOAT_32),
+        new ExternalArray(intensityStart + 3 * Float.BYTES, 3, ExternalDataType.FLOAT_32));
+
+    try (var reader = new ImzMLIbdReader(ibd.toFile())) {
+      assertArrayEquals(mzs, reader.read(mzArray));
+
+      final double[][] decoded = reader.read(arrays);
+      assertEquals(3, decoded.length);
+      assertArrayEquals(new double[]{7, 8, 9}, decoded[0]);
+      assertArrayEquals(new double[]{1, 2, 3}, decoded[1]);
+      assertArrayEquals(new double[]{4, 5, 6}, decoded[2]);
+
+      assertThrows(IOException.class,
+          () -> reader.read(new ExternalArray(intensityStart, 100, ExternalDataType.FLOAT_32)));
+    }
+  }
+
+  private static BinaryDataArray mockArray(String... accessions) {
+    final BinaryDataArray array = mock(BinaryDataArray.class);
+    for (String accession : accessions) {
+      final CVParam param = mock(CVParam.class);
+      when(param.getValueAsDouble()).thenReturn(16d);
+      when(param.getValueAsInteger()).thenReturn(3);
+      when(array.getCVParam(accession)).thenReturn(param);
+    }
+    return array;
+  }
+
+  @Test
+  void onlyUncompressedArraysAreReadDirectly() {
+    // float 64, external offset, and external array length
+    final String[] external = {"MS:1000523", "IMS:1000102", "IMS:1000103"};
+
+    final ExternalArray array = ExternalArray.of(mockArray("MS:1000576", external[0],
+        external[1], external[2]));
+    assertNotNull(array);
+    assertEquals(new ExternalArray(16, 3, ExternalDataType.FLOAT_64), array);
+
+    // no compression term, zlib, or other compressions fall back to jimzMLParser
+    assertNull(ExternalArray.of(mockArray(external)));
+    assertNull(ExternalArray.of(mockArray("MS:1000574", external[0], external[1], external[2])));
+    assertNull(ExternalArray.of(mockArray("MS:1002312", external[0], external[1], external[2])));
+  }
+
+  @Test
+  void ibdFileNextToImzML() {
+    final File imzml = new File("data", "image.imzML");
+    assertEquals(new File("data", "image.ibd"), ImzMLIbdReader.getIbdFile(imzml));
+  }
+}
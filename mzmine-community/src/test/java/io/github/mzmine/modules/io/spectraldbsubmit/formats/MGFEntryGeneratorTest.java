@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.spectraldbsubmit.formats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.gui.preferences.NumberFormats;
+import io.github.mzmine.main.ConfigService;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MGFEntryGeneratorTest {
+
+  /**
+   * The SIRIUS export creates entries of all rows in parallel
+   */
+  @Test
+  void parallelSameAsSequential() {
+    final Random random = new Random(42);
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+      fields.put(DBEntryField.FEATURE_ID, i);
+      fields.put(DBEntryField.PRECURSOR_MZ, 100 + random.nextDouble() * 1500);
+      fields.put(DBEntryField.RT, random.nextFloat() * 30);
+      fields.put(DBEntryField.FEATURE_MS1_HEIGHT, (float) Math.pow(10, random.nextDouble() * 8));
+      fields.put(DBEntryField.FEATURE_MS1_REL_HEIGHT, random.nextFloat());
+      final double[] mzs = {50 + random.nextDouble(), 100 + random.nextDouble()};
+      final double[] intensities = {random.nextDouble() * 1E5, random.nextDouble() * 1E5};
+      entries.add(new SpectralDBEntry(null, mzs, intensities, fields));
+    }
+
+    final List<String> sequential = entries.stream().map(MGFEntryGenerator::createMGFEntry)
+        .toList();
+
+    // same values as the shared export formats
+    final NumberFormats formats = ConfigService.getExportFormats();
+    final SpectralLibraryEntry first = entries.getFirst();
+    assertTrue(sequential.getFirst().contains("PEPMASS=" + formats.mz(
+        (Double) first.getField(DBEntryField.PRECURSOR_MZ).orElseThrow()) + "\n"));
+
+    for (int repeat = 0; repeat < 20; repeat++) {
+      final List<String> parallel = entries.parallelStream()
+          .map(MGFEntryGenerator::createMGFEntry).toList();
+      assertEquals(sequential, parallel);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.parameters.parametertypes.tolerances;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import org.junit.jupiter.api.Test;
+
+class MZToleranceTest {
+
+  @Test
+  void referenceRangeContainsAllMatches() {
+    final MZTolerance[] tolerances = {new MZTolerance(0.002, 10), new MZTolerance(0.0, 5),
+        new MZTolerance(0.01, 0)};
+    for (MZTolerance tolerance : tolerances) {
+      for (double mz = 50; mz < 2500; mz += 13.37) {
+        final Range<Double> range = tolerance.getReferenceRange(mz);
+        // reference values at the edge of and just outside the tolerance
+        final double step = tolerance.getMzToleranceForMass(mz) / 1000;
+        for (double reference = mz - 1.1 * tolerance.getMzToleranceForMass(mz);
+            reference < mz + 1.1 * tolerance.getMzToleranceForMass(mz); reference += step) {
+          if (tolerance.checkWithinTolerance(reference, mz)) {
+            assertTrue(range.contains(reference), tolerance + " " + mz + " " + reference);
+          }
+        }
+        assertFalse(range.contains(mz - 1.1 * tolerance.getMzToleranceForMass(mz)));
+        assertFalse(range.contains(mz + 1.1 * tolerance.getMzToleranceForMass(mz)));
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FastDecimalFormatTest {
+
+  @Test
+  void sameAsDecimalFormat() {
+    final Random random = new Random(42);
+    for (String pattern : List.of("0.0000", "0.###", "0.######", "0", "0.0E0", "0.###E0",
+        "0.00E00", "#,##0.00", "0.0 %")) {
+      for (Locale locale : List.of(Locale.US, Locale.GERMANY)) {
+        final DecimalFormat df = new DecimalFormat(pattern,
+            DecimalFormatSymbols.getInstance(locale));
+        final FastDecimalFormat fast = new FastDecimalFormat(df);
+        for (double special : new double[]{0, -0d, 9.5, 0.99995, 99999.99995, 1e300, 1e-310,
+            -12.3456, Double.NaN, Double.POSITIVE_INFINITY}) {
+          assertEquals(df.format(special), fast.format(special), pattern);
+        }
+        for (int i = 0; i < 100_000; i++) {
+          final double value = switch (i % 4) {
+            case 0 -> random.nextDouble() * 2000;
+            case 1 -> Math.pow(10, random.nextDouble() * 40 - 20);
+            // decimal values close to rounding ties
+            case 2 -> (random.nextInt(100_000) + 0.5) / Math.pow(10, random.nextInt(8));
+            default -> random.nextInt(1000) / 8d;
+          };
+          assertEquals(df.format(value), fast.format(value), pattern);
+        }
+      }
+    }
+  }
+
+  @Test
+  void orderedParallelWrite() throws IOException {
+    final List<Integer> items = IntStream.range(0, 10_000).boxed().toList();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final int written = OrderedParallelWriter.write(out, items, 100,
+        i -> i % 3 == 0 ? null : i + "\n", null);
+
+    final StringBuilder expected = new StringBuilder();
+    items.stream().filter(i -> i % 3 != 0).forEach(i -> expected.append(i).append("\n"));
+    assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    assertEquals(items.size() - 3334, written);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io.arrow;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArrowIpcTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void writeAndReadBatches() throws IOException {
+    final int n = 1003;
+    final Object[] ids = new Object[n];
+    final Object[] longs = new Object[n];
+    final Object[] floats = new Object[n];
+    final Object[] doubles = new Object[n];
+    final Object[] strings = new Object[n];
+    final Object[] booleans = new Object[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = i;
+      longs[i] = i * 10_000_000_000L;
+      floats[i] = i % 5 == 0 ? null : i / 3f;
+      doubles[i] = i / 7d;
+      strings[i] = i % 3 == 0 ? null : "äö " + i;
+      booleans[i] = i % 11 == 0 ? null : i % 2 == 0;
+    }
+    final List<ArrowColumn> columns = List.of(new ArrowColumn("id", ArrowColumnType.INT32, ids),
+        new ArrowColumn("long", ArrowColumnType.INT64, longs),
+        new ArrowColumn("datafile:a:b.mzML:height", ArrowColumnType.FLOAT32, floats),
+        new ArrowColumn("mz", ArrowColumnType.FLOAT64, doubles),
+        new ArrowColumn("comment", ArrowColumnType.UTF8, strings),
+        new ArrowColumn("flag", ArrowColumnType.BOOL, booleans));
+
+    final Path file = tempDir.resolve("table.arrow");
+    // several record batches with an incomplete last batch
+    ArrowIpcWriter.write(file, columns, 100);
+    final List<ArrowColumn> read = ArrowIpcReader.read(file);
+
+    assertEquals(columns.size(), read.size());
+    for (int i = 0; i < columns.size(); i++) {
+      assertEquals(columns.get(i).name(), read.get(i).name());
+      assertEquals(columns.get(i).type(), read.get(i).type());
+      assertArrayEquals(columns.get(i).values(), read.get(i).values());
+    }
+  }
+
+  @Test
+  void emptyTable() throws IOException {
+    final Path file = tempDir.resolve("empty.arrow");
+    ArrowIpcWriter.write(file, List.of(new ArrowColumn("id", ArrowColumnType.INT32, new Object[0])));
+    final List<ArrowColumn> read = ArrowIpcReader.read(file);
+    assertEquals(1, read.size());
+    assertEquals(0, read.getFirst().length());
+  }
+
+  /**
+   * Table of unsupported_types_pyarrow.py, encoded without pyarrow, with null, binary, and timestamp
+   * columns that are skipped
+   */
+  @Test
+  void skipUnsupportedColumns() throws IOException, URISyntaxException {
+    final Path file = Path.of(
+        ArrowIpcTest.class.getClassLoader().getResource("arrow/unsupported_types.arrow").toURI());
+    final List<ArrowColumn> read = ArrowIpcReader.read(file);
+
+    assertEquals(List.of("id", "name", "mz", "charge", "flag"),
+        read.stream().map(ArrowColumn::name).toList());
+    assertEquals(List.of(ArrowColumnType.INT64, ArrowColumnType.UTF8, ArrowColumnType.FLOAT64,
+        ArrowColumnType.INT32, ArrowColumnType.BOOL), read.stream().map(ArrowColumn::type).toList());
+    assertArrayEquals(new Object[]{1L, 2L, 3L, 4L, 5L}, read.get(0).values());
+    assertArrayEquals(new Object[]{"a", null, "äö", "b", "c"}, read.get(1).values());
+    assertArrayEquals(new Object[]{100.5, 200.25, null, 300.125, 400.0}, read.get(2).values());
+    assertArrayEquals(new Object[]{1, 2, 255, null, 3}, read.get(3).values());
+    assertArrayEquals(new Object[]{true, false, null, null, true}, read.get(4).values());
+  }
+
+  @Test
+  void rejectNonArrowFile() throws IOException {
+    final Path file = tempDir.resolve("table.csv");
+    Files.writeString(file, "id,mz\n1,200.1\n");
+    assertThrows(IOException.class, () -> ArrowIpcReader.read(file));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CosineSimilarityKernelTest {
+
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+
+  /**
+   * Creates a spectrum that shares signals with the base spectrum. Intensities and m/z values are
+   * rounded to create ties and competing signals within the tolerance.
+   */
+  private static DataPoint[] createSpectrum(Random random, DataPoint[] base, int extra) {
+    final DataPoint[] dps = new DataPoint[base.length + extra];
+    for (int i = 0; i < base.length; i++) {
+      final double shift = (random.nextInt(5) - 2) * 0.002;
+      dps[i] = new SimpleDataPoint(base[i].getMZ() + shift, random.nextInt(20) * 50d);
+    }
+    for (int i = base.length; i < dps.length; i++) {
+      dps[i] = new SimpleDataPoint(50 + random.nextInt(100000) * 0.01, random.nextInt(20) * 50d);
+    }
+    return dps;
+  }
+
+  @Test
+  void scalarSameAsDataPointCosine() {
+    assertSameAsDataPointCosine(new ScalarCosineSimilarityKernel());
+  }
+
+  /**
+   * Vector API implementation if the module jdk.incubator.vector is available
+   */
+  @Test
+  void instanceSameAsDataPointCosine() {
+    assertSameAsDataPointCosine(CosineSimilarityKernel.getInstance());
+  }
+
+  private static void assertSameAsDataPointCosine(CosineSimilarityKernel kernel) {
+    final Random random = new Random(42);
+    final CosineKernelResult result = new CosineKernelResult();
+    for (int test = 0; test < 500; test++) {
+      final DataPoint[] base = createSpectrum(random, new DataPoint[0], 1 + random.nextInt(40));
+      final DataPoint[] library = createSpectrum(random, base, random.nextInt(30));
+      final DataPoint[] query = createSpectrum(random, base, random.nextInt(30));
+
+      for (Weights weights : Weights.VALUES) {
+        for (HandleUnmatchedSignalOptions handleUnmatched : HandleUnmatchedSignalOptions.values()) {
+          // align sorts the library in place
+          final List<DataPoint[]> expectedAlignment = ScanAlignment.align(mzTol, library.clone(),
+              query);
+          final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+              new ArrayList<>(expectedAlignment));
+          final int overlap = (int) aligned.stream().filter(dp -> dp[0] != null && dp[1] != null)
+              .count();
+          final double cosine = Similarity.COSINE.calc(
+              ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(),
+                  weights.getMz()));
+
+          kernel.weightedCosine(library, query, mzTol, weights, handleUnmatched, result);
+          assertEquals(overlap, result.getOverlap());
+          assertEquals(cosine, result.getScore(), CosineSimilarityKernel.SCORE_MARGIN);
+
+          // same pairs of the same instances in the same order
+          final List<DataPoint[]> alignment = result.createAlignment(library, query);
+          assertEquals(expectedAlignment.size(), alignment.size());
+          for (int i = 0; i < alignment.size(); i++) {
+            assertSame(expectedAlignment.get(i)[0], alignment.get(i)[0]);
+            assertSame(expectedAlignment.get(i)[1], alignment.get(i)[1]);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,22 @@
+# Describes unsupported_types.arrow, a table with supported and unsupported column types in two
+# record batches for ArrowIpcTest. The committed file was not written by pyarrow, it was encoded
+# directly following the Arrow IPC file format. This script writes the same table with pyarrow to
+# unsupported_types_pyarrow.arrow, e.g., to cross check the reader with a file of pyarrow.
+# Requires pyarrow.
+import pyarrow as pa
+
+schema = pa.schema([("id", pa.int64()), ("missing", pa.null()), ("raw", pa.binary()),
+                    ("name", pa.string()), ("time", pa.timestamp("ms")), ("mz", pa.float64()),
+                    ("charge", pa.uint8()), ("flag", pa.bool_())])
+batches = [
+    pa.record_batch([[1, 2, 3], [None] * 3, [b"\x00\x01", None, b"abc"], ["a", None, "äö"],
+                     [0, 1000, None], [100.5, 200.25, None], [1, 2, 255], [True, False, None]],
+                    schema=schema),
+    pa.record_batch([[4, 5], [None] * 2, [b"", b"xyz"], ["b", "c"], [None, 2000], [300.125, 400.0],
+                     [None, 3], [None, True]], schema=schema),
+]
+
+with pa.ipc.new_file("unsupported_types_pyarrow.arrow", schema,
+                     options=pa.ipc.IpcWriteOptions(compression=None)) as writer:
+    for batch in batches:
+        writer.write_batch(batch)
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persistent, content addressed cache files in the user mzmine directory. Cache files are named by
+ * a hash of everything that influenced their content so that they can be reused across sessions and
+ * batch runs. Files are written to a temporary file first and moved into place once complete.
+ * <p>
+ * Cache files are evicted by their last use, which is tracked as the last modified time and updated
+ * by {@link #markUsed(File)}. Each time a new cache file is moved into place, files of the same
+ * category that were not used for {@link #DEFAULT_MAX_AGE} are deleted, and the least recently
+ * used files are deleted while the category exceeds {@link #DEFAULT_MAX_CATEGORY_BYTES}.
+ */
+public class FileCacheUtils {
+
+  private static final Logger logger = Logger.getLogger(FileCacheUtils.class.getName());
+  private static final String CACHE_FOLDER = "cache";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Cache files that were not used for this duration are deleted
+   */
+  public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(60);
+  /**
+   * Size limit of all files in one cache category
+   */
+  public static final long DEFAULT_MAX_CATEGORY_BYTES = 20L * 1024 * 1024 * 1024;
+  /**
+   * Temp files of this age are left over from crashed or killed runs
+   */
+  private static final Duration STALE_TEMP_AGE = Duration.ofDays(1);
+
+  /**
+   * @param category sub folder for one type of cache, e.g., compiled_databases
+   * @return the cache directory, created if it did not exist
+   */
+  public static @NotNull File getCacheDir(@NotNull String category) {
+    final File dir = new File(FileAndPathUtil.resolveInMzmineDir(CACHE_FOLDER), category);
+    FileAndPathUtil.createDirectory(dir);
+    return dir;
+  }
+
+  /**
+   * @param category sub folder for one type of cache
+   * @param baseName human-readable part of the file name, usually the source file name
+   * @param key      hash key of the cache content, see {@link #hashKey(Object...)}
+   * @param format   file extension without dot
+   * @return the cache file, which might not exist yet
+   */
+  public static @NotNull File getCacheFile(@NotNull String category, @NotNull String baseName,
+      @NotNull String key, @NotNull String format) {
+    final String name = FileAndPathUtil.safePathEncode(FileAndPathUtil.eraseFormat(baseName));
+    return new File(getCacheDir(category), name + "_" + key + "." + format);
+  }
+
+  /**
+   * Identity of a file that changes whenever the file is replaced or modified.
+   */
+  public static @NotNull String fileIdentity(@NotNull File file) {
+    return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+  }
+
+  /**
+   * @param parts all values that influence the cached content. Uses {@link String#valueOf(Object)}
+   * @return a SHA-256 based hex key (shortened to 32 characters)
+   */
+  public static @NotNull String hashKey(Object... parts) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Object part : parts) {
+        digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+        // separator so that ("ab", "c") differs from ("a", "bc")
+        digest.update((byte) 0);
+      }
+      return HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is required on all java platforms
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return a temporary file next to the final cache file to write to before calling
+   * {@link #moveIntoPlace(File, File)}
+   */
+  public static @NotNull File createTempCacheFile(@NotNull File cacheFile) throws IOException {
+    return Files.createTempFile(cacheFile.getParentFile().toPath(), cacheFile.getName(), TEMP_SUFFIX)
+        .toFile();
+  }
+
+  /**
+   * Atomically replaces the cache file with the completely written temp file. Concurrent readers
+   * either see no file or the complete file.
+   */
+  public static void moveIntoPlace(@NotNull File tempFile, @NotNull File cacheFile)
+      throws IOException {
+    moveIntoPlace(tempFile, cacheFile, DEFAULT_MAX_CATEGORY_BYTES);
+  }
+
+  /**
+   * Atomically replaces the cache file with the completely written temp file and evicts files of
+   * the same category to stay below the size limit.
+   *
+   * @param maxCategoryBytes the size limit of all files in the category of this cache file
+   */
+  public static void moveIntoPlace(@NotNull File tempFile, @NotNull File cacheFile,
+      long maxCategoryBytes) throws IOException {
+    try {
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // atomic moves are not supported on all file systems
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    logger.fine(() -> "Created cache file " + cacheFile.getAbsolutePath());
+    evictStaleFiles(cacheFile.getParentFile(), maxCategoryBytes, DEFAULT_MAX_AGE, cacheFile);
+  }
+
+  /**
+   * Marks a cache file as used to protect it from eviction. Call this when an existing cache file
+   * is reused.
+   */
+  public static void markUsed(@NotNull File cacheFile) {
+    if (!cacheFile.setLastModified(System.currentTimeMillis())) {
+      logger.finest(() -> "Cannot update last use of cache file " + cacheFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Deletes cache files that were not used for maxAge and then the least recently used files until
+   * the category is smaller than maxBytes. Files that are still in use (memory mapped) might not be
+   * deletable on all systems and are skipped.
+   *
+   * @param category sub folder for one type of cache
+   * @param maxBytes the size limit of all files in this category
+   * @param maxAge   files that were not used for this duration are deleted
+   */
+  public static void evictStaleFiles(@NotNull String category, long maxBytes,
+      @NotNull Duration maxAge) {
+    evictStaleFiles(getCacheDir(category), maxBytes, maxAge, null);
+  }
+
+  private static void evictStaleFiles(@NotNull File cacheDir, long maxBytes,
+      @NotNull Duration maxAge, @Nullable File keep) {
+    final File[] files = cacheDir.listFiles(File::isFile);
+    if (files == null) {
+      return;
+    }
+
+    final long now = System.currentTimeMillis();
+    final List<File> remaining = new ArrayList<>();
+    long totalBytes = 0;
+    for (File file : files) {
+      final long age = now - file.lastModified();
+      final boolean temp = file.getName().endsWith(TEMP_SUFFIX);
+      if (!file.equals(keep) && ((temp && age > STALE_TEMP_AGE.toMillis()) || (!temp
+          && age > maxAge.toMillis())) && delete(file)) {
+        continue;
+      }
+      totalBytes += file.length();
+      if (!temp && !file.equals(keep)) {
+        remaining.add(file);
+      }
+    }
+
+    // least recently used first
+    remaining.sort(Comparator.comparingLong(File::lastModified));
+    for (File file : remaining) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      final long length = file.length();
+      if (delete(file)) {
+        totalBytes -= length;
+      }
+    }
+  }
+
+  private static boolean delete(@NotNull File file) {
+    try {
+      Files.delete(file.toPath());
+      logger.fine(() -> "Evicted cache file " + file.getAbsolutePath());
+      return true;
+    } catch (IOException e) {
+      logger.fine(() -> "Cannot evict cache file %s: %s".formatted(file.getAbsolutePath(),
+          e.getMessage()));
+      return false;
+    }
+  }
+}